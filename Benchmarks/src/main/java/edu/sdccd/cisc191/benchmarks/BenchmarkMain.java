@@ -0,0 +1,25 @@
+package edu.sdccd.cisc191.benchmarks;
+
+import java.util.*;
+
+/**
+ * Entry point of benchmarks.jar. Forwards all arguments to the JMH runner, but
+ * writes the results as JSON to jmh-result.json unless -rf/-rff say otherwise,
+ * so that every run leaves a file that can be compared against a baseline.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add("-rf");
+            options.add("json");
+        }
+        if (!options.contains("-rff")) {
+            options.add("-rff");
+            options.add("jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+
+}
@@ -0,0 +1,43 @@
+package edu.sdccd.cisc191.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.sdccd.cisc191.linalg.*;
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Transpose and matrix product of square matrices.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LinAlgBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private Matrix a;
+    private Matrix b;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        a = Matrix.newRandom(size, size);
+        b = Matrix.newRandom(size, size);
+    }
+
+    @Benchmark
+    public Matrix transpose() {
+        return LinAlgBasics.transpose(a);
+    }
+
+    @Benchmark
+    public Matrix matrixMultiply() {
+        return LinAlgBasics.matrixMultiply(a, b);
+    }
+
+}
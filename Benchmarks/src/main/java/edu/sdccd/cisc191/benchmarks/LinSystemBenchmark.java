@@ -0,0 +1,52 @@
+package edu.sdccd.cisc191.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.sdccd.cisc191.linalg.*;
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Direct solves of a well-conditioned n x n system with one right-hand side.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LinSystemBenchmark {
+
+    @Param({"3", "16", "128", "512"})
+    public int size;
+
+    private Matrix a;
+    private Matrix b;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // A random matrix plus n on the diagonal is diagonally dominant on average
+        a = Matrix.newRandom(size, size);
+        for (int i = 0; i < size; i++) {
+            a.set(a.get(i, i) + size, i, i);
+        }
+        b = Matrix.newRandom(size, 1);
+    }
+
+    @Benchmark
+    public Matrix solveSystem() throws Exception {
+        return LinSystem.solveSystem(a, b);
+    }
+
+    @Benchmark
+    public Matrix doublePrecision() throws Exception {
+        return new LUDecomposition(a).solve(b);
+    }
+
+    @Benchmark
+    public Matrix mixedPrecision() throws Exception {
+        return new MixedPrecisionSolver(a).solve(b);
+    }
+
+}
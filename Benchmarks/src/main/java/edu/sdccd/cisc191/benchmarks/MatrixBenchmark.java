@@ -0,0 +1,118 @@
+package edu.sdccd.cisc191.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Element access, element-wise operations, views and copies of a square Matrix.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixBenchmark {
+
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private Matrix a;
+    private Matrix b;
+    private Matrix ones;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        a = Matrix.newRandom(size, size);
+        b = Matrix.newRandom(size, size);
+        // Multiplying by ones keeps the values of a stable across invocations
+        ones = Matrix.newZeros(size, size);
+        ones.add(1.0);
+    }
+
+    @Benchmark
+    public double getSweep() {
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                sum += a.get(i, j);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double getSweepBoxed() {
+        // Goes through the DataView contract, get(Integer...)
+        DataView view = a;
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                sum += view.get(i, j);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public Matrix setSweep() {
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                a.set(1.0, i, j);
+            }
+        }
+        return a;
+    }
+
+    @Benchmark
+    public Matrix addMatrix() {
+        a.add(b);
+        return a;
+    }
+
+    @Benchmark
+    public Matrix addScalar() {
+        a.add(1.0);
+        return a;
+    }
+
+    @Benchmark
+    public Matrix multiplyMatrix() {
+        a.multiply(ones);
+        return a;
+    }
+
+    @Benchmark
+    public Matrix multiplyScalar() {
+        a.multiply(1.0);
+        return a;
+    }
+
+    @Benchmark
+    public Matrix addStridedView() {
+        Matrix view = a.select(new Slice(0, size, 2), new Slice(0, size, 2));
+        view.add(1.0);
+        return view;
+    }
+
+    @Benchmark
+    public void select(Blackhole blackhole) {
+        blackhole.consume(a.select(new Slice(0, size, 2), new Slice(0, size, 2)));
+        blackhole.consume(a.select(size / 2, new Slice()));
+    }
+
+    @Benchmark
+    public Matrix copy() {
+        return a.copy();
+    }
+
+    @Benchmark
+    public Matrix copyStridedView() {
+        return a.select(new Slice(0, size, 2), new Slice(0, size, 2)).copy();
+    }
+
+}
@@ -0,0 +1,72 @@
+package edu.sdccd.cisc191.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.sdccd.cisc191.template.*;
+
+/**
+ * Binary MatrixCodec frames against the JSON debug encoding, for one n x n
+ * matrix per message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixWireBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int size;
+
+    private MatrixMessage message;
+    private ByteBuffer buffer;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        double[] data = new double[size * size];
+        Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextGaussian();
+        }
+        message = new MatrixMessage(MatrixMessage.Type.RESULT, 1, new MatrixMessage.Block(size, size, data));
+        buffer = ByteBuffer.allocateDirect(MatrixCodec.encodedLength(message));
+        json = MatrixMessage.toJSON(message);
+    }
+
+    @Benchmark
+    public ByteBuffer binaryEncode() {
+        buffer.clear();
+        MatrixCodec.encode(message, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public MatrixMessage binaryRoundTrip() throws Exception {
+        buffer.clear();
+        MatrixCodec.encode(message, buffer);
+        buffer.flip();
+        return MatrixCodec.decode(buffer);
+    }
+
+    @Benchmark
+    public String jsonEncode() throws Exception {
+        return MatrixMessage.toJSON(message);
+    }
+
+    @Benchmark
+    public MatrixMessage jsonRoundTrip() throws Exception {
+        return MatrixMessage.fromJSON(MatrixMessage.toJSON(message));
+    }
+
+    @Benchmark
+    public MatrixMessage jsonDecode() throws Exception {
+        return MatrixMessage.fromJSON(json);
+    }
+
+}
@@ -0,0 +1,47 @@
+package edu.sdccd.cisc191.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import edu.sdccd.cisc191.template.*;
+
+/**
+ * JSON round-trips of the messages exchanged between Client and Server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireBenchmark {
+
+    // Length of the name fields of the response
+    @Param({"8", "128", "4096"})
+    public int size;
+
+    private CustomerRequest request;
+    private CustomerResponse response;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            name.append((char) ('a' + i % 26));
+        }
+        request = new CustomerRequest(size);
+        response = new CustomerResponse(size, name.toString(), name.reverse().toString());
+    }
+
+    @Benchmark
+    public CustomerRequest requestRoundTrip() throws Exception {
+        return CustomerRequest.fromJSON(CustomerRequest.toJSON(request));
+    }
+
+    @Benchmark
+    public CustomerResponse responseRoundTrip() throws Exception {
+        return CustomerResponse.fromJSON(CustomerResponse.toJSON(response));
+    }
+
+}
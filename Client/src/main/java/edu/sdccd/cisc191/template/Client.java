@@ -2,50 +2,289 @@ package edu.sdccd.cisc191.template;
 
 import java.net.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * This program opens a connection to a computer specified
- * as the first command-line argument.  If no command-line
- * argument is given, it prompts the user for a computer
- * to connect to.  The connection is made to
- * the port specified by LISTENING_PORT.  The program reads one
- * line of text from the connection and then closes the
- * connection.  It displays the text that it read on
- * standard output.  This program is meant to be used with
- * the server program, DateServer, which sends the current
- * date and time on the computer where the server is running.
+ * An asynchronous client for the matrix server. Requests are sent as binary
+ * MatrixCodec frames and return a CompletableFuture straight away, so one
+ * connection can carry many requests at once instead of waiting a round trip
+ * for each. Every request gets a fresh id, and a reader thread per connection
+ * completes the future whose id the response carries, whatever order the
+ * responses come back in.
+ * <p>
+ * The client keeps a pool of connections and sends each request on the one
+ * with the fewest requests in flight. It is safe to share between threads.
+ * At most maxInFlight requests may be in flight in total; beyond that, the
+ * send methods block until a response frees a slot, which keeps a fast
+ * producer from burying the server.
+ * <p>
+ * Futures are completed on the reader thread of their connection, so
+ * callbacks attached with the non-async CompletableFuture methods run there
+ * too, and the connection reads nothing more until they return. A response
+ * frees its slot before its future completes, so such a callback may send one
+ * follow-up request without blocking; anything that may wait longer belongs
+ * on another executor, through the async methods.
  */
+public class Client implements Closeable {
 
-public class Client {
-    private Socket clientSocket;
-    private PrintWriter out;
-    private BufferedReader in;
+    // Error response exception
+    public static class ServerException extends Exception {
+        public ServerException(String errorMessage) {
+            super(errorMessage);
+        }
+    }
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final Semaphore inFlight;
+    private final AtomicLong nextId = new AtomicLong(1);
 
-    public void startConnection(String ip, int port) throws IOException {
-        clientSocket = new Socket(ip, port);
-        out = new PrintWriter(clientSocket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
+    /**
+     * Connect to a server.
+     * @param host The server's host
+     * @param port The server's port
+     * @param poolSize The number of connections to open
+     * @param maxInFlight The number of requests that may be in flight at once
+     * @throws IOException When a connection cannot be opened
+     */
+    public Client(String host, int port, int poolSize, int maxInFlight) throws IOException {
+        if (poolSize <= 0 || maxInFlight <= 0) {
+            throw new IllegalArgumentException("Pool size and in-flight limit must be positive");
+        }
+        inFlight = new Semaphore(maxInFlight);
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                connections.add(new Connection(new InetSocketAddress(host, port), inFlight));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
     }
 
-    public CustomerResponse sendRequest() throws Exception {
-        out.println(CustomerRequest.toJSON(new CustomerRequest(1)));
-        return CustomerResponse.fromJSON(in.readLine());
+    public Client(String host, int port) throws IOException {
+        this(host, port, 4, 256);
     }
 
-    public void stopConnection() throws IOException {
-        in.close();
-        out.close();
-        clientSocket.close();
+    /**
+     * Solve a * x = b.
+     * @return Returns a future of x
+     */
+    public CompletableFuture<MatrixMessage.Block> solve(MatrixMessage.Block a, MatrixMessage.Block b) {
+        return result(send(MatrixMessage.Type.SOLVE, a, b));
     }
-    public static void main(String[] args) {
-        Client client = new Client();
+
+    /**
+     * Multiply a * b.
+     * @return Returns a future of the product
+     */
+    public CompletableFuture<MatrixMessage.Block> multiply(MatrixMessage.Block a, MatrixMessage.Block b) {
+        return result(send(MatrixMessage.Type.MULTIPLY, a, b));
+    }
+
+    /**
+     * Transpose a.
+     * @return Returns a future of the transpose
+     */
+    public CompletableFuture<MatrixMessage.Block> transpose(MatrixMessage.Block a) {
+        return result(send(MatrixMessage.Type.TRANSPOSE, a));
+    }
+
+    /**
+     * Send a request. Blocks while maxInFlight requests are in flight.
+     * @param type The operation
+     * @param blocks The operands
+     * @return Returns a future of the response, which is a RESULT or an ERROR
+     */
+    public CompletableFuture<MatrixMessage> send(MatrixMessage.Type type, MatrixMessage.Block... blocks) {
+        CompletableFuture<MatrixMessage> future = new CompletableFuture<>();
         try {
-            client.startConnection("127.0.0.1", 4444);
-            System.out.println(client.sendRequest().toString());
-            client.stopConnection();
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        leastLoaded().send(new MatrixMessage(type, nextId.getAndIncrement(), blocks), future);
+        return future;
+    }
+
+    /**
+     * @return Returns the number of requests in flight
+     */
+    public int getInFlight() {
+        int count = 0;
+        for (Connection connection : connections) {
+            count += connection.pending.size();
+        }
+        return count;
+    }
+
+    /**
+     * Close every connection. Requests still in flight fail.
+     */
+    @Override
+    public void close() {
+        for (Connection connection : connections) {
+            connection.fail(new IOException("Client closed"));
+        }
+    }
+
+    // Helpers
+    private Connection leastLoaded() {
+        Connection best = connections.get(0);
+        for (Connection connection : connections) {
+            if (connection.pending.size() < best.pending.size()) {
+                best = connection;
+            }
+        }
+        return best;
+    }
+
+    private static CompletableFuture<MatrixMessage.Block> result(CompletableFuture<MatrixMessage> response) {
+        return response.thenApply(message -> {
+            if (message.getType() == MatrixMessage.Type.ERROR) {
+                throw new CompletionException(new ServerException(message.getError()));
+            }
+            return message.getBlocks()[0];
+        });
+    }
+
+    /**
+     * One pooled connection: writers take turns on the socket, and a reader
+     * thread matches responses to the futures of their requests. Whoever
+     * takes a future off pending frees its in-flight slot, before completing
+     * it, so callbacks that send again find the slot free.
+     */
+    private static final class Connection implements Runnable {
+
+        private final SocketChannel channel;
+        private final Semaphore inFlight;
+        private final Map<Long, CompletableFuture<MatrixMessage>> pending = new ConcurrentHashMap<>();
+        private final Object writeLock = new Object();
+        private volatile IOException failure;
+
+        private Connection(InetSocketAddress address, Semaphore inFlight) throws IOException {
+            this.inFlight = inFlight;
+            channel = SocketChannel.open(address);
+            channel.socket().setTcpNoDelay(true);
+            Thread reader = new Thread(this, "client-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void send(MatrixMessage request, CompletableFuture<MatrixMessage> future) {
+            pending.put(request.getId(), future);
+            try {
+                ByteBuffer frame = MatrixCodec.encode(request);
+                synchronized (writeLock) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    while (frame.hasRemaining()) {
+                        channel.write(frame);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (remove(request.getId()) != null) {
+                    future.completeExceptionally(e);
+                }
+                if (e instanceof IOException) {
+                    fail((IOException) e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer input = ByteBuffer.allocate(64 << 10);
+            try {
+                while (channel.read(input) >= 0) {
+                    input.flip();
+                    MatrixMessage response;
+                    while ((response = MatrixCodec.decode(input)) != null) {
+                        CompletableFuture<MatrixMessage> future = remove(response.getId());
+                        if (future != null) {
+                            future.complete(response);
+                        }
+                    }
+                    int needed = MatrixCodec.frameLength(input);
+                    input.compact();
+                    if (needed > input.capacity()) {
+                        ByteBuffer larger = ByteBuffer.allocate(needed);
+                        input.flip();
+                        larger.put(input);
+                        input = larger;
+                    }
+                }
+                fail(new EOFException("Server closed the connection"));
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        // Closes the connection and fails every request still in flight on it
+        private void fail(IOException e) {
+            synchronized (writeLock) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+            for (Long id : new ArrayList<>(pending.keySet())) {
+                CompletableFuture<MatrixMessage> future = remove(id);
+                if (future != null) {
+                    future.completeExceptionally(failure);
+                }
+            }
+        }
+
+        // Takes a request off pending and frees its slot; null if it was already taken
+        private CompletableFuture<MatrixMessage> remove(long id) {
+            CompletableFuture<MatrixMessage> future = pending.remove(id);
+            if (future != null) {
+                inFlight.release();
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Pipeline a batch of random solves to a server and report the throughput.
+     * @param args The host, port and number of requests, all optional
+     */
+    public static void main(String[] args) {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 4444;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        try (Client client = new Client(host, port)) {
+            Random random = new Random();
+            List<CompletableFuture<MatrixMessage.Block>> results = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < requests; i++) {
+                double[] a = new double[9];
+                double[] b = new double[3];
+                for (int j = 0; j < 9; j++) {
+                    a[j] = random.nextDouble() + (j % 4 == 0 ? 3 : 0);
+                }
+                for (int j = 0; j < 3; j++) {
+                    b[j] = random.nextDouble();
+                }
+                results.add(client.solve(new MatrixMessage.Block(3, 3, a), new MatrixMessage.Block(3, 1, b)));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(Arrays.toString(results.get(0).join().getData()));
+            System.out.printf("%d solves in %.2f s, %.0f requests/s%n", requests, seconds, requests / seconds);
         } catch(Exception e) {
             e.printStackTrace();
         }
     }
 } //end class Client
-
@@ -0,0 +1,196 @@
+package edu.sdccd.cisc191.template;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import edu.sdccd.cisc191.server.SolveServer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientTest {
+    private static final MatrixMessage.Block A = new MatrixMessage.Block(2, 2, new double[] {2, 1, 1, 3});
+    private static final MatrixMessage.Block B = new MatrixMessage.Block(2, 1, new double[] {3, 5});
+
+    private SolveServer server;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() throws IOException {
+        server = new SolveServer(0, 2, 64);
+        new Thread(server).start();
+    }
+
+    @org.junit.jupiter.api.AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    private static MatrixMessage.Block scalar(double value) {
+        return new MatrixMessage.Block(1, 1, new double[] {value});
+    }
+
+    @org.junit.jupiter.api.Test
+    void pipelinedRequests() throws Exception {
+        try (Client client = new Client("127.0.0.1", server.getPort(), 2, 16)) {
+            List<CompletableFuture<MatrixMessage.Block>> products = new ArrayList<>();
+            List<CompletableFuture<MatrixMessage.Block>> solutions = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                products.add(client.multiply(scalar(i), scalar(3)));
+                solutions.add(client.solve(A, new MatrixMessage.Block(2, 1, new double[] {3 * i, 5 * i})));
+            }
+            for (int i = 0; i < 100; i++) {
+                assertArrayEquals(new double[] {3.0 * i}, products.get(i).get(5, TimeUnit.SECONDS).getData());
+                assertArrayEquals(new double[] {0.8 * i, 1.4 * i},
+                        solutions.get(i).get(5, TimeUnit.SECONDS).getData(), 1e-12);
+            }
+            assertEquals(0, client.getInFlight());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void outOfOrderResponses() throws Exception {
+        try (ScriptedServer scripted = new ScriptedServer();
+             Client client = new Client("127.0.0.1", scripted.getPort(), 1, 8)) {
+            List<CompletableFuture<MatrixMessage.Block>> results = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                results.add(client.transpose(scalar(i)));
+            }
+            List<MatrixMessage> requests = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                requests.add(scripted.nextRequest());
+            }
+            // Answer last to first, each with the operand of its own request
+            Collections.reverse(requests);
+            for (MatrixMessage request : requests) {
+                scripted.respond(new MatrixMessage(MatrixMessage.Type.RESULT, request.getId(), request.getBlocks()[0]));
+            }
+            for (int i = 0; i < 5; i++) {
+                assertArrayEquals(new double[] {i}, results.get(i).get(5, TimeUnit.SECONDS).getData());
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void inFlightLimit() throws Exception {
+        try (ScriptedServer scripted = new ScriptedServer();
+             Client client = new Client("127.0.0.1", scripted.getPort(), 1, 2)) {
+            client.transpose(scalar(1));
+            client.transpose(scalar(2));
+            CompletableFuture<CompletableFuture<MatrixMessage.Block>> third =
+                    CompletableFuture.supplyAsync(() -> client.transpose(scalar(3)));
+            MatrixMessage first = scripted.nextRequest();
+            scripted.nextRequest();
+            Thread.sleep(100);
+            assertFalse(third.isDone());
+            assertEquals(2, client.getInFlight());
+
+            // One response frees one slot
+            scripted.respond(new MatrixMessage(MatrixMessage.Type.RESULT, first.getId(), first.getBlocks()[0]));
+            MatrixMessage request = scripted.nextRequest();
+            assertArrayEquals(new double[] {3}, request.getBlocks()[0].getData());
+            scripted.respond(new MatrixMessage(MatrixMessage.Type.RESULT, request.getId(), request.getBlocks()[0]));
+            assertArrayEquals(new double[] {3}, third.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS).getData());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void callbackSendsAtTheLimit() throws Exception {
+        try (Client client = new Client("127.0.0.1", server.getPort(), 1, 1)) {
+            // The second solve is sent from the reader thread, which must not wait on itself
+            MatrixMessage.Block x = client.solve(A, B)
+                    .thenCompose(first -> client.solve(A, first))
+                    .get(5, TimeUnit.SECONDS);
+            assertEquals(2, x.getData().length);
+            assertEquals(0, client.getInFlight());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void errorResponse() throws Exception {
+        try (Client client = new Client("127.0.0.1", server.getPort(), 1, 4)) {
+            CompletableFuture<MatrixMessage.Block> result = client.multiply(A, scalar(1));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof Client.ServerException);
+            assertEquals("Matrix shapes are not compatible", e.getCause().getMessage());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void serverCloses() throws Exception {
+        try (ScriptedServer scripted = new ScriptedServer();
+             Client client = new Client("127.0.0.1", scripted.getPort(), 1, 3)) {
+            List<CompletableFuture<MatrixMessage.Block>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(client.transpose(scalar(i)));
+                scripted.nextRequest();
+            }
+            scripted.close();
+            for (CompletableFuture<MatrixMessage.Block> result : results) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof IOException);
+            }
+            assertEquals(0, client.getInFlight());
+
+            // Every slot was freed, so later sends fail at once instead of blocking
+            for (int i = 0; i < 6; i++) {
+                assertThrows(ExecutionException.class, () -> client.transpose(scalar(0)).get(5, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    /**
+     * A server of one connection that answers only when the test tells it to.
+     */
+    private static final class ScriptedServer implements Closeable {
+        private final ServerSocket serverSocket = new ServerSocket(0);
+        private final BlockingQueue<MatrixMessage> requests = new LinkedBlockingQueue<>();
+        private volatile Socket socket;
+
+        ScriptedServer() throws IOException {
+            Thread reader = new Thread(this::read, "scripted-server");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        MatrixMessage nextRequest() throws InterruptedException {
+            MatrixMessage request = requests.poll(5, TimeUnit.SECONDS);
+            assertNotNull(request, "No request arrived");
+            return request;
+        }
+
+        synchronized void respond(MatrixMessage response) throws IOException {
+            ByteBuffer frame = MatrixCodec.encode(response);
+            socket.getOutputStream().write(frame.array(), 0, frame.remaining());
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (socket != null) {
+                socket.close();
+            }
+            serverSocket.close();
+        }
+
+        private void read() {
+            try {
+                socket = serverSocket.accept();
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                while (true) {
+                    byte[] header = new byte[MatrixCodec.HEADER_BYTES];
+                    in.readFully(header);
+                    byte[] frame = Arrays.copyOf(header, MatrixCodec.frameLength(ByteBuffer.wrap(header)));
+                    in.readFully(frame, header.length, frame.length - header.length);
+                    requests.add(MatrixCodec.decode(ByteBuffer.wrap(frame)));
+                }
+            } catch (IOException e) {
+                // Closed by the test
+            }
+        }
+    }
+}
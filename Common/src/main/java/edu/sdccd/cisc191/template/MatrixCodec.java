@@ -0,0 +1,190 @@
+package edu.sdccd.cisc191.template;
+
+import java.net.ProtocolException;
+import java.nio.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes MatrixMessages as length-prefixed binary frames. A frame
+ * is a HEADER_BYTES header followed by its payload, all little-endian:
+ * <pre>
+ *     offset  size  field
+ *          0     1  MAGIC
+ *          1     1  message type, the ordinal of MatrixMessage.Type
+ *          2     2  number of matrices
+ *          4     4  payload length in bytes
+ *          8     8  request id
+ *         16        payload: for every matrix its rows and columns as two
+ *                   ints and then its elements as row-major doubles, or for
+ *                   an ERROR the UTF-8 message
+ * </pre>
+ * MAGIC can never start a line of JSON text, so a server can tell binary
+ * clients from JSON ones by the first byte they send.
+ * <p>
+ * Elements move between the buffer and the message's double[] with one bulk
+ * copy per matrix, so a frame is about 8 bytes per element against 18 or so
+ * for JSON text, and encoding runs at close to memory bandwidth.
+ * <p>
+ * The codec sets the byte order of the buffers it is given to little-endian.
+ */
+public final class MatrixCodec {
+
+    public static final byte MAGIC = (byte) 0xA7;
+    public static final int HEADER_BYTES = 16;
+
+    // Largest payload a decoder accepts
+    public static final int MAX_PAYLOAD_BYTES = Integer.MAX_VALUE - HEADER_BYTES;
+
+    private static final MatrixMessage.Type[] TYPES = MatrixMessage.Type.values();
+
+    private MatrixCodec() {
+    }
+
+    /**
+     * @param message The message
+     * @return Returns the length of the message's frame, header included
+     */
+    public static int encodedLength(MatrixMessage message) {
+        return HEADER_BYTES + payloadLength(message);
+    }
+
+    /**
+     * Encode a message into a new buffer, ready to be written.
+     * @param message The message
+     * @return Returns a flipped buffer holding the frame
+     */
+    public static ByteBuffer encode(MatrixMessage message) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedLength(message));
+        encode(message, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Encode a message at the position of a buffer, and advance it.
+     * @param message The message
+     * @param dst The buffer, with at least encodedLength(message) bytes remaining
+     * @throws BufferOverflowException When the buffer is too small
+     */
+    public static void encode(MatrixMessage message, ByteBuffer dst) {
+        int payload = payloadLength(message);
+        if (dst.remaining() < HEADER_BYTES + payload) {
+            throw new BufferOverflowException();
+        }
+        MatrixMessage.Block[] blocks = message.getBlocks() == null ? new MatrixMessage.Block[0] : message.getBlocks();
+        dst.order(ByteOrder.LITTLE_ENDIAN);
+        dst.put(MAGIC);
+        dst.put((byte) message.getType().ordinal());
+        dst.putShort((short) blocks.length);
+        dst.putInt(payload);
+        dst.putLong(message.getId());
+        if (message.getType() == MatrixMessage.Type.ERROR) {
+            dst.put(errorBytes(message));
+            return;
+        }
+        for (MatrixMessage.Block block : blocks) {
+            dst.putInt(block.getNumRows());
+            dst.putInt(block.getNumCols());
+            double[] data = block.getData();
+            dst.asDoubleBuffer().put(data);
+            dst.position(dst.position() + data.length * Double.BYTES);
+        }
+    }
+
+    /**
+     * Check whether a buffer holds a complete frame.
+     * @param src The buffer, positioned at the start of a frame
+     * @return Returns the length of the frame, or -1 if not even its header is there yet
+     * @throws ProtocolException When the bytes are not a frame
+     */
+    public static int frameLength(ByteBuffer src) throws ProtocolException {
+        if (src.remaining() < HEADER_BYTES) {
+            return -1;
+        }
+        src.order(ByteOrder.LITTLE_ENDIAN);
+        int start = src.position();
+        if (src.get(start) != MAGIC) {
+            throw new ProtocolException("Not a matrix frame");
+        }
+        int payload = src.getInt(start + 4);
+        if (payload < 0 || payload > MAX_PAYLOAD_BYTES) {
+            throw new ProtocolException("Invalid frame length " + payload);
+        }
+        return HEADER_BYTES + payload;
+    }
+
+    /**
+     * Decode the frame at the position of a buffer. Frames may arrive in
+     * pieces: if the buffer does not hold a complete frame yet, nothing is
+     * consumed and null is returned.
+     * @param src The buffer, positioned at the start of a frame
+     * @return Returns the message, or null if the frame is incomplete
+     * @throws ProtocolException When the bytes are not a valid frame
+     */
+    public static MatrixMessage decode(ByteBuffer src) throws ProtocolException {
+        int length = frameLength(src);
+        if (length < 0 || src.remaining() < length) {
+            return null;
+        }
+        int end = src.position() + length;
+        src.get();
+        int type = src.get() & 0xFF;
+        int count = src.getShort() & 0xFFFF;
+        src.getInt();
+        long id = src.getLong();
+        if (type >= TYPES.length) {
+            throw new ProtocolException("Unknown message type " + type);
+        }
+
+        if (TYPES[type] == MatrixMessage.Type.ERROR) {
+            byte[] bytes = new byte[end - src.position()];
+            src.get(bytes);
+            return MatrixMessage.error(id, new String(bytes, StandardCharsets.UTF_8));
+        }
+        MatrixMessage.Block[] blocks = new MatrixMessage.Block[count];
+        for (int i = 0; i < count; i++) {
+            if (end - src.position() < 2 * Integer.BYTES) {
+                throw new ProtocolException("Truncated matrix in frame");
+            }
+            int numRows = src.getInt();
+            int numCols = src.getInt();
+            long elements = (long) numRows * numCols;
+            if (numRows < 0 || numCols < 0 || elements * Double.BYTES > end - src.position()) {
+                throw new ProtocolException("Invalid matrix shape " + numRows + "x" + numCols);
+            }
+            double[] data = new double[(int) elements];
+            src.asDoubleBuffer().get(data);
+            src.position(src.position() + data.length * Double.BYTES);
+            blocks[i] = new MatrixMessage.Block(numRows, numCols, data);
+        }
+        if (src.position() != end) {
+            throw new ProtocolException("Frame length does not match its contents");
+        }
+        return new MatrixMessage(TYPES[type], id, blocks);
+    }
+
+    // Helpers
+    private static int payloadLength(MatrixMessage message) {
+        if (message.getType() == MatrixMessage.Type.ERROR) {
+            return errorBytes(message).length;
+        }
+        long length = 0;
+        if (message.getBlocks() != null) {
+            if (message.getBlocks().length > 0xFFFF) {
+                throw new IllegalArgumentException("Message has too many matrices for one frame");
+            }
+            for (MatrixMessage.Block block : message.getBlocks()) {
+                length += 2 * Integer.BYTES + (long) block.getData().length * Double.BYTES;
+            }
+        }
+        if (length > MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException("Message is too large for one frame");
+        }
+        return (int) length;
+    }
+
+    private static byte[] errorBytes(MatrixMessage message) {
+        return message.getError() == null ? new byte[0] : message.getError().getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,132 @@
+package edu.sdccd.cisc191.template;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * One message of the binary matrix protocol, see MatrixCodec. A request
+ * (SOLVE, MULTIPLY or TRANSPOSE) carries its operands, a RESULT carries the
+ * result of the request with the same id, and an ERROR carries a message.
+ * Matrices are kept as flat row-major double arrays, so that the Server can
+ * wrap them without copying.
+ */
+public class MatrixMessage {
+
+    public enum Type {SOLVE, MULTIPLY, TRANSPOSE, RESULT, ERROR}
+
+    /**
+     * A dense row-major matrix: element (i, j) is data[i * numCols + j].
+     */
+    public static class Block {
+        private int numRows;
+        private int numCols;
+        private double[] data;
+
+        protected Block() {}
+
+        public Block(int numRows, int numCols, double[] data) {
+            if (numRows < 0 || numCols < 0 || data.length != numRows * numCols) {
+                throw new IllegalArgumentException("Data length does not match the matrix shape");
+            }
+            this.numRows = numRows;
+            this.numCols = numCols;
+            this.data = data;
+        }
+
+        public int getNumRows() {
+            return numRows;
+        }
+
+        public int getNumCols() {
+            return numCols;
+        }
+
+        public double[] getData() {
+            return data;
+        }
+
+        public void setNumRows(int numRows) {
+            this.numRows = numRows;
+        }
+
+        public void setNumCols(int numCols) {
+            this.numCols = numCols;
+        }
+
+        public void setData(double[] data) {
+            this.data = data;
+        }
+    }
+
+    private Type type;
+    private long id;
+    private Block[] blocks;
+    private String error;
+
+    @JsonIgnore
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    public static String toJSON(MatrixMessage message) throws Exception {
+        return objectMapper.writeValueAsString(message);
+    }
+    public static MatrixMessage fromJSON(String input) throws Exception{
+        return objectMapper.readValue(input, MatrixMessage.class);
+    }
+    protected MatrixMessage() {}
+
+    public MatrixMessage(Type type, long id, Block... blocks) {
+        this.type = type;
+        this.id = id;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Create an ERROR message.
+     * @param id The id of the failed request
+     * @param error The error message
+     * @return Returns the message
+     */
+    public static MatrixMessage error(long id, String error) {
+        MatrixMessage message = new MatrixMessage(Type.ERROR, id);
+        message.error = error;
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "MatrixMessage[type=%s, id=%d, blocks=%d]",
+                type, id, blocks == null ? 0 : blocks.length);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Block[] getBlocks() {
+        return blocks;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setBlocks(Block[] blocks) {
+        this.blocks = blocks;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
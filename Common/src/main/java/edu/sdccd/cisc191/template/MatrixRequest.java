@@ -0,0 +1,75 @@
+package edu.sdccd.cisc191.template;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A request for the Server to run one linear algebra operation. Matrices are
+ * sent as rows of doubles:
+ * SOLVE solves a * x = b, MULTIPLY computes a * b, TRANSPOSE transposes a.
+ */
+public class MatrixRequest {
+
+    public enum Operation {SOLVE, MULTIPLY, TRANSPOSE}
+
+    private long id;
+    private Operation operation;
+    private double[][] a;
+    private double[][] b;
+
+    @JsonIgnore
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    public static String toJSON(MatrixRequest request) throws Exception {
+        return objectMapper.writeValueAsString(request);
+    }
+    public static MatrixRequest fromJSON(String input) throws Exception{
+        return objectMapper.readValue(input, MatrixRequest.class);
+    }
+    protected MatrixRequest() {}
+
+    public MatrixRequest(long id, Operation operation, double[][] a, double[][] b) {
+        this.id = id;
+        this.operation = operation;
+        this.a = a;
+        this.b = b;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "MatrixRequest[id=%d, operation=%s]",
+                id, operation);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public double[][] getA() {
+        return a;
+    }
+
+    public double[][] getB() {
+        return b;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    public void setA(double[][] a) {
+        this.a = a;
+    }
+
+    public void setB(double[][] b) {
+        this.b = b;
+    }
+}
@@ -0,0 +1,61 @@
+package edu.sdccd.cisc191.template;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The Server's answer to a MatrixRequest with the same id: either the result
+ * matrix, or an error message when the operation failed.
+ */
+public class MatrixResponse {
+    private long id;
+    private double[][] result;
+    private String error;
+
+    @JsonIgnore
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    public static String toJSON(MatrixResponse response) throws Exception {
+        return objectMapper.writeValueAsString(response);
+    }
+    public static MatrixResponse fromJSON(String input) throws Exception{
+        return objectMapper.readValue(input, MatrixResponse.class);
+    }
+    protected MatrixResponse() {}
+
+    public MatrixResponse(long id, double[][] result, String error) {
+        this.id = id;
+        this.result = result;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "MatrixResponse[id=%d, error=%s]",
+                id, error);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public double[][] getResult() {
+        return result;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setResult(double[][] result) {
+        this.result = result;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
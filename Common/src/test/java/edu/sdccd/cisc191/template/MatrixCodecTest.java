@@ -0,0 +1,61 @@
+package edu.sdccd.cisc191.template;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatrixCodecTest {
+    private MatrixMessage message;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        message = new MatrixMessage(MatrixMessage.Type.SOLVE, 42,
+                new MatrixMessage.Block(2, 2, new double[] {2, 1, 1, 3}),
+                new MatrixMessage.Block(2, 1, new double[] {3, 5}));
+    }
+
+    @org.junit.jupiter.api.Test
+    void roundTrip() throws ProtocolException {
+        ByteBuffer buffer = MatrixCodec.encode(message);
+        assertEquals(MatrixCodec.HEADER_BYTES + 2 * 8 + 6 * 8, buffer.remaining());
+        MatrixMessage result = MatrixCodec.decode(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(MatrixMessage.Type.SOLVE, result.getType());
+        assertEquals(42, result.getId());
+        assertEquals(2, result.getBlocks().length);
+        assertArrayEquals(new double[] {2, 1, 1, 3}, result.getBlocks()[0].getData());
+        assertEquals(1, result.getBlocks()[1].getNumCols());
+    }
+
+    @org.junit.jupiter.api.Test
+    void partialFrames() throws ProtocolException {
+        ByteBuffer frame = MatrixCodec.encode(message);
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.put(frame.array(), 0, 20).flip();
+        assertNull(MatrixCodec.decode(buffer));
+        assertEquals(0, buffer.position());
+        buffer.compact().put(frame.array(), 20, frame.remaining() - 20).flip();
+        assertEquals(42, MatrixCodec.decode(buffer).getId());
+    }
+
+    @org.junit.jupiter.api.Test
+    void error() throws ProtocolException {
+        MatrixMessage result = MatrixCodec.decode(MatrixCodec.encode(MatrixMessage.error(7, "No solution")));
+        assertEquals(MatrixMessage.Type.ERROR, result.getType());
+        assertEquals("No solution", result.getError());
+    }
+
+    @org.junit.jupiter.api.Test
+    void jsonDebugEncoding() throws Exception {
+        MatrixMessage result = MatrixMessage.fromJSON(MatrixMessage.toJSON(message));
+        assertEquals(message.toString(), result.toString());
+        assertArrayEquals(new double[] {3, 5}, result.getBlocks()[1].getData());
+    }
+
+    @org.junit.jupiter.api.Test
+    void rejectsOtherData() {
+        ByteBuffer buffer = ByteBuffer.wrap("{\"id\":1,\"operation\":\"SOLVE\"}".getBytes());
+        assertThrows(ProtocolException.class, () -> MatrixCodec.decode(buffer));
+    }
+}
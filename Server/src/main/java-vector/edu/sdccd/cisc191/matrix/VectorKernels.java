@@ -0,0 +1,68 @@
+package edu.sdccd.cisc191.matrix;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API (jdk.incubator.vector) loops for unit-stride runs. Only compiled
+ * by the "vector" profile, and picked up by ElementwiseKernels at runtime when
+ * the incubator module is present. Strided runs, and runs where the source
+ * overlaps the destination at a different position, use the scalar loops so
+ * that the result matches the element-by-element order.
+ */
+class VectorKernels extends ScalarKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    void apply(Op op, double[] dst, int dstPos, int dstStride,
+               double[] src, int srcPos, int srcStride, int length) {
+        if (dstStride != 1 || srcStride != 1 || overlaps(dst, dstPos, src, srcPos, length)) {
+            super.apply(op, dst, dstPos, dstStride, src, srcPos, srcStride, length);
+            return;
+        }
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector left = DoubleVector.fromArray(SPECIES, dst, dstPos + i);
+            DoubleVector right = DoubleVector.fromArray(SPECIES, src, srcPos + i);
+            combine(op, left, right).intoArray(dst, dstPos + i);
+        }
+        applyContiguous(op, dst, dstPos + i, src, srcPos + i, length - i);
+    }
+
+    @Override
+    void apply(Op op, double[] dst, int dstPos, int dstStride, double scalar, int length) {
+        if (dstStride != 1) {
+            super.apply(op, dst, dstPos, dstStride, scalar, length);
+            return;
+        }
+        DoubleVector right = DoubleVector.broadcast(SPECIES, scalar);
+        int upper = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < upper; i += SPECIES.length()) {
+            DoubleVector left = DoubleVector.fromArray(SPECIES, dst, dstPos + i);
+            combine(op, left, right).intoArray(dst, dstPos + i);
+        }
+        applyContiguous(op, dst, dstPos + i, scalar, length - i);
+    }
+
+    private static DoubleVector combine(Op op, DoubleVector left, DoubleVector right) {
+        switch (op) {
+            case ADD:
+                return left.add(right);
+            case SUBTRACT:
+                return left.sub(right);
+            case MULTIPLY:
+                return left.mul(right);
+            default:
+                return left.div(right);
+        }
+    }
+
+    private static boolean overlaps(double[] dst, int dstPos, double[] src, int srcPos, int length) {
+        return dst == src && dstPos != srcPos
+                && dstPos < srcPos + length && srcPos < dstPos + length;
+    }
+
+}
@@ -0,0 +1,291 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Solves many small systems A_s x_s = b_s of the same size n at once, with
+ * Gaussian elimination and partial pivoting. For small n the cost of solving
+ * one system is mostly overhead and short loops, so the systems are stored as
+ * a structure of arrays instead: element (i, j) of every system sits next to
+ * each other, and every step of the elimination becomes a loop over the
+ * systems that the JIT can unroll and vectorize.
+ * <pre>
+ *     a[(i * n + j) * count + s]  is element (i, j) of A_s
+ *     b[i * count + s]            is element i of b_s
+ * </pre>
+ * Pivots are chosen per system, so the results match solving the systems one
+ * at a time, and a system is flagged singular when a pivot is no larger than
+ * n * eps times the largest element of its row, as LUDecomposition decides.
+ * <p>
+ * A [batch, n, n] NDArray is solved the same way: it is cut into chunks of
+ * systems whose interleaved copy fits in L2, and the chunks are solved over
+ * the common ForkJoinPool when there is enough work.
+ */
+public final class BatchSolver {
+
+    // Elements of an interleaved chunk of systems, 256 KB, so a chunk stays in L2
+    static final int CHUNK_ELEMENTS = 1 << 15;
+
+    // Systems interleaved at most, enough for the loops over them to vectorize
+    static final int CHUNK_SYSTEMS = 64;
+
+    // Machine epsilon of double precision
+    private static final double EPSILON = 0x1p-52;
+
+    // Below this many multiply-adds, forking costs more than it saves
+    static final long PARALLEL_THRESHOLD = 128L * 128 * 128;
+
+    private BatchSolver() {
+    }
+
+    /**
+     * Solve count systems of size n in place: on return b holds the solutions
+     * and a holds the eliminated matrices.
+     * @param n The size of the systems
+     * @param count The number of systems
+     * @param a The matrices, in the layout above, of length n * n * count
+     * @param b The right-hand sides, in the layout above, of length n * count
+     * @param singular Set to true for every system with a zero pivot, whose
+     *                 solution in b is then meaningless; of length count
+     */
+    public static void solve(int n, int count, double[] a, double[] b, boolean[] singular) {
+        if (a.length != n * n * count || b.length != n * count || singular.length != count) {
+            throw new IllegalArgumentException("Batch arrays do not match the batch shape");
+        }
+        solve(n, 1, count, a, b, singular);
+    }
+
+    /**
+     * Solve a batch of systems A_s X_s = B_s, each in one kernel call with
+     * the rest of its chunk.
+     * @param a The [batch, n, n] matrices, which are not modified
+     * @param b The [batch, n, r] right-hand sides, which are not modified
+     * @param singular Set to true for every system with a zero pivot, whose
+     *                 solution is then meaningless; of length batch
+     * @return Returns the [batch, n, r] solutions
+     * @throws IllegalArgumentException When the array shapes are not compatible
+     */
+    public static NDArray solve(NDArray a, NDArray b, boolean[] singular) {
+        Integer[] shapeA = a.getShape();
+        Integer[] shapeB = b.getShape();
+        if (shapeA.length != 3 || shapeB.length != 3) {
+            throw new IllegalArgumentException("Arrays must have 3 dimensions");
+        }
+        int count = shapeA[0];
+        int n = shapeA[1];
+        int r = shapeB[2];
+        if (shapeA[2] != n || shapeB[0] != count || shapeB[1] != n || singular.length != count) {
+            throw new IllegalArgumentException("Array shapes are not compatible");
+        }
+        double[] matrices = a.toDoubleArray();
+        double[] solutions = b.toDoubleArray();
+        int chunk = (int) Math.max(1, Math.min(CHUNK_SYSTEMS, CHUNK_ELEMENTS / ((long) n * (n + r))));
+        int chunks = (count + chunk - 1) / chunk;
+        long work = (long) n * n * (n + r) * count;
+        boolean parallel = chunks > 1 && work >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+        ChunkTask task = new ChunkTask(matrices, solutions, singular, n, r, count, chunk, 0, chunks, parallel);
+        if (parallel) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.compute();
+        }
+        return NDArray.wrap(solutions, count, n, r);
+    }
+
+    /**
+     * Interleave the systems [first, first + count) of row-major batches,
+     * solve them, and write the solutions back.
+     */
+    private static void solveChunk(double[] matrices, double[] solutions, boolean[] singular,
+                                   int n, int r, int first, int count) {
+        double[] a = new double[n * n * count];
+        double[] b = new double[n * r * count];
+        boolean[] flags = new boolean[count];
+        for (int s = 0; s < count; s++) {
+            int matrix = (first + s) * n * n;
+            for (int e = 0; e < n * n; e++) {
+                a[e * count + s] = matrices[matrix + e];
+            }
+            int rhs = (first + s) * n * r;
+            for (int e = 0; e < n * r; e++) {
+                b[e * count + s] = solutions[rhs + e];
+            }
+        }
+        solve(n, r, count, a, b, flags);
+        for (int s = 0; s < count; s++) {
+            int rhs = (first + s) * n * r;
+            for (int e = 0; e < n * r; e++) {
+                solutions[rhs + e] = b[e * count + s];
+            }
+            singular[first + s] = flags[s];
+        }
+    }
+
+    /**
+     * The elimination, on r right-hand sides per system:
+     * b[(i * r + j) * count + s] is element (i, j) of B_s.
+     */
+    private static void solve(int n, int r, int count, double[] a, double[] b, boolean[] singular) {
+        int[] pivot = new int[count];
+        double[] inverse = new double[count];
+        double[] max = new double[count];
+        double[] factor = new double[count];
+
+        // Pivots in row i of system s at or below zero[i * count + s] count as zero
+        double[] zero = new double[n * count];
+        for (int i = 0; i < n; i++) {
+            int row = i * count;
+            for (int j = 0; j < n; j++) {
+                int element = (i * n + j) * count;
+                for (int s = 0; s < count; s++) {
+                    zero[row + s] = Math.max(zero[row + s], Math.abs(a[element + s]));
+                }
+            }
+            for (int s = 0; s < count; s++) {
+                zero[row + s] *= n * EPSILON;
+            }
+        }
+
+        for (int k = 0; k < n; k++) {
+            int diagonal = (k * n + k) * count;
+
+            // Find pivots: the largest magnitude in column k of each system
+            for (int s = 0; s < count; s++) {
+                pivot[s] = k;
+                max[s] = Math.abs(a[diagonal + s]);
+            }
+            for (int i = k + 1; i < n; i++) {
+                int element = (i * n + k) * count;
+                for (int s = 0; s < count; s++) {
+                    double value = Math.abs(a[element + s]);
+                    if (value > max[s]) {
+                        max[s] = value;
+                        pivot[s] = i;
+                    }
+                }
+            }
+
+            // Swap rows, system by system, and take the inverse of the pivots
+            for (int s = 0; s < count; s++) {
+                int p = pivot[s];
+                if (p != k) {
+                    for (int j = k; j < n; j++) {
+                        int from = (k * n + j) * count + s;
+                        int to = (p * n + j) * count + s;
+                        double temp = a[from];
+                        a[from] = a[to];
+                        a[to] = temp;
+                    }
+                    for (int j = 0; j < r; j++) {
+                        int from = (k * r + j) * count + s;
+                        int to = (p * r + j) * count + s;
+                        double temp = b[from];
+                        b[from] = b[to];
+                        b[to] = temp;
+                    }
+                    double tolerance = zero[k * count + s];
+                    zero[k * count + s] = zero[p * count + s];
+                    zero[p * count + s] = tolerance;
+                }
+                if (!(max[s] > zero[k * count + s])) {
+                    // Keep the numbers finite; the system is flagged instead
+                    singular[s] = true;
+                    inverse[s] = 0;
+                } else {
+                    inverse[s] = 1 / a[diagonal + s];
+                }
+            }
+
+            // Eliminate
+            for (int i = k + 1; i < n; i++) {
+                int row = i * n;
+                int element = (row + k) * count;
+                for (int s = 0; s < count; s++) {
+                    factor[s] = a[element + s] * inverse[s];
+                }
+                for (int j = k + 1; j < n; j++) {
+                    int target = (row + j) * count;
+                    int source = (k * n + j) * count;
+                    for (int s = 0; s < count; s++) {
+                        a[target + s] -= factor[s] * a[source + s];
+                    }
+                }
+                for (int j = 0; j < r; j++) {
+                    int target = (i * r + j) * count;
+                    int source = (k * r + j) * count;
+                    for (int s = 0; s < count; s++) {
+                        b[target + s] -= factor[s] * b[source + s];
+                    }
+                }
+            }
+        }
+
+        // Back substitution
+        for (int i = n - 1; i >= 0; i--) {
+            int diagonal = (i * n + i) * count;
+            for (int c = 0; c < r; c++) {
+                int target = (i * r + c) * count;
+                for (int j = i + 1; j < n; j++) {
+                    int element = (i * n + j) * count;
+                    int source = (j * r + c) * count;
+                    for (int s = 0; s < count; s++) {
+                        b[target + s] -= a[element + s] * b[source + s];
+                    }
+                }
+                for (int s = 0; s < count; s++) {
+                    b[target + s] /= a[diagonal + s];
+                }
+            }
+        }
+    }
+
+    /**
+     * Solves the chunks [from, to) of a batch, splitting the range in half
+     * until each task has one chunk.
+     */
+    private static final class ChunkTask extends RecursiveAction {
+
+        private final double[] matrices;
+        private final double[] solutions;
+        private final boolean[] singular;
+        private final int n;
+        private final int r;
+        private final int count;
+        private final int chunk;
+        private final int from;
+        private final int to;
+        private final boolean split;
+
+        ChunkTask(double[] matrices, double[] solutions, boolean[] singular, int n, int r,
+                  int count, int chunk, int from, int to, boolean split) {
+            this.matrices = matrices;
+            this.solutions = solutions;
+            this.singular = singular;
+            this.n = n;
+            this.r = r;
+            this.count = count;
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.split = split;
+        }
+
+        @Override
+        protected void compute() {
+            if (split && to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(matrices, solutions, singular, n, r, count, chunk, from, mid, true),
+                          new ChunkTask(matrices, solutions, singular, n, r, count, chunk, mid, to, true));
+                return;
+            }
+            for (int c = from; c < to; c++) {
+                int first = c * chunk;
+                solveChunk(matrices, solutions, singular, n, r, first, Math.min(chunk, count - first));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Solves and multiplies through a ResultCache, so that repeated work on the
+ * same matrices is only done once. Matrices are looked up by content, not by
+ * identity: two requests that send equal matrices share one entry.
+ * <p>
+ * What is cached is the O(n^3) part of each operation: for solve(), the
+ * factorization LinSystem.solveSystem() would pick for A (Cholesky, LU,
+ * mixed precision LU or QR), which every right-hand side then reuses in
+ * O(n^2), and the product for multiply(). Systems with fewer equations than
+ * unknowns have no factorization to keep and are passed to solveSystem().
+ * Hashing a matrix costs one pass over it, which is small next to either.
+ * <p>
+ * Factorizations and products share the one cache and its bounds. Neither
+ * keeps a reference to the caller's matrices, and a product is copied on its
+ * way out, so a caller that modifies its matrices or a result cannot
+ * corrupt the cache.
+ */
+public class CachedLinAlg {
+
+    // Rough per-object overhead, added to the size of the arrays
+    private static final long OBJECT_BYTES = 64;
+
+    private final ResultCache<MatrixKey, Object> cache;
+
+    /**
+     * Create a cache.
+     * @param maxEntries The largest number of factorizations and products kept
+     * @param maxBytes The largest number of bytes they may hold on to, keys included
+     */
+    public CachedLinAlg(int maxEntries, long maxBytes) {
+        cache = new ResultCache<>(maxEntries, maxBytes, CachedLinAlg::weigh);
+    }
+
+    /**
+     * Return the factorization solve() uses for A, from the cache if possible.
+     * @param A The matrix, with at least as many rows as columns
+     * @return Returns a CholeskyDecomposition, LUDecomposition,
+     *         MixedPrecisionSolver or QRDecomposition, which is shared and
+     *         must not be modified
+     * @throws IllegalArgumentException When A has fewer rows than columns
+     */
+    public Object factor(Matrix A) {
+        if (A.getNumRows() < A.getNumCols()) {
+            throw new IllegalArgumentException("Matrix must have at least as many rows as columns");
+        }
+        return cache.get(new MatrixKey(A), key -> LinSystem.factor(A));
+    }
+
+    /**
+     * Solve Ax = b with the cached factorization of A.
+     * @see LinSystem#solveSystem(Matrix, Matrix)
+     */
+    public Matrix solve(Matrix A, Matrix b) throws
+            LinSystem.NoSolutionException,
+            LinSystem.InfiniteSolutionsException,
+            IllegalArgumentException {
+
+        if (A.getNumRows() != b.getNumRows()) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        if (A.getNumRows() < A.getNumCols()) {
+            return LinSystem.solveSystem(A, b);
+        }
+        return LinSystem.solve(factor(A), b);
+    }
+
+    /**
+     * Multiply A * B, or return a copy of the cached product.
+     * @see LinAlgBasics#matrixMultiply(Matrix, Matrix)
+     */
+    public Matrix multiply(Matrix A, Matrix B) {
+        Matrix product = (Matrix) cache.get(new MatrixKey(A, B), key -> LinAlgBasics.matrixMultiply(A, B));
+        return product.copy();
+    }
+
+    /**
+     * @return Returns the underlying cache, for its statistics
+     */
+    public ResultCache<MatrixKey, Object> getCache() {
+        return cache;
+    }
+
+    @Override
+    public String toString() {
+        return cache.toString();
+    }
+
+    private static long weigh(MatrixKey key, Object value) {
+        long bytes = key.getBytes() + OBJECT_BYTES;
+        if (value instanceof LUDecomposition) {
+            long n = ((LUDecomposition) value).getSize();
+            bytes += 8 * n * n + 4 * n;
+        } else if (value instanceof CholeskyDecomposition) {
+            long n = ((CholeskyDecomposition) value).getSize();
+            bytes += 8 * n * n + OBJECT_BYTES * n;
+        } else if (value instanceof QRDecomposition) {
+            QRDecomposition qr = (QRDecomposition) value;
+            long m = qr.getNumRows();
+            long n = qr.getNumCols();
+            bytes += 8 * m * n + 8 * n + OBJECT_BYTES * m;
+        } else if (value instanceof MixedPrecisionSolver) {
+            // A itself, the single precision factors, and the double
+            // precision fallback should refinement ever fail
+            long n = ((MixedPrecisionSolver) value).getSize();
+            bytes += 8 * n * n + 4 * n * n + 8 * n * n + 8 * n + OBJECT_BYTES * n;
+        } else if (value instanceof Matrix) {
+            Matrix matrix = (Matrix) value;
+            bytes += 8L * matrix.getNumRows() * matrix.getNumCols();
+        }
+        return bytes;
+    }
+
+}
@@ -0,0 +1,344 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Dense general matrix multiply C += A * B on row-major double[] buffers.
+ * <p>
+ * Small products use a plain i-k-j loop. Larger products follow the usual
+ * packed GEMM layout: B is packed one KC x NC block at a time (sized for L2),
+ * A is packed one MC x KC block at a time, and a 4 x 8 micro-kernel keeps its
+ * tile of C in local variables for the whole KC loop, so each element of C is
+ * read and written once per K block instead of once per multiply-add. The MC
+ * row blocks of C are independent and run over the common ForkJoinPool when
+ * the product is large enough to pay for the tasks.
+ * <p>
+ * A batch of products, as in LinAlgBasics.matrixMultiply(NDArray, NDArray),
+ * is split across the pool by whole products instead, each one running the
+ * same kernels on its own part of the buffers.
+ */
+final class Gemm {
+
+    // Micro-kernel tile of C
+    static final int MR = 4;
+    static final int NR = 8;
+    // Cache blocking: a packed KC x NR strip of B stays in L1, an MC x KC
+    // block of A and the KC x NC block of B stay in L2
+    static final int MC = 64;
+    static final int KC = 256;
+    static final int NC = 512;
+
+    // Below this many multiply-adds, packing costs more than it saves
+    static final long BLOCKED_THRESHOLD = 48L * 48 * 48;
+    // Below this many multiply-adds, forking costs more than it saves
+    static final long PARALLEL_THRESHOLD = 128L * 128 * 128;
+
+    private Gemm() {}
+
+    /**
+     * Computes c += a * b, where a is m x k, b is k x n and c is m x n.
+     * The kernel is picked from the size of the product.
+     */
+    static void multiply(double[] a, double[] b, double[] c, int m, int k, int n) {
+        multiply(a, 0, b, 0, c, 0, m, k, n, ForkJoinPool.getCommonPoolParallelism() > 1);
+    }
+
+    /**
+     * Computes c += a * b for matrices that start at aPos, bPos and cPos of
+     * their buffers.
+     * @param parallel False to keep a large product on the calling thread
+     */
+    static void multiply(double[] a, int aPos, double[] b, int bPos, double[] c, int cPos,
+                         int m, int k, int n, boolean parallel) {
+        long work = (long) m * k * n;
+        if (work < BLOCKED_THRESHOLD) {
+            multiplySimple(a, aPos, b, bPos, c, cPos, m, k, n);
+        } else {
+            multiplyBlocked(a, aPos, b, bPos, c, cPos, m, k, n, parallel && work >= PARALLEL_THRESHOLD);
+        }
+    }
+
+    /**
+     * Computes count products c_s += a_s * b_s, where a_s starts at s * aStep
+     * of a, b_s at s * bStep of b and c_s at s * m * n of c. A step of 0
+     * uses the same matrix for every product.
+     */
+    static void multiplyBatch(double[] a, int aStep, double[] b, int bStep, double[] c,
+                              int count, int m, int k, int n) {
+        long work = (long) m * k * n;
+        if (count == 1 || work * count < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            for (int s = 0; s < count; s++) {
+                multiply(a, s * aStep, b, s * bStep, c, s * m * n, m, k, n, count == 1);
+            }
+            return;
+        }
+        // At least PARALLEL_THRESHOLD multiply-adds per task
+        int grain = (int) Math.max(1, Math.min(count, PARALLEL_THRESHOLD / Math.max(1, work)));
+        ForkJoinPool.commonPool().invoke(new BatchTask(a, aStep, b, bStep, c, m, k, n, 0, count, grain));
+    }
+
+    /**
+     * Computes c += a * b with an i-k-j loop, which walks b and c along rows.
+     */
+    static void multiplySimple(double[] a, int aPos, double[] b, int bPos, double[] c, int cPos,
+                               int m, int k, int n) {
+        for (int i = 0; i < m; i++) {
+            int cRow = cPos + i * n;
+            for (int p = 0; p < k; p++) {
+                double aip = a[aPos + i * k + p];
+                int bRow = bPos + p * n;
+                for (int j = 0; j < n; j++) {
+                    c[cRow + j] += aip * b[bRow + j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes c += a * b with the packed, cache-blocked kernel.
+     */
+    static void multiplyBlocked(double[] a, int aPos, double[] b, int bPos, double[] c, int cPos,
+                                int m, int k, int n, boolean parallel) {
+        double[] packedB = new double[KC * roundUp(Math.min(NC, n), NR)];
+        for (int jc = 0; jc < n; jc += NC) {
+            int nc = Math.min(NC, n - jc);
+            for (int pc = 0; pc < k; pc += KC) {
+                int kc = Math.min(KC, k - pc);
+                packB(b, bPos, n, pc, kc, jc, nc, packedB);
+                BlockTask task = new BlockTask(a, aPos, packedB, c, cPos, k, n, 0, m, jc, nc, pc, kc, parallel);
+                if (parallel) {
+                    ForkJoinPool.commonPool().invoke(task);
+                } else {
+                    task.compute();
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs b[pc:pc+kc, jc:jc+nc] into strips of NR columns. Inside a strip the
+     * NR values of one row are adjacent, and columns past nc are zero-filled.
+     */
+    private static void packB(double[] b, int bPos, int n, int pc, int kc, int jc, int nc, double[] packed) {
+        int pos = 0;
+        for (int js = 0; js < nc; js += NR) {
+            int nr = Math.min(NR, nc - js);
+            for (int p = 0; p < kc; p++) {
+                int src = bPos + (pc + p) * n + jc + js;
+                for (int j = 0; j < nr; j++) {
+                    packed[pos + j] = b[src + j];
+                }
+                for (int j = nr; j < NR; j++) {
+                    packed[pos + j] = 0.0;
+                }
+                pos += NR;
+            }
+        }
+    }
+
+    /**
+     * Packs a[ic:ic+mc, pc:pc+kc] into strips of MR rows. Inside a strip the
+     * MR values of one column are adjacent, and rows past mc are zero-filled.
+     */
+    private static void packA(double[] a, int aPos, int k, int ic, int mc, int pc, int kc, double[] packed) {
+        int pos = 0;
+        for (int is = 0; is < mc; is += MR) {
+            int mr = Math.min(MR, mc - is);
+            for (int p = 0; p < kc; p++) {
+                int src = aPos + (ic + is) * k + pc + p;
+                for (int i = 0; i < mr; i++) {
+                    packed[pos + i] = a[src + i * k];
+                }
+                for (int i = mr; i < MR; i++) {
+                    packed[pos + i] = 0.0;
+                }
+                pos += MR;
+            }
+        }
+    }
+
+    /**
+     * Adds the product of one packed MR x kc strip of A and one packed kc x NR
+     * strip of B to the mr x nr tile of C at cPos.
+     */
+    private static void kernel(double[] packedA, int aPos, double[] packedB, int bPos, int kc,
+                               double[] c, int cPos, int n, int mr, int nr) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0, c04 = 0, c05 = 0, c06 = 0, c07 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0, c14 = 0, c15 = 0, c16 = 0, c17 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0, c24 = 0, c25 = 0, c26 = 0, c27 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0, c34 = 0, c35 = 0, c36 = 0, c37 = 0;
+        for (int p = 0; p < kc; p++) {
+            double a0 = packedA[aPos];
+            double a1 = packedA[aPos + 1];
+            double a2 = packedA[aPos + 2];
+            double a3 = packedA[aPos + 3];
+            double b0 = packedB[bPos];
+            double b1 = packedB[bPos + 1];
+            double b2 = packedB[bPos + 2];
+            double b3 = packedB[bPos + 3];
+            double b4 = packedB[bPos + 4];
+            double b5 = packedB[bPos + 5];
+            double b6 = packedB[bPos + 6];
+            double b7 = packedB[bPos + 7];
+            c00 += a0 * b0; c01 += a0 * b1; c02 += a0 * b2; c03 += a0 * b3;
+            c04 += a0 * b4; c05 += a0 * b5; c06 += a0 * b6; c07 += a0 * b7;
+            c10 += a1 * b0; c11 += a1 * b1; c12 += a1 * b2; c13 += a1 * b3;
+            c14 += a1 * b4; c15 += a1 * b5; c16 += a1 * b6; c17 += a1 * b7;
+            c20 += a2 * b0; c21 += a2 * b1; c22 += a2 * b2; c23 += a2 * b3;
+            c24 += a2 * b4; c25 += a2 * b5; c26 += a2 * b6; c27 += a2 * b7;
+            c30 += a3 * b0; c31 += a3 * b1; c32 += a3 * b2; c33 += a3 * b3;
+            c34 += a3 * b4; c35 += a3 * b5; c36 += a3 * b6; c37 += a3 * b7;
+            aPos += MR;
+            bPos += NR;
+        }
+        if (mr == MR && nr == NR) {
+            addRow(c, cPos, c00, c01, c02, c03, c04, c05, c06, c07);
+            addRow(c, cPos + n, c10, c11, c12, c13, c14, c15, c16, c17);
+            addRow(c, cPos + 2 * n, c20, c21, c22, c23, c24, c25, c26, c27);
+            addRow(c, cPos + 3 * n, c30, c31, c32, c33, c34, c35, c36, c37);
+            return;
+        }
+        // Edge tile: only part of the 4 x 8 tile lies inside C
+        double[] tile = {
+            c00, c01, c02, c03, c04, c05, c06, c07,
+            c10, c11, c12, c13, c14, c15, c16, c17,
+            c20, c21, c22, c23, c24, c25, c26, c27,
+            c30, c31, c32, c33, c34, c35, c36, c37
+        };
+        for (int i = 0; i < mr; i++) {
+            for (int j = 0; j < nr; j++) {
+                c[cPos + i * n + j] += tile[i * NR + j];
+            }
+        }
+    }
+
+    private static void addRow(double[] c, int pos, double v0, double v1, double v2, double v3,
+                               double v4, double v5, double v6, double v7) {
+        c[pos] += v0;
+        c[pos + 1] += v1;
+        c[pos + 2] += v2;
+        c[pos + 3] += v3;
+        c[pos + 4] += v4;
+        c[pos + 5] += v5;
+        c[pos + 6] += v6;
+        c[pos + 7] += v7;
+    }
+
+    private static int roundUp(int value, int multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    /**
+     * Multiplies rows [rowStart, rowEnd) of A by the packed B block, splitting
+     * the rows in half until each task has at most MC of them.
+     */
+    private static final class BlockTask extends RecursiveAction {
+
+        private final double[] a;
+        private final int aPos;
+        private final double[] packedB;
+        private final double[] c;
+        private final int cPos;
+        private final int k;
+        private final int n;
+        private final int rowStart;
+        private final int rowEnd;
+        private final int jc;
+        private final int nc;
+        private final int pc;
+        private final int kc;
+        private final boolean split;
+
+        BlockTask(double[] a, int aPos, double[] packedB, double[] c, int cPos, int k, int n,
+                  int rowStart, int rowEnd, int jc, int nc, int pc, int kc, boolean split) {
+            this.a = a;
+            this.aPos = aPos;
+            this.packedB = packedB;
+            this.c = c;
+            this.cPos = cPos;
+            this.k = k;
+            this.n = n;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+            this.jc = jc;
+            this.nc = nc;
+            this.pc = pc;
+            this.kc = kc;
+            this.split = split;
+        }
+
+        @Override
+        protected void compute() {
+            if (split && rowEnd - rowStart > MC) {
+                int mid = rowStart + roundUp((rowEnd - rowStart) / 2, MR);
+                invokeAll(new BlockTask(a, aPos, packedB, c, cPos, k, n, rowStart, mid, jc, nc, pc, kc, true),
+                          new BlockTask(a, aPos, packedB, c, cPos, k, n, mid, rowEnd, jc, nc, pc, kc, true));
+                return;
+            }
+            double[] packedA = new double[roundUp(Math.min(MC, rowEnd - rowStart), MR) * kc];
+            for (int ic = rowStart; ic < rowEnd; ic += MC) {
+                int mc = Math.min(MC, rowEnd - ic);
+                packA(a, aPos, k, ic, mc, pc, kc, packedA);
+                for (int js = 0; js < nc; js += NR) {
+                    int nr = Math.min(NR, nc - js);
+                    int bPos = js * kc;
+                    for (int is = 0; is < mc; is += MR) {
+                        int mr = Math.min(MR, mc - is);
+                        kernel(packedA, is * kc, packedB, bPos, kc,
+                               c, cPos + (ic + is) * n + jc + js, n, mr, nr);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Runs the products [from, to) of a batch, splitting the range in half
+     * until each task has at most grain of them.
+     */
+    private static final class BatchTask extends RecursiveAction {
+
+        private final double[] a;
+        private final int aStep;
+        private final double[] b;
+        private final int bStep;
+        private final double[] c;
+        private final int m;
+        private final int k;
+        private final int n;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        BatchTask(double[] a, int aStep, double[] b, int bStep, double[] c, int m, int k, int n,
+                  int from, int to, int grain) {
+            this.a = a;
+            this.aStep = aStep;
+            this.b = b;
+            this.bStep = bStep;
+            this.c = c;
+            this.m = m;
+            this.k = k;
+            this.n = n;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > grain) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new BatchTask(a, aStep, b, bStep, c, m, k, n, from, mid, grain),
+                          new BatchTask(a, aStep, b, bStep, c, m, k, n, mid, to, grain));
+                return;
+            }
+            for (int s = from; s < to; s++) {
+                multiply(a, s * aStep, b, s * bStep, c, s * m * n, m, k, n, false);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,396 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Iterative solvers for Ax = b: Conjugate Gradient for symmetric positive
+ * definite A, BiCGSTAB for general square A, and Gauss-Seidel/SOR. Each
+ * iteration costs one or two matrix-vector products, so large sparse systems
+ * are solved in O(nnz) memory instead of the O(n^2) of LinSystem.solveSystem.
+ * <p>
+ * A solve stops when ||b - Ax|| <= tolerance * ||b||, and throws
+ * NoConvergenceException when that has not happened after maxIterations.
+ * A solver keeps the statistics of its last solve, so one instance should not
+ * be shared between threads.
+ */
+public class IterativeSolver {
+
+    // No convergence exception
+    public static class NoConvergenceException extends Exception {
+        public NoConvergenceException(String errorMessage) {
+            super(errorMessage);
+        }
+    }
+
+    /**
+     * Called after every iteration with the current residual norm ||b - Ax||.
+     */
+    public interface ConvergenceListener {
+        void onIteration(int iteration, double residualNorm);
+    }
+
+    private double tolerance;
+    private int maxIterations;
+    private double omega = 1.0;
+    private Preconditioner preconditioner;
+    private ConvergenceListener listener;
+
+    private int iterations;
+    private double residualNorm;
+
+    /**
+     * Create a solver.
+     * @param tolerance The relative residual at which a solve stops
+     * @param maxIterations The number of iterations after which a solve gives up
+     */
+    public IterativeSolver(double tolerance, int maxIterations) {
+        setTolerance(tolerance);
+        setMaxIterations(maxIterations);
+    }
+
+    public IterativeSolver() {
+        this(1e-10, 10000);
+    }
+
+    /**
+     * Solves Ax = b with the (preconditioned) Conjugate Gradient method. A must
+     * be symmetric positive definite.
+     * @param A The operator A
+     * @param b The right-hand side, a column vector
+     * @return Returns the solution x
+     * @throws NoConvergenceException When the method does not converge
+     */
+    public Matrix conjugateGradient(LinearOperator A, Matrix b) throws NoConvergenceException {
+        int n = checkShapes(A.getNumRows(), A.getNumCols(), b);
+        double[] rhs = b.toDoubleArray();
+        double[] x = new double[n];
+        double[] r = rhs.clone();
+        double[] z = precondition(r, new double[n]);
+        double[] p = z.clone();
+        double[] ap = new double[n];
+
+        double bNorm = norm(rhs);
+        double rz = dot(r, z);
+        if (start(norm(r), bNorm)) {
+            return Matrix.wrap(x, n, 1);
+        }
+        while (iterations < maxIterations) {
+            A.apply(p, ap);
+            double pap = dot(p, ap);
+            if (pap == 0) {
+                throw new NoConvergenceException("Conjugate Gradient broke down");
+            }
+            double alpha = rz / pap;
+            axpy(alpha, p, x);
+            axpy(-alpha, ap, r);
+            if (step(norm(r), bNorm)) {
+                return Matrix.wrap(x, n, 1);
+            }
+            precondition(r, z);
+            double rzNew = dot(r, z);
+            double beta = rzNew / rz;
+            rz = rzNew;
+            for (int i = 0; i < n; i++) {
+                p[i] = z[i] + beta * p[i];
+            }
+        }
+        throw new NoConvergenceException("Conjugate Gradient did not converge");
+    }
+
+    /**
+     * Solves Ax = b with the (right-preconditioned) BiCGSTAB method, for any
+     * square non-singular A.
+     * @param A The operator A
+     * @param b The right-hand side, a column vector
+     * @return Returns the solution x
+     * @throws NoConvergenceException When the method does not converge
+     */
+    public Matrix biCGStab(LinearOperator A, Matrix b) throws NoConvergenceException {
+        int n = checkShapes(A.getNumRows(), A.getNumCols(), b);
+        double[] rhs = b.toDoubleArray();
+        double[] x = new double[n];
+        double[] r = rhs.clone();
+        double[] rHat = rhs.clone();
+        double[] p = new double[n];
+        double[] v = new double[n];
+        double[] s = new double[n];
+        double[] t = new double[n];
+        double[] pHat = new double[n];
+        double[] sHat = new double[n];
+
+        double bNorm = norm(rhs);
+        double rho = 1;
+        double alpha = 1;
+        double w = 1;
+        if (start(norm(r), bNorm)) {
+            return Matrix.wrap(x, n, 1);
+        }
+        while (iterations < maxIterations) {
+            double rhoNew = dot(rHat, r);
+            if (rhoNew == 0) {
+                throw new NoConvergenceException("BiCGSTAB broke down");
+            }
+            double beta = (rhoNew / rho) * (alpha / w);
+            rho = rhoNew;
+            for (int i = 0; i < n; i++) {
+                p[i] = r[i] + beta * (p[i] - w * v[i]);
+            }
+            precondition(p, pHat);
+            A.apply(pHat, v);
+            double rHatV = dot(rHat, v);
+            if (rHatV == 0) {
+                throw new NoConvergenceException("BiCGSTAB broke down");
+            }
+            alpha = rho / rHatV;
+            for (int i = 0; i < n; i++) {
+                s[i] = r[i] - alpha * v[i];
+            }
+            double sNorm = norm(s);
+            if (sNorm <= tolerance * bNorm) {
+                axpy(alpha, pHat, x);
+                step(sNorm, bNorm);
+                return Matrix.wrap(x, n, 1);
+            }
+            precondition(s, sHat);
+            A.apply(sHat, t);
+            double tt = dot(t, t);
+            if (tt == 0) {
+                throw new NoConvergenceException("BiCGSTAB broke down");
+            }
+            w = dot(t, s) / tt;
+            for (int i = 0; i < n; i++) {
+                x[i] += alpha * pHat[i] + w * sHat[i];
+                r[i] = s[i] - w * t[i];
+            }
+            if (step(norm(r), bNorm)) {
+                return Matrix.wrap(x, n, 1);
+            }
+            if (w == 0) {
+                throw new NoConvergenceException("BiCGSTAB broke down");
+            }
+        }
+        throw new NoConvergenceException("BiCGSTAB did not converge");
+    }
+
+    /**
+     * Solves Ax = b with Gauss-Seidel sweeps, or SOR when omega is not 1.
+     * Converges for diagonally dominant or symmetric positive definite A.
+     * @param A The matrix A
+     * @param b The right-hand side, a column vector
+     * @return Returns the solution x
+     * @throws NoConvergenceException When the method does not converge
+     */
+    public Matrix gaussSeidel(Matrix A, Matrix b) throws NoConvergenceException {
+        int n = checkShapes(A.getNumRows(), A.getNumCols(), b);
+        double[] a = A.toDoubleArray();
+        double[] rhs = b.toDoubleArray();
+        double[] x = new double[n];
+        double[] r = new double[n];
+
+        double bNorm = norm(rhs);
+        if (start(bNorm, bNorm)) {
+            return Matrix.wrap(x, n, 1);
+        }
+        while (iterations < maxIterations) {
+            for (int i = 0; i < n; i++) {
+                int row = i * n;
+                double sum = rhs[i];
+                for (int j = 0; j < n; j++) {
+                    if (j != i) {
+                        sum -= a[row + j] * x[j];
+                    }
+                }
+                x[i] = relax(x[i], sum, a[row + i]);
+            }
+            for (int i = 0; i < n; i++) {
+                int row = i * n;
+                double sum = rhs[i];
+                for (int j = 0; j < n; j++) {
+                    sum -= a[row + j] * x[j];
+                }
+                r[i] = sum;
+            }
+            if (step(norm(r), bNorm)) {
+                return Matrix.wrap(x, n, 1);
+            }
+        }
+        throw new NoConvergenceException("Gauss-Seidel did not converge");
+    }
+
+    /**
+     * Solves Ax = b with Gauss-Seidel sweeps, or SOR when omega is not 1.
+     * Converges for diagonally dominant or symmetric positive definite A.
+     * @param A The matrix A
+     * @param b The right-hand side, a column vector
+     * @return Returns the solution x
+     * @throws NoConvergenceException When the method does not converge
+     */
+    public Matrix gaussSeidel(SparseMatrix A, Matrix b) throws NoConvergenceException {
+        int n = checkShapes(A.getNumRows(), A.getNumCols(), b);
+        double[] rhs = b.toDoubleArray();
+        double[] x = new double[n];
+        double[] r = new double[n];
+
+        double bNorm = norm(rhs);
+        if (start(bNorm, bNorm)) {
+            return Matrix.wrap(x, n, 1);
+        }
+        while (iterations < maxIterations) {
+            for (int i = 0; i < n; i++) {
+                double sum = rhs[i];
+                double diagonal = 0;
+                for (int pos = A.getRowStart(i); pos < A.getRowEnd(i); pos++) {
+                    int j = A.getColumnAt(pos);
+                    if (j == i) {
+                        diagonal = A.getValueAt(pos);
+                    } else {
+                        sum -= A.getValueAt(pos) * x[j];
+                    }
+                }
+                x[i] = relax(x[i], sum, diagonal);
+            }
+            LinAlgBasics.matrixVectorMultiply(A, x, r);
+            for (int i = 0; i < n; i++) {
+                r[i] = rhs[i] - r[i];
+            }
+            if (step(norm(r), bNorm)) {
+                return Matrix.wrap(x, n, 1);
+            }
+        }
+        throw new NoConvergenceException("Gauss-Seidel did not converge");
+    }
+
+    // Getters and setters
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        this.tolerance = tolerance;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations <= 0) {
+            throw new IllegalArgumentException("Iteration limit must be positive");
+        }
+        this.maxIterations = maxIterations;
+    }
+
+    public double getOmega() {
+        return omega;
+    }
+
+    /**
+     * Set the relaxation factor of gaussSeidel(). 1 is plain Gauss-Seidel,
+     * values in (1, 2) over-relax (SOR).
+     * @param omega The relaxation factor, in (0, 2)
+     */
+    public void setOmega(double omega) {
+        if (!(omega > 0 && omega < 2)) {
+            throw new IllegalArgumentException("Relaxation factor must be in (0, 2)");
+        }
+        this.omega = omega;
+    }
+
+    public Preconditioner getPreconditioner() {
+        return preconditioner;
+    }
+
+    /**
+     * Set the preconditioner of conjugateGradient() and biCGStab(), or null
+     * for none.
+     * @param preconditioner The preconditioner
+     */
+    public void setPreconditioner(Preconditioner preconditioner) {
+        this.preconditioner = preconditioner;
+    }
+
+    public ConvergenceListener getListener() {
+        return listener;
+    }
+
+    public void setListener(ConvergenceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return Returns the number of iterations of the last solve
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return Returns the residual norm ||b - Ax|| at the end of the last solve
+     */
+    public double getResidualNorm() {
+        return residualNorm;
+    }
+
+    // Helpers
+    private static int checkShapes(int numRows, int numCols, Matrix b) {
+        if (numRows != numCols) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        if (b.getNumRows() != numRows || b.getNumCols() != 1) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        return numRows;
+    }
+
+    // Resets the statistics; returns true if the initial residual is already small enough
+    private boolean start(double norm, double bNorm) {
+        iterations = 0;
+        residualNorm = norm;
+        return norm <= tolerance * bNorm;
+    }
+
+    // Records one iteration; returns true once the residual is small enough
+    private boolean step(double norm, double bNorm) {
+        iterations++;
+        residualNorm = norm;
+        if (listener != null) {
+            listener.onIteration(iterations, norm);
+        }
+        return norm <= tolerance * bNorm;
+    }
+
+    private double relax(double old, double sum, double diagonal) throws NoConvergenceException {
+        if (diagonal == 0) {
+            throw new NoConvergenceException("Gauss-Seidel needs a non-zero diagonal");
+        }
+        return (1 - omega) * old + omega * sum / diagonal;
+    }
+
+    private double[] precondition(double[] r, double[] z) {
+        if (preconditioner == null) {
+            System.arraycopy(r, 0, z, 0, r.length);
+        } else {
+            preconditioner.apply(r, z);
+        }
+        return z;
+    }
+
+    private static double dot(double[] x, double[] y) {
+        return Reductions.dot(x, 0, 1, y, 0, 1, x.length);
+    }
+
+    private static double norm(double[] x) {
+        return Reductions.norm2(x, 0, 1, x.length);
+    }
+
+    // y += alpha * x
+    private static void axpy(double alpha, double[] x, double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            y[i] += alpha * x[i];
+        }
+    }
+
+}
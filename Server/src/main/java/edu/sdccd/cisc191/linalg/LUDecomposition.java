@@ -0,0 +1,322 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.function.IntConsumer;
+
+import edu.sdccd.cisc191.matrix.*;
+import edu.sdccd.cisc191.metrics.*;
+import edu.sdccd.cisc191.linalg.LinSystem.InfiniteSolutionsException;
+import edu.sdccd.cisc191.linalg.LinSystem.NoSolutionException;
+
+/**
+ * LU decomposition with partial pivoting, PA = LU. The factorization costs
+ * O(n^3) once, after which every call to solve() costs O(n^2) per column of b.
+ * <p>
+ * L and U are packed into one row-major n x n buffer: U on and above the
+ * diagonal, and the multipliers of L (whose diagonal is all ones) below it.
+ * Row i of PA is row pivot[i] of A.
+ * <p>
+ * A pivot no larger than n * eps times the largest element of its row of A
+ * counts as zero, eps being the machine epsilon: with partial pivoting,
+ * roundoff leaves a tiny nonzero pivot where an exactly singular matrix,
+ * such as [[1, 2, 3], [4, 5, 6], [7, 8, 9]], has a zero one. Measuring
+ * against the row rather than all of A keeps a badly scaled but regular
+ * matrix, such as diag(1e300, 1), regular.
+ */
+public class LUDecomposition {
+
+    // Machine epsilon of double precision
+    private static final double EPSILON = 0x1p-52;
+
+    private final int n;
+    private final double[] lu;
+    private final int[] pivot;
+    private final boolean singular;
+    private final boolean evenPermutation;
+
+    // Elements of row i of U at or below zero[i] count as zero
+    private final double[] zero;
+
+    /**
+     * Factor a square matrix. The matrix itself is not modified.
+     * @param A The matrix to factor
+     * @throws IllegalArgumentException When A is not square
+     */
+    public LUDecomposition(Matrix A) {
+        this(A, null);
+    }
+
+    /**
+     * Factor a square matrix, reporting progress. The factorization can be
+     * stopped by throwing an unchecked exception, such as a
+     * CancellationException, from the progress callback.
+     * @param A The matrix to factor
+     * @param progress Called with k before column k of n is eliminated, or null
+     * @throws IllegalArgumentException When A is not square
+     */
+    public LUDecomposition(Matrix A, IntConsumer progress) {
+        if (A.getNumRows() != A.getNumCols()) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        long start = Metrics.start();
+        this.n = A.getNumRows();
+        this.lu = A.toDoubleArray();
+        this.pivot = new int[n];
+        for (int i = 0; i < n; i++) {
+            pivot[i] = i;
+        }
+
+        double[] zero = new double[n];
+        for (int i = 0; i < n; i++) {
+            zero[i] = n * EPSILON * Reductions.maxAbs(lu, i * n, 1, n);
+        }
+        boolean singular = false;
+        boolean even = true;
+        for (int k = 0; k < n; k++) {
+            if (progress != null) {
+                progress.accept(k);
+            }
+
+            // Find pivot: the largest magnitude in column k, on or below the diagonal
+            int p = k + Reductions.argmaxAbs(lu, k * n + k, n, n - k);
+            double max = Math.abs(lu[p * n + k]);
+            if (!(max > zero[p])) {
+                // Nothing to eliminate in this column: U[k][k] and the multipliers below it are zero
+                for (int i = k; i < n; i++) {
+                    lu[i * n + k] = 0;
+                }
+                singular = true;
+                continue;
+            }
+
+            // Swap rows
+            if (p != k) {
+                swapRows(p, k);
+                double tolerance = zero[p];
+                zero[p] = zero[k];
+                zero[k] = tolerance;
+                int temp = pivot[p];
+                pivot[p] = pivot[k];
+                pivot[k] = temp;
+                even = !even;
+            }
+
+            // Eliminate
+            double diagonal = lu[k * n + k];
+            for (int i = k + 1; i < n; i++) {
+                int row = i * n;
+                double factor = lu[row + k] / diagonal;
+                lu[row + k] = factor;
+                if (factor == 0) {
+                    continue;
+                }
+                int pivotRow = k * n;
+                for (int j = k + 1; j < n; j++) {
+                    lu[row + j] -= factor * lu[pivotRow + j];
+                }
+            }
+        }
+        this.singular = singular;
+        this.evenPermutation = even;
+        this.zero = zero;
+        Metrics.FACTOR.record(start, 16L * n * n, 2L * n * n * n / 3);
+    }
+
+    /**
+     * Solves AX = B for every column of B at once.
+     * @param b The right-hand side, with one column per system
+     * @return Returns the solution X, with the same shape as b
+     * @throws NoSolutionException When some column of b has no solution
+     * @throws InfiniteSolutionsException When the systems have infinite solutions
+     * @throws IllegalArgumentException When the matrix shapes are not compatible
+     */
+    public Matrix solve(Matrix b) throws
+            NoSolutionException,
+            InfiniteSolutionsException,
+            IllegalArgumentException {
+
+        if (b.getNumRows() != n) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        int r = b.getNumCols();
+
+        // Permute b into x, so that x holds PB
+        double[] source = b.toDoubleArray();
+        double[] x = new double[n * r];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(source, pivot[i] * r, x, i * r, r);
+        }
+
+        // Forward substitution: LY = PB
+        for (int i = 1; i < n; i++) {
+            int row = i * r;
+            for (int k = 0; k < i; k++) {
+                double factor = lu[i * n + k];
+                if (factor == 0) {
+                    continue;
+                }
+                int other = k * r;
+                for (int j = 0; j < r; j++) {
+                    x[row + j] -= factor * x[other + j];
+                }
+            }
+        }
+
+        if (singular) {
+            classifySingular(x, r);
+        }
+
+        // Back substitution: UX = Y
+        for (int i = n - 1; i >= 0; i--) {
+            int row = i * r;
+            for (int k = i + 1; k < n; k++) {
+                double factor = lu[i * n + k];
+                if (factor == 0) {
+                    continue;
+                }
+                int other = k * r;
+                for (int j = 0; j < r; j++) {
+                    x[row + j] -= factor * x[other + j];
+                }
+            }
+            double diagonal = lu[i * n + i];
+            for (int j = 0; j < r; j++) {
+                x[row + j] /= diagonal;
+            }
+        }
+
+        return Matrix.wrap(x, n, r);
+    }
+
+    /**
+     * Solve Ax = v for one vector, in place. Only for a non-singular A, and
+     * without the checks of solve(), for callers that solve many vectors.
+     * @param v The right-hand side, replaced by x
+     */
+    void solveInPlace(double[] v) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = v[pivot[i]];
+        }
+        for (int i = 1; i < n; i++) {
+            double sum = x[i];
+            for (int k = 0; k < i; k++) {
+                sum -= lu[i * n + k] * x[k];
+            }
+            x[i] = sum;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int k = i + 1; k < n; k++) {
+                sum -= lu[i * n + k] * x[k];
+            }
+            v[i] = sum / lu[i * n + i];
+            x[i] = v[i];
+        }
+    }
+
+    /**
+     * Returns the determinant of A, the product of the diagonal of U with the
+     * sign of the row permutation.
+     * @return Returns det(A)
+     */
+    public double determinant() {
+        double det = evenPermutation ? 1.0 : -1.0;
+        for (int i = 0; i < n; i++) {
+            det *= lu[i * n + i];
+        }
+        return det;
+    }
+
+    /**
+     * Check if A is singular, in which case solve() always throws.
+     * @return Returns true if some pivot is zero, false otherwise
+     */
+    public boolean isSingular() {
+        return singular;
+    }
+
+    /**
+     * Returns the row permutation: row i of PA is row getPivot()[i] of A.
+     * @return Returns a copy of the permutation vector
+     */
+    public int[] getPivot() {
+        return pivot.clone();
+    }
+
+    public int getSize() {
+        return n;
+    }
+
+    /**
+     * Reduces UX = Y to row echelon form to tell an inconsistent system from an
+     * underdetermined one. Only called when some pivot of U is zero. Elements
+     * of U count as zero as they do in the factorization, and elements of Y
+     * at or below n * eps times its largest do.
+     */
+    private void classifySingular(double[] y, int r) throws
+            NoSolutionException,
+            InfiniteSolutionsException {
+
+        double[] u = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                u[i * n + j] = lu[i * n + j];
+            }
+        }
+        double[] rhs = y.clone();
+        double[] zeroU = zero.clone();
+        double zeroY = n * EPSILON * Reductions.maxAbs(rhs, 0, 1, rhs.length);
+
+        int rank = 0;
+        for (int col = 0; col < n && rank < n; col++) {
+            int p = rank;
+            for (int i = rank + 1; i < n; i++) {
+                if (Math.abs(u[i * n + col]) > Math.abs(u[p * n + col])) {
+                    p = i;
+                }
+            }
+            if (!(Math.abs(u[p * n + col]) > zeroU[p])) {
+                continue;
+            }
+            swap(u, p * n, rank * n, n);
+            swap(zeroU, p, rank, 1);
+            swap(rhs, p * r, rank * r, r);
+            for (int i = rank + 1; i < n; i++) {
+                double factor = u[i * n + col] / u[rank * n + col];
+                if (factor == 0) {
+                    continue;
+                }
+                for (int j = col; j < n; j++) {
+                    u[i * n + j] -= factor * u[rank * n + j];
+                }
+                for (int j = 0; j < r; j++) {
+                    rhs[i * r + j] -= factor * rhs[rank * r + j];
+                }
+            }
+            rank++;
+        }
+
+        // Rows past the rank are all zeros in U
+        for (int i = rank; i < n; i++) {
+            for (int j = 0; j < r; j++) {
+                if (!(Math.abs(rhs[i * r + j]) <= zeroY)) {
+                    throw new NoSolutionException("No solution");
+                }
+            }
+        }
+        throw new InfiniteSolutionsException("Infinite solutions");
+    }
+
+    private void swapRows(int i, int j) {
+        swap(lu, i * n, j * n, n);
+    }
+
+    private static void swap(double[] values, int first, int second, int length) {
+        for (int k = 0; k < length; k++) {
+            double temp = values[first + k];
+            values[first + k] = values[second + k];
+            values[second + k] = temp;
+        }
+    }
+
+}
@@ -1,22 +1,26 @@
 package edu.sdccd.cisc191.linalg;
 
 import edu.sdccd.cisc191.matrix.*;
+import edu.sdccd.cisc191.metrics.*;
+
+import java.util.Arrays;
 
 public class LinAlgBasics {
 
+    // Elements of a memory-mapped matrix read into the heap at a time
+    private static final int STREAM_BLOCK = 1 << 20;
+
     /**
-     * Returns the transpose of a matrix
+     * Returns the transpose of a matrix, with its own data. The copy is made
+     * from the transposed view in cache-sized tiles. For a transpose that
+     * shares the data of A, use A.transpose().
      * @param A The matrix to transpose
      * @return Returns the transpose of A
      */
     public static Matrix transpose(Matrix A) {
-        Integer[] shape = A.getShape();
-        Matrix result = Matrix.newZeros(shape[1], shape[0]);
-        for (int i = 0; i < shape[0]; i++) {
-            for (int j = 0; j < shape[1]; j++) {
-                result.set(A.get(i, j), j, i);
-            }
-        }
+        long start = Metrics.start();
+        Matrix result = A.transpose().copy();
+        Metrics.TRANSPOSE.record(start, 16L * A.getNumRows() * A.getNumCols(), 0);
         return result;
     }
 
@@ -35,16 +39,183 @@ public class LinAlgBasics {
             throw new IllegalArgumentException("Matrix shapes are not compatible");
         }
 
-        // Create new matrix
-        Matrix result = Matrix.newZeros(shape1[0], shape2[1]);
-        for (int i = 0; i < shape1[0]; i++) {
-            for (int j = 0; j < shape2[1]; j++) {
-                for (int k = 0; k < shape1[1]; k++) {
-                    result.set(result.get(i, j) + mat1.get(i, k) * mat2.get(k, j), i, j);
+        // Multiply packed row-major copies with the blocked kernel
+        long start = Metrics.start();
+        int m = shape1[0];
+        int k = shape1[1];
+        int n = shape2[1];
+        double[] result = new double[m * n];
+        Gemm.multiply(mat1.toDoubleArray(), mat2.toDoubleArray(), result, m, k, n);
+        Metrics.MULTIPLY.record(start, 8L * ((long) m * k + (long) k * n + (long) m * n), 2L * m * k * n);
+        return Matrix.wrap(result, m, n);
+
+    }
+
+    /**
+     * Returns the batched matrix product of two [batch, rows, cols] arrays:
+     * matrix s of the result is A_s * B_s. A batch of 1 on either side is
+     * broadcast, multiplying every matrix of the other by the same one. The
+     * products run as one batch over the blocked multiply, spread across the
+     * common ForkJoinPool a group of products at a time when the batch is
+     * large enough, instead of one call and one allocation per matrix.
+     * @param A The [batch, m, k] array
+     * @param B The [batch, k, n] array
+     * @return Returns the [batch, m, n] products
+     */
+    public static NDArray matrixMultiply(NDArray A, NDArray B) {
+
+        // Check shape
+        Integer[] shape1 = A.getShape();
+        Integer[] shape2 = B.getShape();
+        if (shape1.length != 3 || shape2.length != 3) {
+            throw new IllegalArgumentException("Arrays must have 3 dimensions");
+        }
+        if (!shape1[2].equals(shape2[1])
+                || (!shape1[0].equals(shape2[0]) && shape1[0] != 1 && shape2[0] != 1)) {
+            throw new IllegalArgumentException("Array shapes are not compatible");
+        }
+
+        long start = Metrics.start();
+        int batch = Math.max(shape1[0], shape2[0]);
+        int m = shape1[1];
+        int k = shape1[2];
+        int n = shape2[2];
+        double[] result = new double[batch * m * n];
+        Gemm.multiplyBatch(A.toDoubleArray(), shape1[0] == 1 ? 0 : m * k,
+                B.toDoubleArray(), shape2[0] == 1 ? 0 : k * n, result, batch, m, k, n);
+        Metrics.MULTIPLY.record(start, 8L * ((long) A.getSize() + B.getSize() + result.length),
+                2L * batch * m * k * n);
+        return NDArray.wrap(result, batch, m, n);
+
+    }
+
+    /**
+     * Returns the matrix product of a sparse and a dense matrix, A * B. Only the
+     * non-zero elements of A are visited, so the cost is O(nnz(A) * columns(B)).
+     * @param A The sparse matrix
+     * @param B The dense matrix
+     * @return Returns the dense matrix product of A and B
+     */
+    public static Matrix matrixMultiply(SparseMatrix A, Matrix B) {
+
+        // Check shape
+        if (A.getNumCols() != B.getNumRows()) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+
+        int m = A.getNumRows();
+        int n = B.getNumCols();
+        double[] b = B.toDoubleArray();
+        double[] result = new double[m * n];
+        if (n == 1) {
+            matrixVectorMultiply(A, b, result);
+            return Matrix.wrap(result, m, 1);
+        }
+
+        // Every stored A[i][k] adds a multiple of row k of B to row i of the result
+        for (int i = 0; i < m; i++) {
+            int row = i * n;
+            for (int pos = A.getRowStart(i); pos < A.getRowEnd(i); pos++) {
+                double value = A.getValueAt(pos);
+                int other = A.getColumnAt(pos) * n;
+                for (int j = 0; j < n; j++) {
+                    result[row + j] += value * b[other + j];
                 }
             }
         }
-        return result;
+        return Matrix.wrap(result, m, n);
+
+    }
+
+    /**
+     * Returns the matrix product of a memory-mapped and an in-heap matrix,
+     * A * B. A is streamed through in row order, a block of rows at a time,
+     * so it may be far larger than the heap; B and the result must fit.
+     * @param A The memory-mapped matrix
+     * @param B The in-heap matrix
+     * @return Returns the matrix product of A and B
+     */
+    public static Matrix matrixMultiply(MappedMatrix A, Matrix B) {
+
+        // Check shape
+        if (A.getNumCols() != B.getNumRows()) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+
+        int m = A.getNumRows();
+        int k = A.getNumCols();
+        int n = B.getNumCols();
+        double[] b = B.toDoubleArray();
+        double[] result = new double[m * n];
+
+        // Blocks of about STREAM_BLOCK elements of A
+        int blockRows = Math.max(1, Math.min(m, STREAM_BLOCK / k));
+        double[] block = new double[blockRows * k];
+        double[] blockResult = new double[blockRows * n];
+        for (int i = 0; i < m; i += blockRows) {
+            int rows = Math.min(blockRows, m - i);
+            A.readRows(i, rows, block);
+            Arrays.fill(blockResult, 0);
+            Gemm.multiply(block, b, blockResult, rows, k, n);
+            System.arraycopy(blockResult, 0, result, i * n, rows * n);
+        }
+        return Matrix.wrap(result, m, n);
+
+    }
+
+    /**
+     * Writes the transpose of a memory-mapped matrix to another one, so that
+     * neither needs to fit in the heap. A is read in row order, one block of
+     * rows at a time, and each block is written to the matching columns of
+     * the result.
+     * @param A The matrix to transpose
+     * @param result A writable matrix of shape columns(A) x rows(A)
+     */
+    public static void transpose(MappedMatrix A, MappedMatrix result) {
+
+        // Check shape
+        int m = A.getNumRows();
+        int n = A.getNumCols();
+        if (result.getNumRows() != n || result.getNumCols() != m) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+
+        int blockRows = Math.max(1, Math.min(m, STREAM_BLOCK / n));
+        double[] block = new double[blockRows * n];
+        double[] column = new double[blockRows];
+        for (int i = 0; i < m; i += blockRows) {
+            int rows = Math.min(blockRows, m - i);
+            A.readRows(i, rows, block);
+            for (int j = 0; j < n; j++) {
+                for (int r = 0; r < rows; r++) {
+                    column[r] = block[r * n + j];
+                }
+                result.writeRow(j, i, rows, column);
+            }
+        }
+
+    }
+
+    /**
+     * Computes the sparse matrix-vector product y = A * x.
+     * @param A The sparse matrix
+     * @param x The vector, of length columns(A)
+     * @param y The vector the result is written to, of length rows(A)
+     */
+    public static void matrixVectorMultiply(SparseMatrix A, double[] x, double[] y) {
+
+        // Check shape
+        if (x.length != A.getNumCols() || y.length != A.getNumRows()) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+
+        for (int i = 0; i < y.length; i++) {
+            double sum = 0;
+            for (int pos = A.getRowStart(i); pos < A.getRowEnd(i); pos++) {
+                sum += A.getValueAt(pos) * x[A.getColumnAt(pos)];
+            }
+            y[i] = sum;
+        }
 
     }
 
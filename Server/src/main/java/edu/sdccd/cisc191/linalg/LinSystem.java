@@ -1,6 +1,7 @@
 package edu.sdccd.cisc191.linalg;
 
 import edu.sdccd.cisc191.matrix.*;
+import edu.sdccd.cisc191.metrics.*;
 
 public class LinSystem {
 
@@ -19,9 +20,52 @@ public class LinSystem {
     }
 
     /**
-     * Solves a system of linear equations Ax = b
+     * The factorizations solveSystem() chooses between.
+     */
+    enum Method {
+        /** Symmetric with a positive diagonal, tried first and abandoned if not positive definite */
+        CHOLESKY,
+        LU,
+        MIXED_PRECISION,
+        /** Least squares, for more equations than unknowns */
+        QR
+    }
+
+    // Square systems of at least this size are solved in mixed precision
+    private static final int MIXED_PRECISION_SIZE =
+            Integer.getInteger("edu.sdccd.cisc191.linalg.mixedPrecisionSize", 512);
+
+    // Elements a and A[j][i] of a symmetric matrix may differ by this much relative to their size
+    private static final double SYMMETRY_TOLERANCE = 0x1p-48;
+
+    // Tiles of the symmetry check, so A[j][i] is read a cache line at a time
+    private static final int TILE = 64;
+
+    // Machine epsilon of double precision
+    private static final double EPSILON = 0x1p-52;
+
+    /**
+     * Solves a system of linear equations Ax = b, with the cheapest method
+     * that applies to A. To solve many systems with the same A, factor it
+     * once with {@link LUDecomposition} instead.
+     * <ul>
+     *     <li>A symmetric A with a positive diagonal is factored by
+     *     {@link CholeskyDecomposition}, in half the time of LU. Should it
+     *     turn out not to be positive definite, it is solved as below.</li>
+     *     <li>Other square systems of at least 512 equations
+     *     (-Dedu.sdccd.cisc191.linalg.mixedPrecisionSize) are factored in single
+     *     precision and refined to double precision by
+     *     {@link MixedPrecisionSolver}, which falls back to a double precision
+     *     solve when refinement does not converge.</li>
+     *     <li>Smaller ones go to {@link LUDecomposition}.</li>
+     *     <li>With more equations than unknowns, x is the least squares
+     *     solution from {@link QRDecomposition}, which minimizes |Ax - b|.</li>
+     *     <li>With fewer equations than unknowns there is never a unique
+     *     solution; [A | b] is row reduced to tell whether there is none or
+     *     infinitely many.</li>
+     * </ul>
      * @param A The matrix A
-     * @param b The matrix b
+     * @param b The matrix b, with one column per right-hand side
      * @return Returns the solution x
      * @throws NoSolutionException When there is no solution
      * @throws InfiniteSolutionsException When there are infinite solutions
@@ -38,81 +82,198 @@ public class LinSystem {
         if (!shapeA[0].equals(shapeB[0])) {
             throw new IllegalArgumentException("Matrix shapes are not compatible");
         }
+        if (shapeA[0] < shapeA[1]) {
+            classifyUnderdetermined(A, b);
+        }
 
-        // Augment A and b
-        Matrix Ab = Matrix.newZeros(shapeA[0], shapeA[1] + 1);
-        Ab.select(new Slice(A.getNumRows()), new Slice(A.getNumCols())).add(
-                A.select(new Slice(), new Slice()));
-        Ab.select(new Slice(A.getNumRows()), new Slice(A.getNumCols(), A.getNumCols() + 1)).add(
-                b.select(new Slice(), new Slice()));
-
-        // Gaussian elimination
-        for (int i = 0; i < shapeA[0]; i++) {
-            // Find pivot
-            int pivot = findPivot(Ab, i);
-            if (pivot == -1) {
-                // Check for infinite solutions
-                for (int row = i; row < shapeA[0]; row++) {
-                    boolean allZeros = true;
-                    for (int col = i; col < shapeA[1]; col++) {
-                        if (Ab.get(row, col) != 0) {
-                            allZeros = false;
-                            break;
-                        }
-                    }
-                    if (allZeros && Ab.get(row, shapeA[1]) != 0) {
-                        // No solution
-                        throw new NoSolutionException("No solution");
-                    } else if (allZeros) {
-                        throw new InfiniteSolutionsException("Infinite solutions");
-                    }
-                }
+        long start = Metrics.start();
+        Matrix x = solve(factor(A), b);
+        long m = shapeA[0];
+        long n = shapeA[1];
+        long r = shapeB[1];
+        Metrics.SOLVE.record(start, 8 * (m * n + (m + n) * r), 2 * m * n * n / 3 + 2 * m * n * r);
+        return x;
+
+    }
+
+    /**
+     * Factor A the way solveSystem() does, for callers that keep the
+     * factorization to solve with again.
+     * @param A The matrix A, with at least as many rows as columns
+     * @return Returns a CholeskyDecomposition, LUDecomposition,
+     *         MixedPrecisionSolver or QRDecomposition
+     */
+    static Object factor(Matrix A) {
+        Method method = chooseMethod(A);
+        if (method == Method.CHOLESKY) {
+            CholeskyDecomposition cholesky = new CholeskyDecomposition(A);
+            if (cholesky.isPositiveDefinite()) {
+                return cholesky;
             }
+            method = A.getNumRows() >= MIXED_PRECISION_SIZE ? Method.MIXED_PRECISION : Method.LU;
+        }
+        if (method == Method.QR) {
+            return new QRDecomposition(A);
+        } else if (method == Method.MIXED_PRECISION) {
+            return new MixedPrecisionSolver(A);
+        }
+        // Gaussian elimination, kept as an LU factorization
+        return new LUDecomposition(A);
+    }
 
-            // Swap rows
-            if (pivot != i) {
-                swapRows(Ab, i, pivot);
+    /**
+     * Solve with a factorization from factor().
+     * @param factorization The factorization of A
+     * @param b The matrix b, with one column per right-hand side
+     * @return Returns the solution x
+     */
+    static Matrix solve(Object factorization, Matrix b) throws
+            NoSolutionException,
+            InfiniteSolutionsException,
+            IllegalArgumentException {
+
+        if (factorization instanceof CholeskyDecomposition) {
+            return ((CholeskyDecomposition) factorization).solve(b);
+        } else if (factorization instanceof QRDecomposition) {
+            return ((QRDecomposition) factorization).solve(b);
+        } else if (factorization instanceof MixedPrecisionSolver) {
+            return ((MixedPrecisionSolver) factorization).solve(b);
+        }
+        return ((LUDecomposition) factorization).solve(b);
+    }
+
+    /**
+     * Choose how solveSystem() factors A, from its shape and, for a square A,
+     * its diagonal and symmetry. The symmetry check stops at the first pair
+     * that differs, which for most unsymmetric matrices is in the first row.
+     * @param A The matrix A, with at least as many rows as columns
+     * @return Returns the method to try first
+     */
+    static Method chooseMethod(Matrix A) {
+        int n = A.getNumRows();
+        if (n != A.getNumCols()) {
+            return Method.QR;
+        }
+        if (hasPositiveDiagonal(A) && isSymmetric(A)) {
+            return Method.CHOLESKY;
+        }
+        return n >= MIXED_PRECISION_SIZE ? Method.MIXED_PRECISION : Method.LU;
+    }
+
+    /**
+     * Tell the two cases of a system with fewer equations than unknowns
+     * apart. [A | b] is row reduced with partial pivoting: if a row of A
+     * reduces to zeros while its row of b does not, there is no solution,
+     * and otherwise there are infinitely many. Elements within a few
+     * roundoffs of zero, next to the largest element of A or of b, count as
+     * zero.
+     * @throws NoSolutionException When some column of b has no solution
+     * @throws InfiniteSolutionsException Otherwise
+     */
+    private static void classifyUnderdetermined(Matrix A, Matrix b) throws
+            NoSolutionException,
+            InfiniteSolutionsException {
+
+        int m = A.getNumRows();
+        int n = A.getNumCols();
+        int r = b.getNumCols();
+        double[] a = A.toDoubleArray();
+        double[] rhs = b.toDoubleArray();
+        double tolerance = Math.max(m, n) * EPSILON;
+        double zeroA = tolerance * Reductions.maxAbs(a, 0, 1, a.length);
+        double zeroB = tolerance * Reductions.maxAbs(rhs, 0, 1, rhs.length);
+
+        int rank = 0;
+        for (int col = 0; col < n && rank < m; col++) {
+            int p = rank;
+            for (int i = rank + 1; i < m; i++) {
+                if (Math.abs(a[i * n + col]) > Math.abs(a[p * n + col])) {
+                    p = i;
+                }
+            }
+            if (!(Math.abs(a[p * n + col]) > zeroA)) {
+                continue;
             }
-            // Eliminate
-            for (int j = i + 1; j < shapeA[0]; j++) {
-                double factor = Ab.get(j, i) / Ab.get(i, i);
-                for (int k = i; k < shapeA[1] + 1; k++) {
-                    Ab.set(Ab.get(j, k) - factor * Ab.get(i, k), j, k);
+            swap(a, p * n, rank * n, n);
+            swap(rhs, p * r, rank * r, r);
+            for (int i = rank + 1; i < m; i++) {
+                double factor = a[i * n + col] / a[rank * n + col];
+                for (int j = col; j < n; j++) {
+                    a[i * n + j] -= factor * a[rank * n + j];
+                }
+                for (int j = 0; j < r; j++) {
+                    rhs[i * r + j] -= factor * rhs[rank * r + j];
                 }
             }
+            rank++;
         }
 
-        // Back substitution
-        Matrix x = Matrix.newZeros(shapeA[0], 1);
-        for (int i = shapeA[0] - 1; i >= 0; i--) {
-            double sum = 0;
-            for (int j = i + 1; j < shapeA[0]; j++) {
-                sum += Ab.get(i, j) * x.get(j, 0);
+        // Rows past the rank are zeros in A
+        for (int i = rank; i < m; i++) {
+            for (int j = 0; j < r; j++) {
+                if (!(Math.abs(rhs[i * r + j]) <= zeroB)) {
+                    throw new NoSolutionException("No solution");
+                }
             }
-            x.set((Ab.get(i, shapeA[0]) - sum) / Ab.get(i, i), i, 0);
         }
+        throw new InfiniteSolutionsException("Infinite solutions");
+    }
 
-        return x;
+    private static void swap(double[] values, int first, int second, int length) {
+        for (int k = 0; k < length; k++) {
+            double temp = values[first + k];
+            values[first + k] = values[second + k];
+            values[second + k] = temp;
+        }
+    }
 
+    private static boolean hasPositiveDiagonal(Matrix A) {
+        for (int i = 0; i < A.getNumRows(); i++) {
+            if (!(A.get(i, i) > 0)) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private static int findPivot(Matrix ab, int i) {
-        Integer[] shape = ab.getShape();
-        for (int j = i; j < shape[0]; j++) {
-            if (ab.get(j, i) != 0) {
-                return j;
+    private static boolean isSymmetric(Matrix A) {
+        int n = A.getNumRows();
+        for (int ib = 0; ib < n; ib += TILE) {
+            for (int jb = 0; jb <= ib; jb += TILE) {
+                for (int i = ib; i < Math.min(ib + TILE, n); i++) {
+                    for (int j = jb; j < Math.min(jb + TILE, i); j++) {
+                        double a = A.get(i, j);
+                        double b = A.get(j, i);
+                        if (a != b && !(Math.abs(a - b) <= SYMMETRY_TOLERANCE * (Math.abs(a) + Math.abs(b)))) {
+                            return false;
+                        }
+                    }
+                }
             }
         }
-        return -1;
+        return true;
     }
 
-    private static void swapRows(Matrix ab, int i, int j) {
-        Integer[] shape = ab.getShape();
-        for (int k = 0; k < shape[1]; k++) {
-            double temp = ab.get(i, k);
-            ab.set(ab.get(j, k), i, k);
-            ab.set(temp, j, k);
+    /**
+     * Measures how well x solves Ax = b: the residual relative to the size of
+     * the system, |b - Ax| / (|A||x| + |b|) in the infinity norm. A backward
+     * stable solve gives a value near the machine epsilon, about 1e-16,
+     * however ill-conditioned A is.
+     * @param A The matrix A
+     * @param x The solution to check
+     * @param b The matrix b, with one column per right-hand side
+     * @return Returns the relative residual, or 0 when A, x and b are all zero
+     * @throws IllegalArgumentException When the matrix shapes are not compatible
+     */
+    public static double relativeResidual(Matrix A, Matrix x, Matrix b) {
+        Matrix residual = LinAlgBasics.matrixMultiply(A, x);
+        if (residual.getNumRows() != b.getNumRows() || residual.getNumCols() != b.getNumCols()) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
         }
+        residual.subtract(b);
+        // The infinity norm of A as an operator is its largest row sum of magnitudes
+        double scale = A.norm1(1).normInf() * x.normInf() + b.normInf();
+        return scale == 0 ? 0 : residual.normInf() / scale;
     }
 
 }
@@ -0,0 +1,116 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Anything that can compute a matrix-vector product y = A * x. Iterative
+ * solvers only need this product, so they work the same on dense matrices,
+ * sparse matrices, or operators that never store A at all.
+ */
+public interface LinearOperator {
+
+    int getNumRows();
+
+    int getNumCols();
+
+    /**
+     * Computes y = A * x.
+     * @param x The input vector, of length getNumCols()
+     * @param y The output vector, of length getNumRows()
+     */
+    void apply(double[] x, double[] y);
+
+    /**
+     * Wrap a dense matrix. The matrix is copied once into a row-major buffer,
+     * so later changes to it are not seen by the operator.
+     * @param A The matrix
+     * @return Returns an operator computing A * x
+     */
+    static LinearOperator of(Matrix A) {
+        final int m = A.getNumRows();
+        final int n = A.getNumCols();
+        final double[] a = A.toDoubleArray();
+        return new LinearOperator() {
+            @Override
+            public int getNumRows() {
+                return m;
+            }
+
+            @Override
+            public int getNumCols() {
+                return n;
+            }
+
+            @Override
+            public void apply(double[] x, double[] y) {
+                for (int i = 0; i < m; i++) {
+                    double sum = 0;
+                    int row = i * n;
+                    for (int j = 0; j < n; j++) {
+                        sum += a[row + j] * x[j];
+                    }
+                    y[i] = sum;
+                }
+            }
+        };
+    }
+
+    /**
+     * Wrap a sparse matrix. The operator reads the matrix on every product.
+     * @param A The matrix
+     * @return Returns an operator computing A * x
+     */
+    static LinearOperator of(final SparseMatrix A) {
+        return new LinearOperator() {
+            @Override
+            public int getNumRows() {
+                return A.getNumRows();
+            }
+
+            @Override
+            public int getNumCols() {
+                return A.getNumCols();
+            }
+
+            @Override
+            public void apply(double[] x, double[] y) {
+                LinAlgBasics.matrixVectorMultiply(A, x, y);
+            }
+        };
+    }
+
+    /**
+     * Wrap a memory-mapped matrix. Every product streams through the matrix
+     * once in row order, so it never has to fit in the heap.
+     * @param A The matrix
+     * @return Returns an operator computing A * x
+     */
+    static LinearOperator of(final MappedMatrix A) {
+        final int n = A.getNumCols();
+        return new LinearOperator() {
+            @Override
+            public int getNumRows() {
+                return A.getNumRows();
+            }
+
+            @Override
+            public int getNumCols() {
+                return n;
+            }
+
+            @Override
+            public void apply(double[] x, double[] y) {
+                double[] row = new double[n];
+                for (int i = 0; i < y.length; i++) {
+                    A.readRow(i, 0, n, row);
+                    double sum = 0;
+                    for (int j = 0; j < n; j++) {
+                        sum += row[j] * x[j];
+                    }
+                    y[i] = sum;
+                }
+            }
+        };
+    }
+
+}
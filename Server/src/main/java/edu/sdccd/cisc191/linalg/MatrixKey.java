@@ -0,0 +1,103 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.Arrays;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * A cache key that identifies one or more matrices by their content: shape
+ * and elements. The key keeps its own copy of the elements, so that equal
+ * hashes are always confirmed by comparing the data, and later changes to the
+ * matrices do not change the key.
+ * <p>
+ * The hash mixes the bits of every element in four independent lanes, which
+ * keeps it at about one element per cycle; equals() only compares the data
+ * when the hashes already match.
+ */
+public final class MatrixKey {
+
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final int[] shapes;
+    private final double[][] data;
+    private final long hash;
+
+    /**
+     * Create a key for a sequence of matrices, in order.
+     * @param matrices The matrices
+     */
+    public MatrixKey(Matrix... matrices) {
+        shapes = new int[matrices.length * 2];
+        data = new double[matrices.length][];
+        long h = matrices.length;
+        for (int m = 0; m < matrices.length; m++) {
+            shapes[2 * m] = matrices[m].getNumRows();
+            shapes[2 * m + 1] = matrices[m].getNumCols();
+            data[m] = matrices[m].toDoubleArray();
+            h = mix(h, shapes[2 * m]);
+            h = mix(h, shapes[2 * m + 1]);
+            h = mix(h, hash(data[m]));
+        }
+        hash = h;
+    }
+
+    /**
+     * @return Returns the number of bytes the key holds on to
+     */
+    public long getBytes() {
+        long bytes = 64 + 4L * shapes.length;
+        for (double[] elements : data) {
+            bytes += 16 + 8L * elements.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return Returns the 64-bit content hash
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof MatrixKey)) {
+            return false;
+        }
+        MatrixKey key = (MatrixKey) other;
+        return hash == key.hash && Arrays.equals(shapes, key.shapes) && Arrays.deepEquals(data, key.data);
+    }
+
+    // Helpers
+    private static long hash(double[] elements) {
+        long h0 = 1;
+        long h1 = 2;
+        long h2 = 3;
+        long h3 = 4;
+        int i = 0;
+        for (; i + 3 < elements.length; i += 4) {
+            h0 = (h0 ^ Double.doubleToLongBits(elements[i])) * MULTIPLIER;
+            h1 = (h1 ^ Double.doubleToLongBits(elements[i + 1])) * MULTIPLIER;
+            h2 = (h2 ^ Double.doubleToLongBits(elements[i + 2])) * MULTIPLIER;
+            h3 = (h3 ^ Double.doubleToLongBits(elements[i + 3])) * MULTIPLIER;
+        }
+        for (; i < elements.length; i++) {
+            h0 = (h0 ^ Double.doubleToLongBits(elements[i])) * MULTIPLIER;
+        }
+        return mix(mix(mix(mix(elements.length, h0), h1), h2), h3);
+    }
+
+    private static long mix(long h, long value) {
+        h = (h ^ value) * MULTIPLIER;
+        return h ^ (h >>> 29);
+    }
+
+}
@@ -0,0 +1,353 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+import edu.sdccd.cisc191.metrics.*;
+import edu.sdccd.cisc191.linalg.LinSystem.InfiniteSolutionsException;
+import edu.sdccd.cisc191.linalg.LinSystem.NoSolutionException;
+
+/**
+ * Solves Ax = b in mixed precision. A is factored once in single precision,
+ * which moves half the bytes of a double precision factorization and keeps
+ * factors of half the size, and each solution is then refined in double
+ * precision:
+ * <pre>
+ *     r = b - Ax      (in double, against A itself)
+ *     LU d = r        (with the single precision factors)
+ *     x = x + d
+ * </pre>
+ * until |r| <= sqrt(n) eps |A| |x| in the infinity norm, with eps the double
+ * precision unit roundoff, the same test LAPACK's dsgesv uses. The result is
+ * then as accurate as a double precision solve.
+ * <p>
+ * Refinement converges when A is not too ill-conditioned for single
+ * precision, roughly cond(A) below 1e7. When it does not, or when A does not
+ * fit in a float, or its single precision factors are singular, the solver
+ * falls back to a double precision LUDecomposition, which also tells
+ * singular systems apart. The residuals need A itself, so the solver keeps
+ * its own copy of it; the caller's A may change afterwards.
+ * <p>
+ * solve() may be called from several threads at once, as when the solver is
+ * shared through a CachedLinAlg; getIterations() and isFallback() then
+ * describe one of the latest solves.
+ */
+public class MixedPrecisionSolver {
+
+    // Refinement steps per column before falling back, as in dsgesv
+    static final int MAX_ITERATIONS = 30;
+
+    // Columns factored together; a panel of U rows, PANEL x n floats, stays in L2
+    static final int PANEL = 64;
+
+    // Unit roundoff of double precision
+    private static final double EPSILON = 0x1p-53;
+
+    // Machine epsilon of single precision
+    private static final float FLOAT_EPSILON = 0x1p-23f;
+
+    private final Matrix A;
+    private final Matrix[] rows;
+    private final int n;
+    private final double normA;
+
+    // Single precision LU, packed like LUDecomposition's; null when it cannot be used
+    private final FloatMatrix factors;
+    // The row-major elements of factors, which the loops work on directly
+    private final float[] lu;
+    private final int[] pivot;
+
+    private LUDecomposition fallback;
+    private volatile int iterations;
+    private volatile boolean usedFallback;
+
+    /**
+     * Factor a square matrix in single precision.
+     * @param A The matrix to factor, which is not modified
+     * @throws IllegalArgumentException When A is not square
+     */
+    public MixedPrecisionSolver(Matrix A) {
+        if (A.getNumRows() != A.getNumCols()) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        this.A = A.copy();
+        this.n = A.getNumRows();
+        this.rows = new Matrix[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = this.A.select(i, new Slice());
+        }
+        // The infinity norm of A as an operator is its largest row sum of magnitudes
+        this.normA = this.A.norm1(1).normInf();
+        this.pivot = new int[n];
+
+        long start = Metrics.start();
+        float[] elements = this.A.toFloatArray();
+        boolean factored = factor(elements, pivot, n);
+        this.lu = factored ? elements : null;
+        this.factors = factored ? FloatMatrix.wrap(elements, n, n) : null;
+        Metrics.FACTOR_SINGLE.record(start, 8L * n * n, 2L * n * n * n / 3);
+    }
+
+    /**
+     * Solves AX = B for every column of B, refining each column on its own.
+     * @param b The right-hand side, with one column per system
+     * @return Returns the solution X, with the same shape as b
+     * @throws NoSolutionException When some column of b has no solution
+     * @throws InfiniteSolutionsException When the systems have infinite solutions
+     * @throws IllegalArgumentException When the matrix shapes are not compatible
+     */
+    public Matrix solve(Matrix b) throws
+            NoSolutionException,
+            InfiniteSolutionsException,
+            IllegalArgumentException {
+
+        if (b.getNumRows() != n) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        usedFallback = false;
+        if (factors == null) {
+            iterations = 0;
+            return solveInDouble(b);
+        }
+
+        int r = b.getNumCols();
+        double[] x = new double[n * r];
+        int[] steps = new int[1];
+        for (int c = 0; c < r; c++) {
+            double[] column = refine(b.select(new Slice(), c).toDoubleArray(), steps);
+            if (column == null) {
+                iterations = steps[0];
+                return solveInDouble(b);
+            }
+            for (int i = 0; i < n; i++) {
+                x[i * r + c] = column[i];
+            }
+        }
+        iterations = steps[0];
+        return Matrix.wrap(x, n, r);
+    }
+
+    /**
+     * @return Returns the refinement steps taken by the last solve, over all columns
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return Returns true if the last solve fell back to double precision
+     */
+    public boolean isFallback() {
+        return usedFallback;
+    }
+
+    /**
+     * @return Returns true if A was factored in single precision, false if every solve falls back
+     */
+    public boolean isSinglePrecision() {
+        return factors != null;
+    }
+
+    /**
+     * Returns the single precision factors, packed: L below the diagonal,
+     * with a unit diagonal that is not stored, and U on and above it.
+     * @return Returns a copy of the factors, or null if A was not factored in single precision
+     */
+    public FloatMatrix getFactors() {
+        return factors == null ? null : factors.copy();
+    }
+
+    /**
+     * Returns the row permutation: row i of PA is row getPivot()[i] of A.
+     * @return Returns a copy of the permutation vector
+     */
+    public int[] getPivot() {
+        return pivot.clone();
+    }
+
+    public int getSize() {
+        return n;
+    }
+
+    /**
+     * Refine the solution of one column.
+     * @param rhs The right-hand side
+     * @param steps Counts the refinement steps taken
+     * @return Returns the solution, or null when refinement does not converge
+     */
+    private double[] refine(double[] rhs, int[] steps) {
+        double[] x = rhs.clone();
+        substitute(x);
+        Matrix xRow = Matrix.wrap(x, 1, n);
+        double[] residual = new double[n];
+        double limit = Math.sqrt(n) * EPSILON * normA;
+        double previous = Double.POSITIVE_INFINITY;
+        for (int iteration = 0; ; iteration++) {
+            for (int i = 0; i < n; i++) {
+                residual[i] = rhs[i] - rows[i].dot(xRow);
+            }
+            if (Reductions.maxAbs(residual, 0, 1, n) <= limit * Reductions.maxAbs(x, 0, 1, n)) {
+                steps[0] += iteration;
+                return x;
+            }
+            if (iteration == MAX_ITERATIONS) {
+                return null;
+            }
+            substitute(residual);
+            // Each step should shrink the correction by about cond(A) times
+            // the float roundoff; when it stops halving, give up early
+            double correction = Reductions.maxAbs(residual, 0, 1, n);
+            if (!(correction <= 0.5 * previous)) {
+                return null;
+            }
+            previous = correction;
+            for (int i = 0; i < n; i++) {
+                x[i] += residual[i];
+            }
+        }
+    }
+
+    private Matrix solveInDouble(Matrix b) throws NoSolutionException, InfiniteSolutionsException {
+        LUDecomposition lu;
+        synchronized (this) {
+            if (fallback == null) {
+                fallback = new LUDecomposition(A);
+            }
+            lu = fallback;
+        }
+        usedFallback = true;
+        return lu.solve(b);
+    }
+
+    /**
+     * Solve LU v = Pv in place with the single precision factors, keeping
+     * the sums in double precision.
+     */
+    private void substitute(double[] v) {
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = v[pivot[i]];
+        }
+        for (int i = 1; i < n; i++) {
+            double sum = x[i];
+            for (int k = 0; k < i; k++) {
+                sum -= lu[i * n + k] * x[k];
+            }
+            x[i] = sum;
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int k = i + 1; k < n; k++) {
+                sum -= lu[i * n + k] * x[k];
+            }
+            x[i] = sum / lu[i * n + i];
+        }
+        System.arraycopy(x, 0, v, 0, n);
+    }
+
+    /**
+     * Factor lu in place with partial pivoting, in panels of PANEL columns.
+     * Each panel is factored column by column as LUDecomposition does, its
+     * rows of U are solved for, and only then is the trailing matrix
+     * updated, all PANEL columns at once: one pass over a trailing row
+     * applies the whole panel while the row stays in cache, where the
+     * unblocked loop streams the trailing matrix once per column. The rows
+     * of U and each trailing row are copied out to their own arrays for the
+     * update; see subtract().
+     * @return Returns false if a value or pivot does not fit in a float, or a
+     *         pivot is no larger than n * eps * max|A| in single precision
+     */
+    private static boolean factor(float[] lu, int[] pivot, int n) {
+        float largest = 0;
+        for (float value : lu) {
+            if (!Float.isFinite(value)) {
+                return false;
+            }
+            largest = Math.max(largest, Math.abs(value));
+        }
+        // Pivots this small are roundoff of a matrix singular in single precision
+        float zero = n * FLOAT_EPSILON * largest;
+        for (int i = 0; i < n; i++) {
+            pivot[i] = i;
+        }
+        for (int kb = 0; kb < n; kb += PANEL) {
+            int end = Math.min(kb + PANEL, n);
+
+            // Factor the panel, columns [kb, end), swapping whole rows
+            for (int k = kb; k < end; k++) {
+                int p = k;
+                float max = Math.abs(lu[k * n + k]);
+                for (int i = k + 1; i < n; i++) {
+                    float value = Math.abs(lu[i * n + k]);
+                    if (value > max) {
+                        max = value;
+                        p = i;
+                    }
+                }
+                if (!(max > zero) || !Float.isFinite(max)) {
+                    return false;
+                }
+                if (p != k) {
+                    for (int j = 0; j < n; j++) {
+                        float temp = lu[p * n + j];
+                        lu[p * n + j] = lu[k * n + j];
+                        lu[k * n + j] = temp;
+                    }
+                    int temp = pivot[p];
+                    pivot[p] = pivot[k];
+                    pivot[k] = temp;
+                }
+                float diagonal = lu[k * n + k];
+                for (int i = k + 1; i < n; i++) {
+                    int row = i * n;
+                    float factor = lu[row + k] / diagonal;
+                    lu[row + k] = factor;
+                    for (int j = k + 1; j < end; j++) {
+                        lu[row + j] -= factor * lu[k * n + j];
+                    }
+                }
+            }
+            if (end == n) {
+                break;
+            }
+
+            // Rows of U right of the panel, packed one array per row: solve
+            // with the unit lower triangle of the panel
+            int width = n - end;
+            float[][] u = new float[end - kb][width];
+            for (int i = kb; i < end; i++) {
+                float[] ui = u[i - kb];
+                System.arraycopy(lu, i * n + end, ui, 0, width);
+                for (int k = kb; k < i; k++) {
+                    subtract(ui, u[k - kb], lu[i * n + k], width);
+                }
+                System.arraycopy(ui, 0, lu, i * n + end, width);
+            }
+
+            // Trailing matrix: subtract the panel of L times the packed rows of U, a row at a time
+            float[] trailing = new float[width];
+            for (int i = end; i < n; i++) {
+                int row = i * n;
+                System.arraycopy(lu, row + end, trailing, 0, width);
+                for (int k = kb; k < end; k++) {
+                    float factor = lu[row + k];
+                    if (factor != 0) {
+                        subtract(trailing, u[k - kb], factor, width);
+                    }
+                }
+                System.arraycopy(trailing, 0, lu, row + end, width);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * y = y - factor * x over [0, length). Both runs start at zero, the form
+     * the JIT turns into vector instructions; with an offset into lu on
+     * either side it stays scalar and runs several times slower.
+     */
+    private static void subtract(float[] y, float[] x, float factor, int length) {
+        for (int j = 0; j < length; j++) {
+            y[j] -= factor * x[j];
+        }
+    }
+
+}
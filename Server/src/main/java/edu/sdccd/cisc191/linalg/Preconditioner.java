@@ -0,0 +1,66 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * An approximation M of A that is cheap to invert. Iterative solvers apply
+ * z = M^-1 * r once or twice per iteration to reduce the number of iterations.
+ */
+public interface Preconditioner {
+
+    /**
+     * Computes z = M^-1 * r.
+     * @param r The input vector
+     * @param z The output vector
+     */
+    void apply(double[] r, double[] z);
+
+    /**
+     * The Jacobi preconditioner, M = diag(A).
+     * @param A The matrix
+     * @return Returns a preconditioner dividing by the diagonal of A
+     */
+    static Preconditioner jacobi(Matrix A) {
+        int n = Math.min(A.getNumRows(), A.getNumCols());
+        double[] diagonal = new double[n];
+        for (int i = 0; i < n; i++) {
+            diagonal[i] = A.get(i, i);
+        }
+        return jacobi(diagonal);
+    }
+
+    /**
+     * The Jacobi preconditioner, M = diag(A).
+     * @param A The matrix
+     * @return Returns a preconditioner dividing by the diagonal of A
+     */
+    static Preconditioner jacobi(SparseMatrix A) {
+        int n = Math.min(A.getNumRows(), A.getNumCols());
+        double[] diagonal = new double[n];
+        for (int i = 0; i < n; i++) {
+            diagonal[i] = A.get(i, i);
+        }
+        return jacobi(diagonal);
+    }
+
+    /**
+     * The Jacobi preconditioner for a known diagonal.
+     * @param diagonal The diagonal of A
+     * @return Returns a preconditioner dividing by the diagonal
+     */
+    static Preconditioner jacobi(double[] diagonal) {
+        final double[] inverse = new double[diagonal.length];
+        for (int i = 0; i < diagonal.length; i++) {
+            if (diagonal[i] == 0) {
+                throw new IllegalArgumentException("Jacobi preconditioner needs a non-zero diagonal");
+            }
+            inverse[i] = 1.0 / diagonal[i];
+        }
+        return (r, z) -> {
+            for (int i = 0; i < inverse.length; i++) {
+                z[i] = r[i] * inverse[i];
+            }
+        };
+    }
+
+}
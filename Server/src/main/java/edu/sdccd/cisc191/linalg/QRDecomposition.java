@@ -0,0 +1,313 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+import edu.sdccd.cisc191.metrics.*;
+import edu.sdccd.cisc191.linalg.LinSystem.InfiniteSolutionsException;
+
+/**
+ * Householder QR decomposition of an m x n matrix with m >= n, A = QR, for
+ * least squares: solve() finds the x that minimizes |Ax - b| in the
+ * Euclidean norm, which for a square A is the solution of Ax = b. It never
+ * forms the normal equations A^T A, whose condition number is the square of
+ * that of A.
+ * <p>
+ * Q is the product of n reflections H = I - tau v v^T. R is kept on and
+ * above the diagonal and each v below it, with its leading 1 implied, as
+ * LAPACK's dgeqrf does. Columns are factored in panels of PANEL: the
+ * reflections of a panel are gathered into one block reflector
+ * I - V T V^T (the compact WY form), which updates the trailing columns in
+ * two passes over them instead of one pass per column.
+ */
+public class QRDecomposition {
+
+    // Columns factored together into one block reflector
+    static final int PANEL = 32;
+
+    // Unit roundoff of double precision
+    private static final double EPSILON = 0x1p-53;
+
+    private final int m;
+    private final int n;
+    private final double[][] qr;
+    private final double[] tau;
+    private final boolean fullRank;
+
+    /**
+     * Factor a matrix. The matrix itself is not modified.
+     * @param A The matrix to factor
+     * @throws IllegalArgumentException When A has fewer rows than columns
+     */
+    public QRDecomposition(Matrix A) {
+        if (A.getNumRows() < A.getNumCols()) {
+            throw new IllegalArgumentException("Matrix must have at least as many rows as columns");
+        }
+        long start = Metrics.start();
+        this.m = A.getNumRows();
+        this.n = A.getNumCols();
+        double[] data = A.toDoubleArray();
+        this.qr = new double[m][];
+        for (int i = 0; i < m; i++) {
+            qr[i] = new double[n];
+            System.arraycopy(data, i * n, qr[i], 0, n);
+        }
+        this.tau = new double[n];
+        factor();
+
+        // Columns are dependent when a diagonal of R is at the rounding error of the largest
+        double largest = 0;
+        for (int k = 0; k < n; k++) {
+            largest = Math.max(largest, Math.abs(qr[k][k]));
+        }
+        double tolerance = m * EPSILON * largest;
+        boolean independent = largest > 0;
+        for (int k = 0; k < n && independent; k++) {
+            independent = Math.abs(qr[k][k]) > tolerance;
+        }
+        this.fullRank = independent;
+        Metrics.QR.record(start, 16L * m * n, 2L * n * n * (3L * m - n) / 3);
+    }
+
+    /**
+     * Solves the least squares problems min |AX - B| for every column of B at once.
+     * @param b The right-hand side, with m rows and one column per problem
+     * @return Returns the n x r solution X
+     * @throws InfiniteSolutionsException When the columns of A are dependent, so
+     *                                    every problem has infinite solutions
+     * @throws IllegalArgumentException When the matrix shapes are not compatible
+     */
+    public Matrix solve(Matrix b) throws
+            InfiniteSolutionsException,
+            IllegalArgumentException {
+
+        if (b.getNumRows() != m) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        if (!fullRank) {
+            throw new InfiniteSolutionsException("Infinite solutions");
+        }
+        int r = b.getNumCols();
+        double[] y = b.toDoubleArray();
+
+        // Y = Q^T B, one reflection at a time
+        double[] w = new double[r];
+        for (int k = 0; k < n; k++) {
+            if (tau[k] == 0) {
+                continue;
+            }
+            System.arraycopy(y, k * r, w, 0, r);
+            for (int i = k + 1; i < m; i++) {
+                double v = qr[i][k];
+                for (int j = 0; j < r; j++) {
+                    w[j] += v * y[i * r + j];
+                }
+            }
+            for (int j = 0; j < r; j++) {
+                w[j] *= tau[k];
+                y[k * r + j] -= w[j];
+            }
+            for (int i = k + 1; i < m; i++) {
+                double v = qr[i][k];
+                for (int j = 0; j < r; j++) {
+                    y[i * r + j] -= v * w[j];
+                }
+            }
+        }
+
+        // Back substitution: RX = the first n rows of Y
+        double[] x = new double[n * r];
+        System.arraycopy(y, 0, x, 0, n * r);
+        for (int i = n - 1; i >= 0; i--) {
+            int row = i * r;
+            for (int k = i + 1; k < n; k++) {
+                double factor = qr[i][k];
+                if (factor == 0) {
+                    continue;
+                }
+                int other = k * r;
+                for (int j = 0; j < r; j++) {
+                    x[row + j] -= factor * x[other + j];
+                }
+            }
+            double diagonal = qr[i][i];
+            for (int j = 0; j < r; j++) {
+                x[row + j] /= diagonal;
+            }
+        }
+
+        return Matrix.wrap(x, n, r);
+    }
+
+    /**
+     * Check if the columns of A are independent, in which case solve() has a unique answer.
+     * @return Returns true if no diagonal of R is negligible next to the largest
+     */
+    public boolean isFullRank() {
+        return fullRank;
+    }
+
+    /**
+     * @return Returns a copy of R, n x n and upper triangular
+     */
+    public Matrix getR() {
+        double[] result = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(qr[i], i, result, i * n + i, n - i);
+        }
+        return Matrix.wrap(result, n, n);
+    }
+
+    public int getNumRows() {
+        return m;
+    }
+
+    public int getNumCols() {
+        return n;
+    }
+
+    private void factor() {
+        double[] w = new double[n];
+        double[][] t = new double[PANEL][PANEL];
+        double[][] block = new double[PANEL][n];
+        for (int kb = 0; kb < n; kb += PANEL) {
+            int end = Math.min(kb + PANEL, n);
+
+            // Factor the panel, applying each reflection to the rest of the panel
+            for (int k = kb; k < end; k++) {
+                reflect(k);
+                if (tau[k] == 0 || k + 1 == end) {
+                    continue;
+                }
+                System.arraycopy(qr[k], k + 1, w, k + 1, end - k - 1);
+                for (int i = k + 1; i < m; i++) {
+                    axpy(w, qr[i], qr[i][k], k + 1, end);
+                }
+                for (int j = k + 1; j < end; j++) {
+                    w[j] *= tau[k];
+                }
+                axpy(qr[k], w, -1, k + 1, end);
+                for (int i = k + 1; i < m; i++) {
+                    axpy(qr[i], w, -qr[i][k], k + 1, end);
+                }
+            }
+            if (end == n) {
+                break;
+            }
+
+            // The trailing columns [end, n) take the block reflector I - V T V^T
+            int p = end - kb;
+            formT(kb, p, t);
+
+            // W = V^T C, a row of W per reflection
+            for (int q = 0; q < p; q++) {
+                System.arraycopy(qr[kb + q], end, block[q], end, n - end);
+            }
+            for (int i = kb + 1; i < m; i++) {
+                double[] row = qr[i];
+                int last = Math.min(i - kb, p);
+                for (int q = 0; q < last; q++) {
+                    axpy(block[q], row, row[kb + q], end, n);
+                }
+            }
+
+            // W = T^T W, from the last row up so each row still reads the old ones
+            for (int q = p - 1; q >= 0; q--) {
+                double[] bq = block[q];
+                double diagonal = t[q][q];
+                for (int j = end; j < n; j++) {
+                    bq[j] *= diagonal;
+                }
+                for (int s = 0; s < q; s++) {
+                    axpy(bq, block[s], t[s][q], end, n);
+                }
+            }
+
+            // C = C - V W
+            for (int i = kb; i < m; i++) {
+                double[] row = qr[i];
+                int last = Math.min(i - kb, p);
+                if (i - kb < p) {
+                    axpy(row, block[i - kb], -1, end, n);
+                }
+                for (int q = 0; q < last; q++) {
+                    axpy(row, block[q], -row[kb + q], end, n);
+                }
+            }
+        }
+    }
+
+    /**
+     * Choose the reflection that zeroes column k below the diagonal, as
+     * LAPACK's dlarfg does, leaving beta on the diagonal and v below it.
+     */
+    private void reflect(int k) {
+        double scale = 0;
+        for (int i = k + 1; i < m; i++) {
+            scale = Math.max(scale, Math.abs(qr[i][k]));
+        }
+        if (scale == 0) {
+            // Already zero below the diagonal; H is the identity
+            tau[k] = 0;
+            return;
+        }
+        // Scaled, so the sum of squares neither overflows nor underflows
+        double sum = 0;
+        for (int i = k + 1; i < m; i++) {
+            double value = qr[i][k] / scale;
+            sum += value * value;
+        }
+        double alpha = qr[k][k];
+        double beta = -Math.copySign(Math.hypot(alpha, scale * Math.sqrt(sum)), alpha);
+        tau[k] = (beta - alpha) / beta;
+        double factor = 1 / (alpha - beta);
+        for (int i = k + 1; i < m; i++) {
+            qr[i][k] *= factor;
+        }
+        qr[k][k] = beta;
+    }
+
+    /**
+     * Form the upper triangular T of the block reflector of the p
+     * reflections starting at column kb, so that H(kb) ... H(kb + p - 1) =
+     * I - V T V^T, as LAPACK's dlarft does.
+     */
+    private void formT(int kb, int p, double[][] t) {
+        double[] z = new double[p];
+        for (int c = 0; c < p; c++) {
+            int k = kb + c;
+            double tk = tau[k];
+            for (int s = 0; s < c; s++) {
+                t[s][c] = 0;
+            }
+            t[c][c] = tk;
+            if (tk == 0 || c == 0) {
+                continue;
+            }
+            // z = V^T v for the earlier reflections of the panel; v is 1 at row k
+            for (int s = 0; s < c; s++) {
+                z[s] = qr[k][kb + s];
+            }
+            for (int i = k + 1; i < m; i++) {
+                double v = qr[i][k];
+                for (int s = 0; s < c; s++) {
+                    z[s] += qr[i][kb + s] * v;
+                }
+            }
+            // T[0, c) column c = -tau T z, T being upper triangular
+            for (int s = 0; s < c; s++) {
+                double sum = 0;
+                for (int q = s; q < c; q++) {
+                    sum += t[s][q] * z[q];
+                }
+                t[s][c] = -tk * sum;
+            }
+        }
+    }
+
+    // y = y + factor * x over [from, to)
+    private static void axpy(double[] y, double[] x, double factor, int from, int to) {
+        for (int j = from; j < to; j++) {
+            y[j] += factor * x[j];
+        }
+    }
+
+}
@@ -0,0 +1,198 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A thread-safe least-recently-used cache of computed values, bounded both by
+ * the number of entries and by their estimated size in bytes.
+ * <p>
+ * get() is stampede-free: when several threads ask for the same missing key
+ * at once, the first one computes the value and the others wait for it,
+ * instead of all computing it. The computation runs outside the cache's lock,
+ * so lookups of other keys are never held up by it. A computation that
+ * throws is not cached; every thread that waited for it gets the exception.
+ * @param <K> The key type
+ * @param <V> The value type
+ */
+public class ResultCache<K, V> {
+
+    /**
+     * Estimates the bytes an entry keeps alive.
+     */
+    public interface Weigher<K, V> {
+        long weigh(K key, V value);
+    }
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Weigher<K, V> weigher;
+
+    // In access order, guarded by this; a pending computation has no weight yet
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a cache.
+     * @param maxEntries The largest number of entries
+     * @param maxBytes The largest total weight of the entries
+     * @param weigher Estimates the weight of an entry
+     */
+    public ResultCache(int maxEntries, long maxBytes, Weigher<K, V> weigher) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache bounds must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Return the cached value for a key, computing it if it is missing.
+     * @param key The key
+     * @param loader Computes the value from the key
+     * @return Returns the value
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Entry<V> entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry<>();
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+
+        if (!owner) {
+            hits.incrementAndGet();
+            return entry.await();
+        }
+        misses.incrementAndGet();
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                entries.remove(key, entry);
+            }
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+        long weight = weigher.weigh(key, value);
+        synchronized (this) {
+            // The entry may have been cleared while it was computed
+            if (entries.get(key) == entry) {
+                entry.weight = weight;
+                bytes += weight;
+                evict(entry);
+            }
+        }
+        entry.future.complete(value);
+        return value;
+    }
+
+    /**
+     * Return the cached value for a key without computing it.
+     * @param key The key
+     * @return Returns the value, or null if it is missing or still being computed
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null || !entry.future.isDone() || entry.future.isCompletedExceptionally()) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.future.join();
+    }
+
+    /**
+     * Remove every entry. Computations in progress still finish, but their
+     * values are not cached.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    // Statistics
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResultCache[entries=%d/%d, bytes=%d/%d, hits=%d, misses=%d, evictions=%d]",
+                size(), maxEntries, getBytes(), maxBytes, getHits(), getMisses(), getEvictions());
+    }
+
+    // Drops least recently used finished entries until the bounds hold again, keeping newest
+    private void evict(Entry<V> newest) {
+        Iterator<Entry<V>> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            Entry<V> entry = iterator.next();
+            if (entry == newest || !entry.future.isDone()) {
+                continue;
+            }
+            iterator.remove();
+            bytes -= entry.weight;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private long weight;
+
+        private V await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+
+}
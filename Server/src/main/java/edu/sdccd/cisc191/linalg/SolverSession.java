@@ -0,0 +1,411 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.function.IntConsumer;
+
+import edu.sdccd.cisc191.matrix.*;
+
+/**
+ * Solves Ax = b again and again while A and b are edited a little at a time,
+ * as in a spreadsheet, without redoing the O(n^3) elimination after every
+ * edit. The session keeps the LU factorization of A as it was when last
+ * factored, A0, and applies each later change to A as a rank-one update
+ * A_k = A_{k-1} + u v^T with the Sherman-Morrison formula:
+ * <pre>
+ *     A_k^-1 y = A_{k-1}^-1 y - z (v . A_{k-1}^-1 y) / (1 + v . z),   z = A_{k-1}^-1 u
+ * </pre>
+ * Changing one element, one row or one column of A is one such update and
+ * costs O(n^2), once, to find z; a solve then costs O(n^2 + kn) for k updates
+ * since A0 was factored. Changes to b cost nothing.
+ * <p>
+ * The session refactors A from scratch, at the next solve(), when
+ * <ul>
+ *     <li>more than maxUpdates updates have piled up,</li>
+ *     <li>an update makes 1 + v . z almost zero, which means the updated
+ *     matrix is close to singular,</li>
+ *     <li>the residual b - Ax of a solve through updates is larger than the
+ *     tolerance, relative to |A||x| + |b|, so that rounding errors can never
+ *     build up unnoticed, or</li>
+ *     <li>A0 was singular, since then there is no inverse to update.</li>
+ * </ul>
+ * A session is not thread-safe.
+ */
+public class SolverSession {
+
+    public static final int DEFAULT_MAX_UPDATES = 32;
+    public static final double DEFAULT_TOLERANCE = 1e-10;
+
+    // Smallest |1 + v . z|, relative to |v . z|, of an update that is kept
+    private static final double SINGULAR_UPDATE = 1e-8;
+
+    private final int n;
+    private final int r;
+    private final double[] a;
+    private final double[] b;
+
+    private LUDecomposition base;
+    private boolean stale = true;
+
+    // The updates since base was factored; a unit v is kept as its index only
+    private int updates;
+    private double[][] z;
+    private double[][] v;
+    private int[] vIndex;
+    private double[] inverseDenominator;
+
+    private int maxUpdates;
+    private double tolerance = DEFAULT_TOLERANCE;
+    private int refactorCount;
+
+    /**
+     * Start a session. Both matrices are copied, so the session is only
+     * changed through its own methods.
+     * @param A The square matrix A
+     * @param b The matrix b, with one column per right-hand side
+     * @throws IllegalArgumentException When A is not square or the shapes are not compatible
+     */
+    public SolverSession(Matrix A, Matrix b) {
+        if (A.getNumRows() != A.getNumCols()) {
+            throw new IllegalArgumentException("Matrix must be square");
+        }
+        if (A.getNumRows() != b.getNumRows()) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        this.n = A.getNumRows();
+        this.r = b.getNumCols();
+        this.a = A.toDoubleArray();
+        this.b = b.toDoubleArray();
+        setMaxUpdates(DEFAULT_MAX_UPDATES);
+    }
+
+    /**
+     * Set one element of A.
+     * @param value The new value
+     * @param row The row
+     * @param col The column
+     */
+    public void set(double value, int row, int col) {
+        checkIndex(row, n);
+        checkIndex(col, n);
+        double delta = value - a[row * n + col];
+        if (delta == 0) {
+            return;
+        }
+        a[row * n + col] = value;
+        if (canUpdate()) {
+            // u = delta e_row, v = e_col
+            double[] u = new double[n];
+            u[row] = delta;
+            addUpdate(u, null, col);
+        }
+    }
+
+    /**
+     * Replace one row of A.
+     * @param row The row
+     * @param values The new row, of length n
+     */
+    public void setRow(int row, double[] values) {
+        checkIndex(row, n);
+        checkLength(values);
+        double[] delta = new double[n];
+        boolean changed = false;
+        for (int j = 0; j < n; j++) {
+            delta[j] = values[j] - a[row * n + j];
+            changed |= delta[j] != 0;
+        }
+        if (!changed) {
+            return;
+        }
+        System.arraycopy(values, 0, a, row * n, n);
+        if (canUpdate()) {
+            // u = e_row, v = delta
+            double[] u = new double[n];
+            u[row] = 1;
+            addUpdate(u, delta, -1);
+        }
+    }
+
+    /**
+     * Replace one column of A.
+     * @param col The column
+     * @param values The new column, of length n
+     */
+    public void setColumn(int col, double[] values) {
+        checkIndex(col, n);
+        checkLength(values);
+        double[] delta = new double[n];
+        boolean changed = false;
+        for (int i = 0; i < n; i++) {
+            delta[i] = values[i] - a[i * n + col];
+            changed |= delta[i] != 0;
+            a[i * n + col] = values[i];
+        }
+        if (changed && canUpdate()) {
+            // u = delta, v = e_col
+            addUpdate(delta, null, col);
+        }
+    }
+
+    /**
+     * Set one element of b.
+     * @param value The new value
+     * @param row The row
+     * @param col The column, 0 for a single right-hand side
+     */
+    public void setRightHandSide(double value, int row, int col) {
+        checkIndex(row, n);
+        checkIndex(col, r);
+        b[row * r + col] = value;
+    }
+
+    /**
+     * Bring the session up to date with a new A and b, applying only what
+     * changed: a row of A with one changed element becomes an element
+     * update, a row with more becomes a row update.
+     * @param A The new A, of the session's shape
+     * @param b The new b, of the session's shape
+     * @return Returns the number of rows of A that changed
+     * @throws IllegalArgumentException When the shapes differ from the session's
+     */
+    public int update(Matrix A, Matrix b) {
+        if (A.getNumRows() != n || A.getNumCols() != n || b.getNumRows() != n || b.getNumCols() != r) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        double[] newA = A.toDoubleArray();
+        int changedRows = 0;
+        for (int i = 0; i < n; i++) {
+            int changed = 0;
+            int col = -1;
+            for (int j = 0; j < n; j++) {
+                if (newA[i * n + j] != a[i * n + j]) {
+                    changed++;
+                    col = j;
+                }
+            }
+            if (changed == 1) {
+                set(newA[i * n + col], i, col);
+            } else if (changed > 1) {
+                double[] row = new double[n];
+                System.arraycopy(newA, i * n, row, 0, n);
+                setRow(i, row);
+            }
+            if (changed > 0) {
+                changedRows++;
+            }
+        }
+        System.arraycopy(b.toDoubleArray(), 0, this.b, 0, n * r);
+        return changedRows;
+    }
+
+    /**
+     * Solve Ax = b for the current A and b.
+     * @return Returns the solution x
+     * @throws LinSystem.NoSolutionException When there is no solution
+     * @throws LinSystem.InfiniteSolutionsException When there are infinite solutions
+     */
+    public Matrix solve() throws
+            LinSystem.NoSolutionException,
+            LinSystem.InfiniteSolutionsException {
+
+        return solve(null);
+    }
+
+    /**
+     * Solve Ax = b for the current A and b, reporting the progress of any
+     * factorization the solve needs.
+     * @param progress Passed on to LUDecomposition, or null
+     * @return Returns the solution x
+     * @throws LinSystem.NoSolutionException When there is no solution
+     * @throws LinSystem.InfiniteSolutionsException When there are infinite solutions
+     * @see LUDecomposition#LUDecomposition(Matrix, IntConsumer)
+     */
+    public Matrix solve(IntConsumer progress) throws
+            LinSystem.NoSolutionException,
+            LinSystem.InfiniteSolutionsException {
+
+        if (stale) {
+            refactor(progress);
+        }
+        if (base.isSingular()) {
+            // Let the factorization tell no solution from infinite solutions
+            return base.solve(getRightHandSide());
+        }
+        double[] x = applyInverse();
+        if (updates > 0 && !accurate(x)) {
+            refactor(progress);
+            x = applyInverse();
+        }
+        return Matrix.wrap(x, n, r);
+    }
+
+    /**
+     * Factor the current A from scratch, dropping every update.
+     */
+    public void refactor() {
+        refactor(null);
+    }
+
+    private void refactor(IntConsumer progress) {
+        base = new LUDecomposition(Matrix.wrap(a, n, n), progress);
+        updates = 0;
+        stale = base.isSingular();
+        refactorCount++;
+    }
+
+    /**
+     * @return Returns a copy of the current A
+     */
+    public Matrix getMatrix() {
+        return Matrix.wrap(a.clone(), n, n);
+    }
+
+    /**
+     * @return Returns a copy of the current b
+     */
+    public Matrix getRightHandSide() {
+        return Matrix.wrap(b.clone(), n, r);
+    }
+
+    /**
+     * @return Returns the number of updates applied since A was last factored
+     */
+    public int getUpdateCount() {
+        return updates;
+    }
+
+    /**
+     * @return Returns the number of times A was factored
+     */
+    public int getRefactorCount() {
+        return refactorCount;
+    }
+
+    public int getMaxUpdates() {
+        return maxUpdates;
+    }
+
+    /**
+     * Set the number of updates after which A is factored again.
+     * @param maxUpdates The number, 0 to refactor after every change
+     */
+    public void setMaxUpdates(int maxUpdates) {
+        if (maxUpdates < 0) {
+            throw new IllegalArgumentException("Number of updates must not be negative");
+        }
+        this.maxUpdates = maxUpdates;
+        z = new double[maxUpdates][];
+        v = new double[maxUpdates][];
+        vIndex = new int[maxUpdates];
+        inverseDenominator = new double[maxUpdates];
+        stale = true;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Set the largest residual accepted from a solve through updates, relative
+     * to |A||x| + |b| in the infinity norm.
+     * @param tolerance The relative tolerance
+     */
+    public void setTolerance(double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        this.tolerance = tolerance;
+    }
+
+    // Helpers
+    private boolean canUpdate() {
+        if (!stale && updates == maxUpdates) {
+            stale = true;
+        }
+        return !stale;
+    }
+
+    // Records A += u v^T, where v is e_unit when it is null
+    private void addUpdate(double[] u, double[] dense, int unit) {
+        applyInverse(u);
+        double vz = dense == null ? u[unit] : dot(dense, u);
+        double denominator = 1 + vz;
+        if (Math.abs(denominator) <= SINGULAR_UPDATE * Math.max(1, Math.abs(vz))) {
+            stale = true;
+            return;
+        }
+        z[updates] = u;
+        v[updates] = dense;
+        vIndex[updates] = unit;
+        inverseDenominator[updates] = 1 / denominator;
+        updates++;
+    }
+
+    // y = A_k^-1 y, in place
+    private void applyInverse(double[] y) {
+        base.solveInPlace(y);
+        for (int k = 0; k < updates; k++) {
+            double s = (v[k] == null ? y[vIndex[k]] : dot(v[k], y)) * inverseDenominator[k];
+            if (s != 0) {
+                double[] zk = z[k];
+                for (int i = 0; i < n; i++) {
+                    y[i] -= s * zk[i];
+                }
+            }
+        }
+    }
+
+    // x = A_k^-1 b, one column at a time
+    private double[] applyInverse() {
+        double[] x = new double[n * r];
+        double[] column = new double[n];
+        for (int c = 0; c < r; c++) {
+            for (int i = 0; i < n; i++) {
+                column[i] = b[i * r + c];
+            }
+            applyInverse(column);
+            for (int i = 0; i < n; i++) {
+                x[i * r + c] = column[i];
+            }
+        }
+        return x;
+    }
+
+    // Checks |b - Ax| <= tolerance (|A||x| + |b|) in the infinity norm
+    private boolean accurate(double[] x) {
+        double normA = 0;
+        for (int i = 0; i < n; i++) {
+            normA = Math.max(normA, Reductions.sumAbs(a, i * n, 1, n));
+        }
+        double residual = 0;
+        for (int c = 0; c < r; c++) {
+            for (int i = 0; i < n; i++) {
+                double sum = b[i * r + c] - Reductions.dot(a, i * n, 1, x, c, r, n);
+                residual = Math.max(residual, Math.abs(sum));
+            }
+        }
+        double normX = Reductions.maxAbs(x, 0, 1, n * r);
+        double normB = Reductions.maxAbs(b, 0, 1, n * r);
+        return residual <= tolerance * (normA * normX + normB);
+    }
+
+    private static double dot(double[] x, double[] y) {
+        double sum = 0;
+        for (int i = 0; i < x.length; i++) {
+            sum += x[i] * y[i];
+        }
+        return sum;
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+    }
+
+    private void checkLength(double[] values) {
+        if (values.length != n) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+    }
+
+}
@@ -1,13 +1,15 @@
 package edu.sdccd.cisc191.matrix;
 
 /**
- * DataView is an abstract class that holds a reference to a Double[] data array.
+ * DataView is an abstract class that holds a reference to a double[] data array.
  * How to interpret the 1D flattened data is up to the subclass. The subclass should
  * implement the relevant methods to access the data in the desired way.
+ * The data is kept as primitives so that every element costs 8 bytes, instead of
+ * a pointer plus a boxed Double on the heap.
  */
 public abstract class DataView {
 
-    protected Double[] data;
+    protected double[] data;
 
     public abstract Integer[] getShape();
 
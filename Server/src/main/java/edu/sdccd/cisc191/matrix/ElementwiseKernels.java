@@ -0,0 +1,55 @@
+package edu.sdccd.cisc191.matrix;
+
+/**
+ * Bulk loops behind the element-wise operations of Matrix. Each call updates
+ * one run of elements, dst[dstPos + i * dstStride] op= src[srcPos + i * srcStride]
+ * (or op= scalar) for i in [0, length), so the operation is picked once per run
+ * rather than once per element.
+ * <p>
+ * The scalar implementation is always available. When the build includes the
+ * Vector API backend (the "vector" profile) and the JVM was started with
+ * --add-modules jdk.incubator.vector, that backend is used for unit-stride
+ * runs instead. Set -Dedu.sdccd.cisc191.matrix.vector=false to turn it off.
+ */
+abstract class ElementwiseKernels {
+
+    enum Op { ADD, SUBTRACT, MULTIPLY, DIVIDE }
+
+    static final ElementwiseKernels INSTANCE = load();
+
+    abstract void apply(Op op, double[] dst, int dstPos, int dstStride,
+                        double[] src, int srcPos, int srcStride, int length);
+
+    abstract void apply(Op op, double[] dst, int dstPos, int dstStride,
+                        double scalar, int length);
+
+    /**
+     * Applies op to a single pair of elements, for the rare fancy-indexed
+     * layouts that cannot be described by a stride.
+     */
+    static double apply(Op op, double left, double right) {
+        switch (op) {
+            case ADD:
+                return left + right;
+            case SUBTRACT:
+                return left - right;
+            case MULTIPLY:
+                return left * right;
+            default:
+                return left / right;
+        }
+    }
+
+    private static ElementwiseKernels load() {
+        if (Boolean.parseBoolean(System.getProperty("edu.sdccd.cisc191.matrix.vector", "true"))) {
+            try {
+                return (ElementwiseKernels) Class.forName("edu.sdccd.cisc191.matrix.VectorKernels")
+                        .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Not built with the vector profile, or the incubator module is missing
+            }
+        }
+        return new ScalarKernels();
+    }
+
+}
@@ -0,0 +1,252 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.util.Arrays;
+
+/**
+ * A lazy chain of element-wise operations over matrices and scalars. Building
+ * an expression only records the operations as a tree; nothing is computed
+ * until evaluate() or into() is called, which then makes a single pass over
+ * the data without any intermediate matrices:
+ * <pre>
+ *     Expression.of(A).multiply(2.0).add(B).divide(C).into(A);
+ * </pre>
+ * reads A, B and C once and writes A once, where the same three calls on
+ * Matrix would read and write A three times.
+ * <p>
+ * The pass walks the rows in chunks of CHUNK elements. Every node of the tree
+ * fills a small buffer for the current chunk, so the buffers stay in L1 and
+ * each operation runs as a tight loop over its chunk.
+ */
+public class Expression {
+
+    // Elements per chunk; a few buffers of this size fit in L1
+    static final int CHUNK = 512;
+
+    private final Node root;
+    private final int numRows;
+    private final int numCols;
+
+    private Expression(Node root, int numRows, int numCols) {
+        this.root = root;
+        this.numRows = numRows;
+        this.numCols = numCols;
+    }
+
+    /**
+     * Start an expression from a matrix. The matrix is read when the
+     * expression is evaluated, not when it is built.
+     * @param array The matrix
+     * @return Returns an expression for the matrix
+     */
+    public static Expression of(Array array) {
+        Matrix matrix = toMatrix(array);
+        return new Expression(new Leaf(matrix), matrix.getNumRows(), matrix.getNumCols());
+    }
+
+    // Element-wise operations
+    public Expression add(Expression other) {
+        return combine(ElementwiseKernels.Op.ADD, other);
+    }
+
+    public Expression add(Array other) {
+        return add(of(other));
+    }
+
+    public Expression add(double scalar) {
+        return combine(ElementwiseKernels.Op.ADD, scalar);
+    }
+
+    public Expression subtract(Expression other) {
+        return combine(ElementwiseKernels.Op.SUBTRACT, other);
+    }
+
+    public Expression subtract(Array other) {
+        return subtract(of(other));
+    }
+
+    public Expression subtract(double scalar) {
+        return combine(ElementwiseKernels.Op.SUBTRACT, scalar);
+    }
+
+    public Expression multiply(Expression other) {
+        return combine(ElementwiseKernels.Op.MULTIPLY, other);
+    }
+
+    public Expression multiply(Array other) {
+        return multiply(of(other));
+    }
+
+    public Expression multiply(double scalar) {
+        return combine(ElementwiseKernels.Op.MULTIPLY, scalar);
+    }
+
+    public Expression divide(Expression other) {
+        return combine(ElementwiseKernels.Op.DIVIDE, other);
+    }
+
+    public Expression divide(Array other) {
+        return divide(of(other));
+    }
+
+    public Expression divide(double scalar) {
+        return combine(ElementwiseKernels.Op.DIVIDE, scalar);
+    }
+
+    /**
+     * Evaluate the expression into a new matrix.
+     * @return Returns a new Matrix holding the result
+     */
+    public Matrix evaluate() {
+        Matrix result = Matrix.newZeros(numRows, numCols);
+        into(result);
+        return result;
+    }
+
+    /**
+     * Evaluate the expression into an existing matrix, which may also appear
+     * in the expression itself: each chunk is read completely before it is
+     * written.
+     * @param target The matrix to write the result to
+     */
+    public void into(Array target) {
+        Matrix matrix = toMatrix(target);
+        if (matrix.getNumRows() != numRows || matrix.getNumCols() != numCols) {
+            throw new IllegalArgumentException("Expression into() incompatible with target array");
+        }
+        Buffers buffers = new Buffers(root.depth());
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numCols; j += CHUNK) {
+                int length = Math.min(CHUNK, numCols - j);
+                double[] out = buffers.get(0);
+                root.evaluate(i, j, length, out, buffers, 1);
+                matrix.writeRow(i, j, length, out);
+            }
+        }
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    // Helpers
+    private Expression combine(ElementwiseKernels.Op op, Expression other) {
+        if (other.numRows != numRows || other.numCols != numCols) {
+            throw new IllegalArgumentException("Expression shapes are not compatible");
+        }
+        return new Expression(new Binary(op, root, other.root), numRows, numCols);
+    }
+
+    private Expression combine(ElementwiseKernels.Op op, double scalar) {
+        return new Expression(new Binary(op, root, new Scalar(scalar)), numRows, numCols);
+    }
+
+    private static Matrix toMatrix(Array array) {
+        if (!(array instanceof Matrix)) {
+            throw new IllegalArgumentException("Expression only supports Matrix arrays");
+        }
+        return (Matrix) array;
+    }
+
+    /**
+     * One chunk buffer per level of the tree. A node at some level writes its
+     * result to its own buffer and uses the next level's buffers for its
+     * right-hand operand, so a tree of depth d needs d buffers in total.
+     */
+    private static final class Buffers {
+
+        private final double[][] buffers;
+
+        private Buffers(int depth) {
+            buffers = new double[depth + 1][CHUNK];
+        }
+
+        private double[] get(int level) {
+            return buffers[level];
+        }
+    }
+
+    private abstract static class Node {
+
+        /**
+         * Write elements [col, col + length) of the given row to out, using
+         * buffers from level onwards for temporaries.
+         */
+        abstract void evaluate(int row, int col, int length, double[] out, Buffers buffers, int level);
+
+        abstract int depth();
+    }
+
+    private static final class Leaf extends Node {
+
+        private final Matrix matrix;
+
+        private Leaf(Matrix matrix) {
+            this.matrix = matrix;
+        }
+
+        @Override
+        void evaluate(int row, int col, int length, double[] out, Buffers buffers, int level) {
+            matrix.readRow(row, col, length, out);
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+    }
+
+    private static final class Scalar extends Node {
+
+        private final double value;
+
+        private Scalar(double value) {
+            this.value = value;
+        }
+
+        @Override
+        void evaluate(int row, int col, int length, double[] out, Buffers buffers, int level) {
+            Arrays.fill(out, 0, length, value);
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+    }
+
+    private static final class Binary extends Node {
+
+        private final ElementwiseKernels.Op op;
+        private final Node left;
+        private final Node right;
+
+        private Binary(ElementwiseKernels.Op op, Node left, Node right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void evaluate(int row, int col, int length, double[] out, Buffers buffers, int level) {
+            left.evaluate(row, col, length, out, buffers, level);
+            if (right instanceof Scalar) {
+                // Broadcast without filling a buffer
+                ElementwiseKernels.INSTANCE.apply(op, out, 0, 1, ((Scalar) right).value, length);
+                return;
+            }
+            double[] operand = buffers.get(level);
+            right.evaluate(row, col, length, operand, buffers, level + 1);
+            ElementwiseKernels.INSTANCE.apply(op, out, 0, 1, operand, 0, 1, length);
+        }
+
+        @Override
+        int depth() {
+            return Math.max(left.depth(), right.depth() + 1);
+        }
+    }
+
+}
@@ -0,0 +1,342 @@
+package edu.sdccd.cisc191.matrix;
+
+/**
+ * A dense matrix of 32-bit floats. It takes half the memory of a Matrix of
+ * the same shape, for values that do not need double precision;
+ * MixedPrecisionSolver keeps its single precision factors in one. Elements
+ * are read and written as doubles, rounded to the nearest float on the way
+ * in. Matrix.toFloatArray() gives the same rounding as a bare float[], for
+ * code that loops over the elements itself.
+ * <p>
+ * Views are selected as in Matrix: element (row, col) is element
+ * offset + row * rowStride + col * colStride of the float[], or taken from a
+ * row or column map after fancy indexing. FloatMatrix does not use
+ * DataView.data. Element-wise operations widen one row at a time to double,
+ * apply the same kernels as Matrix, and round the result back.
+ */
+public final class FloatMatrix extends DataView implements Array {
+
+    private final float[] values;
+    private final int numRows;
+    private final int numCols;
+    private final int offset;
+    private final int rowStride;
+    private final int colStride;
+    private final int[] rowMap;
+    private final int[] colMap;
+
+    private FloatMatrix(float[] values, int numRows, int numCols, int offset,
+                        int rowStride, int colStride, int[] rowMap, int[] colMap) {
+        this.values = values;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+        this.rowMap = rowMap;
+        this.colMap = colMap;
+    }
+
+    /**
+     * Round a matrix to single precision.
+     * @param matrix The matrix to round, which may be a view
+     * @return Returns a new FloatMatrix of the same shape
+     */
+    public static FloatMatrix of(Matrix matrix) {
+        return wrap(matrix.toFloatArray(), matrix.getNumRows(), matrix.getNumCols());
+    }
+
+    /**
+     * Wrap a row-major 1D array as a FloatMatrix without copying it.
+     * @param data The row-major data, of length numRows * numCols
+     * @param numRows The number of rows
+     * @param numCols The number of columns
+     * @return Returns a FloatMatrix backed by data
+     */
+    public static FloatMatrix wrap(float[] data, int numRows, int numCols) {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+        if (data.length != numRows * numCols) {
+            throw new IllegalArgumentException("Data length does not match the matrix shape");
+        }
+        return new FloatMatrix(data, numRows, numCols, 0, numCols, 1, null, null);
+    }
+
+    public static FloatMatrix newZeros(int numRows, int numCols) {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+        return wrap(new float[numRows * numCols], numRows, numCols);
+    }
+
+    /**
+     * Widen the elements to a new double precision Matrix. Widening is exact.
+     * @return Returns a new contiguous Matrix
+     */
+    public Matrix toMatrix() {
+        double[] result = new double[numRows * numCols];
+        double[] row = new double[numCols];
+        for (int i = 0; i < numRows; i++) {
+            readRow(i, 0, numCols, row);
+            System.arraycopy(row, 0, result, i * numCols, numCols);
+        }
+        return Matrix.wrap(result, numRows, numCols);
+    }
+
+    /**
+     * @return Returns a copy of the elements, row-major
+     */
+    public float[] toFloatArray() {
+        float[] result = new float[numRows * numCols];
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numCols; j++) {
+                result[i * numCols + j] = values[index(i, j)];
+            }
+        }
+        return result;
+    }
+
+    // Implementation of methods in Array
+    @SafeVarargs
+    @Override
+    public final <T> FloatMatrix select(T... args) {
+
+        // Check args length
+        if (args.length != 2) {
+            throw new IllegalArgumentException("FloatMatrix select() requires 2 arguments");
+        }
+
+        Axis rows = selectAxis(numRows, rowStride, rowMap, args[0]);
+        Axis cols = selectAxis(numCols, colStride, colMap, args[1]);
+        return new FloatMatrix(values, rows.length, cols.length,
+                offset + rows.offset + cols.offset, rows.stride, cols.stride, rows.map, cols.map);
+    }
+
+    @Override
+    public FloatMatrix copy() {
+        return wrap(toFloatArray(), numRows, numCols);
+    }
+
+    @Override
+    public boolean isCompatible(Array other) {
+        if (other instanceof FloatMatrix) {
+            FloatMatrix otherMatrix = (FloatMatrix) other;
+            return numRows == otherMatrix.numRows && numCols == otherMatrix.numCols;
+        }
+        if (other instanceof Matrix) {
+            Matrix otherMatrix = (Matrix) other;
+            return numRows == otherMatrix.getNumRows() && numCols == otherMatrix.getNumCols();
+        }
+        return false;
+    }
+
+    @Override
+    public void add(Array other) {
+        apply(ElementwiseKernels.Op.ADD, other, "add");
+    }
+
+    @Override
+    public void add(Double scalar) {
+        apply(ElementwiseKernels.Op.ADD, scalar);
+    }
+
+    @Override
+    public void subtract(Array other) {
+        apply(ElementwiseKernels.Op.SUBTRACT, other, "subtract");
+    }
+
+    @Override
+    public void subtract(Double scalar) {
+        apply(ElementwiseKernels.Op.SUBTRACT, scalar);
+    }
+
+    @Override
+    public void multiply(Array other) {
+        apply(ElementwiseKernels.Op.MULTIPLY, other, "multiply");
+    }
+
+    @Override
+    public void multiply(Double scalar) {
+        apply(ElementwiseKernels.Op.MULTIPLY, scalar);
+    }
+
+    @Override
+    public void divide(Array other) {
+        apply(ElementwiseKernels.Op.DIVIDE, other, "divide");
+    }
+
+    @Override
+    public void divide(Double scalar) {
+        apply(ElementwiseKernels.Op.DIVIDE, scalar);
+    }
+
+    private void apply(ElementwiseKernels.Op op, Array other, String name) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("FloatMatrix " + name + "() incompatible with other array");
+        }
+        double[] row = new double[numCols];
+        double[] otherRow = new double[numCols];
+        for (int i = 0; i < numRows; i++) {
+            readRow(i, 0, numCols, row);
+            if (other instanceof Matrix) {
+                ((Matrix) other).readRow(i, 0, numCols, otherRow);
+            } else {
+                ((FloatMatrix) other).readRow(i, 0, numCols, otherRow);
+            }
+            ElementwiseKernels.INSTANCE.apply(op, row, 0, 1, otherRow, 0, 1, numCols);
+            writeRow(i, row);
+        }
+    }
+
+    private void apply(ElementwiseKernels.Op op, double scalar) {
+        double[] row = new double[numCols];
+        for (int i = 0; i < numRows; i++) {
+            readRow(i, 0, numCols, row);
+            ElementwiseKernels.INSTANCE.apply(op, row, 0, 1, scalar, numCols);
+            writeRow(i, row);
+        }
+    }
+
+    // Inherited from DataView
+    @Override
+    public Double get(Integer... args) {
+        checkIndex(args);
+        return (double) values[index(args[0], args[1])];
+    }
+
+    @Override
+    public void set(Double value, Integer... args) {
+        checkIndex(args);
+        values[index(args[0], args[1])] = value.floatValue();
+    }
+
+    public double get(int row, int col) {
+        checkIndex(row, col);
+        return values[index(row, col)];
+    }
+
+    /**
+     * @param value The new value, rounded to the nearest float
+     * @param row The row index
+     * @param col The column index
+     */
+    public void set(double value, int row, int col) {
+        checkIndex(row, col);
+        values[index(row, col)] = (float) value;
+    }
+
+    @Override
+    public Integer[] getShape() {
+        return new Integer[] {numRows, numCols};
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < numRows; row++) {
+            sb.append("[");
+            for (int col = 0; col < numCols; col++) {
+                sb.append(values[index(row, col)]);
+                if (col < numCols - 1) {
+                    sb.append(", ");
+                }
+            }
+            sb.append("]");
+            if (row < numRows - 1) {
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Widen elements [col, col + length) of a row into dest[0, length).
+     */
+    void readRow(int row, int col, int length, double[] dest) {
+        for (int j = 0; j < length; j++) {
+            dest[j] = values[index(row, col + j)];
+        }
+    }
+
+    // Round a whole row back from src
+    private void writeRow(int row, double[] src) {
+        for (int j = 0; j < numCols; j++) {
+            values[index(row, j)] = (float) src[j];
+        }
+    }
+
+    // Helpers
+    private int index(int row, int col) {
+        return offset + (rowMap == null ? row * rowStride : rowMap[row])
+                + (colMap == null ? col * colStride : colMap[col]);
+    }
+
+    private void checkIndex(int row, int col) {
+        if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+    }
+
+    /**
+     * One axis of a selection: either length indices offset, offset + stride,
+     * ..., or, for fancy indexing, the offset of every index in map.
+     */
+    private static final class Axis {
+
+        private final int offset;
+        private final int length;
+        private final int stride;
+        private final int[] map;
+
+        private Axis(int offset, int length, int stride, int[] map) {
+            this.offset = offset;
+            this.length = length;
+            this.stride = stride;
+            this.map = map;
+        }
+    }
+
+    private static Axis selectAxis(int length, int stride, int[] map, Object arg) {
+        if (arg instanceof Integer) {
+            int index = checkBounds((Integer) arg, length);
+            return new Axis(map == null ? index * stride : map[index], 1, stride, null);
+        } else if (arg instanceof Integer[]) {
+            Integer[] indices = (Integer[]) arg;
+            int[] newMap = new int[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                int index = checkBounds(indices[i], length);
+                newMap[i] = map == null ? index * stride : map[index];
+            }
+            return new Axis(0, indices.length, stride, newMap);
+        } else if (arg instanceof Slice) {
+            Slice slice = (Slice) arg;
+            int newLength = slice.length(length);
+            if (map != null) {
+                int[] newMap = new int[newLength];
+                for (int i = 0; i < newLength; i++) {
+                    newMap[i] = map[slice.index(i)];
+                }
+                return new Axis(0, newLength, stride, newMap);
+            }
+            return new Axis(slice.getStart() * stride, newLength, stride * slice.getStep(), null);
+        }
+        throw new IllegalArgumentException("FloatMatrix select() arguments must be Integer, Integer[], or Slice");
+    }
+
+    private static int checkBounds(Integer index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,525 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * A matrix whose elements live in a file that is memory-mapped rather than
+ * read into the Java heap. Opening one only sets up the mappings, so it is
+ * instant whatever the size, and the heap footprint stays near zero; the OS
+ * pages the data in and out as it is touched.
+ * <p>
+ * The file holds the elements as row-major little-endian doubles, starting
+ * headerBytes into the file. A single mapping cannot exceed 2 GB, so the file
+ * is mapped as consecutive segments of 2^SEGMENT_SHIFT doubles (1 GB), and an
+ * element index is split into a segment and a position within it. (Tests map
+ * smaller segments, to cross their boundaries without gigabyte files.) Element
+ * (row, col) is element offset + row * rowStride + col * colStride of the
+ * file, using long arithmetic so that matrices may exceed 2^31 elements.
+ * <p>
+ * MappedMatrix does not use DataView.data. Element-wise operations stream
+ * through the file one row at a time, in row order.
+ */
+public class MappedMatrix extends DataView implements Array {
+
+    static final int SEGMENT_SHIFT = 27;
+
+    // The longest array most JVMs will allocate
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private final DoubleBuffer[] segments;
+    private final MappedByteBuffer[] mappings;
+    private final int segmentShift;
+    private final long segmentMask;
+    private final boolean writable;
+
+    private final int numRows;
+    private final int numCols;
+    private final long offset;
+    private final long rowStride;
+    private final long colStride;
+    private final long[] rowMap;
+    private final long[] colMap;
+
+    private MappedMatrix(DoubleBuffer[] segments, MappedByteBuffer[] mappings, int segmentShift, boolean writable,
+                         int numRows, int numCols, long offset, long rowStride, long colStride,
+                         long[] rowMap, long[] colMap) {
+        this.segments = segments;
+        this.mappings = mappings;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+        this.writable = writable;
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+        this.rowMap = rowMap;
+        this.colMap = colMap;
+    }
+
+    /**
+     * Create a new file of zeros and map it.
+     * @param file The file to create; it must not exist yet
+     * @param numRows The number of rows
+     * @param numCols The number of columns
+     * @return Returns a writable MappedMatrix backed by the file
+     * @throws IOException When the file cannot be created or mapped
+     */
+    public static MappedMatrix create(Path file, int numRows, int numCols) throws IOException {
+        return create(file, numRows, numCols, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Create a new file of zeros and map it in segments of 2^segmentShift
+     * doubles.
+     */
+    static MappedMatrix create(Path file, int numRows, int numCols, int segmentShift) throws IOException {
+        checkShape(numRows, numCols);
+        checkSegmentShift(segmentShift);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long bytes = (long) numRows * numCols * Double.BYTES;
+            // Writing the last byte extends the file without writing the rest
+            channel.write(ByteBuffer.allocate(1), bytes - 1);
+            return map(channel, FileChannel.MapMode.READ_WRITE, 0, numRows, numCols, segmentShift);
+        }
+    }
+
+    /**
+     * Map an existing file of row-major little-endian doubles.
+     * @param file The file
+     * @param headerBytes The number of bytes before the first element
+     * @param numRows The number of rows
+     * @param numCols The number of columns
+     * @param writable Whether changes to the matrix should be written to the file
+     * @return Returns a MappedMatrix backed by the file
+     * @throws IOException When the file is too short or cannot be mapped
+     */
+    public static MappedMatrix open(Path file, long headerBytes, int numRows, int numCols,
+                                    boolean writable) throws IOException {
+        return open(file, headerBytes, numRows, numCols, writable, SEGMENT_SHIFT);
+    }
+
+    /**
+     * Map an existing file in segments of 2^segmentShift doubles.
+     */
+    static MappedMatrix open(Path file, long headerBytes, int numRows, int numCols,
+                             boolean writable, int segmentShift) throws IOException {
+        checkShape(numRows, numCols);
+        checkSegmentShift(segmentShift);
+        OpenOption[] options = writable
+                ? new OpenOption[] {StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new OpenOption[] {StandardOpenOption.READ};
+        try (FileChannel channel = FileChannel.open(file, options)) {
+            long bytes = (long) numRows * numCols * Double.BYTES;
+            if (channel.size() < headerBytes + bytes) {
+                throw new IOException("File is too short for a " + numRows + "x" + numCols + " matrix");
+            }
+            FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+            return map(channel, mode, headerBytes, numRows, numCols, segmentShift);
+        }
+    }
+
+    private static MappedMatrix map(FileChannel channel, FileChannel.MapMode mode, long headerBytes,
+                                    int numRows, int numCols, int segmentShift) throws IOException {
+        long elements = (long) numRows * numCols;
+        long count = (elements + (1L << segmentShift) - 1) >>> segmentShift;
+        if (count > MAX_ARRAY_LENGTH) {
+            throw new IllegalArgumentException("Too many segments for a " + numRows + "x" + numCols + " matrix");
+        }
+        DoubleBuffer[] segments = new DoubleBuffer[(int) count];
+        MappedByteBuffer[] mappings = new MappedByteBuffer[(int) count];
+        for (int s = 0; s < count; s++) {
+            long first = (long) s << segmentShift;
+            long length = Math.min(1L << segmentShift, elements - first);
+            // The mapping stays valid after the channel is closed
+            mappings[s] = channel.map(mode, headerBytes + first * Double.BYTES, length * Double.BYTES);
+            segments[s] = mappings[s].order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+        return new MappedMatrix(segments, mappings, segmentShift, mode == FileChannel.MapMode.READ_WRITE,
+                numRows, numCols, 0, numCols, 1, null, null);
+    }
+
+    private static void checkShape(int numRows, int numCols) {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+    }
+
+    private static void checkSegmentShift(int segmentShift) {
+        if (segmentShift < 0 || segmentShift > SEGMENT_SHIFT) {
+            throw new IllegalArgumentException("Segment shift must be between 0 and " + SEGMENT_SHIFT);
+        }
+    }
+
+    // The length of a heap array holding count rows, checked in long arithmetic
+    private int arrayLength(int count) {
+        long length = (long) count * numCols;
+        if (length > MAX_ARRAY_LENGTH) {
+            throw new IllegalStateException(count + "x" + numCols
+                    + " elements do not fit in a heap array; read fewer rows at a time");
+        }
+        return (int) length;
+    }
+
+    /**
+     * Write changes back to the file. The OS does this on its own eventually;
+     * flush() forces it.
+     */
+    public void flush() {
+        if (writable) {
+            for (MappedByteBuffer mapping : mappings) {
+                mapping.force();
+            }
+        }
+    }
+
+    /**
+     * Copy the matrix, or a view of it, into a new heap Matrix.
+     * @return Returns a Matrix with the same elements
+     * @throws IllegalStateException When the matrix has too many elements for one array
+     */
+    public Matrix toMatrix() {
+        double[] result = new double[arrayLength(numRows)];
+        double[] row = new double[numCols];
+        for (int i = 0; i < numRows; i++) {
+            readRow(i, 0, numCols, row);
+            System.arraycopy(row, 0, result, i * numCols, numCols);
+        }
+        return Matrix.wrap(result, numRows, numCols);
+    }
+
+    /**
+     * Copy a block of consecutive rows into a new heap Matrix, to work on an
+     * out-of-core matrix one block at a time.
+     * @param rowStart The first row
+     * @param count The number of rows
+     * @return Returns a count x numCols Matrix
+     * @throws IllegalStateException When the rows have too many elements for one array
+     */
+    public Matrix readRows(int rowStart, int count) {
+        if (rowStart < 0 || count <= 0 || rowStart + count > numRows) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+        double[] result = new double[arrayLength(count)];
+        readRows(rowStart, count, result);
+        return Matrix.wrap(result, count, numCols);
+    }
+
+    /**
+     * Copy rows [rowStart, rowStart + count) into dest, row-major.
+     */
+    public void readRows(int rowStart, int count, double[] dest) {
+        double[] row = new double[numCols];
+        for (int i = 0; i < count; i++) {
+            readRow(rowStart + i, 0, numCols, row);
+            System.arraycopy(row, 0, dest, i * numCols, numCols);
+        }
+    }
+
+    // Implementation of methods in Array
+    @SafeVarargs
+    @Override
+    public final <T> MappedMatrix select(T... args) {
+
+        // Check args length
+        if (args.length != 2) {
+            throw new IllegalArgumentException("MappedMatrix select() requires 2 arguments");
+        }
+
+        Axis rows = selectAxis(numRows, rowStride, rowMap, args[0]);
+        Axis cols = selectAxis(numCols, colStride, colMap, args[1]);
+        return new MappedMatrix(segments, mappings, segmentShift, writable, rows.length, cols.length,
+                offset + rows.offset + cols.offset, rows.stride, cols.stride, rows.map, cols.map);
+    }
+
+    /**
+     * Copy the matrix into a new temporary file, deleted when the JVM exits.
+     */
+    @Override
+    public MappedMatrix copy() {
+        try {
+            Path file = Files.createTempFile("matrix", ".bin");
+            Files.delete(file);
+            file.toFile().deleteOnExit();
+            MappedMatrix result = create(file, numRows, numCols, segmentShift);
+            double[] row = new double[numCols];
+            for (int i = 0; i < numRows; i++) {
+                readRow(i, 0, numCols, row);
+                result.writeRow(i, 0, numCols, row);
+            }
+            return result;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean isCompatible(Array other) {
+        if (other instanceof MappedMatrix) {
+            MappedMatrix otherMatrix = (MappedMatrix) other;
+            return numRows == otherMatrix.numRows && numCols == otherMatrix.numCols;
+        }
+        if (other instanceof Matrix) {
+            Matrix otherMatrix = (Matrix) other;
+            return numRows == otherMatrix.getNumRows() && numCols == otherMatrix.getNumCols();
+        }
+        return false;
+    }
+
+    @Override
+    public void add(Array other) {
+        apply(ElementwiseKernels.Op.ADD, other, "add");
+    }
+
+    @Override
+    public void add(Double scalar) {
+        apply(ElementwiseKernels.Op.ADD, scalar);
+    }
+
+    @Override
+    public void subtract(Array other) {
+        apply(ElementwiseKernels.Op.SUBTRACT, other, "subtract");
+    }
+
+    @Override
+    public void subtract(Double scalar) {
+        apply(ElementwiseKernels.Op.SUBTRACT, scalar);
+    }
+
+    @Override
+    public void multiply(Array other) {
+        apply(ElementwiseKernels.Op.MULTIPLY, other, "multiply");
+    }
+
+    @Override
+    public void multiply(Double scalar) {
+        apply(ElementwiseKernels.Op.MULTIPLY, scalar);
+    }
+
+    @Override
+    public void divide(Array other) {
+        apply(ElementwiseKernels.Op.DIVIDE, other, "divide");
+    }
+
+    @Override
+    public void divide(Double scalar) {
+        apply(ElementwiseKernels.Op.DIVIDE, scalar);
+    }
+
+    private void apply(ElementwiseKernels.Op op, Array other, String name) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("MappedMatrix " + name + "() incompatible with other array");
+        }
+        double[] row = new double[numCols];
+        double[] otherRow = new double[numCols];
+        for (int i = 0; i < numRows; i++) {
+            readRow(i, 0, numCols, row);
+            if (other instanceof Matrix) {
+                ((Matrix) other).readRow(i, 0, numCols, otherRow);
+            } else {
+                ((MappedMatrix) other).readRow(i, 0, numCols, otherRow);
+            }
+            ElementwiseKernels.INSTANCE.apply(op, row, 0, 1, otherRow, 0, 1, numCols);
+            writeRow(i, 0, numCols, row);
+        }
+    }
+
+    private void apply(ElementwiseKernels.Op op, double scalar) {
+        double[] row = new double[numCols];
+        for (int i = 0; i < numRows; i++) {
+            readRow(i, 0, numCols, row);
+            ElementwiseKernels.INSTANCE.apply(op, row, 0, 1, scalar, numCols);
+            writeRow(i, 0, numCols, row);
+        }
+    }
+
+    // Inherited from DataView
+    @Override
+    public Double get(Integer... args) {
+        checkIndex(args);
+        return read(index(args[0], args[1]));
+    }
+
+    @Override
+    public void set(Double value, Integer... args) {
+        checkIndex(args);
+        write(index(args[0], args[1]), value);
+    }
+
+    public double get(int row, int col) {
+        checkIndex(row, col);
+        return read(index(row, col));
+    }
+
+    public void set(double value, int row, int col) {
+        checkIndex(row, col);
+        write(index(row, col), value);
+    }
+
+    @Override
+    public Integer[] getShape() {
+        return new Integer[] {numRows, numCols};
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < numRows; row++) {
+            sb.append("[");
+            for (int col = 0; col < numCols; col++) {
+                sb.append(get(row, col));
+                if (col < numCols - 1) {
+                    sb.append(", ");
+                }
+            }
+            sb.append("]");
+            if (row < numRows - 1) {
+                sb.append("\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    // Getters
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    public boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Copy elements [col, col + length) of a row into dest[0, length).
+     * Unit-stride runs that do not cross a segment boundary are copied with a
+     * single bulk get.
+     */
+    public void readRow(int row, int col, int length, double[] dest) {
+        checkRun(row, col, length);
+        long start = index(row, col);
+        if (colMap == null && colStride == 1 && sameSegment(start, length)) {
+            DoubleBuffer segment = segments[(int) (start >>> segmentShift)].duplicate();
+            segment.position((int) (start & segmentMask));
+            segment.get(dest, 0, length);
+            return;
+        }
+        for (int j = 0; j < length; j++) {
+            dest[j] = read(index(row, col + j));
+        }
+    }
+
+    /**
+     * Copy src[0, length) into elements [col, col + length) of a row.
+     */
+    public void writeRow(int row, int col, int length, double[] src) {
+        checkRun(row, col, length);
+        if (!writable) {
+            throw new UnsupportedOperationException("MappedMatrix is read-only");
+        }
+        long start = index(row, col);
+        if (colMap == null && colStride == 1 && sameSegment(start, length)) {
+            DoubleBuffer segment = segments[(int) (start >>> segmentShift)].duplicate();
+            segment.position((int) (start & segmentMask));
+            segment.put(src, 0, length);
+            return;
+        }
+        for (int j = 0; j < length; j++) {
+            write(index(row, col + j), src[j]);
+        }
+    }
+
+    // Helpers
+    private long index(int row, int col) {
+        return offset + (rowMap == null ? row * rowStride : rowMap[row])
+                + (colMap == null ? col * colStride : colMap[col]);
+    }
+
+    private double read(long index) {
+        return segments[(int) (index >>> segmentShift)].get((int) (index & segmentMask));
+    }
+
+    private void write(long index, double value) {
+        if (!writable) {
+            throw new UnsupportedOperationException("MappedMatrix is read-only");
+        }
+        segments[(int) (index >>> segmentShift)].put((int) (index & segmentMask), value);
+    }
+
+    private boolean sameSegment(long start, int length) {
+        return (start >>> segmentShift) == ((start + length - 1) >>> segmentShift);
+    }
+
+    private void checkRun(int row, int col, int length) {
+        if (row < 0 || row >= numRows || col < 0 || length < 0 || col + length > numCols) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+    }
+
+    private void checkIndex(int row, int col) {
+        if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+    }
+
+    /**
+     * One axis of a selection: either length indices offset, offset + stride,
+     * ..., or, for fancy indexing, the offset of every index in map.
+     */
+    private static final class Axis {
+
+        private final long offset;
+        private final int length;
+        private final long stride;
+        private final long[] map;
+
+        private Axis(long offset, int length, long stride, long[] map) {
+            this.offset = offset;
+            this.length = length;
+            this.stride = stride;
+            this.map = map;
+        }
+    }
+
+    private static Axis selectAxis(int length, long stride, long[] map, Object arg) {
+        if (arg instanceof Integer) {
+            int index = checkBounds((Integer) arg, length);
+            return new Axis(map == null ? index * stride : map[index], 1, stride, null);
+        } else if (arg instanceof Integer[]) {
+            Integer[] indices = (Integer[]) arg;
+            long[] newMap = new long[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                int index = checkBounds(indices[i], length);
+                newMap[i] = map == null ? index * stride : map[index];
+            }
+            return new Axis(0, indices.length, stride, newMap);
+        } else if (arg instanceof Slice) {
+            Slice slice = (Slice) arg;
+            int newLength = slice.length(length);
+            if (map != null) {
+                long[] newMap = new long[newLength];
+                for (int i = 0; i < newLength; i++) {
+                    newMap[i] = map[slice.index(i)];
+                }
+                return new Axis(0, newLength, stride, newMap);
+            }
+            return new Axis(slice.getStart() * stride, newLength, stride * slice.getStep(), null);
+        }
+        throw new IllegalArgumentException("MappedMatrix select() arguments must be Integer, Integer[], or Slice");
+    }
+
+    private static int checkBounds(Integer index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+        return index;
+    }
+
+}
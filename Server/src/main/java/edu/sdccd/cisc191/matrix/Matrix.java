@@ -1,18 +1,31 @@
 package edu.sdccd.cisc191.matrix;
 
 import java.util.*;
+import java.util.function.DoubleBinaryOperator;
+
+import edu.sdccd.cisc191.metrics.*;
 
 public class Matrix extends DataView implements Array {
 
     private final int numRows;
     private final int numCols;
-    private final int actualNumCols;
 
-    // The actual data is stored in a 1D array, but can be accessed as a 2D array
-    // using the row and column indices.
-    private final Integer[] rowIndices;
-    private final Integer[] colIndices;
+    // The actual data is stored in a 1D array, but can be accessed as a 2D array.
+    // Element (row, col) lives at data[offset + row * rowStride + col * colStride],
+    // so a sliced view only needs a different offset and strides, not its own copy
+    // of the indices. Selecting with an Integer[] cannot be described by a stride,
+    // so in that case the per-row (or per-column) offsets are kept in rowMap/colMap.
+    private final int offset;
+    private final int rowStride;
+    private final int colStride;
+    private final int[] rowMap;
+    private final int[] colMap;
+
+    // Set by parallel() and sequential(); null follows the global Parallelism mode
+    private final Parallelism.Mode parallelism;
 
+    // Side of the square tiles in which strided views are copied
+    private static final int TILE = 32;
 
     // Constructors
     public Matrix(Double[][] srcData) {
@@ -26,53 +39,104 @@ public class Matrix extends DataView implements Array {
                 throw new IllegalArgumentException("Matrix must have rows of equal length");
             }
         }
+        if (rowLength == 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
 
-        List<Double> flatData = new ArrayList<>();
+        double[] flatData = new double[srcData.length * rowLength];
+        int index = 0;
         for (Double[] row : srcData) {
             for (Double value : row) {
                 if (value == null) {
                     throw new IllegalArgumentException("Matrix cannot contain null values");
                 }
-                flatData.add(value);
+                flatData[index++] = value;
             }
         }
-        this.data = flatData.toArray(new Double[0]);
+        this.data = flatData;
         this.numRows = srcData.length;
-        this.numCols = srcData[0].length;
-        this.actualNumCols = numCols;
-        if (numCols == 0) {
-            throw new IllegalArgumentException("Matrix must have at least one row and one column");
-        }
-
-        this.rowIndices = new Integer[numRows];
-        this.colIndices = new Integer[numCols];
-        for (int i = 0; i < numRows; i++) {
-            rowIndices[i] = i;
-        }
-        for (int i = 0; i < numCols; i++) {
-            colIndices[i] = i;
-        }
+        this.numCols = rowLength;
+        this.offset = 0;
+        this.rowStride = numCols;
+        this.colStride = 1;
+        this.rowMap = null;
+        this.colMap = null;
+        this.parallelism = null;
 
     }
 
     /**
-     * Create a Matrix from a 1D array of data, with the specified number of rows and columns.
-     * This method is private because it is used internally to create a sub-matrix.
+     * Create a view over a 1D array of data. This constructor is private because
+     * it is used internally to create sub-matrices that share the same data.
      * @param data The 1D array of data
      * @param numRows The number of rows
      * @param numCols The number of columns
-     * @param actualNumCols The actual number of columns in the original matrix
-     * @param rowIndices The row indices of the sub-matrix
-     * @param colIndices The column indices of the sub-matrix
+     * @param offset The position of element (0, 0) in data
+     * @param rowStride The distance in data between two consecutive rows
+     * @param colStride The distance in data between two consecutive columns
+     * @param rowMap The offset of every row, or null if rows are strided
+     * @param colMap The offset of every column, or null if columns are strided
      */
-    private Matrix(Double[] data, int numRows, int numCols, int actualNumCols,
-                   Integer[] rowIndices, Integer[] colIndices) {
+    private Matrix(double[] data, int numRows, int numCols, int offset,
+                   int rowStride, int colStride, int[] rowMap, int[] colMap) {
+        this(data, numRows, numCols, offset, rowStride, colStride, rowMap, colMap, null);
+    }
+
+    private Matrix(double[] data, int numRows, int numCols, int offset,
+                   int rowStride, int colStride, int[] rowMap, int[] colMap,
+                   Parallelism.Mode parallelism) {
         this.data = data;
         this.numRows = numRows;
         this.numCols = numCols;
-        this.rowIndices = rowIndices;
-        this.colIndices = colIndices;
-        this.actualNumCols = actualNumCols;
+        this.offset = offset;
+        this.rowStride = rowStride;
+        this.colStride = colStride;
+        this.rowMap = rowMap;
+        this.colMap = colMap;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Wrap a row-major 1D array as a Matrix without copying it. Changes to the
+     * Matrix are visible in the array and vice versa.
+     * @param data The row-major data, of length numRows * numCols
+     * @param numRows The number of rows
+     * @param numCols The number of columns
+     * @return Returns a Matrix backed by data
+     */
+    public static Matrix wrap(double[] data, int numRows, int numCols) {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+        if (data.length != numRows * numCols) {
+            throw new IllegalArgumentException("Data length does not match the matrix shape");
+        }
+        return new Matrix(data, numRows, numCols, 0, numCols, 1, null, null);
+    }
+
+    /**
+     * Wrap a column-major 1D array as a Matrix without copying it; the Matrix
+     * is a strided view with unit stride down the columns.
+     * @param data The column-major data, of length numRows * numCols
+     * @param numRows The number of rows
+     * @param numCols The number of columns
+     * @return Returns a Matrix backed by data
+     */
+    static Matrix wrapColumnMajor(double[] data, int numRows, int numCols) {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+        if (data.length != numRows * numCols) {
+            throw new IllegalArgumentException("Data length does not match the matrix shape");
+        }
+        return new Matrix(data, numRows, numCols, 0, 1, numRows, null, null);
+    }
+
+    /**
+     * Create a strided view over data, for other views such as NDArray.getMatrix().
+     */
+    static Matrix view(double[] data, int numRows, int numCols, int offset, int rowStride, int colStride) {
+        return new Matrix(data, numRows, numCols, offset, rowStride, colStride, null, null);
     }
 
     /**
@@ -85,17 +149,7 @@ public class Matrix extends DataView implements Array {
         if (numRows <= 0 || numCols <= 0) {
             throw new IllegalArgumentException("Matrix must have at least one row and one column");
         }
-        Double[] data = new Double[numRows * numCols];
-        Arrays.fill(data, 0.0);
-        Integer[] rowIndices = new Integer[numRows];
-        Integer[] colIndices = new Integer[numCols];
-        for (int i = 0; i < numRows; i++) {
-            rowIndices[i] = i;
-        }
-        for (int i = 0; i < numCols; i++) {
-            colIndices[i] = i;
-        }
-        return new Matrix(data, numRows, numCols, numCols, rowIndices, colIndices);
+        return wrap(new double[numRows * numCols], numRows, numCols);
     }
 
     /**
@@ -110,20 +164,12 @@ public class Matrix extends DataView implements Array {
         if (numRows <= 0 || numCols <= 0) {
             throw new IllegalArgumentException("Matrix must have at least one row and one column");
         }
-        Double[] data = new Double[numRows * numCols];
+        double[] data = new double[numRows * numCols];
         Random rand = new Random();
         for (int i = 0; i < numRows * numCols; i++) {
             data[i] = rand.nextGaussian();
         }
-        Integer[] rowIndices = new Integer[numRows];
-        Integer[] colIndices = new Integer[numCols];
-        for (int i = 0; i < numRows; i++) {
-            rowIndices[i] = i;
-        }
-        for (int i = 0; i < numCols; i++) {
-            colIndices[i] = i;
-        }
-        return new Matrix(data, numRows, numCols, numCols, rowIndices, colIndices);
+        return wrap(data, numRows, numCols);
 
     }
 
@@ -144,203 +190,689 @@ public class Matrix extends DataView implements Array {
             }
         }
 
-        List<Integer> rowIndices = new ArrayList<>();
-        List<Integer> colIndices = new ArrayList<>();
+        Axis rows = Axis.select(numRows, rowStride, rowMap, args[0]);
+        Axis cols = Axis.select(numCols, colStride, colMap, args[1]);
 
-        // Get row indices
-        T arg0 = args[0];
-        if (arg0 instanceof Integer) {
-            rowIndices.add(this.rowIndices[(Integer) arg0]);
-        } else if (arg0 instanceof Integer[]) {
-            for (Integer index : (Integer[]) arg0) {
-                rowIndices.add(this.rowIndices[index]);
-            }
-        } else if (arg0 instanceof Slice) {
-            Slice slice = (Slice) arg0;
-            int top = slice.getEnd() == -1 ? numRows : slice.getEnd();
-            for (int i = slice.getStart(); i < top; i += slice.getStep()) {
-                rowIndices.add(this.rowIndices[i]);
-            }
-        }
+        // The resulting array is a 2-dim Matrix over the same data
+        return new Matrix(
+            data,
+            rows.length,
+            cols.length,
+            offset + rows.offset + cols.offset,
+            rows.stride,
+            cols.stride,
+            rows.map,
+            cols.map
+        );
+    }
 
-        // Get col indices
-        T arg1 = args[1];
-        if (arg1 instanceof Integer) {
-            colIndices.add(this.colIndices[(Integer) arg1]);
-        } else if (arg1 instanceof Integer[]) {
-            for (Integer index : (Integer[]) arg1) {
-                colIndices.add(this.colIndices[index]);
-            }
-        } else if (arg1 instanceof Slice) {
-            Slice slice = (Slice) arg1;
-            int top = slice.getEnd() == -1 ? numCols : slice.getEnd();
-            for (int i = slice.getStart(); i < top; i += slice.getStep()) {
-                colIndices.add(this.colIndices[i]);
-            }
-        }
+    /**
+     * Returns the transpose as a view over the same data, in O(1): the rows
+     * and columns just swap their strides. Use LinAlgBasics.transpose() or
+     * copy() on the view for a transpose with its own data.
+     * @return Returns a numCols x numRows view
+     */
+    public Matrix transpose() {
+        return new Matrix(data, numCols, numRows, offset, colStride, rowStride, colMap, rowMap);
+    }
 
+    /**
+     * Returns the same elements, in row-major order, with a different shape.
+     * A contiguous matrix is reshaped as a view over the same data, in O(1);
+     * any other matrix is copied first, like numpy does.
+     * @param numRows The new number of rows
+     * @param numCols The new number of columns
+     * @return Returns a numRows x numCols matrix
+     * @throws IllegalArgumentException When the number of elements would change
+     */
+    public Matrix reshape(int numRows, int numCols) {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+        if ((long) numRows * numCols != (long) this.numRows * this.numCols) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        Matrix source = isContiguous() ? this : copy();
+        return new Matrix(source.data, numRows, numCols, source.offset, numCols, 1, null, null);
+    }
 
-        // Otherwise, the resulting array is a 2-dim Matrix
+    /**
+     * Returns a view that repeats a single row down numRows rows, or a single
+     * column across numCols columns, or both, without copying: the repeated
+     * axis gets a stride of 0. All repeats are the same elements, so setting
+     * one of them sets them all.
+     * @param numRows The number of rows, equal to this one's unless that is 1
+     * @param numCols The number of columns, equal to this one's unless that is 1
+     * @return Returns a numRows x numCols view, or this matrix if the shape is unchanged
+     * @throws IllegalArgumentException When the matrix cannot be broadcast to the shape
+     */
+    public Matrix broadcast(int numRows, int numCols) {
+        if (!canBroadcast(this.numRows, numRows) || !canBroadcast(this.numCols, numCols)) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+        if (numRows == this.numRows && numCols == this.numCols) {
+            return this;
+        }
+        boolean repeatRows = numRows != this.numRows;
+        boolean repeatCols = numCols != this.numCols;
         return new Matrix(
             data,
-            rowIndices.size(),
-            colIndices.size(),
-            actualNumCols,
-            rowIndices.toArray(new Integer[0]),
-            colIndices.toArray(new Integer[0])
+            numRows,
+            numCols,
+            offset + (repeatRows ? rowOffset(0) : 0) + (repeatCols ? colOffset(0) : 0),
+            repeatRows ? 0 : rowStride,
+            repeatCols ? 0 : colStride,
+            repeatRows ? null : rowMap,
+            repeatCols ? null : colMap
         );
     }
 
+    private static boolean canBroadcast(int from, int to) {
+        return to > 0 && (from == to || from == 1);
+    }
+
+    /**
+     * Returns a view over the same data whose element-wise operations, copy()
+     * and toList() run in parallel row blocks whatever its size, overriding
+     * the global Parallelism mode. Views selected from it follow the global
+     * mode again.
+     * @return Returns a parallel view of this matrix
+     */
+    public Matrix parallel() {
+        return withParallelism(Parallelism.Mode.PARALLEL);
+    }
+
+    /**
+     * Returns a view over the same data whose element-wise operations, copy()
+     * and toList() always run on the calling thread, overriding the global
+     * Parallelism mode.
+     * @return Returns a sequential view of this matrix
+     */
+    public Matrix sequential() {
+        return withParallelism(Parallelism.Mode.SEQUENTIAL);
+    }
+
+    private Matrix withParallelism(Parallelism.Mode mode) {
+        return new Matrix(data, numRows, numCols, offset, rowStride, colStride, rowMap, colMap, mode);
+    }
+
     @Override
     public Matrix copy() {
-        Double[] newData = new Double[numRows * numCols];
-        for (int i = 0; i < numRows; ++i) {
+        double[] newData = new double[numRows * numCols];
+        copyTo(newData);
+        return new Matrix(newData, numRows, numCols, 0, numCols, 1, null, null);
+    }
+
+    /**
+     * Copy the elements of the matrix into a new row-major 1D array.
+     * @return Returns a new array of length numRows * numCols
+     */
+    public double[] toDoubleArray() {
+        double[] result = new double[numRows * numCols];
+        copyTo(result);
+        return result;
+    }
+
+    /**
+     * Copy the elements of the matrix into a new row-major array of floats,
+     * each rounded to the nearest float. Half the size of toDoubleArray().
+     * @return Returns a new array of length numRows * numCols
+     */
+    public float[] toFloatArray() {
+        float[] result = new float[numRows * numCols];
+        Parallelism.forRows(parallelism, numRows, numCols, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int rowStart = offset + rowOffset(i);
+                for (int j = 0; j < numCols; j++) {
+                    result[i * numCols + j] = (float) data[rowStart + colOffset(j)];
+                }
+            }
+        });
+        return result;
+    }
+
+    private void copyTo(double[] dest) {
+        Parallelism.forRows(parallelism, numRows, numCols, (from, to) -> copyRows(dest, from, to));
+    }
+
+    private void copyRows(double[] dest, int from, int to) {
+        if (isContiguous()) {
+            System.arraycopy(data, offset + from * numCols, dest, from * numCols, (to - from) * numCols);
+            return;
+        }
+        if (rowMap == null && colMap == null && colStride != 1) {
+            // Strided rows, as in a transposed view: reading a row would touch
+            // a new cache line per element, so copy in tiles that stay cached
+            for (int ib = from; ib < to; ib += TILE) {
+                int iEnd = Math.min(ib + TILE, to);
+                for (int jb = 0; jb < numCols; jb += TILE) {
+                    int jEnd = Math.min(jb + TILE, numCols);
+                    for (int i = ib; i < iEnd; i++) {
+                        int source = offset + i * rowStride;
+                        int target = i * numCols;
+                        for (int j = jb; j < jEnd; j++) {
+                            dest[target + j] = data[source + j * colStride];
+                        }
+                    }
+                }
+            }
+            return;
+        }
+        for (int i = from; i < to; ++i) {
+            int rowStart = offset + rowOffset(i);
             for (int j = 0; j < numCols; ++j) {
-                newData[i * numCols + j] = get(i, j);
+                dest[i * numCols + j] = data[rowStart + colOffset(j)];
             }
         }
-        Integer[] rowIndices = new Integer[numRows];
-        Integer[] colIndices = new Integer[numCols];
-        for (int i = 0; i < numRows; i++) {
-            rowIndices[i] = i;
+    }
+
+    /**
+     * Copy elements [col, col + length) of a row into dest[0, length).
+     */
+    void readRow(int row, int col, int length, double[] dest) {
+        int start = offset + rowOffset(row);
+        if (colMap == null && colStride == 1) {
+            System.arraycopy(data, start + col, dest, 0, length);
+            return;
         }
-        for (int i = 0; i < numCols; i++) {
-            colIndices[i] = i;
+        for (int j = 0; j < length; j++) {
+            dest[j] = data[start + colOffset(col + j)];
+        }
+    }
+
+    /**
+     * Copy src[0, length) into elements [col, col + length) of a row.
+     */
+    void writeRow(int row, int col, int length, double[] src) {
+        int start = offset + rowOffset(row);
+        if (colMap == null && colStride == 1) {
+            System.arraycopy(src, 0, data, start + col, length);
+            return;
+        }
+        for (int j = 0; j < length; j++) {
+            data[start + colOffset(col + j)] = src[j];
         }
-        return new Matrix(newData, numRows, numCols, numCols, rowIndices,
-                colIndices);
     }
 
     public Double[][] toList() {
         // Convert to 2d array
-        Double[][] data = new Double[numRows][numCols];
-        for (int row = 0; row < numRows; row++) {
-            Double[] rowData = new Double[numCols];
-            for (int col = 0; col < numCols; col++) {
-                rowData[col] = get(row, col);
+        Double[][] result = new Double[numRows][];
+        Parallelism.forRows(parallelism, numRows, numCols, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                int rowStart = offset + rowOffset(row);
+                Double[] rowData = new Double[numCols];
+                for (int col = 0; col < numCols; col++) {
+                    rowData[col] = data[rowStart + colOffset(col)];
+                }
+                result[row] = rowData;
             }
-            data[row] = rowData;
-        }
-        return data;
+        });
+        return result;
     }
 
+    /**
+     * Check if another matrix can be the right-hand side of an element-wise
+     * operation: it must have the same shape, or be a row vector with as many
+     * columns, or a column vector with as many rows, or 1 x 1. Vectors are
+     * broadcast across the matrix.
+     */
     @Override
     public boolean isCompatible(Array other) {
         if (!(other instanceof Matrix)) {
             return false;
         }
         Matrix otherMatrix = (Matrix) other;
-        Integer[] shape = otherMatrix.getShape();
-        return numRows == shape[0] && numCols == shape[1];
+        return canBroadcast(otherMatrix.numRows, numRows) && canBroadcast(otherMatrix.numCols, numCols);
     }
 
     @Override
     public void add(Array other) {
-        if (!isCompatible(other)) {
-            throw new IllegalArgumentException("Matrix add() incompatible with other array");
-        }
-        Matrix otherMatrix = (Matrix) other;
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) + otherMatrix.get(i, j), i, j);
-            }
-        }
+        apply(ElementwiseKernels.Op.ADD, other, "add");
     }
 
     @Override
     public void add(Double scalar) {
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) + scalar, i, j);
-            }
-        }
+        apply(ElementwiseKernels.Op.ADD, scalar);
     }
 
     @Override
     public void subtract(Array other) {
-        if (!isCompatible(other)) {
-            throw new IllegalArgumentException("Matrix subtract() incompatible with other array");
-        }
-        Matrix otherMatrix = (Matrix) other;
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) - otherMatrix.get(i, j), i, j);
-            }
-        }
+        apply(ElementwiseKernels.Op.SUBTRACT, other, "subtract");
     }
 
     @Override
     public void subtract(Double scalar) {
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) - scalar, i, j);
-            }
-        }
+        apply(ElementwiseKernels.Op.SUBTRACT, scalar);
     }
 
     @Override
     public void multiply(Array other) {
+        apply(ElementwiseKernels.Op.MULTIPLY, other, "multiply");
+    }
+
+    @Override
+    public void multiply(Double scalar) {
+        apply(ElementwiseKernels.Op.MULTIPLY, scalar);
+    }
+
+    @Override
+    public void divide(Array other) {
+        apply(ElementwiseKernels.Op.DIVIDE, other, "divide");
+    }
+
+    @Override
+    public void divide(Double scalar) {
+        apply(ElementwiseKernels.Op.DIVIDE, scalar);
+    }
+
+    // Element-wise operations on fewer elements are counted, but not timed
+    private static final int TIMED_ELEMENTS = 4096;
+
+    private void apply(ElementwiseKernels.Op op, Array other, String name) {
+        long start = startMetrics();
+        applyKernels(op, other, name);
+        recordMetrics(op, start, 3 * Double.BYTES);
+    }
+
+    private void apply(ElementwiseKernels.Op op, double scalar) {
+        long start = startMetrics();
+        applyKernels(op, scalar);
+        recordMetrics(op, start, 2 * Double.BYTES);
+    }
+
+    private long startMetrics() {
+        return Metrics.ENABLED && numRows * numCols >= TIMED_ELEMENTS ? System.nanoTime() : 0;
+    }
+
+    private void recordMetrics(ElementwiseKernels.Op op, long start, int bytesPerElement) {
+        if (!Metrics.ENABLED) {
+            return;
+        }
+        Operation operation;
+        switch (op) {
+            case ADD:
+                operation = Metrics.ADD;
+                break;
+            case SUBTRACT:
+                operation = Metrics.SUBTRACT;
+                break;
+            case MULTIPLY:
+                operation = Metrics.ELEMENT_MULTIPLY;
+                break;
+            default:
+                operation = Metrics.DIVIDE;
+        }
+        long elements = (long) numRows * numCols;
+        if (elements >= TIMED_ELEMENTS) {
+            operation.record(start, bytesPerElement * elements, elements);
+        } else {
+            operation.count(bytesPerElement * elements, elements);
+        }
+    }
+
+    /**
+     * Applies an element-wise operation with another matrix. The shapes are
+     * checked once, and a vector broadcast to this shape; after that each row
+     * is handed to the kernels as one run, or each block of rows when both
+     * sides are contiguous. A repeated column is applied as one scalar per row.
+     */
+    private void applyKernels(ElementwiseKernels.Op op, Array other, String name) {
         if (!isCompatible(other)) {
-            throw new IllegalArgumentException("Matrix multiply() incompatible with other array");
+            throw new IllegalArgumentException("Matrix " + name + "() incompatible with other array");
         }
-        Matrix otherMatrix = (Matrix) other;
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) * otherMatrix.get(i, j), i, j);
+        Matrix otherMatrix = ((Matrix) other).broadcast(numRows, numCols);
+        Parallelism.forRows(writeParallelism(), numRows, numCols,
+                (from, to) -> applyKernels(op, otherMatrix, from, to));
+    }
+
+    private void applyKernels(ElementwiseKernels.Op op, Matrix otherMatrix, int from, int to) {
+        ElementwiseKernels kernels = ElementwiseKernels.INSTANCE;
+        if (isContiguous() && otherMatrix.isContiguous()) {
+            kernels.apply(op, data, offset + from * numCols, 1,
+                    otherMatrix.data, otherMatrix.offset + from * numCols, 1, (to - from) * numCols);
+            return;
+        }
+        boolean strided = colMap == null && otherMatrix.colMap == null;
+        for (int i = from; i < to; i++) {
+            int row = offset + rowOffset(i);
+            int otherRow = otherMatrix.offset + otherMatrix.rowOffset(i);
+            if (strided && otherMatrix.colStride == 0) {
+                kernels.apply(op, data, row, colStride, otherMatrix.data[otherRow], numCols);
+            } else if (strided) {
+                kernels.apply(op, data, row, colStride, otherMatrix.data, otherRow,
+                        otherMatrix.colStride, numCols);
+            } else {
+                for (int j = 0; j < numCols; j++) {
+                    int index = row + colOffset(j);
+                    data[index] = ElementwiseKernels.apply(op, data[index],
+                            otherMatrix.data[otherRow + otherMatrix.colOffset(j)]);
+                }
             }
         }
     }
 
-    @Override
-    public void multiply(Double scalar) {
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) * scalar, i, j);
+    /**
+     * Applies an element-wise operation with a scalar, one run per row, or one
+     * run per block of rows when the matrix is contiguous.
+     */
+    private void applyKernels(ElementwiseKernels.Op op, double scalar) {
+        Parallelism.forRows(writeParallelism(), numRows, numCols,
+                (from, to) -> applyKernels(op, scalar, from, to));
+    }
+
+    private void applyKernels(ElementwiseKernels.Op op, double scalar, int from, int to) {
+        ElementwiseKernels kernels = ElementwiseKernels.INSTANCE;
+        if (isContiguous()) {
+            kernels.apply(op, data, offset + from * numCols, 1, scalar, (to - from) * numCols);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            int row = offset + rowOffset(i);
+            if (colMap == null) {
+                kernels.apply(op, data, row, colStride, scalar, numCols);
+            } else {
+                for (int j = 0; j < numCols; j++) {
+                    int index = row + colOffset(j);
+                    data[index] = ElementwiseKernels.apply(op, data[index], scalar);
+                }
             }
         }
     }
 
-    @Override
-    public void divide(Array other) {
-        if (!isCompatible(other)) {
-            throw new IllegalArgumentException("Matrix divide() incompatible with other array");
+    // Reductions, over the whole matrix or along an axis: axis 0 reduces down
+    // the rows to a 1 x numCols row, axis 1 across the columns to a numRows x 1
+    // column, so the result broadcasts back over the matrix. Sums are pairwise
+    // and run in parallel like the element-wise operations; see Reductions.
+
+    /**
+     * @return Returns the sum of all elements
+     */
+    public double sum() {
+        return reduce(Reductions::sum, Double::sum);
+    }
+
+    public Matrix sum(int axis) {
+        return reduce(Reductions::sum, axis);
+    }
+
+    /**
+     * @return Returns the mean of all elements
+     */
+    public double mean() {
+        return sum() / ((double) numRows * numCols);
+    }
+
+    public Matrix mean(int axis) {
+        Matrix mean = sum(axis);
+        mean.divide((double) (axis == 0 ? numRows : numCols));
+        return mean;
+    }
+
+    /**
+     * @param other A matrix of the same shape
+     * @return Returns the sum of the products of the corresponding elements
+     */
+    public double dot(Matrix other) {
+        checkSameShape(other);
+        if (hasMaps() || other.hasMaps()) {
+            return copy().dot(other.copy());
         }
-        Matrix otherMatrix = (Matrix) other;
-        for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) / otherMatrix.get(i, j), i, j);
+        if (isContiguous() && other.isContiguous()) {
+            return Reductions.dot(parallelism, data, offset, 1, other.data, other.offset, 1, numRows * numCols);
+        }
+        return Reductions.reduce(parallelism, numRows, 1, numCols,
+                (from, to) -> Reductions.dot(parallelism, data, offset + from * rowStride, colStride,
+                        other.data, other.offset + from * other.rowStride, other.colStride, numCols),
+                Double::sum);
+    }
+
+    /**
+     * @param other A matrix of the same shape
+     * @param axis The axis to reduce
+     * @return Returns the dot product of each column (axis 0) or row (axis 1) with the same one of other
+     */
+    public Matrix dot(Matrix other, int axis) {
+        checkAxis(axis);
+        checkSameShape(other);
+        if (hasMaps() || other.hasMaps()) {
+            return copy().dot(other.copy(), axis);
+        }
+        int count = axis == 0 ? numCols : numRows;
+        int length = axis == 0 ? numRows : numCols;
+        int between = axis == 0 ? colStride : rowStride;
+        int stride = axis == 0 ? rowStride : colStride;
+        int otherBetween = axis == 0 ? other.colStride : other.rowStride;
+        int otherStride = axis == 0 ? other.rowStride : other.colStride;
+        double[] result = new double[count];
+        Parallelism.forRows(parallelism, count, 2 * length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = Reductions.dot(parallelism, data, offset + i * between, stride,
+                        other.data, other.offset + i * otherBetween, otherStride, length);
             }
+        });
+        return axis == 0 ? wrap(result, 1, count) : wrap(result, count, 1);
+    }
+
+    /**
+     * @return Returns the sum of the magnitudes of all elements
+     */
+    public double norm1() {
+        return reduce(Reductions::sumAbs, Double::sum);
+    }
+
+    public Matrix norm1(int axis) {
+        return reduce(Reductions::sumAbs, axis);
+    }
+
+    /**
+     * The Euclidean norm of the elements, the Frobenius norm of the matrix.
+     * It does not overflow or underflow before the result does.
+     * @return Returns the square root of the sum of the squares of all elements
+     */
+    public double norm2() {
+        double squares = reduce(Reductions::sumSquares, Double::sum);
+        if (!Reductions.needsScaling(squares)) {
+            return Math.sqrt(squares);
+        }
+        double scale = normInf();
+        if (!Reductions.isScalable(scale)) {
+            return scale;
         }
+        Matrix scaled = copy();
+        scaled.divide(scale);
+        return scale * Math.sqrt(scaled.reduce(Reductions::sumSquares, Double::sum));
     }
 
-    @Override
-    public void divide(Double scalar) {
+    public Matrix norm2(int axis) {
+        return reduce(Reductions::norm2, axis);
+    }
+
+    /**
+     * @return Returns the largest magnitude of all elements
+     */
+    public double normInf() {
+        return reduce(Reductions::maxAbs, Math::max);
+    }
+
+    public Matrix normInf(int axis) {
+        return reduce(Reductions::maxAbs, axis);
+    }
+
+    /**
+     * @return Returns the smallest element, or NaN if there is a NaN
+     */
+    public double min() {
+        return reduce(Reductions::min, Math::min);
+    }
+
+    public Matrix min(int axis) {
+        return reduce(Reductions::min, axis);
+    }
+
+    /**
+     * @return Returns the largest element, or NaN if there is a NaN
+     */
+    public double max() {
+        return reduce(Reductions::max, Math::max);
+    }
+
+    public Matrix max(int axis) {
+        return reduce(Reductions::max, axis);
+    }
+
+    /**
+     * @return Returns the row-major position, row * numCols + col, of the
+     *     first smallest element, skipping NaN
+     */
+    public int argmin() {
+        return arg(false);
+    }
+
+    /**
+     * @param axis The axis to reduce
+     * @return Returns the index of the smallest element of each column (axis 0) or row (axis 1)
+     */
+    public int[] argmin(int axis) {
+        return arg(false, axis);
+    }
+
+    /**
+     * @return Returns the row-major position, row * numCols + col, of the
+     *     first largest element, skipping NaN
+     */
+    public int argmax() {
+        return arg(true);
+    }
+
+    /**
+     * @param axis The axis to reduce
+     * @return Returns the index of the largest element of each column (axis 0) or row (axis 1)
+     */
+    public int[] argmax(int axis) {
+        return arg(true, axis);
+    }
+
+    /**
+     * Reduces every element: each row as one run of kernel, or each column
+     * when the columns are the closer together, as in a transposed view,
+     * then the results of the runs pairwise with combine. Fancy-indexed
+     * views, which have no stride to run along, are copied first.
+     */
+    private double reduce(Reductions.Kernel kernel, DoubleBinaryOperator combine) {
+        if (hasMaps()) {
+            return copy().reduce(kernel, combine);
+        }
+        if (isContiguous()) {
+            return kernel.apply(parallelism, data, offset, 1, numRows * numCols);
+        }
+        boolean byRows = Math.abs(colStride) <= Math.abs(rowStride);
+        int runs = byRows ? numRows : numCols;
+        int length = byRows ? numCols : numRows;
+        int between = byRows ? rowStride : colStride;
+        int stride = byRows ? colStride : rowStride;
+        return Reductions.reduce(parallelism, runs, 1, length,
+                (from, to) -> kernel.apply(parallelism, data, offset + from * between, stride, length),
+                combine);
+    }
+
+    /**
+     * Reduces each column (axis 0) or row (axis 1) with kernel, in parallel
+     * blocks of them when the matrix is large enough.
+     */
+    private Matrix reduce(Reductions.Kernel kernel, int axis) {
+        checkAxis(axis);
+        if (hasMaps()) {
+            return copy().reduce(kernel, axis);
+        }
+        int count = axis == 0 ? numCols : numRows;
+        int length = axis == 0 ? numRows : numCols;
+        int between = axis == 0 ? colStride : rowStride;
+        int stride = axis == 0 ? rowStride : colStride;
+        double[] result = new double[count];
+        Parallelism.forRows(parallelism, count, length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = kernel.apply(parallelism, data, offset + i * between, stride, length);
+            }
+        });
+        return axis == 0 ? wrap(result, 1, count) : wrap(result, count, 1);
+    }
+
+    private int arg(boolean largest) {
+        if (hasMaps()) {
+            return copy().arg(largest);
+        }
+        if (isContiguous()) {
+            return arg(largest, offset, 1, numRows * numCols);
+        }
+        int best = 0;
+        double bestValue = Double.NaN;
         for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                this.set(this.get(i, j) / scalar, i, j);
+            int row = offset + i * rowStride;
+            int j = arg(largest, row, colStride, numCols);
+            double value = data[row + j * colStride];
+            if ((largest ? value > bestValue : value < bestValue) || (bestValue != bestValue && value == value)) {
+                best = i * numCols + j;
+                bestValue = value;
             }
         }
+        return best;
+    }
+
+    private int[] arg(boolean largest, int axis) {
+        checkAxis(axis);
+        if (hasMaps()) {
+            return copy().arg(largest, axis);
+        }
+        int count = axis == 0 ? numCols : numRows;
+        int length = axis == 0 ? numRows : numCols;
+        int between = axis == 0 ? colStride : rowStride;
+        int stride = axis == 0 ? rowStride : colStride;
+        int[] result = new int[count];
+        Parallelism.forRows(parallelism, count, length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                result[i] = arg(largest, offset + i * between, stride, length);
+            }
+        });
+        return result;
+    }
+
+    private int arg(boolean largest, int pos, int stride, int length) {
+        return largest ? Reductions.argmax(data, pos, stride, length) : Reductions.argmin(data, pos, stride, length);
     }
 
     // Inherited from DataView
     @Override
     public Double get(Integer... args) {
         checkIndex(args);
-        int row = args[0];
-        int col = args[1];
-        int rowIndex = rowIndices[row];
-        int colIndex = colIndices[col];
-        return data[rowIndex * actualNumCols + colIndex];
+        return data[offset + rowOffset(args[0]) + colOffset(args[1])];
     }
 
     @Override
     public void set(Double value, Integer... args) {
         checkIndex(args);
-        int row = args[0];
-        int col = args[1];
-        int rowIndex = rowIndices[row];
-        int colIndex = colIndices[col];
-        data[rowIndex * actualNumCols + colIndex] = value;
+        data[offset + rowOffset(args[0]) + colOffset(args[1])] = value;
+    }
+
+    /**
+     * Get an element without boxing the indices or the result.
+     * @param row The row index
+     * @param col The column index
+     * @return Returns the element at (row, col)
+     */
+    public double get(int row, int col) {
+        checkIndex(row, col);
+        return data[offset + rowOffset(row) + colOffset(col)];
+    }
+
+    /**
+     * Set an element without boxing the indices or the value.
+     * @param value The new value
+     * @param row The row index
+     * @param col The column index
+     */
+    public void set(double value, int row, int col) {
+        checkIndex(row, col);
+        data[offset + rowOffset(row) + colOffset(col)] = value;
     }
 
     @Override
@@ -376,4 +908,124 @@ public class Matrix extends DataView implements Array {
         return numCols;
     }
 
+    /**
+     * Check if the matrix occupies one unbroken row-major run of its data,
+     * which is the case for new matrices and copies, but not for most views.
+     * @return Returns true if the matrix is contiguous, false otherwise.
+     */
+    public boolean isContiguous() {
+        return rowMap == null && colMap == null && colStride == 1
+                && (rowStride == numCols || numRows == 1);
+    }
+
+    /**
+     * @return Returns the position of element (0, 0) in data
+     */
+    int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Returns the distance in data between two rows; only meaningful without maps
+     */
+    int getRowStride() {
+        return rowStride;
+    }
+
+    /**
+     * @return Returns the distance in data between two columns; only meaningful without maps
+     */
+    int getColStride() {
+        return colStride;
+    }
+
+    // Helpers
+
+    // Rows that may share elements (a broadcast row, or rows picked by index,
+    // which may repeat) are written on one thread, in order
+    private Parallelism.Mode writeParallelism() {
+        return rowMap != null || rowStride == 0 ? Parallelism.Mode.SEQUENTIAL : parallelism;
+    }
+
+    private int rowOffset(int row) {
+        return rowMap == null ? row * rowStride : rowMap[row];
+    }
+
+    private int colOffset(int col) {
+        return colMap == null ? col * colStride : colMap[col];
+    }
+
+    private void checkIndex(int row, int col) {
+        if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+    }
+
+    private void checkSameShape(Matrix other) {
+        if (other.numRows != numRows || other.numCols != numCols) {
+            throw new IllegalArgumentException("Matrix shapes are not compatible");
+        }
+    }
+
+    private static void checkAxis(int axis) {
+        if (axis != 0 && axis != 1) {
+            throw new IllegalArgumentException("Axis must be 0 or 1");
+        }
+    }
+
+    boolean hasMaps() {
+        return rowMap != null || colMap != null;
+    }
+
+    /**
+     * The result of selecting along one axis: the offset of the first element,
+     * the number of elements, and either a stride or an explicit offset map.
+     */
+    private static final class Axis {
+
+        private final int offset;
+        private final int length;
+        private final int stride;
+        private final int[] map;
+
+        private Axis(int offset, int length, int stride, int[] map) {
+            this.offset = offset;
+            this.length = length;
+            this.stride = stride;
+            this.map = map;
+        }
+
+        private static Axis select(int length, int stride, int[] map, Object arg) {
+            if (arg instanceof Integer) {
+                int index = checkBounds((Integer) arg, length);
+                return new Axis(map == null ? index * stride : map[index], 1, stride, null);
+            } else if (arg instanceof Integer[]) {
+                Integer[] indices = (Integer[]) arg;
+                int[] newMap = new int[indices.length];
+                for (int i = 0; i < indices.length; i++) {
+                    int index = checkBounds(indices[i], length);
+                    newMap[i] = map == null ? index * stride : map[index];
+                }
+                return new Axis(0, indices.length, stride, newMap);
+            }
+            Slice slice = (Slice) arg;
+            int newLength = slice.length(length);
+            if (map == null) {
+                return new Axis(slice.getStart() * stride, newLength, stride * slice.getStep(), null);
+            }
+            int[] newMap = new int[newLength];
+            for (int i = 0; i < newLength; i++) {
+                newMap[i] = map[slice.index(i)];
+            }
+            return new Axis(0, newLength, stride, newMap);
+        }
+
+        private static int checkBounds(Integer index, int length) {
+            if (index < 0 || index >= length) {
+                throw new IllegalArgumentException("Index out of bounds");
+            }
+            return index;
+        }
+    }
+
 }
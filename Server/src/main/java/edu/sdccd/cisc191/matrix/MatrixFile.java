@@ -0,0 +1,272 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/**
+ * Reads and writes matrices in a compact binary file format: a fixed
+ * HEADER_BYTES header followed by the elements as little-endian doubles.
+ * <pre>
+ *     offset  size  field
+ *          0     4  magic, the ASCII bytes "MTRX"
+ *          4     2  format version, VERSION
+ *          6     1  element type, FLOAT64
+ *          7     1  layout, ROW_MAJOR or COLUMN_MAJOR
+ *          8     4  number of rows
+ *         12     4  number of columns
+ *         16     4  offset of the first element, HEADER_BYTES in version 1
+ *         20    12  reserved, zero
+ * </pre>
+ * All header fields are little-endian. Readers skip to the offset given in
+ * the header, so later versions may grow it without breaking them.
+ * <p>
+ * Data moves between the channel and the double[] behind the Matrix through
+ * one direct buffer of BUFFER_BYTES, with bulk puts and gets, so reading a
+ * matrix allocates nothing but the matrix itself.
+ */
+public final class MatrixFile {
+
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 32;
+
+    // Element types
+    public static final byte FLOAT64 = 1;
+
+    // Layouts
+    public static final byte ROW_MAJOR = 0;
+    public static final byte COLUMN_MAJOR = 1;
+
+    private static final int MAGIC = 0x5852544D; // "MTRX" read as a little-endian int
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    private MatrixFile() {
+    }
+
+    /**
+     * Write a matrix to a file, replacing it if it exists.
+     * @param matrix The matrix
+     * @param file The file
+     * @throws IOException When the file cannot be written
+     */
+    public static void write(Matrix matrix, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(matrix, channel);
+        }
+    }
+
+    /**
+     * Write a matrix to a channel, in row-major layout.
+     * @param matrix The matrix
+     * @param channel The channel; it is not closed
+     * @throws IOException When the channel cannot be written
+     */
+    public static void write(Matrix matrix, WritableByteChannel channel) throws IOException {
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        putHeader(buffer, numRows, numCols);
+
+        if (matrix.isContiguous()) {
+            // Copy straight out of the backing array
+            writeDoubles(matrix.data, matrix.getOffset(), numRows * numCols, buffer, channel);
+        } else {
+            double[] row = new double[numCols];
+            for (int i = 0; i < numRows; i++) {
+                matrix.readRow(i, 0, numCols, row);
+                writeDoubles(row, 0, numCols, buffer, channel);
+            }
+        }
+        buffer.flip();
+        writeFully(buffer, channel);
+    }
+
+    /**
+     * Read a matrix from a file.
+     * @param file The file
+     * @return Returns a new Matrix
+     * @throws IOException When the file cannot be read or is not a matrix file
+     */
+    public static Matrix read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Read a matrix from a channel, positioned at the start of the header.
+     * @param channel The channel; it is not closed
+     * @return Returns a new Matrix
+     * @throws IOException When the channel cannot be read or does not hold a matrix
+     */
+    public static Matrix read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(HEADER_BYTES);
+        readFully(buffer, channel);
+        buffer.flip();
+        Header header = getHeader(buffer);
+
+        // Skip any header fields added by later versions
+        long skip = header.dataOffset - HEADER_BYTES;
+        while (skip > 0) {
+            buffer.clear();
+            buffer.limit((int) Math.min(skip, BUFFER_BYTES));
+            readFully(buffer, channel);
+            skip -= buffer.position();
+        }
+
+        double[] data = new double[header.numRows * header.numCols];
+        int position = 0;
+        while (position < data.length) {
+            buffer.clear();
+            buffer.limit((int) Math.min((long) BUFFER_BYTES, (long) (data.length - position) * Double.BYTES));
+            readFully(buffer, channel);
+            buffer.flip();
+            int count = buffer.remaining() / Double.BYTES;
+            buffer.asDoubleBuffer().get(data, position, count);
+            position += count;
+        }
+
+        if (header.layout == COLUMN_MAJOR) {
+            return Matrix.wrapColumnMajor(data, header.numRows, header.numCols);
+        }
+        return Matrix.wrap(data, header.numRows, header.numCols);
+    }
+
+    /**
+     * Map a row-major matrix file instead of reading it, for matrices too big
+     * for the heap.
+     * @param file The file
+     * @param writable Whether changes to the matrix should be written to the file
+     * @return Returns a MappedMatrix backed by the file
+     * @throws IOException When the file cannot be mapped or is not a row-major matrix file
+     */
+    public static MappedMatrix map(Path file, boolean writable) throws IOException {
+        Header header;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(buffer, channel);
+            buffer.flip();
+            header = getHeader(buffer);
+        }
+        if (header.layout != ROW_MAJOR) {
+            throw new IOException("Only row-major matrix files can be mapped");
+        }
+        return MappedMatrix.open(file, header.dataOffset, header.numRows, header.numCols, writable);
+    }
+
+    /**
+     * Create a matrix file of zeros and map it, to build a matrix too big for
+     * the heap in place.
+     * @param file The file to create; it must not exist yet
+     * @param numRows The number of rows
+     * @param numCols The number of columns
+     * @return Returns a writable MappedMatrix backed by the file
+     * @throws IOException When the file cannot be created or mapped
+     */
+    public static MappedMatrix create(Path file, int numRows, int numCols) throws IOException {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(buffer, numRows, numCols);
+            buffer.flip();
+            writeFully(buffer, channel);
+            // Writing the last byte extends the file without writing the rest
+            channel.write(ByteBuffer.allocate(1), HEADER_BYTES + (long) numRows * numCols * Double.BYTES - 1);
+        }
+        return MappedMatrix.open(file, HEADER_BYTES, numRows, numCols, true);
+    }
+
+    // Helpers
+    private static final class Header {
+
+        private final byte layout;
+        private final int numRows;
+        private final int numCols;
+        private final int dataOffset;
+
+        private Header(byte layout, int numRows, int numCols, int dataOffset) {
+            this.layout = layout;
+            this.numRows = numRows;
+            this.numCols = numCols;
+            this.dataOffset = dataOffset;
+        }
+    }
+
+    private static void putHeader(ByteBuffer buffer, int numRows, int numCols) {
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.put(FLOAT64);
+        buffer.put(ROW_MAJOR);
+        buffer.putInt(numRows);
+        buffer.putInt(numCols);
+        buffer.putInt(HEADER_BYTES);
+        buffer.put(new byte[HEADER_BYTES - 20]);
+    }
+
+    private static Header getHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a matrix file");
+        }
+        int version = buffer.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported matrix file version " + version);
+        }
+        byte type = buffer.get();
+        if (type != FLOAT64) {
+            throw new IOException("Unsupported matrix element type " + type);
+        }
+        byte layout = buffer.get();
+        if (layout != ROW_MAJOR && layout != COLUMN_MAJOR) {
+            throw new IOException("Unsupported matrix layout " + layout);
+        }
+        int numRows = buffer.getInt();
+        int numCols = buffer.getInt();
+        int dataOffset = buffer.getInt();
+        if (numRows <= 0 || numCols <= 0 || (long) numRows * numCols > Integer.MAX_VALUE) {
+            throw new IOException("Invalid matrix shape " + numRows + "x" + numCols);
+        }
+        if (dataOffset < HEADER_BYTES) {
+            throw new IOException("Invalid matrix data offset " + dataOffset);
+        }
+        return new Header(layout, numRows, numCols, dataOffset);
+    }
+
+    // Appends data[from, from + length) to buffer, writing the buffer out whenever it fills up
+    private static void writeDoubles(double[] data, int from, int length, ByteBuffer buffer,
+                                     WritableByteChannel channel) throws IOException {
+        int end = from + length;
+        while (from < end) {
+            int count = Math.min(end - from, buffer.remaining() / Double.BYTES);
+            if (count == 0) {
+                buffer.flip();
+                writeFully(buffer, channel);
+                buffer.clear();
+                continue;
+            }
+            buffer.asDoubleBuffer().put(data, from, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            from += count;
+        }
+    }
+
+    private static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(ByteBuffer buffer, ReadableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of matrix file");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,546 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * An array of doubles with any number of dimensions, such as a batch of
+ * matrices with shape [batch, rows, cols]. Like Matrix it is a view: element
+ * (i0, i1, ...) lives at data[offset + i0 * strides[0] + i1 * strides[1] + ...],
+ * so selecting, transposing and broadcasting only make a new shape, new
+ * strides and a new offset over the same data.
+ * <p>
+ * Element-wise operations follow numpy's broadcasting: the shapes are lined
+ * up from the last axis, and an axis of length 1, or a missing leading axis,
+ * of the other array is repeated. The work is handed to the same kernels as
+ * Matrix one run of the last axis at a time, or one run per block of runs when
+ * both arrays are contiguous, in parallel blocks as the Parallelism settings
+ * decide.
+ */
+public class NDArray extends DataView implements Array {
+
+    private final int[] shape;
+    private final int[] strides;
+    private final int offset;
+    private final int size;
+
+    private NDArray(double[] data, int[] shape, int[] strides, int offset) {
+        this.data = data;
+        this.shape = shape;
+        this.strides = strides;
+        this.offset = offset;
+        this.size = checkShape(shape);
+    }
+
+    /**
+     * Wrap a row-major 1D array as an NDArray without copying it. Changes to
+     * the NDArray are visible in the array and vice versa.
+     * @param data The row-major data, of length equal to the product of shape
+     * @param shape The length of every axis
+     * @return Returns an NDArray backed by data
+     */
+    public static NDArray wrap(double[] data, int... shape) {
+        int[] dims = shape.clone();
+        if (checkShape(dims) != data.length) {
+            throw new IllegalArgumentException("Data length does not match the array shape");
+        }
+        return new NDArray(data, dims, rowMajorStrides(dims), 0);
+    }
+
+    public static NDArray newZeros(int... shape) {
+        return wrap(new double[checkShape(shape)], shape);
+    }
+
+    /**
+     * Create an NDArray filled with normally distributed random values.
+     * @param shape The length of every axis
+     * @return Returns a new contiguous NDArray
+     */
+    public static NDArray newRandom(int... shape) {
+        double[] data = new double[checkShape(shape)];
+        Random rand = new Random();
+        for (int i = 0; i < data.length; i++) {
+            data[i] = rand.nextGaussian();
+        }
+        return wrap(data, shape);
+    }
+
+    /**
+     * View a matrix as a 2-dimensional NDArray over the same data. A matrix
+     * selected with an Integer[] has no strides, and is copied instead.
+     * @param matrix The matrix
+     * @return Returns a numRows x numCols NDArray
+     */
+    public static NDArray of(Matrix matrix) {
+        int[] dims = {matrix.getNumRows(), matrix.getNumCols()};
+        if (matrix.hasMaps()) {
+            return wrap(matrix.toDoubleArray(), dims);
+        }
+        return new NDArray(matrix.data, dims, new int[] {matrix.getRowStride(), matrix.getColStride()},
+                matrix.getOffset());
+    }
+
+    /**
+     * Copy matrices of the same shape into one batch.
+     * @param matrices The matrices, at least one
+     * @return Returns a new [count, rows, cols] NDArray
+     */
+    public static NDArray stack(Matrix... matrices) {
+        if (matrices.length == 0) {
+            throw new IllegalArgumentException("Array must have at least one element along every axis");
+        }
+        int rows = matrices[0].getNumRows();
+        int cols = matrices[0].getNumCols();
+        double[] data = new double[matrices.length * rows * cols];
+        for (int s = 0; s < matrices.length; s++) {
+            if (matrices[s].getNumRows() != rows || matrices[s].getNumCols() != cols) {
+                throw new IllegalArgumentException("Matrix shapes are not compatible");
+            }
+            double[] values = matrices[s].toDoubleArray();
+            System.arraycopy(values, 0, data, s * rows * cols, values.length);
+        }
+        return wrap(data, matrices.length, rows, cols);
+    }
+
+    // Implementation of methods in Array
+
+    /**
+     * Select along the leading axes, one argument per axis; axes without an
+     * argument are kept whole. An Integer keeps its axis with length 1, as
+     * Matrix does, so the number of dimensions never changes.
+     * @param args An Integer or Slice per axis, at most one per dimension
+     * @return Returns a view over the same data
+     */
+    @SafeVarargs
+    @Override
+    public final <T> NDArray select(T... args) {
+        if (args.length == 0 || args.length > shape.length) {
+            throw new IllegalArgumentException("NDArray select() requires 1 to " + shape.length + " arguments");
+        }
+        int[] newShape = shape.clone();
+        int[] newStrides = strides.clone();
+        int newOffset = offset;
+        for (int axis = 0; axis < args.length; axis++) {
+            Object arg = args[axis];
+            if (arg instanceof Integer) {
+                int index = (Integer) arg;
+                if (index < 0 || index >= shape[axis]) {
+                    throw new IllegalArgumentException("Index out of bounds");
+                }
+                newOffset += index * strides[axis];
+                newShape[axis] = 1;
+            } else if (arg instanceof Slice) {
+                Slice slice = (Slice) arg;
+                int length = slice.length(shape[axis]);
+                if (length == 0) {
+                    throw new IllegalArgumentException("Array must have at least one element along every axis");
+                }
+                newOffset += slice.getStart() * strides[axis];
+                newShape[axis] = length;
+                newStrides[axis] = strides[axis] * slice.getStep();
+            } else {
+                throw new IllegalArgumentException("NDArray select() arguments must be Integer or Slice");
+            }
+        }
+        return new NDArray(data, newShape, newStrides, newOffset);
+    }
+
+    /**
+     * Returns the axes in reverse order, as a view over the same data.
+     * @return Returns the transposed view
+     */
+    public NDArray transpose() {
+        int[] axes = new int[shape.length];
+        for (int i = 0; i < axes.length; i++) {
+            axes[i] = axes.length - 1 - i;
+        }
+        return transpose(axes);
+    }
+
+    /**
+     * Returns a view with the axes permuted: axis i of the view is axis
+     * axes[i] of this array. transpose(0, 2, 1) transposes every matrix of a
+     * batch.
+     * @param axes A permutation of 0 to getNumDims() - 1
+     * @return Returns the permuted view, in O(ndim)
+     */
+    public NDArray transpose(int... axes) {
+        if (axes.length != shape.length) {
+            throw new IllegalArgumentException("Axes must be a permutation of the array's axes");
+        }
+        boolean[] seen = new boolean[axes.length];
+        int[] newShape = new int[axes.length];
+        int[] newStrides = new int[axes.length];
+        for (int i = 0; i < axes.length; i++) {
+            int axis = axes[i];
+            if (axis < 0 || axis >= axes.length || seen[axis]) {
+                throw new IllegalArgumentException("Axes must be a permutation of the array's axes");
+            }
+            seen[axis] = true;
+            newShape[i] = shape[axis];
+            newStrides[i] = strides[axis];
+        }
+        return new NDArray(data, newShape, newStrides, offset);
+    }
+
+    /**
+     * Returns the same elements, in row-major order, with a different shape.
+     * A contiguous array is reshaped as a view over the same data; any other
+     * array is copied first.
+     * @param shape The new length of every axis
+     * @return Returns the reshaped array
+     * @throws IllegalArgumentException When the number of elements would change
+     */
+    public NDArray reshape(int... shape) {
+        int[] dims = shape.clone();
+        if (checkShape(dims) != size) {
+            throw new IllegalArgumentException("Array shapes are not compatible");
+        }
+        NDArray source = isContiguous() ? this : copy();
+        return new NDArray(source.data, dims, rowMajorStrides(dims), source.offset);
+    }
+
+    /**
+     * Returns a view with the given shape that repeats every axis of length
+     * 1, and adds any missing leading axes, without copying: the repeated
+     * axes get a stride of 0.
+     * @param shape The shape to broadcast to, with at least as many axes
+     * @return Returns the broadcast view, or this array if the shape is unchanged
+     * @throws IllegalArgumentException When the array cannot be broadcast to the shape
+     */
+    public NDArray broadcast(int... shape) {
+        if (!canBroadcast(shape)) {
+            throw new IllegalArgumentException("Array shapes are not compatible");
+        }
+        if (Arrays.equals(shape, this.shape)) {
+            return this;
+        }
+        int extra = shape.length - this.shape.length;
+        int[] newStrides = new int[shape.length];
+        for (int i = extra; i < shape.length; i++) {
+            int axis = i - extra;
+            newStrides[i] = this.shape[axis] == shape[i] ? strides[axis] : 0;
+        }
+        return new NDArray(data, shape.clone(), newStrides, offset);
+    }
+
+    /**
+     * Returns the matrix in the last two axes at the given leading indices,
+     * as a Matrix view over the same data.
+     * @param index One index per leading axis, getNumDims() - 2 in all
+     * @return Returns a view of shape [shape[ndim - 2], shape[ndim - 1]]
+     */
+    public Matrix getMatrix(int... index) {
+        if (shape.length < 2) {
+            throw new IllegalArgumentException("Array must have at least 2 dimensions");
+        }
+        if (index.length != shape.length - 2) {
+            throw new IllegalArgumentException("Incorrect number of indices");
+        }
+        int position = offset;
+        for (int i = 0; i < index.length; i++) {
+            if (index[i] < 0 || index[i] >= shape[i]) {
+                throw new IllegalArgumentException("Index out of bounds");
+            }
+            position += index[i] * strides[i];
+        }
+        int rowAxis = shape.length - 2;
+        return Matrix.view(data, shape[rowAxis], shape[rowAxis + 1], position,
+                strides[rowAxis], strides[rowAxis + 1]);
+    }
+
+    @Override
+    public NDArray copy() {
+        return wrap(toDoubleArray(), shape);
+    }
+
+    /**
+     * Copy the elements into a new row-major 1D array.
+     * @return Returns a new array of length getSize()
+     */
+    public double[] toDoubleArray() {
+        double[] result = new double[size];
+        int length = lastLength();
+        int stride = strides[shape.length - 1];
+        Parallelism.forRows(null, size / length, length, (from, to) -> {
+            if (isContiguous()) {
+                System.arraycopy(data, offset + from * length, result, from * length, (to - from) * length);
+                return;
+            }
+            for (int run = from; run < to; run++) {
+                int source = offset + runOffset(run);
+                int target = run * length;
+                for (int j = 0; j < length; j++) {
+                    result[target + j] = data[source + j * stride];
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Check if another array can be the right-hand side of an element-wise
+     * operation: an NDArray or Matrix that broadcasts to this shape.
+     */
+    @Override
+    public boolean isCompatible(Array other) {
+        NDArray array = asNDArray(other);
+        return array != null && array.canBroadcast(shape);
+    }
+
+    // Array Element-wise Operations
+    @Override
+    public void add(Array other) {
+        applyKernels(ElementwiseKernels.Op.ADD, other, "add");
+    }
+
+    @Override
+    public void add(Double scalar) {
+        applyKernels(ElementwiseKernels.Op.ADD, scalar);
+    }
+
+    @Override
+    public void subtract(Array other) {
+        applyKernels(ElementwiseKernels.Op.SUBTRACT, other, "subtract");
+    }
+
+    @Override
+    public void subtract(Double scalar) {
+        applyKernels(ElementwiseKernels.Op.SUBTRACT, scalar);
+    }
+
+    @Override
+    public void multiply(Array other) {
+        applyKernels(ElementwiseKernels.Op.MULTIPLY, other, "multiply");
+    }
+
+    @Override
+    public void multiply(Double scalar) {
+        applyKernels(ElementwiseKernels.Op.MULTIPLY, scalar);
+    }
+
+    @Override
+    public void divide(Array other) {
+        applyKernels(ElementwiseKernels.Op.DIVIDE, other, "divide");
+    }
+
+    @Override
+    public void divide(Double scalar) {
+        applyKernels(ElementwiseKernels.Op.DIVIDE, scalar);
+    }
+
+    private void applyKernels(ElementwiseKernels.Op op, Array other, String name) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("NDArray " + name + "() incompatible with other array");
+        }
+        NDArray array = asNDArray(other).broadcast(shape);
+        int length = lastLength();
+        int stride = strides[shape.length - 1];
+        int otherStride = array.strides[shape.length - 1];
+        Parallelism.forRows(writeParallelism(), size / length, length, (from, to) -> {
+            ElementwiseKernels kernels = ElementwiseKernels.INSTANCE;
+            if (isContiguous() && array.isContiguous()) {
+                kernels.apply(op, data, offset + from * length, 1,
+                        array.data, array.offset + from * length, 1, (to - from) * length);
+                return;
+            }
+            for (int run = from; run < to; run++) {
+                int pos = offset + runOffset(run);
+                int otherPos = array.offset + array.runOffset(run);
+                if (otherStride == 0) {
+                    kernels.apply(op, data, pos, stride, array.data[otherPos], length);
+                } else {
+                    kernels.apply(op, data, pos, stride, array.data, otherPos, otherStride, length);
+                }
+            }
+        });
+    }
+
+    private void applyKernels(ElementwiseKernels.Op op, double scalar) {
+        int length = lastLength();
+        int stride = strides[shape.length - 1];
+        Parallelism.forRows(writeParallelism(), size / length, length, (from, to) -> {
+            ElementwiseKernels kernels = ElementwiseKernels.INSTANCE;
+            if (isContiguous()) {
+                kernels.apply(op, data, offset + from * length, 1, scalar, (to - from) * length);
+                return;
+            }
+            for (int run = from; run < to; run++) {
+                kernels.apply(op, data, offset + runOffset(run), stride, scalar, length);
+            }
+        });
+    }
+
+    // Inherited from DataView
+    @Override
+    public Double get(Integer... args) {
+        checkIndex(args);
+        return data[position(args)];
+    }
+
+    @Override
+    public void set(Double value, Integer... args) {
+        checkIndex(args);
+        data[position(args)] = value;
+    }
+
+    @Override
+    public Integer[] getShape() {
+        Integer[] result = new Integer[shape.length];
+        for (int i = 0; i < shape.length; i++) {
+            result[i] = shape[i];
+        }
+        return result;
+    }
+
+    /**
+     * Prints the elements as nested lists, one level of brackets per axis.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        append(sb, 0, offset);
+        return sb.toString();
+    }
+
+    // Getters
+    public int getNumDims() {
+        return shape.length;
+    }
+
+    /**
+     * @return Returns the number of elements
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Returns the distance in data between consecutive indices of every axis
+     */
+    public int[] getStrides() {
+        return strides.clone();
+    }
+
+    /**
+     * Check if the array occupies one unbroken row-major run of its data,
+     * which is the case for new arrays and copies, but not for most views.
+     * @return Returns true if the array is contiguous, false otherwise.
+     */
+    public boolean isContiguous() {
+        int expected = 1;
+        for (int axis = shape.length - 1; axis >= 0; axis--) {
+            if (shape[axis] != 1 && strides[axis] != expected) {
+                return false;
+            }
+            expected *= shape[axis];
+        }
+        return true;
+    }
+
+    // Helpers
+
+    private void append(StringBuilder sb, int axis, int position) {
+        sb.append("[");
+        for (int i = 0; i < shape[axis]; i++) {
+            if (axis == shape.length - 1) {
+                sb.append(data[position + i * strides[axis]]);
+            } else {
+                append(sb, axis + 1, position + i * strides[axis]);
+            }
+            if (i < shape[axis] - 1) {
+                sb.append(axis == shape.length - 1 ? ", " : ",\n");
+            }
+        }
+        sb.append("]");
+    }
+
+    private int position(Integer... args) {
+        int position = offset;
+        for (int i = 0; i < args.length; i++) {
+            position += args[i] * strides[i];
+        }
+        return position;
+    }
+
+    private int lastLength() {
+        return shape[shape.length - 1];
+    }
+
+    /**
+     * @param run The index of a run of the last axis, counting in row-major order
+     * @return Returns the position of the start of the run, relative to offset
+     */
+    private int runOffset(int run) {
+        int position = 0;
+        for (int axis = shape.length - 2; axis >= 0; axis--) {
+            position += run % shape[axis] * strides[axis];
+            run /= shape[axis];
+        }
+        return position;
+    }
+
+    // Runs that may share elements, through a stride of 0, are written on one thread, in order
+    private Parallelism.Mode writeParallelism() {
+        for (int axis = 0; axis < shape.length - 1; axis++) {
+            if (strides[axis] == 0 && shape[axis] > 1) {
+                return Parallelism.Mode.SEQUENTIAL;
+            }
+        }
+        return null;
+    }
+
+    private boolean canBroadcast(int[] target) {
+        if (target.length < shape.length) {
+            return false;
+        }
+        int extra = target.length - shape.length;
+        for (int axis = 0; axis < shape.length; axis++) {
+            if (shape[axis] != target[axis + extra] && shape[axis] != 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static NDArray asNDArray(Array other) {
+        if (other instanceof NDArray) {
+            return (NDArray) other;
+        }
+        if (other instanceof Matrix) {
+            return of((Matrix) other);
+        }
+        return null;
+    }
+
+    private static int[] rowMajorStrides(int[] shape) {
+        int[] strides = new int[shape.length];
+        int stride = 1;
+        for (int axis = shape.length - 1; axis >= 0; axis--) {
+            strides[axis] = stride;
+            stride *= shape[axis];
+        }
+        return strides;
+    }
+
+    /**
+     * @return Returns the number of elements of an array of that shape
+     */
+    private static int checkShape(int[] shape) {
+        if (shape.length == 0) {
+            throw new IllegalArgumentException("Array must have at least one dimension");
+        }
+        long size = 1;
+        for (int length : shape) {
+            if (length <= 0) {
+                throw new IllegalArgumentException("Array must have at least one element along every axis");
+            }
+            size *= length;
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Array is too large");
+            }
+        }
+        return (int) size;
+    }
+
+}
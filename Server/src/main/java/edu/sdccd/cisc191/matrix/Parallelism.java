@@ -0,0 +1,151 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * When the element-wise operations and copies of Matrix run in parallel.
+ * Parallel work is split into blocks of whole rows, which run over the
+ * common ForkJoinPool, the same pool the blocked matrix multiply uses. Rows
+ * of a view are handled like any other rows, so slices and transposes split
+ * the same way.
+ * <p>
+ * The global mode comes from -Dedu.sdccd.cisc191.matrix.parallel (AUTO,
+ * SEQUENTIAL or PARALLEL, AUTO by default) and the threshold from
+ * -Dedu.sdccd.cisc191.matrix.parallelThreshold; both can be changed at run
+ * time. Matrix.parallel() and Matrix.sequential() override the mode for the
+ * operations on one matrix.
+ */
+public final class Parallelism {
+
+    public enum Mode {
+        /** Parallel for matrices of at least getThreshold() elements */
+        AUTO,
+        /** Always on the calling thread */
+        SEQUENTIAL,
+        /** Parallel whenever there is more than one row, even with a single worker */
+        PARALLEL
+    }
+
+    // Below this many elements, forking costs more than it saves: a memory
+    // bound pass over 64K doubles takes about as long as waking a few workers
+    private static final int DEFAULT_THRESHOLD = 1 << 16;
+
+    // Blocks are at least this many elements, so a task is never shorter than its own overhead
+    private static final int MIN_BLOCK = 1 << 12;
+
+    private static volatile Mode mode =
+            Mode.valueOf(System.getProperty("edu.sdccd.cisc191.matrix.parallel", "AUTO"));
+    private static volatile int threshold =
+            Integer.getInteger("edu.sdccd.cisc191.matrix.parallelThreshold", DEFAULT_THRESHOLD);
+
+    private Parallelism() {
+    }
+
+    public static Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @param mode The mode of every matrix without its own, as set by parallel() or sequential()
+     */
+    public static void setMode(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Mode must not be null");
+        }
+        Parallelism.mode = mode;
+    }
+
+    public static int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param elements The fewest elements an operation must touch to run in parallel in AUTO mode
+     */
+    public static void setThreshold(int elements) {
+        if (elements < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative");
+        }
+        threshold = elements;
+    }
+
+    /**
+     * Work on the rows [from, to) of a matrix.
+     */
+    interface Rows {
+        void apply(int from, int to);
+    }
+
+    /**
+     * Run body over all rows, in parallel row blocks if the mode and size
+     * call for it, otherwise as a single block on the calling thread.
+     * @param mode The mode of the matrix, or null for the global mode
+     * @param numRows The number of rows
+     * @param numCols The number of elements in each row
+     * @param body The work on a block of rows
+     */
+    static void forRows(Mode mode, int numRows, int numCols, Rows body) {
+        long elements = (long) numRows * numCols;
+        if (!isParallel(mode, numRows, elements)) {
+            body.apply(0, numRows);
+            return;
+        }
+        int blockRows = (int) Math.max(1, Math.min(numRows, grain(mode, elements) / Math.max(1, numCols)));
+        ForkJoinPool.commonPool().invoke(new RowTask(body, 0, numRows, blockRows));
+    }
+
+    /**
+     * @param mode The mode of the matrix, or null for the global mode
+     * @param units The number of pieces the work could be split into
+     * @param elements The number of elements the work touches
+     * @return Returns true if the work should be split over the pool
+     */
+    static boolean isParallel(Mode mode, int units, long elements) {
+        mode = resolve(mode);
+        return units > 1 && (mode == Mode.PARALLEL
+                || (mode == Mode.AUTO && ForkJoinPool.getCommonPoolParallelism() > 1 && elements >= threshold));
+    }
+
+    /**
+     * About four blocks per worker, to even out uneven progress, and never
+     * fewer than MIN_BLOCK elements except in PARALLEL mode.
+     * @param mode The mode of the matrix, or null for the global mode
+     * @param elements The number of elements the work touches
+     * @return Returns the number of elements in one parallel block
+     */
+    static long grain(Mode mode, long elements) {
+        long block = elements / (4L * ForkJoinPool.getCommonPoolParallelism());
+        return resolve(mode) == Mode.PARALLEL ? Math.max(1, block) : Math.max(MIN_BLOCK, block);
+    }
+
+    private static Mode resolve(Mode mode) {
+        return mode == null ? Parallelism.mode : mode;
+    }
+
+    private static final class RowTask extends RecursiveAction {
+
+        private final Rows body;
+        private final int from;
+        private final int to;
+        private final int blockRows;
+
+        private RowTask(Rows body, int from, int to, int blockRows) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.blockRows = blockRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= blockRows) {
+                body.apply(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RowTask(body, from, middle, blockRows), new RowTask(body, middle, to, blockRows));
+        }
+    }
+
+}
@@ -0,0 +1,358 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * Single pass, allocation-free reductions over a run of elements,
+ * data[pos + i * stride] for i in [0, length), the same runs the element-wise
+ * kernels work on. Matrix builds its whole-matrix and per-axis reductions
+ * from these.
+ * <p>
+ * Sums are pairwise: the run is halved until the halves are at most BLOCK
+ * elements, each block is summed in one loop, and the block sums are added
+ * back up the tree. The rounding error then grows with log n rather than n,
+ * for the cost of one call per block. Runs that are large enough for the
+ * Parallelism settings reduce their halves over the common ForkJoinPool.
+ * The tree is the same either way, so a parallel sum is bit for bit the
+ * sequential one.
+ * <p>
+ * min, max and maxAbs propagate NaN; argmin, argmax and argmaxAbs skip it.
+ */
+public final class Reductions {
+
+    // Blocks of at most this many elements are reduced in one loop
+    private static final int BLOCK = 128;
+
+    private Reductions() {
+    }
+
+    /**
+     * A reduction of one run, as used by Matrix for each row or column.
+     */
+    interface Kernel {
+        double apply(Parallelism.Mode mode, double[] data, int pos, int stride, int length);
+    }
+
+    /**
+     * The reduction of the indices [from, to) of a leaf of the tree.
+     */
+    interface Leaf {
+        double apply(int from, int to);
+    }
+
+    public static double sum(double[] data, int pos, int stride, int length) {
+        return sum(null, data, pos, stride, length);
+    }
+
+    public static double sumAbs(double[] data, int pos, int stride, int length) {
+        return sumAbs(null, data, pos, stride, length);
+    }
+
+    public static double sumSquares(double[] data, int pos, int stride, int length) {
+        return sumSquares(null, data, pos, stride, length);
+    }
+
+    public static double dot(double[] x, int xPos, int xStride, double[] y, int yPos, int yStride, int length) {
+        return dot(null, x, xPos, xStride, y, yPos, yStride, length);
+    }
+
+    /**
+     * The Euclidean norm. Squares that would overflow or underflow are
+     * summed again scaled by the largest magnitude, so the norm is accurate
+     * over the whole range of double.
+     */
+    public static double norm2(double[] data, int pos, int stride, int length) {
+        return norm2(null, data, pos, stride, length);
+    }
+
+    public static double min(double[] data, int pos, int stride, int length) {
+        return min(null, data, pos, stride, length);
+    }
+
+    public static double max(double[] data, int pos, int stride, int length) {
+        return max(null, data, pos, stride, length);
+    }
+
+    /**
+     * @return Returns the largest magnitude, which is the infinity norm
+     */
+    public static double maxAbs(double[] data, int pos, int stride, int length) {
+        return maxAbs(null, data, pos, stride, length);
+    }
+
+    /**
+     * @return Returns the position in the run of the first smallest element, or 0 if all are NaN
+     */
+    public static int argmin(double[] data, int pos, int stride, int length) {
+        int best = 0;
+        double bestValue = Double.NaN;
+        for (int i = 0; i < length; i++) {
+            double value = data[pos + i * stride];
+            if (value < bestValue || (bestValue != bestValue && value == value)) {
+                best = i;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return Returns the position in the run of the first largest element, or 0 if all are NaN
+     */
+    public static int argmax(double[] data, int pos, int stride, int length) {
+        int best = 0;
+        double bestValue = Double.NaN;
+        for (int i = 0; i < length; i++) {
+            double value = data[pos + i * stride];
+            if (value > bestValue || (bestValue != bestValue && value == value)) {
+                best = i;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The pivot search of Gaussian elimination.
+     * @return Returns the position in the run of the first largest magnitude, or 0 if all are NaN
+     */
+    public static int argmaxAbs(double[] data, int pos, int stride, int length) {
+        int best = 0;
+        double bestValue = -1;
+        for (int i = 0; i < length; i++) {
+            double value = Math.abs(data[pos + i * stride]);
+            if (value > bestValue) {
+                best = i;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    // The same reductions with the parallelism of a matrix, for Matrix
+
+    static double sum(Parallelism.Mode mode, double[] data, int pos, int stride, int length) {
+        return reduce(mode, length, BLOCK, 1, (from, to) -> {
+            int start = pos + from * stride;
+            int n = to - from;
+            double s0 = 0;
+            double s1 = 0;
+            double s2 = 0;
+            double s3 = 0;
+            int i = 0;
+            // Unit stride, the common case, as a loop the JIT can keep to plain loads
+            if (stride == 1) {
+                for (; i + 3 < n; i += 4) {
+                    s0 += data[start + i];
+                    s1 += data[start + i + 1];
+                    s2 += data[start + i + 2];
+                    s3 += data[start + i + 3];
+                }
+            } else {
+                for (; i + 3 < n; i += 4) {
+                    int p = start + i * stride;
+                    s0 += data[p];
+                    s1 += data[p + stride];
+                    s2 += data[p + 2 * stride];
+                    s3 += data[p + 3 * stride];
+                }
+            }
+            for (; i < n; i++) {
+                s0 += data[start + i * stride];
+            }
+            return (s0 + s1) + (s2 + s3);
+        }, Double::sum);
+    }
+
+    static double sumAbs(Parallelism.Mode mode, double[] data, int pos, int stride, int length) {
+        return reduce(mode, length, BLOCK, 1, (from, to) -> {
+            double s0 = 0;
+            double s1 = 0;
+            int i = from;
+            for (; i + 1 < to; i += 2) {
+                s0 += Math.abs(data[pos + i * stride]);
+                s1 += Math.abs(data[pos + (i + 1) * stride]);
+            }
+            if (i < to) {
+                s0 += Math.abs(data[pos + i * stride]);
+            }
+            return s0 + s1;
+        }, Double::sum);
+    }
+
+    static double sumSquares(Parallelism.Mode mode, double[] data, int pos, int stride, int length) {
+        return sumSquares(mode, data, pos, stride, length, 1.0);
+    }
+
+    // The sum of (scale * x)^2
+    private static double sumSquares(Parallelism.Mode mode, double[] data, int pos, int stride, int length,
+                                     double scale) {
+        return reduce(mode, length, BLOCK, 1, (from, to) -> {
+            double s0 = 0;
+            double s1 = 0;
+            int i = from;
+            for (; i + 1 < to; i += 2) {
+                double x0 = scale * data[pos + i * stride];
+                double x1 = scale * data[pos + (i + 1) * stride];
+                s0 += x0 * x0;
+                s1 += x1 * x1;
+            }
+            if (i < to) {
+                double x0 = scale * data[pos + i * stride];
+                s0 += x0 * x0;
+            }
+            return s0 + s1;
+        }, Double::sum);
+    }
+
+    static double dot(Parallelism.Mode mode, double[] x, int xPos, int xStride,
+                      double[] y, int yPos, int yStride, int length) {
+        return reduce(mode, length, BLOCK, 2, (from, to) -> {
+            double s0 = 0;
+            double s1 = 0;
+            int i = from;
+            if (xStride == 1 && yStride == 1) {
+                for (; i + 1 < to; i += 2) {
+                    s0 += x[xPos + i] * y[yPos + i];
+                    s1 += x[xPos + i + 1] * y[yPos + i + 1];
+                }
+            } else {
+                for (; i + 1 < to; i += 2) {
+                    s0 += x[xPos + i * xStride] * y[yPos + i * yStride];
+                    s1 += x[xPos + (i + 1) * xStride] * y[yPos + (i + 1) * yStride];
+                }
+            }
+            if (i < to) {
+                s0 += x[xPos + i * xStride] * y[yPos + i * yStride];
+            }
+            return s0 + s1;
+        }, Double::sum);
+    }
+
+    static double norm2(Parallelism.Mode mode, double[] data, int pos, int stride, int length) {
+        double squares = sumSquares(mode, data, pos, stride, length);
+        if (!needsScaling(squares)) {
+            return Math.sqrt(squares);
+        }
+        double scale = maxAbs(mode, data, pos, stride, length);
+        if (!isScalable(scale)) {
+            return scale;
+        }
+        return scale * Math.sqrt(sumSquares(mode, data, pos, stride, length, 1 / scale));
+    }
+
+    static double min(Parallelism.Mode mode, double[] data, int pos, int stride, int length) {
+        return reduce(mode, length, BLOCK, 1, (from, to) -> {
+            double min = Double.POSITIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, data[pos + i * stride]);
+            }
+            return min;
+        }, Math::min);
+    }
+
+    static double max(Parallelism.Mode mode, double[] data, int pos, int stride, int length) {
+        return reduce(mode, length, BLOCK, 1, (from, to) -> {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, data[pos + i * stride]);
+            }
+            return max;
+        }, Math::max);
+    }
+
+    static double maxAbs(Parallelism.Mode mode, double[] data, int pos, int stride, int length) {
+        return reduce(mode, length, BLOCK, 1, (from, to) -> {
+            double max = 0;
+            for (int i = from; i < to; i++) {
+                max = Math.max(max, Math.abs(data[pos + i * stride]));
+            }
+            return max;
+        }, Math::max);
+    }
+
+    /**
+     * @param squares A sum of squares
+     * @return Returns true if squares may have overflowed, or lost its precision to underflow
+     */
+    static boolean needsScaling(double squares) {
+        return squares == Double.POSITIVE_INFINITY || squares < Double.MIN_NORMAL;
+    }
+
+    /**
+     * @param scale The largest magnitude, for a sum of squares that needs scaling
+     * @return Returns false if the norm is scale itself: zero, infinite or NaN
+     */
+    static boolean isScalable(double scale) {
+        return scale > 0 && scale < Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Reduce the indices [0, count) pairwise: ranges of at most leafSize
+     * indices go to leaf, and the results of the two halves of every longer
+     * range are combined. With the parallelism to do so, halves of at least
+     * a parallel block run as separate tasks.
+     * @param mode The mode of the matrix, or null for the global mode
+     * @param count The number of indices
+     * @param leafSize The largest range given to leaf
+     * @param elementsPerIndex The elements read for each index
+     * @param leaf The reduction of a range
+     * @param combine How the results of two halves are combined
+     * @return Returns the reduction of all indices
+     */
+    static double reduce(Parallelism.Mode mode, int count, int leafSize, long elementsPerIndex,
+                         Leaf leaf, DoubleBinaryOperator combine) {
+        if (count <= leafSize) {
+            return leaf.apply(0, count);
+        }
+        long elements = count * elementsPerIndex;
+        if (!Parallelism.isParallel(mode, count, elements)) {
+            return reduce(0, count, leafSize, leaf, combine);
+        }
+        long grain = Math.max(leafSize, Parallelism.grain(mode, elements) / elementsPerIndex);
+        return ForkJoinPool.commonPool().invoke(new ReduceTask(0, count, leafSize, grain, leaf, combine));
+    }
+
+    private static double reduce(int from, int to, int leafSize, Leaf leaf, DoubleBinaryOperator combine) {
+        if (to - from <= leafSize) {
+            return leaf.apply(from, to);
+        }
+        int middle = (from + to) >>> 1;
+        return combine.applyAsDouble(reduce(from, middle, leafSize, leaf, combine),
+                reduce(middle, to, leafSize, leaf, combine));
+    }
+
+    private static final class ReduceTask extends RecursiveTask<Double> {
+
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final long grain;
+        private final Leaf leaf;
+        private final DoubleBinaryOperator combine;
+
+        private ReduceTask(int from, int to, int leafSize, long grain, Leaf leaf, DoubleBinaryOperator combine) {
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.grain = grain;
+            this.leaf = leaf;
+            this.combine = combine;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= grain) {
+                return reduce(from, to, leafSize, leaf, combine);
+            }
+            int middle = (from + to) >>> 1;
+            ReduceTask left = new ReduceTask(from, middle, leafSize, grain, leaf, combine);
+            left.fork();
+            double right = new ReduceTask(middle, to, leafSize, grain, leaf, combine).compute();
+            return combine.applyAsDouble(left.join(), right);
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package edu.sdccd.cisc191.matrix;
+
+/**
+ * Plain Java loops. Unit-stride runs are written as simple counted loops over
+ * both arrays, which the JIT unrolls and auto-vectorizes.
+ */
+class ScalarKernels extends ElementwiseKernels {
+
+    @Override
+    void apply(Op op, double[] dst, int dstPos, int dstStride,
+               double[] src, int srcPos, int srcStride, int length) {
+        if (dstStride == 1 && srcStride == 1) {
+            applyContiguous(op, dst, dstPos, src, srcPos, length);
+            return;
+        }
+        int d = dstPos;
+        int s = srcPos;
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < length; i++, d += dstStride, s += srcStride) {
+                    dst[d] += src[s];
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < length; i++, d += dstStride, s += srcStride) {
+                    dst[d] -= src[s];
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < length; i++, d += dstStride, s += srcStride) {
+                    dst[d] *= src[s];
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++, d += dstStride, s += srcStride) {
+                    dst[d] /= src[s];
+                }
+                break;
+        }
+    }
+
+    @Override
+    void apply(Op op, double[] dst, int dstPos, int dstStride, double scalar, int length) {
+        if (dstStride == 1) {
+            applyContiguous(op, dst, dstPos, scalar, length);
+            return;
+        }
+        int d = dstPos;
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < length; i++, d += dstStride) {
+                    dst[d] += scalar;
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < length; i++, d += dstStride) {
+                    dst[d] -= scalar;
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < length; i++, d += dstStride) {
+                    dst[d] *= scalar;
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++, d += dstStride) {
+                    dst[d] /= scalar;
+                }
+                break;
+        }
+    }
+
+    static void applyContiguous(Op op, double[] dst, int dstPos, double[] src, int srcPos, int length) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] += src[srcPos + i];
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] -= src[srcPos + i];
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] *= src[srcPos + i];
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] /= src[srcPos + i];
+                }
+                break;
+        }
+    }
+
+    static void applyContiguous(Op op, double[] dst, int dstPos, double scalar, int length) {
+        switch (op) {
+            case ADD:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] += scalar;
+                }
+                break;
+            case SUBTRACT:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] -= scalar;
+                }
+                break;
+            case MULTIPLY:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] *= scalar;
+                }
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    dst[dstPos + i] /= scalar;
+                }
+                break;
+        }
+    }
+
+}
@@ -1,10 +1,17 @@
 package edu.sdccd.cisc191.matrix;
 
+/**
+ * The indices start, start + step, ... below end of one axis. An end of -1
+ * runs to the end of the axis. A Slice is an affine map from positions to
+ * indices, so selecting with one never lists the indices it covers: a view
+ * only multiplies its stride by the step, and a slice of a slice is again a
+ * single Slice, made by compose() in O(1).
+ */
 public class Slice {
 
-    private int start;
-    private int end;
-    private int step;
+    private final int start;
+    private final int end;
+    private final int step;
 
     public Slice(int start, int end, int step) {
         this.start = start;
@@ -28,4 +35,64 @@ public class Slice {
     public int getEnd() { return end; }
     public int getStep() { return step; }
 
+    /**
+     * @param length The length of the axis
+     * @return Returns the end of the slice on an axis of that length
+     */
+    public int getEnd(int length) {
+        return end == -1 ? length : end;
+    }
+
+    /**
+     * Check the slice against an axis and count the indices it selects.
+     * @param length The length of the axis
+     * @return Returns the number of indices selected
+     */
+    public int length(int length) {
+        int top = getEnd(length);
+        if (step <= 0) {
+            throw new IllegalArgumentException("Slice step must be positive");
+        }
+        if (start < 0 || top > length) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+        return top > start ? (top - start + step - 1) / step : 0;
+    }
+
+    /**
+     * @param position A position within the slice
+     * @return Returns the axis index at that position
+     */
+    public int index(int position) {
+        return start + position * step;
+    }
+
+    /**
+     * @param length The length of the axis
+     * @return Returns true if the slice selects the whole axis, in order
+     */
+    public boolean coversAll(int length) {
+        return start == 0 && step == 1 && getEnd(length) == length;
+    }
+
+    /**
+     * Compose two slices: selecting inner from what this slice selects on an
+     * axis is the same as selecting the result from the axis itself.
+     * @param inner The slice of this slice
+     * @param length The length of the axis
+     * @return Returns the combined slice
+     */
+    public Slice compose(Slice inner, int length) {
+        int count = inner.length(length(length));
+        if (count == 0) {
+            return new Slice(0, 0);
+        }
+        return new Slice(index(inner.start), index(inner.index(count - 1)) + 1, step * inner.step);
+    }
+
+    @Override
+    public String toString() {
+        return start + ":" + (end == -1 ? "" : Integer.toString(end)) + ":" + step;
+    }
+
 }
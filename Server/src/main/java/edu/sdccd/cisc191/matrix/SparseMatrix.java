@@ -0,0 +1,595 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.util.*;
+
+/**
+ * A sparse matrix in compressed sparse row (CSR) form. Only the non-zero
+ * elements are stored: data holds their values row by row, colIndices holds
+ * the column of each value, and row r occupies positions
+ * [rowPtr[r], rowPtr[r + 1]) of both. Columns are sorted within each row.
+ * <p>
+ * Element-wise operations keep the matrix sparse, so the ones that would fill
+ * it in (adding a scalar, adding a dense Matrix) are not supported; convert
+ * with toMatrix() first. Selecting rows gives a view that shares the same
+ * storage. Adding a new non-zero with set() or add() rebuilds the storage, so
+ * it is only allowed on a matrix that is not a view, and views taken before
+ * no longer see that matrix.
+ */
+public class SparseMatrix extends DataView implements Array {
+
+    private final int numRows;
+    private final int numCols;
+
+    private int[] rowPtr;
+    private int[] colIndices;
+
+    // Rows of a view: row i of the view is row rowStart + i * rowStep of the
+    // storage, or row rowMap[i] when rows were picked by index. A matrix that
+    // is not a view has rowStart 0, rowStep 1 and no rowMap.
+    private final int rowStart;
+    private final int rowStep;
+    private final int[] rowMap;
+    private final boolean view;
+
+    private SparseMatrix(int numRows, int numCols, int[] rowPtr, int[] colIndices,
+                         double[] values, int rowStart, int rowStep, int[] rowMap, boolean view) {
+        this.numRows = numRows;
+        this.numCols = numCols;
+        this.rowPtr = rowPtr;
+        this.colIndices = colIndices;
+        this.data = values;
+        this.rowStart = rowStart;
+        this.rowStep = rowStep;
+        this.rowMap = rowMap;
+        this.view = view;
+    }
+
+    private SparseMatrix(int numRows, int numCols, int[] rowPtr, int[] colIndices, double[] values) {
+        this(numRows, numCols, rowPtr, colIndices, values, 0, 1, null, false);
+    }
+
+    /**
+     * Create a SparseMatrix from coordinate (COO) triplets. Element
+     * (rows[i], cols[i]) gets values[i]; duplicate coordinates are summed.
+     * @param numRows The number of rows
+     * @param numCols The number of columns
+     * @param rows The row of each triplet
+     * @param cols The column of each triplet
+     * @param values The value of each triplet
+     * @return Returns a SparseMatrix holding the triplets
+     */
+    public static SparseMatrix fromTriplets(int numRows, int numCols,
+                                            int[] rows, int[] cols, double[] values) {
+        if (numRows <= 0 || numCols <= 0) {
+            throw new IllegalArgumentException("Matrix must have at least one row and one column");
+        }
+        if (rows.length != cols.length || rows.length != values.length) {
+            throw new IllegalArgumentException("Triplet arrays must have the same length");
+        }
+        int nnz = rows.length;
+        for (int i = 0; i < nnz; i++) {
+            if (rows[i] < 0 || rows[i] >= numRows || cols[i] < 0 || cols[i] >= numCols) {
+                throw new IllegalArgumentException("Index out of bounds");
+            }
+        }
+
+        // Counting sort by column, then a stable counting sort by row, leaves
+        // every row with its columns in order
+        int[] colPtr = new int[numCols + 1];
+        for (int i = 0; i < nnz; i++) {
+            colPtr[cols[i] + 1]++;
+        }
+        for (int c = 0; c < numCols; c++) {
+            colPtr[c + 1] += colPtr[c];
+        }
+        int[] byColumn = new int[nnz];
+        for (int i = 0; i < nnz; i++) {
+            byColumn[colPtr[cols[i]]++] = i;
+        }
+
+        int[] rowPtr = new int[numRows + 1];
+        for (int i = 0; i < nnz; i++) {
+            rowPtr[rows[i] + 1]++;
+        }
+        for (int r = 0; r < numRows; r++) {
+            rowPtr[r + 1] += rowPtr[r];
+        }
+        int[] next = Arrays.copyOf(rowPtr, numRows);
+        int[] sortedCols = new int[nnz];
+        double[] sortedValues = new double[nnz];
+        for (int k = 0; k < nnz; k++) {
+            int i = byColumn[k];
+            int pos = next[rows[i]]++;
+            sortedCols[pos] = cols[i];
+            sortedValues[pos] = values[i];
+        }
+
+        // Sum duplicates in place
+        int write = 0;
+        int read = 0;
+        for (int r = 0; r < numRows; r++) {
+            int end = rowPtr[r + 1];
+            rowPtr[r] = write;
+            while (read < end) {
+                int col = sortedCols[read];
+                double sum = 0;
+                while (read < end && sortedCols[read] == col) {
+                    sum += sortedValues[read++];
+                }
+                sortedCols[write] = col;
+                sortedValues[write] = sum;
+                write++;
+            }
+        }
+        rowPtr[numRows] = write;
+
+        return new SparseMatrix(numRows, numCols, rowPtr,
+                Arrays.copyOf(sortedCols, write), Arrays.copyOf(sortedValues, write));
+    }
+
+    /**
+     * Create a SparseMatrix holding the non-zero elements of a dense Matrix.
+     * @param matrix The dense matrix
+     * @return Returns a SparseMatrix with the same elements
+     */
+    public static SparseMatrix fromMatrix(Matrix matrix) {
+        int numRows = matrix.getNumRows();
+        int numCols = matrix.getNumCols();
+        double[] dense = matrix.toDoubleArray();
+        int nnz = 0;
+        for (double value : dense) {
+            if (value != 0) {
+                nnz++;
+            }
+        }
+        int[] rowPtr = new int[numRows + 1];
+        int[] colIndices = new int[nnz];
+        double[] values = new double[nnz];
+        int pos = 0;
+        for (int r = 0; r < numRows; r++) {
+            for (int c = 0; c < numCols; c++) {
+                double value = dense[r * numCols + c];
+                if (value != 0) {
+                    colIndices[pos] = c;
+                    values[pos] = value;
+                    pos++;
+                }
+            }
+            rowPtr[r + 1] = pos;
+        }
+        return new SparseMatrix(numRows, numCols, rowPtr, colIndices, values);
+    }
+
+    /**
+     * Convert to a dense Matrix.
+     * @return Returns a new Matrix with the same elements
+     */
+    public Matrix toMatrix() {
+        double[] dense = new double[numRows * numCols];
+        for (int r = 0; r < numRows; r++) {
+            for (int pos = getRowStart(r); pos < getRowEnd(r); pos++) {
+                dense[r * numCols + colIndices[pos]] = data[pos];
+            }
+        }
+        return Matrix.wrap(dense, numRows, numCols);
+    }
+
+    // Implementation of methods in Array
+
+    /**
+     * Select rows of the matrix. Only rows can be selected: the second argument
+     * must be a Slice covering every column.
+     */
+    @SafeVarargs
+    @Override
+    public final <T> SparseMatrix select(T... args) {
+
+        // Check args length
+        if (args.length != 2) {
+            throw new IllegalArgumentException("SparseMatrix select() requires 2 arguments");
+        }
+        if (!(args[1] instanceof Slice) || !((Slice) args[1]).coversAll(numCols)) {
+            throw new UnsupportedOperationException("SparseMatrix select() can only select rows");
+        }
+
+        T arg0 = args[0];
+        if (arg0 instanceof Integer) {
+            return new SparseMatrix(1, numCols, rowPtr, colIndices, data,
+                    storageRow(checkRow((Integer) arg0)), 1, null, true);
+        } else if (arg0 instanceof Integer[]) {
+            Integer[] indices = (Integer[]) arg0;
+            int[] rows = new int[indices.length];
+            for (int i = 0; i < indices.length; i++) {
+                rows[i] = storageRow(checkRow(indices[i]));
+            }
+            return new SparseMatrix(rows.length, numCols, rowPtr, colIndices, data, 0, 1, rows, true);
+        } else if (arg0 instanceof Slice) {
+            Slice slice = (Slice) arg0;
+            int length = slice.length(numRows);
+            if (rowMap == null) {
+                return new SparseMatrix(length, numCols, rowPtr, colIndices, data,
+                        storageRow(slice.getStart()), rowStep * slice.getStep(), null, true);
+            }
+            int[] rows = new int[length];
+            for (int i = 0; i < length; i++) {
+                rows[i] = rowMap[slice.index(i)];
+            }
+            return new SparseMatrix(length, numCols, rowPtr, colIndices, data, 0, 1, rows, true);
+        }
+        throw new IllegalArgumentException("SparseMatrix select() arguments must be Integer, Integer[], or Slice");
+    }
+
+    @Override
+    public SparseMatrix copy() {
+        int nnz = getNumNonZeros();
+        int[] newRowPtr = new int[numRows + 1];
+        int[] newColIndices = new int[nnz];
+        double[] newValues = new double[nnz];
+        int pos = 0;
+        for (int r = 0; r < numRows; r++) {
+            int start = getRowStart(r);
+            int length = getRowEnd(r) - start;
+            System.arraycopy(colIndices, start, newColIndices, pos, length);
+            System.arraycopy(data, start, newValues, pos, length);
+            pos += length;
+            newRowPtr[r + 1] = pos;
+        }
+        return new SparseMatrix(numRows, numCols, newRowPtr, newColIndices, newValues);
+    }
+
+    @Override
+    public boolean isCompatible(Array other) {
+        if (other instanceof SparseMatrix) {
+            SparseMatrix otherMatrix = (SparseMatrix) other;
+            return numRows == otherMatrix.numRows && numCols == otherMatrix.numCols;
+        }
+        if (other instanceof Matrix) {
+            Matrix otherMatrix = (Matrix) other;
+            return numRows == otherMatrix.getNumRows() && numCols == otherMatrix.getNumCols();
+        }
+        return false;
+    }
+
+    @Override
+    public void add(Array other) {
+        merge(other, false, "add");
+    }
+
+    @Override
+    public void add(Double scalar) {
+        if (scalar != 0) {
+            throw new UnsupportedOperationException("SparseMatrix add() of a scalar would make it dense");
+        }
+    }
+
+    @Override
+    public void subtract(Array other) {
+        merge(other, true, "subtract");
+    }
+
+    @Override
+    public void subtract(Double scalar) {
+        if (scalar != 0) {
+            throw new UnsupportedOperationException("SparseMatrix subtract() of a scalar would make it dense");
+        }
+    }
+
+    @Override
+    public void multiply(Array other) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("SparseMatrix multiply() incompatible with other array");
+        }
+        // Zeros stay zero, so only the stored elements change
+        if (other instanceof Matrix) {
+            Matrix dense = (Matrix) other;
+            for (int r = 0; r < numRows; r++) {
+                for (int pos = getRowStart(r); pos < getRowEnd(r); pos++) {
+                    data[pos] *= dense.get(r, colIndices[pos]);
+                }
+            }
+            return;
+        }
+        SparseMatrix sparse = (SparseMatrix) other;
+        for (int r = 0; r < numRows; r++) {
+            int otherPos = sparse.getRowStart(r);
+            int otherEnd = sparse.getRowEnd(r);
+            for (int pos = getRowStart(r); pos < getRowEnd(r); pos++) {
+                int col = colIndices[pos];
+                while (otherPos < otherEnd && sparse.colIndices[otherPos] < col) {
+                    otherPos++;
+                }
+                if (otherPos < otherEnd && sparse.colIndices[otherPos] == col) {
+                    data[pos] *= sparse.data[otherPos];
+                } else {
+                    data[pos] = 0.0;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void multiply(Double scalar) {
+        for (int r = 0; r < numRows; r++) {
+            for (int pos = getRowStart(r); pos < getRowEnd(r); pos++) {
+                data[pos] *= scalar;
+            }
+        }
+    }
+
+    @Override
+    public void divide(Array other) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("SparseMatrix divide() incompatible with other array");
+        }
+        // Zeros divided by anything are taken to stay zero; stored elements are
+        // divided by the matching element, which is zero if it is not stored
+        for (int r = 0; r < numRows; r++) {
+            for (int pos = getRowStart(r); pos < getRowEnd(r); pos++) {
+                data[pos] /= otherValue(other, r, colIndices[pos]);
+            }
+        }
+    }
+
+    @Override
+    public void divide(Double scalar) {
+        for (int r = 0; r < numRows; r++) {
+            for (int pos = getRowStart(r); pos < getRowEnd(r); pos++) {
+                data[pos] /= scalar;
+            }
+        }
+    }
+
+    // Inherited from DataView
+    @Override
+    public Double get(Integer... args) {
+        checkIndex(args);
+        return get((int) args[0], (int) args[1]);
+    }
+
+    @Override
+    public void set(Double value, Integer... args) {
+        checkIndex(args);
+        set((double) value, args[0], args[1]);
+    }
+
+    /**
+     * Get an element, found by binary search in its row.
+     * @param row The row index
+     * @param col The column index
+     * @return Returns the element at (row, col), 0 if it is not stored
+     */
+    public double get(int row, int col) {
+        checkIndex(row, col);
+        int pos = find(row, col);
+        return pos >= 0 ? data[pos] : 0.0;
+    }
+
+    /**
+     * Set an element. Updating a stored element is a binary search; setting a
+     * new non-zero element costs O(nnz) and is not allowed on a view.
+     * @param value The new value
+     * @param row The row index
+     * @param col The column index
+     */
+    public void set(double value, int row, int col) {
+        checkIndex(row, col);
+        int pos = find(row, col);
+        if (pos >= 0) {
+            data[pos] = value;
+        } else if (value != 0) {
+            insert(row, -pos - 1, col, value);
+        }
+    }
+
+    @Override
+    public Integer[] getShape() {
+        return new Integer[] {numRows, numCols};
+    }
+
+    @Override
+    public String toString() {
+        return toMatrix().toString();
+    }
+
+    // Getters
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumCols() {
+        return numCols;
+    }
+
+    public int getNumNonZeros() {
+        if (!view) {
+            return rowPtr[numRows];
+        }
+        int nnz = 0;
+        for (int r = 0; r < numRows; r++) {
+            nnz += getRowEnd(r) - getRowStart(r);
+        }
+        return nnz;
+    }
+
+    /**
+     * The stored elements of a row are at positions [getRowStart(row),
+     * getRowEnd(row)), read with getColumnAt() and getValueAt().
+     * @param row The row index
+     * @return Returns the position of the first stored element of the row
+     */
+    public int getRowStart(int row) {
+        return rowPtr[storageRow(row)];
+    }
+
+    /**
+     * @param row The row index
+     * @return Returns the position just past the last stored element of the row
+     */
+    public int getRowEnd(int row) {
+        return rowPtr[storageRow(row) + 1];
+    }
+
+    public int getColumnAt(int position) {
+        return colIndices[position];
+    }
+
+    public double getValueAt(int position) {
+        return data[position];
+    }
+
+    // Helpers
+    private int storageRow(int row) {
+        return rowMap == null ? rowStart + row * rowStep : rowMap[row];
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= numRows) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+        return row;
+    }
+
+    private void checkIndex(int row, int col) {
+        if (row < 0 || row >= numRows || col < 0 || col >= numCols) {
+            throw new IllegalArgumentException("Index out of bounds");
+        }
+    }
+
+    /**
+     * Returns the position of (row, col) if it is stored, or -(insertion point) - 1.
+     */
+    private int find(int row, int col) {
+        int low = getRowStart(row);
+        int high = getRowEnd(row) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midCol = colIndices[mid];
+            if (midCol < col) {
+                low = mid + 1;
+            } else if (midCol > col) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void insert(int row, int pos, int col, double value) {
+        if (view) {
+            throw new UnsupportedOperationException("Cannot add non-zero elements through a SparseMatrix view");
+        }
+        int nnz = rowPtr[numRows];
+        int[] newColIndices = new int[nnz + 1];
+        double[] newValues = new double[nnz + 1];
+        System.arraycopy(colIndices, 0, newColIndices, 0, pos);
+        System.arraycopy(data, 0, newValues, 0, pos);
+        newColIndices[pos] = col;
+        newValues[pos] = value;
+        System.arraycopy(colIndices, pos, newColIndices, pos + 1, nnz - pos);
+        System.arraycopy(data, pos, newValues, pos + 1, nnz - pos);
+        int[] newRowPtr = rowPtr.clone();
+        for (int r = row + 1; r <= numRows; r++) {
+            newRowPtr[r]++;
+        }
+        rowPtr = newRowPtr;
+        colIndices = newColIndices;
+        data = newValues;
+    }
+
+    private static double otherValue(Array other, int row, int col) {
+        if (other instanceof Matrix) {
+            return ((Matrix) other).get(row, col);
+        }
+        return ((SparseMatrix) other).get(row, col);
+    }
+
+    /**
+     * Adds (or subtracts) another SparseMatrix. When every non-zero of other is
+     * already stored here, the values are updated in place; otherwise the union
+     * of both patterns is built as new storage.
+     */
+    private void merge(Array other, boolean negate, String name) {
+        if (!isCompatible(other)) {
+            throw new IllegalArgumentException("SparseMatrix " + name + "() incompatible with other array");
+        }
+        if (!(other instanceof SparseMatrix)) {
+            throw new UnsupportedOperationException("SparseMatrix " + name + "() of a dense Matrix would make it dense");
+        }
+        SparseMatrix sparse = (SparseMatrix) other;
+        double sign = negate ? -1.0 : 1.0;
+
+        // Count the union, to see whether the pattern changes
+        int unionSize = 0;
+        for (int r = 0; r < numRows; r++) {
+            unionSize += unionLength(sparse, r);
+        }
+        if (unionSize == getNumNonZeros()) {
+            for (int r = 0; r < numRows; r++) {
+                int pos = getRowStart(r);
+                for (int otherPos = sparse.getRowStart(r); otherPos < sparse.getRowEnd(r); otherPos++) {
+                    int col = sparse.colIndices[otherPos];
+                    while (colIndices[pos] < col) {
+                        pos++;
+                    }
+                    data[pos] += sign * sparse.data[otherPos];
+                }
+            }
+            return;
+        }
+        if (view) {
+            throw new UnsupportedOperationException("Cannot add non-zero elements through a SparseMatrix view");
+        }
+
+        int[] newRowPtr = new int[numRows + 1];
+        int[] newColIndices = new int[unionSize];
+        double[] newValues = new double[unionSize];
+        int write = 0;
+        for (int r = 0; r < numRows; r++) {
+            int pos = getRowStart(r);
+            int end = getRowEnd(r);
+            int otherPos = sparse.getRowStart(r);
+            int otherEnd = sparse.getRowEnd(r);
+            while (pos < end || otherPos < otherEnd) {
+                int col = pos < end ? colIndices[pos] : Integer.MAX_VALUE;
+                int otherCol = otherPos < otherEnd ? sparse.colIndices[otherPos] : Integer.MAX_VALUE;
+                if (col < otherCol) {
+                    newColIndices[write] = col;
+                    newValues[write] = data[pos++];
+                } else if (otherCol < col) {
+                    newColIndices[write] = otherCol;
+                    newValues[write] = sign * sparse.data[otherPos++];
+                } else {
+                    newColIndices[write] = col;
+                    newValues[write] = data[pos++] + sign * sparse.data[otherPos++];
+                }
+                write++;
+            }
+            newRowPtr[r + 1] = write;
+        }
+        rowPtr = newRowPtr;
+        colIndices = newColIndices;
+        data = newValues;
+    }
+
+    private int unionLength(SparseMatrix other, int row) {
+        int pos = getRowStart(row);
+        int end = getRowEnd(row);
+        int otherPos = other.getRowStart(row);
+        int otherEnd = other.getRowEnd(row);
+        int length = 0;
+        while (pos < end && otherPos < otherEnd) {
+            int col = colIndices[pos];
+            int otherCol = other.colIndices[otherPos];
+            if (col <= otherCol) {
+                pos++;
+            }
+            if (otherCol <= col) {
+                otherPos++;
+            }
+            length++;
+        }
+        return length + (end - pos) + (otherEnd - otherPos);
+    }
+
+}
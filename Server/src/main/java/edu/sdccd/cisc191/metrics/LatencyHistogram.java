@@ -0,0 +1,120 @@
+package edu.sdccd.cisc191.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative longs, such as latencies in nanoseconds, with
+ * buckets in the style of HdrHistogram: every power of two is split into
+ * SUB_BUCKETS linear buckets, so any value from 1 ns to hours is kept with a
+ * relative error of at most 1 / SUB_BUCKETS, in a fixed BUCKETS counters.
+ * <p>
+ * Recording is one increment of one counter. To keep threads from fighting
+ * over the same cache lines, the counters are striped: each thread records
+ * into the stripe picked by its id, and reads add the stripes up.
+ */
+public class LatencyHistogram {
+
+    // Linear buckets per power of two; 16 keeps every value within 6.25%
+    static final int SUB_BUCKET_BITS = 4;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Enough buckets for every positive long
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray[] stripes;
+
+    public LatencyHistogram() {
+        // A power of two, about twice the number of processors
+        int processors = Runtime.getRuntime().availableProcessors();
+        int stripeCount = Math.min(64, Integer.highestOneBit(2 * processors - 1) << 1);
+        stripes = new AtomicLongArray[stripeCount];
+        for (int s = 0; s < stripeCount; s++) {
+            stripes[s] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Record one value. Negative values are recorded as 0.
+     * @param value The value
+     */
+    public void record(long value) {
+        int stripe = (int) Thread.currentThread().getId() & (stripes.length - 1);
+        stripes[stripe].incrementAndGet(bucket(Math.max(0, value)));
+    }
+
+    /**
+     * @return Returns the sum of all stripes, one count per bucket
+     */
+    public long[] snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(i);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Return a percentile of the recorded values.
+     * @param counts A snapshot()
+     * @param percentile The percentile, from 0 to 100
+     * @return Returns the highest value in the bucket the percentile falls in, or 0 if there are no values
+     */
+    public static long percentile(long[] counts, double percentile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return highestValue(i);
+            }
+        }
+        return highestValue(counts.length - 1);
+    }
+
+    public long percentile(double percentile) {
+        return percentile(snapshot(), percentile);
+    }
+
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                stripe.set(i, 0);
+            }
+        }
+    }
+
+    // Bucket arithmetic: values below SUB_BUCKETS get a bucket each
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+    }
+
+    static long highestValue(int bucket) {
+        if (bucket == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowestValue(bucket + 1) - 1;
+    }
+
+}
@@ -0,0 +1,131 @@
+package edu.sdccd.cisc191.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import javax.management.*;
+
+/**
+ * The instrumented operations of the solver and the server, and their
+ * registration with JMX.
+ * <p>
+ * Metrics are off unless the JVM is started with
+ * -Dedu.sdccd.cisc191.metrics=true. ENABLED is a compile-time constant to the
+ * JIT, so when it is false every start() folds to 0 and every record() to
+ * nothing, and the instrumentation costs nothing at all. When it is true,
+ * each record() is a clock read and a few uncontended striped increments,
+ * tens of nanoseconds, and the operations register as MBeans under
+ * {@value #DOMAIN}, readable with JConsole or VisualVM.
+ * <pre>
+ *     long start = Metrics.start();
+ *     ... the operation ...
+ *     Metrics.SOLVE.record(start, bytes, flops);
+ * </pre>
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("edu.sdccd.cisc191.metrics");
+
+    public static final String DOMAIN = "edu.sdccd.cisc191";
+
+    private static final List<Operation> OPERATIONS = new ArrayList<>();
+
+    // Linear algebra
+    public static final Operation SOLVE = operation("linsystem.solve");
+    public static final Operation FACTOR = operation("lu.factor");
+    public static final Operation FACTOR_SINGLE = operation("lu.factor.single");
+    public static final Operation CHOLESKY = operation("cholesky.factor");
+    public static final Operation QR = operation("qr.factor");
+    public static final Operation MULTIPLY = operation("linalg.multiply");
+    public static final Operation TRANSPOSE = operation("linalg.transpose");
+
+    // Element-wise operations of Matrix
+    public static final Operation ADD = operation("matrix.add");
+    public static final Operation SUBTRACT = operation("matrix.subtract");
+    public static final Operation ELEMENT_MULTIPLY = operation("matrix.multiply");
+    public static final Operation DIVIDE = operation("matrix.divide");
+
+    // Server requests, from decoding to the queued response
+    public static final Operation REQUEST = operation("server.request");
+    public static final Operation REJECTED = operation("server.rejected");
+
+    static {
+        if (ENABLED) {
+            register();
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return Returns the time an operation starts, for record(), or 0 when metrics are off
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return Returns every operation, in a fixed order
+     */
+    public static List<Operation> getOperations() {
+        return Collections.unmodifiableList(OPERATIONS);
+    }
+
+    /**
+     * @return Returns a text table of every operation, with times in microseconds
+     */
+    public static String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-20s %10s %12s %14s %10s %10s %10s %10s %10s %8s %8s%n",
+                "operation", "count", "bytes", "flops", "mean us", "p50 us", "p99 us", "p99.9 us", "max us",
+                "GFLOP/s", "GB/s"));
+        for (Operation operation : OPERATIONS) {
+            operation.dump(out);
+        }
+        return out.toString();
+    }
+
+    public static void reset() {
+        for (Operation operation : OPERATIONS) {
+            operation.reset();
+        }
+    }
+
+    /**
+     * Register the operations, and a bean with dump() and reset(), with the
+     * platform MBean server. Happens on its own when metrics are enabled.
+     */
+    public static synchronized void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=Metrics");
+            if (server.isRegistered(name)) {
+                return;
+            }
+            server.registerMBean(new MetricsMXBean() {
+                @Override
+                public String dump() {
+                    return Metrics.dump();
+                }
+
+                @Override
+                public void reset() {
+                    Metrics.reset();
+                }
+            }, name);
+            for (Operation operation : OPERATIONS) {
+                server.registerMBean(operation,
+                        new ObjectName(DOMAIN + ":type=Operation,name=" + operation.getName()));
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Metrics could not be registered", e);
+        }
+    }
+
+    private static Operation operation(String name) {
+        Operation operation = new Operation(name);
+        OPERATIONS.add(operation);
+        return operation;
+    }
+
+}
@@ -0,0 +1,15 @@
+package edu.sdccd.cisc191.metrics;
+
+/**
+ * The JMX view of all operations together.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * @return Returns a text table of every operation, as Metrics.dump() does
+     */
+    String dump();
+
+    void reset();
+
+}
@@ -0,0 +1,180 @@
+package edu.sdccd.cisc191.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of one operation: how often it ran, the bytes it touched, the
+ * floating point operations it did, and a histogram of how long it took.
+ * All counters are striped, so recording from many threads does not contend.
+ * <p>
+ * Instrumented code brackets the operation with Metrics.start() and
+ * record(), which do nothing at all unless metrics are enabled.
+ */
+public class Operation implements OperationMXBean {
+
+    // One in this many count() calls is recorded, standing for all of them
+    static final int SAMPLE = 64;
+
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder flops = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    // Runs recorded by count(), which have no time and are left out of the means and rates
+    private final LongAdder untimedCount = new LongAdder();
+    private final LongAdder untimedBytes = new LongAdder();
+    private final LongAdder untimedFlops = new LongAdder();
+
+    Operation(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record one run of the operation, if metrics are enabled.
+     * @param start The Metrics.start() taken when the operation began
+     * @param bytes The bytes it read and wrote
+     * @param flops The floating point operations it did
+     */
+    public void record(long start, long bytes, long flops) {
+        if (Metrics.ENABLED) {
+            recordNanos(System.nanoTime() - start, bytes, flops);
+        }
+    }
+
+    /**
+     * Record one run of the operation without its time, if metrics are
+     * enabled. For operations so short that even counting every run would
+     * slow them down: one random run in SAMPLE is counted, SAMPLE times over,
+     * so the totals are estimates, unbiased and exact on average.
+     * @param bytes The bytes it read and wrote
+     * @param flops The floating point operations it did
+     */
+    public void count(long bytes, long flops) {
+        if (Metrics.ENABLED && (ThreadLocalRandom.current().nextInt() & (SAMPLE - 1)) == 0) {
+            untimedCount.add(SAMPLE);
+            untimedBytes.add(SAMPLE * bytes);
+            untimedFlops.add(SAMPLE * flops);
+        }
+    }
+
+    /**
+     * Record one run of the operation that took a known time, whether or not
+     * metrics are enabled.
+     * @param nanos The time it took
+     * @param bytes The bytes it read and wrote
+     * @param flops The floating point operations it did
+     */
+    public void recordNanos(long nanos, long bytes, long flops) {
+        count.increment();
+        this.bytes.add(bytes);
+        this.flops.add(flops);
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        latencies.record(nanos);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum() + untimedCount.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum() + untimedBytes.sum();
+    }
+
+    @Override
+    public long getFlops() {
+        return flops.sum() + untimedFlops.sum();
+    }
+
+    @Override
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    @Override
+    public double getMeanNanos() {
+        long runs = count.sum();
+        return runs == 0 ? 0 : (double) getTotalNanos() / runs;
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return percentile(latencies.snapshot(), 50);
+    }
+
+    @Override
+    public long getP90Nanos() {
+        return percentile(latencies.snapshot(), 90);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return percentile(latencies.snapshot(), 99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return percentile(latencies.snapshot(), 99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @Override
+    public double getGflops() {
+        long nanos = getTotalNanos();
+        return nanos == 0 ? 0 : (double) flops.sum() / nanos;
+    }
+
+    @Override
+    public double getGigabytesPerSecond() {
+        long nanos = getTotalNanos();
+        return nanos == 0 ? 0 : (double) bytes.sum() / nanos;
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        bytes.reset();
+        flops.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        latencies.reset();
+        untimedCount.reset();
+        untimedBytes.reset();
+        untimedFlops.reset();
+    }
+
+    // A bucket's highest value may lie above the largest value recorded
+    private long percentile(long[] counts, double percentile) {
+        return Math.min(LatencyHistogram.percentile(counts, percentile), getMaxNanos());
+    }
+
+    /**
+     * Append one line of the text dump.
+     * @param out Where to append it
+     */
+    void dump(StringBuilder out) {
+        long[] counts = latencies.snapshot();
+        out.append(String.format("%-20s %10d %12d %14d %10.1f %10d %10d %10d %10d %8.2f %8.2f%n",
+                name, getCount(), getBytes(), getFlops(), getMeanNanos() / 1e3,
+                percentile(counts, 50) / 1000, percentile(counts, 99) / 1000,
+                percentile(counts, 99.9) / 1000, getMaxNanos() / 1000,
+                getGflops(), getGigabytesPerSecond()));
+    }
+
+}
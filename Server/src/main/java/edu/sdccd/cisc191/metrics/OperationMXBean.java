@@ -0,0 +1,45 @@
+package edu.sdccd.cisc191.metrics;
+
+/**
+ * The JMX view of one instrumented operation. Latencies are in nanoseconds
+ * and are rounded up to the bucket of the histogram they fall in. Counts,
+ * bytes and FLOPs cover every run; latencies, means and rates only the runs
+ * that were timed.
+ */
+public interface OperationMXBean {
+
+    String getName();
+
+    long getCount();
+
+    long getBytes();
+
+    long getFlops();
+
+    long getTotalNanos();
+
+    double getMeanNanos();
+
+    long getP50Nanos();
+
+    long getP90Nanos();
+
+    long getP99Nanos();
+
+    long getP999Nanos();
+
+    long getMaxNanos();
+
+    /**
+     * @return Returns the estimated floating point operations per second spent in the operation, in billions
+     */
+    double getGflops();
+
+    /**
+     * @return Returns the bytes touched per second spent in the operation, in billions
+     */
+    double getGigabytesPerSecond();
+
+    void reset();
+
+}
@@ -0,0 +1,169 @@
+package edu.sdccd.cisc191.server;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import edu.sdccd.cisc191.metrics.*;
+import edu.sdccd.cisc191.template.*;
+
+/**
+ * A closed-loop load generator for SolveServer. Every connection runs on its
+ * own thread and sends a SOLVE request for a random, diagonally dominant
+ * system, waits for the response, and repeats. At the end it prints the
+ * sustained requests per second and the latency percentiles.
+ * <pre>
+ *     java edu.sdccd.cisc191.server.LoadGenerator [host] [port] [connections] [requests] [size] [json|binary]
+ * </pre>
+ * With no host, or an empty one, it starts a SolveServer of its own on a free
+ * port. Requests are JSON lines by default, or MatrixCodec frames with
+ * "binary". With metrics enabled, it also prints the metrics of the timed run.
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : null;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : SolveServer.DEFAULT_PORT;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+        int requests = args.length > 3 ? Integer.parseInt(args[3]) : 500;
+        int size = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        boolean binary = args.length > 5 && args[5].equals("binary");
+
+        SolveServer server = null;
+        if (host == null || host.isEmpty()) {
+            server = new SolveServer(0);
+            Thread thread = new Thread(server, "solve-server");
+            thread.setDaemon(true);
+            thread.start();
+            host = "127.0.0.1";
+            port = server.getPort();
+        }
+
+        // One warm-up round so that the JIT has compiled the hot paths
+        run(host, port, connections, Math.max(1, requests / 5), size, binary,
+                new long[connections * Math.max(1, requests / 5)]);
+        Metrics.reset();
+        long[] latencies = new long[connections * requests];
+        long start = System.nanoTime();
+        run(host, port, connections, requests, size, binary, latencies);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arrays.sort(latencies);
+        System.out.printf("%d connections, %d %s requests of %dx%d SOLVE in %.2f s%n",
+                connections, latencies.length, binary ? "binary" : "JSON", size, size, seconds);
+        System.out.printf("throughput %.0f requests/s%n", latencies.length / seconds);
+        System.out.printf("latency p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                percentile(latencies, 0.50), percentile(latencies, 0.99), latencies[latencies.length - 1] / 1e6);
+        if (Metrics.ENABLED) {
+            System.out.print(Metrics.dump());
+        }
+
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    private static void run(final String host, final int port, int connections, final int requests,
+                            final int size, final boolean binary, final long[] latencies) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(connections);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            final int first = c * requests;
+            futures.add(threads.submit(() -> {
+                try (Socket socket = new Socket(host, port)) {
+                    socket.setTcpNoDelay(true);
+                    Random random = new Random(first);
+                    if (binary) {
+                        runBinary(socket, first, requests, size, random, latencies);
+                    } else {
+                        runJSON(socket, first, requests, size, random, latencies);
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    private static void runJSON(Socket socket, int first, int requests, int size, Random random,
+                                long[] latencies) throws Exception {
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                socket.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), StandardCharsets.UTF_8));
+        for (int i = 0; i < requests; i++) {
+            String line = MatrixRequest.toJSON(randomSystem(first + i, size, random));
+            long sent = System.nanoTime();
+            out.write(line);
+            out.write('\n');
+            out.flush();
+            MatrixResponse response = MatrixResponse.fromJSON(in.readLine());
+            latencies[first + i] = System.nanoTime() - sent;
+            if (response.getError() != null) {
+                throw new IOException("Request " + response.getId() + " failed: " + response.getError());
+            }
+        }
+    }
+
+    private static void runBinary(Socket socket, int first, int requests, int size, Random random,
+                                  long[] latencies) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        byte[] header = new byte[MatrixCodec.HEADER_BYTES];
+        for (int i = 0; i < requests; i++) {
+            MatrixRequest system = randomSystem(first + i, size, random);
+            ByteBuffer frame = MatrixCodec.encode(new MatrixMessage(MatrixMessage.Type.SOLVE, first + i,
+                    toBlock(system.getA()), toBlock(system.getB())));
+            long sent = System.nanoTime();
+            out.write(frame.array(), 0, frame.remaining());
+            out.flush();
+            in.readFully(header);
+            int length = MatrixCodec.frameLength(ByteBuffer.wrap(header));
+            byte[] bytes = Arrays.copyOf(header, length);
+            in.readFully(bytes, header.length, length - header.length);
+            MatrixMessage response = MatrixCodec.decode(ByteBuffer.wrap(bytes));
+            latencies[first + i] = System.nanoTime() - sent;
+            if (response.getType() == MatrixMessage.Type.ERROR) {
+                throw new IOException("Request " + response.getId() + " failed: " + response.getError());
+            }
+        }
+    }
+
+    private static MatrixMessage.Block toBlock(double[][] rows) {
+        int numCols = rows[0].length;
+        double[] data = new double[rows.length * numCols];
+        for (int i = 0; i < rows.length; i++) {
+            System.arraycopy(rows[i], 0, data, i * numCols, numCols);
+        }
+        return new MatrixMessage.Block(rows.length, numCols, data);
+    }
+
+    private static MatrixRequest randomSystem(long id, int size, Random random) {
+        double[][] a = new double[size][size];
+        double[][] b = new double[size][1];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                a[i][j] = random.nextDouble();
+            }
+            a[i][i] += size;
+            b[i][0] = random.nextDouble();
+        }
+        return new MatrixRequest(id, MatrixRequest.Operation.SOLVE, a, b);
+    }
+
+    // In milliseconds, from sorted latencies in nanoseconds
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+}
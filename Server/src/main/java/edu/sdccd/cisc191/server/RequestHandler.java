@@ -0,0 +1,155 @@
+package edu.sdccd.cisc191.server;
+
+import edu.sdccd.cisc191.linalg.*;
+import edu.sdccd.cisc191.matrix.*;
+import edu.sdccd.cisc191.template.*;
+
+/**
+ * Runs the operation of one MatrixRequest with LinSystem and LinAlgBasics.
+ * Failures, including bad input, become an error response rather than an
+ * exception, so one bad request cannot take down a connection.
+ * <p>
+ * Solves and products go through a CachedLinAlg, so that clients sending the
+ * same A with new right-hand sides, or the same product again, skip the
+ * O(n^3) work.
+ */
+public class RequestHandler {
+
+    // Default cache bounds
+    public static final int CACHE_ENTRIES = 256;
+    public static final long CACHE_BYTES = 256L << 20;
+
+    private final CachedLinAlg cache;
+
+    /**
+     * Create a handler with a cache of the default size.
+     */
+    public RequestHandler() {
+        this(new CachedLinAlg(CACHE_ENTRIES, CACHE_BYTES));
+    }
+
+    /**
+     * Create a handler.
+     * @param cache The cache for solves and products, or null to not cache
+     */
+    public RequestHandler(CachedLinAlg cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * @return Returns the cache, or null if there is none
+     */
+    public CachedLinAlg getCache() {
+        return cache;
+    }
+
+    /**
+     * Run a request.
+     * @param request The request
+     * @return Returns the response, with either a result or an error
+     */
+    public MatrixResponse handle(MatrixRequest request) {
+        try {
+            if (request.getOperation() == null) {
+                throw new IllegalArgumentException("Request has no operation");
+            }
+            Matrix b = request.getB() == null ? null : toMatrix(request.getB());
+            Matrix result = compute(request.getOperation(), toMatrix(request.getA()), b);
+            return new MatrixResponse(request.getId(), toRows(result), null);
+        } catch (LinSystem.NoSolutionException | LinSystem.InfiniteSolutionsException
+                 | IllegalArgumentException e) {
+            return new MatrixResponse(request.getId(), null, e.getMessage());
+        }
+    }
+
+    /**
+     * Run a request of the binary protocol. The operands are wrapped, not
+     * copied.
+     * @param request The request
+     * @return Returns a RESULT or an ERROR message
+     */
+    public MatrixMessage handle(MatrixMessage request) {
+        try {
+            MatrixMessage.Block[] blocks = request.getBlocks();
+            if (blocks == null || blocks.length == 0) {
+                throw new IllegalArgumentException("Request has no matrices");
+            }
+            Matrix b = blocks.length > 1 ? toMatrix(blocks[1]) : null;
+            Matrix result = compute(toOperation(request.getType()), toMatrix(blocks[0]), b);
+            return new MatrixMessage(MatrixMessage.Type.RESULT, request.getId(),
+                    new MatrixMessage.Block(result.getNumRows(), result.getNumCols(), result.toDoubleArray()));
+        } catch (LinSystem.NoSolutionException | LinSystem.InfiniteSolutionsException
+                 | IllegalArgumentException e) {
+            return MatrixMessage.error(request.getId(), e.getMessage());
+        }
+    }
+
+    private Matrix compute(MatrixRequest.Operation operation, Matrix a, Matrix b) throws
+            LinSystem.NoSolutionException,
+            LinSystem.InfiniteSolutionsException {
+
+        switch (operation) {
+            case SOLVE:
+                return cache == null ? LinSystem.solveSystem(a, require(b)) : cache.solve(a, require(b));
+            case MULTIPLY:
+                return cache == null ? LinAlgBasics.matrixMultiply(a, require(b)) : cache.multiply(a, require(b));
+            case TRANSPOSE:
+                return LinAlgBasics.transpose(a);
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private static Matrix require(Matrix b) {
+        if (b == null) {
+            throw new IllegalArgumentException("Request needs a second matrix");
+        }
+        return b;
+    }
+
+    private static MatrixRequest.Operation toOperation(MatrixMessage.Type type) {
+        switch (type) {
+            case SOLVE:
+                return MatrixRequest.Operation.SOLVE;
+            case MULTIPLY:
+                return MatrixRequest.Operation.MULTIPLY;
+            case TRANSPOSE:
+                return MatrixRequest.Operation.TRANSPOSE;
+            default:
+                throw new IllegalArgumentException("Not a request: " + type);
+        }
+    }
+
+    // Conversions between the rows of a message and a Matrix
+    static Matrix toMatrix(double[][] rows) {
+        if (rows == null || rows.length == 0 || rows[0] == null) {
+            throw new IllegalArgumentException("Matrix must have at least one row");
+        }
+        int numRows = rows.length;
+        int numCols = rows[0].length;
+        double[] data = new double[numRows * numCols];
+        for (int i = 0; i < numRows; i++) {
+            if (rows[i] == null || rows[i].length != numCols) {
+                throw new IllegalArgumentException("Matrix must have rows of equal length");
+            }
+            System.arraycopy(rows[i], 0, data, i * numCols, numCols);
+        }
+        return Matrix.wrap(data, numRows, numCols);
+    }
+
+    static Matrix toMatrix(MatrixMessage.Block block) {
+        return Matrix.wrap(block.getData(), block.getNumRows(), block.getNumCols());
+    }
+
+    static double[][] toRows(Matrix matrix) {
+        int numCols = matrix.getNumCols();
+        double[] data = matrix.toDoubleArray();
+        double[][] rows = new double[matrix.getNumRows()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new double[numCols];
+            System.arraycopy(data, i * numCols, rows[i], 0, numCols);
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,196 @@
+package edu.sdccd.cisc191.server;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+import edu.sdccd.cisc191.linalg.*;
+import edu.sdccd.cisc191.template.*;
+
+/**
+ * Gathers small SOLVE requests that arrive close together and solves them as
+ * one batch with BatchSolver. Requests are grouped by size. A group is solved
+ * when it reaches maxBatch requests, or once it is maxDelay old and the
+ * owner calls flush(). SolveServer calls flush() after every round of its
+ * selector loop, so with a delay of 0 every batch holds the requests read in
+ * one round, which costs no latency at all; a longer delay builds bigger
+ * batches, for more throughput at the cost of up to maxDelay more latency.
+ * <p>
+ * A batcher is used by one thread only. Systems the batch finds singular are
+ * handed back to the RequestHandler, so that they fail with the same error as
+ * an unbatched request.
+ */
+public class SolveBatcher {
+
+    // Sizes of the systems that are batched
+    public static final int MIN_SIZE = 3;
+    public static final int MAX_SIZE = 16;
+
+    private final Executor workers;
+    private final RequestHandler handler;
+    private final int maxBatch;
+    private volatile long maxDelayNanos;
+
+    // The batch being gathered for every size
+    private final Map<Integer, Batch> open = new HashMap<>();
+
+    /**
+     * Create a batcher.
+     * @param workers The executor that solves the batches
+     * @param handler The handler for systems the batch cannot solve
+     * @param maxDelay The longest a request waits for its batch to fill up
+     * @param unit The unit of maxDelay
+     * @param maxBatch The number of requests at which a batch is solved right away
+     */
+    public SolveBatcher(Executor workers, RequestHandler handler, long maxDelay, TimeUnit unit, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.workers = workers;
+        this.handler = handler;
+        this.maxBatch = maxBatch;
+        setMaxDelay(maxDelay, unit);
+    }
+
+    /**
+     * Check whether a request is a SOLVE of one small square system.
+     * @param request The request
+     * @return Returns true if add() would batch it
+     */
+    public static boolean accepts(MatrixMessage request) {
+        if (request.getType() != MatrixMessage.Type.SOLVE || request.getBlocks() == null
+                || request.getBlocks().length != 2) {
+            return false;
+        }
+        MatrixMessage.Block a = request.getBlocks()[0];
+        MatrixMessage.Block b = request.getBlocks()[1];
+        int n = a.getNumRows();
+        return n >= MIN_SIZE && n <= MAX_SIZE && a.getNumCols() == n
+                && b.getNumRows() == n && b.getNumCols() == 1;
+    }
+
+    /**
+     * Queue a request for the next batch of its size.
+     * @param request A request for which accepts() is true
+     * @param callback Called with the response, on a worker thread
+     */
+    public void add(MatrixMessage request, Consumer<MatrixMessage> callback) {
+        int n = request.getBlocks()[0].getNumRows();
+        Batch batch = open.get(n);
+        if (batch == null) {
+            batch = new Batch(n, System.nanoTime() + maxDelayNanos);
+            open.put(n, batch);
+        }
+        batch.requests.add(request);
+        batch.callbacks.add(callback);
+        if (batch.requests.size() >= maxBatch) {
+            open.remove(n);
+            execute(batch);
+        }
+    }
+
+    /**
+     * Solve every batch whose delay is up.
+     * @param now The current System.nanoTime()
+     * @return Returns the nanoseconds until the next batch is due, or -1 if
+     *         no batch is open
+     */
+    public long flush(long now) {
+        long next = -1;
+        Iterator<Batch> batches = open.values().iterator();
+        while (batches.hasNext()) {
+            Batch batch = batches.next();
+            long remaining = batch.deadline - now;
+            if (remaining <= 0) {
+                batches.remove();
+                execute(batch);
+            } else if (next < 0 || remaining < next) {
+                next = remaining;
+            }
+        }
+        return next;
+    }
+
+    public long getMaxDelay(TimeUnit unit) {
+        return unit.convert(maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Set the longest a request waits for its batch to fill up. Takes effect
+     * for batches opened after the call.
+     * @param maxDelay The delay, 0 to batch only requests read together
+     * @param unit The unit of maxDelay
+     */
+    public void setMaxDelay(long maxDelay, TimeUnit unit) {
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("Batch delay must not be negative");
+        }
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    private void execute(Batch batch) {
+        try {
+            workers.execute(batch);
+        } catch (RejectedExecutionException e) {
+            for (int s = 0; s < batch.requests.size(); s++) {
+                batch.callbacks.get(s).accept(MatrixMessage.error(batch.requests.get(s).getId(), "Server is busy"));
+            }
+        }
+    }
+
+    /**
+     * The requests of one batch, all of size n.
+     */
+    private final class Batch implements Runnable {
+
+        private final int n;
+        private final long deadline;
+        private final List<MatrixMessage> requests = new ArrayList<>();
+        private final List<Consumer<MatrixMessage>> callbacks = new ArrayList<>();
+
+        private Batch(int n, long deadline) {
+            this.n = n;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            int count = requests.size();
+            double[] a = new double[n * n * count];
+            double[] b = new double[n * count];
+            boolean[] singular = new boolean[count];
+
+            // Gather into the structure-of-arrays layout
+            for (int s = 0; s < count; s++) {
+                double[] systemA = requests.get(s).getBlocks()[0].getData();
+                double[] systemB = requests.get(s).getBlocks()[1].getData();
+                for (int e = 0; e < n * n; e++) {
+                    a[e * count + s] = systemA[e];
+                }
+                for (int i = 0; i < n; i++) {
+                    b[i * count + s] = systemB[i];
+                }
+            }
+
+            BatchSolver.solve(n, count, a, b, singular);
+
+            // Scatter the solutions back
+            for (int s = 0; s < count; s++) {
+                MatrixMessage request = requests.get(s);
+                MatrixMessage response;
+                if (singular[s]) {
+                    response = handler.handle(request);
+                } else {
+                    double[] x = new double[n];
+                    for (int i = 0; i < n; i++) {
+                        x[i] = b[i * count + s];
+                    }
+                    response = new MatrixMessage(MatrixMessage.Type.RESULT, request.getId(),
+                            new MatrixMessage.Block(n, 1, x));
+                }
+                callbacks.get(s).accept(response);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,412 @@
+package edu.sdccd.cisc191.server;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import edu.sdccd.cisc191.metrics.*;
+import edu.sdccd.cisc191.template.*;
+
+/**
+ * A headless server for matrix requests. It speaks two protocols, chosen by
+ * the first byte a client sends: binary MatrixCodec frames, or one JSON
+ * MatrixRequest per line, as Client used to send, answered by one JSON
+ * MatrixResponse per line. With either, requests may be pipelined, and
+ * responses carry the request id because they can come back in any order.
+ * <p>
+ * One thread runs a Selector loop that accepts connections, reads requests and
+ * writes responses for every client, so thousands of idle or slow connections
+ * cost no threads. Parsing and computing run on a fixed pool of worker
+ * threads with a bounded queue. A finished worker queues its response on the
+ * connection and wakes the selector, which writes it out when the socket is
+ * writable. When the queue is full, the request is answered with an error
+ * straight away instead of piling up.
+ * <p>
+ * Binary SOLVE requests for small systems go through a SolveBatcher, which
+ * the selector thread flushes after every round, so that small systems read
+ * in the same round, or within the batch delay of each other, are solved
+ * together.
+ */
+public class SolveServer implements Runnable, Closeable {
+
+    public static final int DEFAULT_PORT = 4444;
+
+    // Longest request accepted before the connection is dropped
+    static final int MAX_REQUEST_BYTES = 64 << 20;
+
+    private static final int READ_BUFFER_BYTES = 16 << 10;
+
+    static final int MAX_BATCH = 256;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ThreadPoolExecutor workers;
+    private final RequestHandler handler = new RequestHandler();
+    private final SolveBatcher batcher;
+    private volatile boolean batching = true;
+
+    // Connections with responses to write, handed from workers to the selector thread
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * Open the server socket. Nothing is accepted until run() is called.
+     * @param port The port to listen on, or 0 for any free port
+     * @param workerThreads The number of threads computing requests
+     * @param queueCapacity The number of requests that may wait for a worker
+     * @throws IOException When the port cannot be bound
+     */
+    public SolveServer(int port, int workerThreads, int queueCapacity) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "solve-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        batcher = new SolveBatcher(workers, handler, 0, TimeUnit.NANOSECONDS, MAX_BATCH);
+    }
+
+    public SolveServer(int port) throws IOException {
+        this(port, Runtime.getRuntime().availableProcessors(), 1024);
+    }
+
+    /**
+     * @return Returns the port the server listens on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Set how long a small SOLVE request may wait for others to be solved in
+     * the same batch. The selector wakes up at millisecond granularity, so
+     * delays are rounded up to whole milliseconds, except for the default of
+     * 0, which batches the requests read in one round of the selector loop.
+     * @param delay The longest delay
+     * @param unit The unit of delay
+     */
+    public void setBatchDelay(long delay, TimeUnit unit) {
+        batcher.setMaxDelay(delay, unit);
+    }
+
+    /**
+     * Turn batching of small SOLVE requests on or off.
+     * @param batching Whether to batch
+     */
+    public void setBatching(boolean batching) {
+        this.batching = batching;
+    }
+
+    /**
+     * Run the selector loop until close() is called.
+     */
+    @Override
+    public void run() {
+        try {
+            long wait = 0;
+            while (running) {
+                if (wait > 0) {
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+                } else {
+                    selector.select();
+                }
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    connection.enableWrites();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            ((Connection) key.attachment()).read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            ((Connection) key.attachment()).write();
+                        }
+                    } catch (IOException e) {
+                        // A broken client only loses its own connection
+                        if (key.attachment() instanceof Connection) {
+                            ((Connection) key.attachment()).close();
+                        }
+                    }
+                }
+                wait = batcher.flush(System.nanoTime());
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                e.printStackTrace();
+            }
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    /**
+     * Stop the selector loop and the workers, and close every connection.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void closeQuietly() {
+        workers.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+        try {
+            selector.close();
+            serverChannel.close();
+        } catch (IOException ignored) {
+            // Closing anyway
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        }
+    }
+
+    private void submit(final Connection connection, final byte[] line) {
+        long start = Metrics.start();
+        long requestBytes = line.length + 1;
+        try {
+            workers.execute(() -> connection.reply(process(line), start, requestBytes));
+        } catch (RejectedExecutionException e) {
+            Metrics.REJECTED.record(start, requestBytes + connection.send(busy(line)), 0);
+        }
+    }
+
+    private void submit(final Connection connection, final MatrixMessage request) {
+        long start = Metrics.start();
+        long requestBytes = Metrics.ENABLED ? MatrixCodec.encodedLength(request) : 0;
+        try {
+            if (batching && SolveBatcher.accepts(request)) {
+                batcher.add(request, response -> connection.reply(response, start, requestBytes));
+                return;
+            }
+            workers.execute(() -> connection.reply(handler.handle(request), start, requestBytes));
+        } catch (RejectedExecutionException e) {
+            int responseBytes = connection.send(MatrixMessage.error(request.getId(), "Server is busy"));
+            Metrics.REJECTED.record(start, requestBytes + responseBytes, 0);
+        }
+    }
+
+    private MatrixResponse process(byte[] line) {
+        MatrixRequest request;
+        try {
+            request = MatrixRequest.fromJSON(new String(line, StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            return new MatrixResponse(0, null, "Invalid request: " + e.getMessage());
+        }
+        return handler.handle(request);
+    }
+
+    private static MatrixResponse busy(byte[] line) {
+        long id = 0;
+        try {
+            id = MatrixRequest.fromJSON(new String(line, StandardCharsets.UTF_8)).getId();
+        } catch (Exception ignored) {
+            // The error goes out without an id
+        }
+        return new MatrixResponse(id, null, "Server is busy");
+    }
+
+    /**
+     * The state of one client: its protocol, the bytes of a partly received
+     * request, and the responses still to be written. Everything but the
+     * send() methods runs on the selector thread.
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        private final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+
+        // Null until the first byte arrives
+        private Boolean binary;
+
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        private void read() throws IOException {
+            int count = channel.read(input);
+            if (count < 0) {
+                close();
+                return;
+            }
+            if (binary == null && input.position() > 0) {
+                binary = input.get(0) == MatrixCodec.MAGIC;
+            }
+
+            input.flip();
+            int needed = Boolean.TRUE.equals(binary) ? readFrames() : readLines();
+            input.compact();
+
+            // Grow for long requests, up to the limit
+            if (needed > input.capacity() || !input.hasRemaining()) {
+                int capacity = Math.max(needed, input.capacity() * 2);
+                if (input.capacity() >= MAX_REQUEST_BYTES || needed > MAX_REQUEST_BYTES) {
+                    throw new IOException("Request too long");
+                }
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(capacity, MAX_REQUEST_BYTES));
+                input.flip();
+                larger.put(input);
+                input = larger;
+            }
+        }
+
+        // Hands every complete line to the workers; returns 0 as lines have no known length
+        private int readLines() {
+            int start = input.position();
+            for (int i = start; i < input.limit(); i++) {
+                if (input.get(i) == '\n') {
+                    byte[] line = new byte[i - start];
+                    input.get(line);
+                    input.get();
+                    if (line.length > 0) {
+                        submit(this, line);
+                    }
+                    start = i + 1;
+                }
+            }
+            return 0;
+        }
+
+        // Hands every complete frame to the workers; returns the length of the incomplete one
+        private int readFrames() throws IOException {
+            MatrixMessage request;
+            while ((request = MatrixCodec.decode(input)) != null) {
+                submit(this, request);
+            }
+            return Math.max(0, MatrixCodec.frameLength(input));
+        }
+
+        // Called by worker threads; send a response and record the request it answers
+        private void reply(MatrixMessage response, long start, long requestBytes) {
+            int responseBytes = send(response);
+            Metrics.REQUEST.record(start, requestBytes + responseBytes, 0);
+        }
+
+        private void reply(MatrixResponse response, long start, long requestBytes) {
+            int responseBytes = send(response);
+            Metrics.REQUEST.record(start, requestBytes + responseBytes, 0);
+        }
+
+        // Both return the number of bytes queued
+        private int send(MatrixMessage response) {
+            ByteBuffer buffer;
+            try {
+                buffer = MatrixCodec.encode(response);
+            } catch (IllegalArgumentException e) {
+                buffer = MatrixCodec.encode(MatrixMessage.error(response.getId(), e.getMessage()));
+            }
+            return queue(buffer);
+        }
+
+        private int send(MatrixResponse response) {
+            String json;
+            try {
+                json = MatrixResponse.toJSON(response);
+            } catch (Exception e) {
+                json = "{\"id\":" + response.getId() + ",\"error\":\"Response could not be encoded\"}";
+            }
+            return queue(ByteBuffer.wrap((json + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+
+        private int queue(ByteBuffer buffer) {
+            int bytes = buffer.remaining();
+            output.add(buffer);
+            pendingWrites.add(this);
+            selector.wakeup();
+            return bytes;
+        }
+
+        private void enableWrites() {
+            if (key.isValid()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void write() throws IOException {
+            ByteBuffer buffer;
+            while ((buffer = output.peek()) != null) {
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // The socket is full; wait until it is writable again
+                    return;
+                }
+                output.poll();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            // A response queued since the peek must not be stranded
+            if (!output.isEmpty()) {
+                enableWrites();
+            }
+        }
+
+        private void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Run the server in the foreground.
+     * @param args The port, the number of worker threads and the batch delay
+     *             in milliseconds, or -1 for no batching, all optional
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workerThreads = args.length > 1 ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        SolveServer server = new SolveServer(port, workerThreads, 1024);
+        long delay = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        if (delay < 0) {
+            server.setBatching(false);
+        } else {
+            server.setBatchDelay(delay, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("Listening on port " + server.getPort() + " with " + workerThreads + " workers");
+        if (Metrics.ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(Metrics.dump())));
+        }
+        server.run();
+    }
+
+}
@@ -1,86 +1,414 @@
 package edu.sdccd.cisc191.template;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
 import javafx.application.Application;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
-import javafx.scene.control.Button;
-import javafx.scene.control.TextField;
-import javafx.scene.layout.GridPane;
-import javafx.scene.text.Text;
+import javafx.scene.control.*;
+import javafx.scene.control.cell.TextFieldTableCell;
+import javafx.scene.layout.BorderPane;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.StringConverter;
 
 import edu.sdccd.cisc191.matrix.*;
 import edu.sdccd.cisc191.linalg.*;
 
+/**
+ * A window for solving Ax = b of any size. A, b and the solution x are shown
+ * in one TableView, whose rows are just row numbers into the double[] arrays
+ * that hold the system. A TableView only creates cells for the rows on
+ * screen, and with a fixed cell size only for the columns on screen too, so
+ * a 1000 x 1000 system costs a few hundred cells, not a million text fields.
+ * <p>
+ * Loading a file and solving run as Tasks on a background thread, so the
+ * window stays responsive; both report progress and can be cancelled. The
+ * solve works on a copy of the system, which may be edited meanwhile, and
+ * goes through a SolverSession, so that re-solving after editing a few
+ * cells does not redo the whole elimination.
+ */
 public class Server extends Application {
 
+    private static final int DEFAULT_SIZE = 3;
+    private static final double CELL_HEIGHT = 24;
+    private static final double CELL_WIDTH = 70;
+
+    // The system, row-major; x is null until solved
+    private int size;
+    private double[] a;
+    private double[] b;
+    private double[] x;
+
+    // Keeps the factorization between solves, so that editing a few cells is cheap
+    private volatile SolverSession session;
+
+    private final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "solver-ui");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Task<?> running;
+
+    private final TableView<Integer> table = new TableView<>();
+    private final TextField sizeField = new TextField();
+    private final Button resizeButton = new Button("Resize");
+    private final Button randomButton = new Button("Random");
+    private final Button loadButton = new Button("Load...");
+    private final Button solveButton = new Button("Solve");
+    private final Button cancelButton = new Button("Cancel");
+    private final ProgressBar progressBar = new ProgressBar(0);
+    private final Label status = new Label();
+
     @Override
     public void start(Stage primaryStage) {
 
-        int rows = 3;
-        int columns = 3;
-
-        GridPane gridPane = new GridPane();
-        gridPane.setHgap(10);
-        gridPane.setVgap(10);
-        gridPane.setPadding(new Insets(10, 10, 10, 10));
-
-        TextField[][] matrixInputs = new TextField[rows][columns];
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                TextField field = new TextField();
-                field.setPrefWidth(50);
-                gridPane.add(field, j, i);
-                matrixInputs[i][j] = field;
+        table.setEditable(true);
+        table.setFixedCellSize(CELL_HEIGHT);
+        table.getSelectionModel().setCellSelectionEnabled(true);
+
+        sizeField.setPrefColumnCount(5);
+        sizeField.setOnAction(e -> resize());
+        resizeButton.setOnAction(e -> resize());
+        randomButton.setOnAction(e -> randomize());
+        loadButton.setOnAction(e -> load(primaryStage));
+        solveButton.setOnAction(e -> solve());
+        cancelButton.setOnAction(e -> running.cancel());
+        cancelButton.setDisable(true);
+
+        ToolBar toolBar = new ToolBar(new Label("Size"), sizeField, resizeButton, randomButton, loadButton,
+                new Separator(), solveButton, cancelButton, progressBar);
+        BorderPane root = new BorderPane(table);
+        root.setTop(toolBar);
+        root.setBottom(status);
+        BorderPane.setMargin(status, new Insets(4, 10, 4, 10));
+
+        setSystem(DEFAULT_SIZE, new double[DEFAULT_SIZE * DEFAULT_SIZE], new double[DEFAULT_SIZE]);
+
+        // Set the scene and stage
+        Scene scene = new Scene(root, 900, 600);
+        primaryStage.setScene(scene);
+        primaryStage.setTitle("Matrix Solver");
+        primaryStage.show();
+    }
+
+    @Override
+    public void stop() {
+        background.shutdownNow();
+    }
+
+    // Replaces the system and rebuilds the table's columns
+    private void setSystem(int size, double[] a, double[] b) {
+        this.size = size;
+        this.a = a;
+        this.b = b;
+        this.x = null;
+        this.session = null;
+        sizeField.setText(Integer.toString(size));
+
+        List<TableColumn<Integer, ?>> columns = new ArrayList<>(size + 3);
+        TableColumn<Integer, Integer> rowColumn = new TableColumn<>("");
+        rowColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue() + 1));
+        rowColumn.setSortable(false);
+        rowColumn.setEditable(false);
+        columns.add(rowColumn);
+        for (int j = 0; j < size; j++) {
+            columns.add(valueColumn("A" + (j + 1), j));
+        }
+        columns.add(valueColumn("b", size));
+        TableColumn<Integer, String> solutionColumn = new TableColumn<>("x");
+        solutionColumn.setCellValueFactory(cell ->
+                new ReadOnlyObjectWrapper<>(x == null ? "" : Double.toString(x[cell.getValue()])));
+        solutionColumn.setSortable(false);
+        solutionColumn.setEditable(false);
+        solutionColumn.setPrefWidth(2 * CELL_WIDTH);
+        columns.add(solutionColumn);
+
+        ObservableList<Integer> rows = FXCollections.observableArrayList();
+        for (int i = 0; i < size; i++) {
+            rows.add(i);
+        }
+        table.getColumns().setAll(columns);
+        table.setItems(rows);
+    }
+
+    // An editable column of A, or of b when col is size
+    private TableColumn<Integer, Double> valueColumn(String title, int col) {
+        TableColumn<Integer, Double> column = new TableColumn<>(title);
+        column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(getValue(cell.getValue(), col)));
+        column.setCellFactory(TextFieldTableCell.forTableColumn(new NumberConverter()));
+        column.setOnEditCommit(event -> {
+            // The status follows a running task, and is left alone then
+            boolean showStatus = !status.textProperty().isBound();
+            if (event.getNewValue() == null) {
+                if (showStatus) {
+                    status.setText("Invalid input. Please enter valid numbers.");
+                }
+                table.refresh();
+                return;
+            }
+            int row = event.getRowValue();
+            if (col == size) {
+                b[row] = event.getNewValue();
+            } else {
+                a[row * size + col] = event.getNewValue();
+            }
+            if (showStatus) {
+                status.setText("");
             }
+        });
+        column.setSortable(false);
+        column.setPrefWidth(CELL_WIDTH);
+        return column;
+    }
+
+    private double getValue(int row, int col) {
+        return col == size ? b[row] : a[row * size + col];
+    }
+
+    private void resize() {
+        int newSize;
+        try {
+            newSize = Integer.parseInt(sizeField.getText().trim());
+        } catch (NumberFormatException e) {
+            newSize = -1;
+        }
+        if (newSize <= 0) {
+            status.setText("Size must be a positive whole number.");
+            sizeField.setText(Integer.toString(size));
+            return;
         }
 
-        TextField[] vectorInputs = new TextField[rows];
-        for (int i = 0; i < rows; i++) {
-            TextField field = new TextField();
-            field.setPrefWidth(50);
-            gridPane.add(field, columns, i);
-            vectorInputs[i] = field;
+        // Keep the values that still fit
+        double[] newA = new double[newSize * newSize];
+        double[] newB = new double[newSize];
+        int keep = Math.min(size, newSize);
+        for (int i = 0; i < keep; i++) {
+            System.arraycopy(a, i * size, newA, i * newSize, keep);
+            newB[i] = b[i];
         }
+        setSystem(newSize, newA, newB);
+        status.setText("");
+    }
 
-        Button solveButton = new Button("Solve");
-        Text solutionText = new Text();
-        gridPane.add(solveButton, columns + 1, 0);
-        gridPane.add(solutionText, columns + 1, 1, 1, rows - 1);
+    // Fills in a random system that is diagonally dominant, so it always has a solution
+    private void randomize() {
+        Random random = new Random();
+        double[] newA = new double[size * size];
+        double[] newB = new double[size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                newA[i * size + j] = random.nextDouble() * 2 - 1 + (i == j ? size : 0);
+            }
+            newB[i] = random.nextDouble() * 2 - 1;
+        }
+        setSystem(size, newA, newB);
+        status.setText("");
+    }
 
-        solveButton.setOnAction(e -> {
-            Double[][] matrixA = new Double[rows][columns];
-            Double[][] vectorB = new Double[rows][1];
+    private void load(Stage stage) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Load matrix");
+        chooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Matrix files", "*.mtrx", "*.csv", "*.txt"),
+                new FileChooser.ExtensionFilter("All files", "*.*"));
+        File file = chooser.showOpenDialog(stage);
+        if (file == null) {
+            return;
+        }
 
-            try {
-                for (int i = 0; i < rows; i++) {
-                    for (int j = 0; j < columns; j++) {
-                        matrixA[i][j] = Double.parseDouble(matrixInputs[i][j].getText());
+        Task<Matrix> task = new Task<Matrix>() {
+            @Override
+            protected Matrix call() throws IOException {
+                updateMessage("Loading " + file.getName());
+                return readMatrix(file.toPath(), (done, total) -> {
+                    if (isCancelled()) {
+                        throw new CancellationException();
                     }
-                    vectorB[i][0] = Double.parseDouble(vectorInputs[i].getText());
+                    updateProgress(done, total);
+                });
+            }
+        };
+        task.setOnSucceeded(e -> {
+            Matrix matrix = task.getValue();
+            int n = matrix.getNumRows();
+            int cols = matrix.getNumCols();
+            if (cols != n && cols != n + 1) {
+                status.setText("File must hold an n x n matrix A, or an n x (n + 1) matrix [A b]");
+                return;
+            }
+            double[] data = matrix.toDoubleArray();
+            double[] newA = new double[n * n];
+            double[] newB = new double[n];
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(data, i * cols, newA, i * n, n);
+                if (cols > n) {
+                    newB[i] = data[i * cols + n];
                 }
+            }
+            setSystem(n, newA, newB);
+            status.setText("Loaded " + n + " x " + n + " system from " + file.getName());
+        });
+        run(task);
+    }
 
-                Matrix A = new Matrix(matrixA);
-                Matrix b = new Matrix(vectorB);
+    private void solve() {
+        // The task works on a copy, so the table stays editable meanwhile
+        Matrix A = Matrix.wrap(a.clone(), size, size);
+        Matrix B = Matrix.wrap(b.clone(), size, 1);
+        SolverSession current = session;
+        int n = size;
 
-                try {
-                    Matrix x = LinSystem.solveSystem(A, b);
-                    solutionText.setText(x.toString());
-                } catch (Exception ex) {
-                    solutionText.setText(ex.getMessage());
+        Task<double[]> task = new Task<double[]>() {
+            @Override
+            protected double[] call() throws Exception {
+                updateMessage("Solving");
+                long start = System.nanoTime();
+                SolverSession solver = current;
+                if (solver == null) {
+                    solver = new SolverSession(A, B);
+                    session = solver;
+                } else {
+                    solver.update(A, B);
                 }
-
-            } catch (NumberFormatException ex) {
-                solutionText.setText("Invalid input. Please enter valid numbers.");
+                Matrix solution = solver.solve(k -> {
+                    if (isCancelled()) {
+                        throw new CancellationException();
+                    }
+                    updateProgress(k, n);
+                });
+                updateMessage(String.format("Solved in %.1f ms", (System.nanoTime() - start) / 1e6));
+                return solution.toDoubleArray();
             }
+        };
+        task.setOnSucceeded(e -> {
+            x = task.getValue();
+            table.refresh();
+        });
+        run(task);
+    }
 
+    // Runs a task in the background, with the controls and progress bar following it
+    private void run(Task<?> task) {
+        running = task;
+        setBusy(true);
+        // Progress is -1, shown as indeterminate, until the task first reports
+        progressBar.progressProperty().bind(task.progressProperty());
+        status.textProperty().bind(task.messageProperty());
+        task.stateProperty().addListener((observable, oldState, state) -> {
+            if (state == Worker.State.SUCCEEDED || state == Worker.State.FAILED
+                    || state == Worker.State.CANCELLED) {
+                status.textProperty().unbind();
+                progressBar.progressProperty().unbind();
+                progressBar.setProgress(state == Worker.State.SUCCEEDED ? 1 : 0);
+                if (state == Worker.State.FAILED) {
+                    status.setText(task.getException().getMessage());
+                } else if (state == Worker.State.CANCELLED) {
+                    status.setText("Cancelled");
+                }
+                setBusy(false);
+            }
         });
+        background.execute(task);
+    }
 
-        // Set the scene and stage
-        Scene scene = new Scene(gridPane);
-        primaryStage.setScene(scene);
-        primaryStage.setTitle("Matrix Solver");
-        primaryStage.show();
+    private void setBusy(boolean busy) {
+        resizeButton.setDisable(busy);
+        randomButton.setDisable(busy);
+        loadButton.setDisable(busy);
+        solveButton.setDisable(busy);
+        sizeField.setDisable(busy);
+        cancelButton.setDisable(!busy);
+    }
+
+    /**
+     * Read a matrix from a MatrixFile, recognized by its magic bytes, or from
+     * a text file with one row per line and the elements separated by commas
+     * or white space. Blank lines and lines starting with # are skipped.
+     */
+    static Matrix readMatrix(Path path, Progress progress) throws IOException {
+        byte[] magic = new byte[4];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read = in.read(magic);
+            if (read == 4 && "MTRX".equals(new String(magic, StandardCharsets.US_ASCII))) {
+                return MatrixFile.read(path);
+            }
+        }
+
+        long total = Files.size(path);
+        long done = 0;
+        List<double[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                done += line.length() + 1;
+                if (progress != null && rows.size() % 64 == 0) {
+                    progress.update(done, total);
+                }
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("[,\\s]+");
+                double[] row = new double[fields.length];
+                for (int j = 0; j < fields.length; j++) {
+                    try {
+                        row[j] = Double.parseDouble(fields[j]);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid number on row " + (rows.size() + 1) + ": " + fields[j]);
+                    }
+                }
+                if (!rows.isEmpty() && row.length != rows.get(0).length) {
+                    throw new IOException("Matrix must have rows of equal length");
+                }
+                rows.add(row);
+            }
+        }
+        if (rows.isEmpty()) {
+            throw new IOException("Matrix must have at least one row and one column");
+        }
+        int cols = rows.get(0).length;
+        double[] data = new double[rows.size() * cols];
+        for (int i = 0; i < rows.size(); i++) {
+            System.arraycopy(rows.get(i), 0, data, i * cols, cols);
+        }
+        return Matrix.wrap(data, rows.size(), cols);
+    }
+
+    /**
+     * Receives the bytes of a file read so far.
+     */
+    interface Progress {
+        void update(long done, long total);
+    }
+
+    /**
+     * Parses cell input, turning bad input into null instead of an exception.
+     */
+    private static final class NumberConverter extends StringConverter<Double> {
+
+        @Override
+        public String toString(Double value) {
+            return value == null ? "" : value.toString();
+        }
+
+        @Override
+        public Double fromString(String text) {
+            try {
+                return Double.parseDouble(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,118 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.Random;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSolverTest {
+
+    @org.junit.jupiter.api.Test
+    void matchesOneAtATime() throws Exception {
+        int n = 5;
+        int count = 7;
+        Random random = new Random(3);
+        double[][] systemsA = new double[count][n * n];
+        double[][] systemsB = new double[count][n];
+        double[] a = new double[n * n * count];
+        double[] b = new double[n * count];
+        for (int s = 0; s < count; s++) {
+            for (int e = 0; e < n * n; e++) {
+                systemsA[s][e] = random.nextGaussian();
+                a[e * count + s] = systemsA[s][e];
+            }
+            for (int i = 0; i < n; i++) {
+                systemsB[s][i] = random.nextGaussian();
+                b[i * count + s] = systemsB[s][i];
+            }
+        }
+
+        boolean[] singular = new boolean[count];
+        BatchSolver.solve(n, count, a, b, singular);
+        for (int s = 0; s < count; s++) {
+            assertFalse(singular[s]);
+            Matrix x = LinSystem.solveSystem(Matrix.wrap(systemsA[s], n, n), Matrix.wrap(systemsB[s], n, 1));
+            for (int i = 0; i < n; i++) {
+                assertEquals(x.get(i, 0), b[i * count + s], 1e-12);
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void flagsSingularSystems() {
+        // System 0 is singular, system 1 is the identity
+        double[] a = {1, 1, 2, 0, 3, 0, 2, 0, 4, 1, 6, 0, 0, 0, 0, 0, 0, 1};
+        double[] b = {1, 4, 2, 5, 3, 6};
+        boolean[] singular = new boolean[2];
+        BatchSolver.solve(3, 2, a, b, singular);
+        assertTrue(singular[0]);
+        assertFalse(singular[1]);
+        assertEquals(4, b[1]);
+        assertEquals(5, b[3]);
+        assertEquals(6, b[5]);
+
+        // Singular up to roundoff, with a last pivot near 1e-16
+        Matrix nearly = new Matrix(new Double[][] {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}, {7.0, 8.0, 9.0}});
+        Matrix identity = new Matrix(new Double[][] {{1.0, 0.0, 0.0}, {0.0, 1.0, 0.0}, {0.0, 0.0, 1.0}});
+        boolean[] flags = new boolean[2];
+        BatchSolver.solve(NDArray.stack(nearly, identity), NDArray.newRandom(2, 3, 1), flags);
+        assertTrue(flags[0]);
+        assertFalse(flags[1]);
+    }
+
+    @org.junit.jupiter.api.Test
+    void solvesNDArrayBatch() throws Exception {
+        // Three interleaved chunks, the last one partial
+        int n = 6;
+        int count = 150;
+        NDArray a = NDArray.newRandom(count, n, n);
+        NDArray b = NDArray.newRandom(count, n, 2);
+        a.select(4).multiply(0.0);
+        boolean[] singular = new boolean[count];
+        NDArray x = BatchSolver.solve(a, b, singular);
+        assertArrayEquals(new Integer[] {count, n, 2}, x.getShape());
+        for (int s = 0; s < count; s++) {
+            assertEquals(s == 4, singular[s]);
+            if (s == 4) {
+                continue;
+            }
+            Matrix expected = new LUDecomposition(a.getMatrix(s)).solve(b.getMatrix(s));
+            Matrix solution = x.getMatrix(s);
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < 2; j++) {
+                    // Random systems may be ill-conditioned, so compare relative to the solution
+                    assertEquals(expected.get(i, j), solution.get(i, j), 1e-9 * Math.max(1, Math.abs(expected.get(i, j))));
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> BatchSolver.solve(a, NDArray.newZeros(count, n + 1, 1), singular));
+    }
+
+    @org.junit.jupiter.api.Test
+    void batchedMultiply() {
+        // Large enough for the blocked kernel, reading each matrix at its own offset
+        NDArray a = NDArray.newRandom(3, 50, 60);
+        NDArray b = NDArray.newRandom(3, 60, 70);
+        NDArray shared = NDArray.newRandom(1, 60, 70);
+        NDArray product = LinAlgBasics.matrixMultiply(a, b);
+        NDArray broadcast = LinAlgBasics.matrixMultiply(a, shared);
+        assertArrayEquals(new Integer[] {3, 50, 70}, product.getShape());
+        for (int s = 0; s < 3; s++) {
+            Matrix expected = LinAlgBasics.matrixMultiply(a.getMatrix(s), b.getMatrix(s));
+            Matrix expectedShared = LinAlgBasics.matrixMultiply(a.getMatrix(s), shared.getMatrix(0));
+            for (int i = 0; i < 50; i++) {
+                for (int j = 0; j < 70; j++) {
+                    assertEquals(expected.get(i, j), product.get(s, i, j), 1e-12);
+                    assertEquals(expectedShared.get(i, j), broadcast.get(s, i, j), 1e-12);
+                }
+            }
+        }
+        // Transposed views of every matrix in the batch
+        NDArray gram = LinAlgBasics.matrixMultiply(a.transpose(0, 2, 1), a);
+        Matrix first = LinAlgBasics.matrixMultiply(a.getMatrix(0).transpose(), a.getMatrix(0));
+        assertEquals(first.get(5, 7), gram.get(0, 5, 7), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> LinAlgBasics.matrixMultiply(a, a));
+    }
+}
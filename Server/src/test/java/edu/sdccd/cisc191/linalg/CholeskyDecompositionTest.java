@@ -0,0 +1,69 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CholeskyDecompositionTest {
+
+    // X^T X + I is symmetric positive definite
+    private static Matrix positiveDefinite(int n) {
+        Matrix X = Matrix.newRandom(n, n);
+        Matrix A = LinAlgBasics.matrixMultiply(X.transpose(), X);
+        for (int i = 0; i < n; i++) {
+            A.set(A.get(i, i) + 1, i, i);
+        }
+        return A;
+    }
+
+    @org.junit.jupiter.api.Test
+    void solveSmallSystem() {
+        Matrix A = new Matrix(new Double[][] {{4.0, 2.0, 2.0}, {2.0, 5.0, 3.0}, {2.0, 3.0, 6.0}});
+        CholeskyDecomposition cholesky = new CholeskyDecomposition(A);
+        assertTrue(cholesky.isPositiveDefinite());
+        Matrix x = cholesky.solve(new Matrix(new Double[][] {{14.0}, {21.0}, {26.0}}));
+        assertEquals(1.0, x.get(0, 0), 1e-12);
+        assertEquals(2.0, x.get(1, 0), 1e-12);
+        assertEquals(3.0, x.get(2, 0), 1e-12);
+        assertEquals(new LUDecomposition(A).determinant(), cholesky.determinant(), 1e-10);
+    }
+
+    @org.junit.jupiter.api.Test
+    void matchesLUAcrossPanels() throws Exception {
+        Matrix A = positiveDefinite(100);
+        Matrix b = Matrix.newRandom(100, 3);
+        Matrix x = new CholeskyDecomposition(A).solve(b);
+        assertTrue(LinSystem.relativeResidual(A, x, b) < 1e-14);
+        assertEquals(LinSystem.Method.CHOLESKY, LinSystem.chooseMethod(A));
+        Matrix expected = new LUDecomposition(A).solve(b);
+        Matrix solved = LinSystem.solveSystem(A, b);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(expected.get(i, j), solved.get(i, j), 1e-9 * Math.max(1, Math.abs(expected.get(i, j))));
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void indefiniteFallsBackToLU() throws Exception {
+        // Symmetric with a positive diagonal, but with a negative eigenvalue
+        Matrix A = new Matrix(new Double[][] {{1.0, 2.0}, {2.0, 1.0}});
+        assertFalse(new CholeskyDecomposition(A).isPositiveDefinite());
+        assertThrows(IllegalStateException.class, () -> new CholeskyDecomposition(A).solve(Matrix.newZeros(2, 1)));
+        assertEquals(LinSystem.Method.CHOLESKY, LinSystem.chooseMethod(A));
+        Matrix x = LinSystem.solveSystem(A, new Matrix(new Double[][] {{3.0}, {3.0}}));
+        assertEquals(1.0, x.get(0, 0), 1e-12);
+        assertEquals(1.0, x.get(1, 0), 1e-12);
+    }
+
+    @org.junit.jupiter.api.Test
+    void dispatchChecksSymmetry() {
+        Matrix A = positiveDefinite(70);
+        A.set(A.get(3, 68) + 1e-3, 3, 68);
+        assertEquals(LinSystem.Method.LU, LinSystem.chooseMethod(A));
+        // Negative definite: symmetric, but Cholesky is not tried
+        Matrix negative = positiveDefinite(5);
+        negative.multiply(-1.0);
+        assertEquals(LinSystem.Method.LU, LinSystem.chooseMethod(negative));
+    }
+}
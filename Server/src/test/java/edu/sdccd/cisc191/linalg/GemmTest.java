@@ -0,0 +1,113 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GemmTest {
+
+    private static double[] random(Random random, int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextDouble() - 0.5;
+        }
+        return values;
+    }
+
+    // c += a * b with a plain triple loop
+    private static double[] naive(double[] a, double[] b, double[] c, int m, int k, int n) {
+        double[] result = c.clone();
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < n; j++) {
+                double sum = 0;
+                for (int p = 0; p < k; p++) {
+                    sum += a[i * k + p] * b[p * n + j];
+                }
+                result[i * n + j] += sum;
+            }
+        }
+        return result;
+    }
+
+    private static void check(int m, int k, int n, boolean parallel) {
+        Random random = new Random(m * 31 + k * 7 + n);
+        double[] a = random(random, m * k);
+        double[] b = random(random, k * n);
+        double[] c = random(random, m * n);
+        double[] expected = naive(a, b, c, m, k, n);
+        Gemm.multiply(a, 0, b, 0, c, 0, m, k, n, parallel);
+        assertArrayEquals(expected, c, 1e-12 * k, m + "x" + k + "x" + n);
+    }
+
+    @org.junit.jupiter.api.Test
+    void oddShapes() {
+        int[][] shapes = {{1, 300, 1}, {1, 300, 70}, {70, 300, 1}, {67, 129, 33}, {5, 3, 9},
+                {65, 257, 513}, {4, 256, 8}, {3, 1000, 17}};
+        for (int[] shape : shapes) {
+            check(shape[0], shape[1], shape[2], false);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void bothKernelsAgree() {
+        Random random = new Random(5);
+        int m = 50;
+        int k = 60;
+        int n = 70;
+        double[] a = random(random, m * k);
+        double[] b = random(random, k * n);
+        double[] simple = new double[m * n];
+        double[] blocked = new double[m * n];
+        Gemm.multiplySimple(a, 0, b, 0, simple, 0, m, k, n);
+        Gemm.multiplyBlocked(a, 0, b, 0, blocked, 0, m, k, n, false);
+        assertArrayEquals(simple, blocked, 1e-12);
+    }
+
+    @org.junit.jupiter.api.Test
+    void parallelBlocks() {
+        // Past PARALLEL_THRESHOLD, with row blocks forked over the common pool
+        check(200, 300, 150, true);
+        check(131, 129, 130, true);
+    }
+
+    @org.junit.jupiter.api.Test
+    void offsetsIntoBuffers() {
+        Random random = new Random(9);
+        int m = 67;
+        int k = 129;
+        int n = 33;
+        double[] a = random(random, 5 + m * k);
+        double[] b = random(random, 11 + k * n);
+        double[] c = new double[3 + m * n];
+        Gemm.multiply(a, 5, b, 11, c, 3, m, k, n, false);
+        double[] expected = naive(Arrays.copyOfRange(a, 5, a.length),
+                Arrays.copyOfRange(b, 11, b.length), new double[m * n], m, k, n);
+        assertArrayEquals(expected, Arrays.copyOfRange(c, 3, c.length), 1e-12 * k);
+        assertEquals(0, c[0]);
+    }
+
+    @org.junit.jupiter.api.Test
+    void stridedViews() {
+        Matrix A = Matrix.newRandom(129, 67);
+        Matrix B = Matrix.newRandom(99, 66);
+        // The first 99 columns of A transposed, 67 x 99, times every other column of B, 99 x 33
+        Matrix left = A.transpose().select(new Slice(), new Slice(0, 99));
+        Matrix right = B.select(new Slice(0, 99), new Slice(0, 66, 2));
+        Matrix product = LinAlgBasics.matrixMultiply(left, right);
+        assertArrayEquals(new Integer[] {67, 33}, product.getShape());
+        double[] expected = naive(left.toDoubleArray(), right.toDoubleArray(), new double[67 * 33], 67, 99, 33);
+        for (int i = 0; i < 67; i++) {
+            for (int j = 0; j < 33; j++) {
+                double sum = 0;
+                for (int p = 0; p < 99; p++) {
+                    sum += A.get(p, i) * B.get(p, 2 * j);
+                }
+                assertEquals(sum, product.get(i, j), 1e-12);
+                assertEquals(expected[i * 33 + j], product.get(i, j), 1e-12);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IterativeSolverTest {
+    private Matrix A;
+    private Matrix b;
+    private Matrix expected;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() throws Exception {
+        // Symmetric and diagonally dominant, so every method converges
+        A = new Matrix(new Double[][] {
+                {4.0, 1.0, 0.0, 0.0},
+                {1.0, 4.0, 1.0, 0.0},
+                {0.0, 1.0, 4.0, 1.0},
+                {0.0, 0.0, 1.0, 3.0}});
+        b = new Matrix(new Double[][] {{1.0}, {2.0}, {0.0}, {1.0}});
+        expected = LinSystem.solveSystem(A, b);
+    }
+
+    private void assertSolution(Matrix x) {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(expected.get(i, 0), x.get(i, 0), 1e-8);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void conjugateGradient() throws Exception {
+        IterativeSolver solver = new IterativeSolver(1e-12, 100);
+        assertSolution(solver.conjugateGradient(LinearOperator.of(A), b));
+        assertTrue(solver.getIterations() <= 4);
+        solver.setPreconditioner(Preconditioner.jacobi(A));
+        assertSolution(solver.conjugateGradient(LinearOperator.of(SparseMatrix.fromMatrix(A)), b));
+    }
+
+    @org.junit.jupiter.api.Test
+    void biCGStab() throws Exception {
+        IterativeSolver solver = new IterativeSolver(1e-12, 100);
+        assertSolution(solver.biCGStab(LinearOperator.of(A), b));
+        solver.setPreconditioner(Preconditioner.jacobi(A));
+        assertSolution(solver.biCGStab(LinearOperator.of(A), b));
+    }
+
+    @org.junit.jupiter.api.Test
+    void biCGStabBreakdown() {
+        // A rotation: v = Ab is orthogonal to b on the first step
+        Matrix rotation = new Matrix(new Double[][] {{0.0, 1.0}, {-1.0, 0.0}});
+        Matrix rhs = new Matrix(new Double[][] {{1.0}, {0.0}});
+        IterativeSolver solver = new IterativeSolver(1e-12, 100);
+        IterativeSolver.NoConvergenceException e = assertThrows(IterativeSolver.NoConvergenceException.class,
+                () -> solver.biCGStab(LinearOperator.of(rotation), rhs));
+        assertEquals("BiCGSTAB broke down", e.getMessage());
+        assertEquals(0, solver.getIterations());
+    }
+
+    @org.junit.jupiter.api.Test
+    void gaussSeidel() throws Exception {
+        IterativeSolver solver = new IterativeSolver(1e-12, 1000);
+        int[] calls = new int[1];
+        solver.setListener((iteration, residual) -> calls[0]++);
+        assertSolution(solver.gaussSeidel(A, b));
+        assertEquals(solver.getIterations(), calls[0]);
+        solver.setOmega(1.1);
+        assertSolution(solver.gaussSeidel(SparseMatrix.fromMatrix(A), b));
+    }
+
+    @org.junit.jupiter.api.Test
+    void noConvergence() {
+        IterativeSolver solver = new IterativeSolver(1e-12, 2);
+        assertThrows(IterativeSolver.NoConvergenceException.class, () -> solver.gaussSeidel(A, b));
+    }
+}
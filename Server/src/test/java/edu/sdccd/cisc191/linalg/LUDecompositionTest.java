@@ -0,0 +1,86 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LUDecompositionTest {
+    private Matrix A;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        A = new Matrix(new Double[][] {{0.0, 2.0, 1.0}, {1.0, 1.0, 1.0}, {2.0, 1.0, 3.0}});
+    }
+
+    @org.junit.jupiter.api.Test
+    void solveSingleColumn() throws Exception {
+        Matrix b = new Matrix(new Double[][] {{7.0}, {6.0}, {13.0}});
+        Matrix x = new LUDecomposition(A).solve(b);
+        assertEquals(1.0, x.get(0, 0), 1e-12);
+        assertEquals(2.0, x.get(1, 0), 1e-12);
+        assertEquals(3.0, x.get(2, 0), 1e-12);
+    }
+
+    @org.junit.jupiter.api.Test
+    void solveManyColumns() throws Exception {
+        LUDecomposition lu = new LUDecomposition(A);
+        Matrix b = new Matrix(new Double[][] {{5.0, 2.0}, {6.0, 1.0}, {13.0, 1.0}});
+        Matrix x = lu.solve(b);
+        Matrix check = LinAlgBasics.matrixMultiply(A, x);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 2; j++) {
+                assertEquals(b.get(i, j), check.get(i, j), 1e-12);
+            }
+        }
+        assertEquals(-3.0, lu.determinant(), 1e-12);
+    }
+
+    @org.junit.jupiter.api.Test
+    void residualIsNearMachinePrecision() throws Exception {
+        Matrix big = Matrix.newRandom(200, 200);
+        Matrix b = Matrix.newRandom(200, 3);
+        Matrix x = LinSystem.solveSystem(big, b);
+        assertTrue(LinSystem.relativeResidual(big, x, b) < 1e-14);
+        x.set(x.get(0, 0) + 1, 0, 0);
+        assertTrue(LinSystem.relativeResidual(big, x, b) > 1e-6);
+    }
+
+    @org.junit.jupiter.api.Test
+    void singularSystems() {
+        Matrix singular = new Matrix(new Double[][] {{1.0, 2.0}, {2.0, 4.0}});
+        LUDecomposition lu = new LUDecomposition(singular);
+        assertTrue(lu.isSingular());
+        assertThrows(LinSystem.NoSolutionException.class,
+                () -> lu.solve(new Matrix(new Double[][] {{1.0}, {1.0}})));
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> lu.solve(new Matrix(new Double[][] {{1.0}, {2.0}})));
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> LinSystem.solveSystem(singular, new Matrix(new Double[][] {{3.0}, {6.0}})));
+    }
+
+    @org.junit.jupiter.api.Test
+    void singularUpToRoundoff() {
+        // Pivoting leaves a last pivot near 1e-16 rather than 0
+        Matrix singular = new Matrix(new Double[][] {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}, {7.0, 8.0, 9.0}});
+        LUDecomposition lu = new LUDecomposition(singular);
+        assertTrue(lu.isSingular());
+        assertEquals(0.0, lu.determinant());
+        assertThrows(LinSystem.NoSolutionException.class,
+                () -> LinSystem.solveSystem(singular, new Matrix(new Double[][] {{1.0}, {2.0}, {4.0}})));
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> LinSystem.solveSystem(singular, new Matrix(new Double[][] {{1.0}, {2.0}, {3.0}})));
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> lu.solve(new Matrix(new Double[][] {{0.1}, {0.4}, {0.7}})));
+
+        // The tolerance is relative: scaled far down, singular stays singular and A stays regular
+        Matrix tiny = singular.copy();
+        tiny.multiply(1e-200);
+        assertTrue(new LUDecomposition(tiny).isSingular());
+        Matrix small = A.copy();
+        small.multiply(1e-200);
+        assertFalse(new LUDecomposition(small).isSingular());
+        // Badly scaled rows are not mistaken for roundoff
+        Matrix scaled = new Matrix(new Double[][] {{1e300, 1e299}, {1.0, 1.0}});
+        assertFalse(new LUDecomposition(scaled).isSingular());
+    }
+}
@@ -0,0 +1,84 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MixedPrecisionSolverTest {
+
+    @org.junit.jupiter.api.Test
+    void refinesToDoublePrecision() throws Exception {
+        // Several panels, the last one partial
+        Matrix A = Matrix.newRandom(300, 300);
+        Matrix b = Matrix.newRandom(300, 2);
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(A);
+        Matrix x = solver.solve(b);
+        assertTrue(solver.isSinglePrecision());
+        assertFalse(solver.isFallback());
+        assertTrue(solver.getIterations() > 0);
+        assertTrue(LinSystem.relativeResidual(A, x, b) < 1e-14);
+
+        // L U = P A, to single precision
+        FloatMatrix factors = solver.getFactors();
+        int[] pivot = solver.getPivot();
+        assertArrayEquals(new Integer[] {300, 300}, factors.getShape());
+        for (int i = 0; i < 300; i += 7) {
+            for (int j = 0; j < 300; j += 5) {
+                double sum = i <= j ? factors.get(i, j) : 0;
+                for (int k = 0; k < Math.min(i, j + 1); k++) {
+                    sum += factors.get(i, k) * factors.get(k, j);
+                }
+                assertEquals(A.get(pivot[i], j), sum, 1e-4);
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void illConditionedFallsBack() throws Exception {
+        // The Hilbert matrix of order 12 has a condition number near 1e16
+        int n = 12;
+        Matrix hilbert = Matrix.newZeros(n, n);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                hilbert.set(1.0 / (i + j + 1), i, j);
+            }
+        }
+        Matrix b = Matrix.newRandom(n, 1);
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(hilbert);
+        Matrix x = solver.solve(b);
+        assertTrue(solver.isFallback());
+        Matrix expected = new LUDecomposition(hilbert).solve(b);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected.get(i, 0), x.get(i, 0));
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void singularSystems() {
+        Matrix singular = new Matrix(new Double[][] {{1.0, 2.0}, {2.0, 4.0}});
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(singular);
+        assertFalse(solver.isSinglePrecision());
+        assertThrows(LinSystem.NoSolutionException.class,
+                () -> solver.solve(new Matrix(new Double[][] {{1.0}, {1.0}})));
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> solver.solve(new Matrix(new Double[][] {{1.0}, {2.0}})));
+    }
+
+    @org.junit.jupiter.api.Test
+    void outsideFloatRange() throws Exception {
+        Matrix A = new Matrix(new Double[][] {{1e300, 0.0}, {0.0, 1.0}});
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(A);
+        assertFalse(solver.isSinglePrecision());
+        Matrix x = solver.solve(new Matrix(new Double[][] {{2e300}, {3.0}}));
+        assertTrue(solver.isFallback());
+        assertEquals(2.0, x.get(0, 0), 1e-15);
+        assertEquals(3.0, x.get(1, 0), 1e-15);
+    }
+
+    @org.junit.jupiter.api.Test
+    void rejectsNonSquare() {
+        assertThrows(IllegalArgumentException.class, () -> new MixedPrecisionSolver(Matrix.newZeros(2, 3)));
+        MixedPrecisionSolver solver = new MixedPrecisionSolver(Matrix.newRandom(3, 3));
+        assertThrows(IllegalArgumentException.class, () -> solver.solve(Matrix.newZeros(2, 1)));
+    }
+}
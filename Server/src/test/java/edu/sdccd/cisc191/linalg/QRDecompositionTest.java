@@ -0,0 +1,82 @@
+package edu.sdccd.cisc191.linalg;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QRDecompositionTest {
+
+    @org.junit.jupiter.api.Test
+    void fitsLine() throws Exception {
+        // Points around y = 1 + 2t, whose least squares line is y = 1.3 + 1.8t
+        Matrix A = new Matrix(new Double[][] {{1.0, 0.0}, {1.0, 1.0}, {1.0, 2.0}, {1.0, 3.0}});
+        Matrix y = new Matrix(new Double[][] {{1.5}, {2.5}, {5.5}, {6.5}});
+        assertEquals(LinSystem.Method.QR, LinSystem.chooseMethod(A));
+        Matrix x = LinSystem.solveSystem(A, y);
+        assertEquals(1.3, x.get(0, 0), 1e-12);
+        assertEquals(1.8, x.get(1, 0), 1e-12);
+    }
+
+    @org.junit.jupiter.api.Test
+    void residualIsOrthogonalToColumns() throws Exception {
+        // Several panels, the last one partial, so the block reflector is used
+        Matrix A = Matrix.newRandom(150, 70);
+        Matrix b = Matrix.newRandom(150, 2);
+        QRDecomposition qr = new QRDecomposition(A);
+        assertTrue(qr.isFullRank());
+        Matrix x = qr.solve(b);
+        Matrix residual = LinAlgBasics.matrixMultiply(A, x);
+        residual.subtract(b);
+        Matrix gradient = LinAlgBasics.matrixMultiply(A.transpose(), residual);
+        assertTrue(gradient.normInf() < 1e-12);
+
+        // R^T R = A^T A
+        Matrix R = qr.getR();
+        Matrix normal = LinAlgBasics.matrixMultiply(A.transpose(), A);
+        Matrix product = LinAlgBasics.matrixMultiply(R.transpose(), R);
+        product.subtract(normal);
+        assertTrue(product.normInf() < 1e-10 * normal.normInf());
+    }
+
+    @org.junit.jupiter.api.Test
+    void squareMatchesLU() throws Exception {
+        Matrix A = Matrix.newRandom(40, 40);
+        Matrix b = Matrix.newRandom(40, 1);
+        Matrix x = new QRDecomposition(A).solve(b);
+        Matrix expected = new LUDecomposition(A).solve(b);
+        for (int i = 0; i < 40; i++) {
+            assertEquals(expected.get(i, 0), x.get(i, 0), 1e-8 * Math.max(1, Math.abs(expected.get(i, 0))));
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void dependentColumns() {
+        Matrix A = new Matrix(new Double[][] {{1.0, 2.0}, {2.0, 4.0}, {3.0, 6.0}});
+        assertFalse(new QRDecomposition(A).isFullRank());
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> LinSystem.solveSystem(A, Matrix.newRandom(3, 1)));
+        assertThrows(IllegalArgumentException.class, () -> new QRDecomposition(A.transpose()));
+    }
+
+    @org.junit.jupiter.api.Test
+    void fewerEquationsThanUnknowns() {
+        Matrix wide = new Matrix(new Double[][] {{1.0, 2.0, 3.0}, {2.0, 4.0, 6.0}});
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> LinSystem.solveSystem(wide, new Matrix(new Double[][] {{1.0}, {2.0}})));
+        assertThrows(LinSystem.NoSolutionException.class,
+                () -> LinSystem.solveSystem(wide, new Matrix(new Double[][] {{1.0}, {3.0}})));
+        // Consistent only to within roundoff: 0.1 + 0.2 is not 0.3 in binary
+        Matrix sums = new Matrix(new Double[][] {{0.1, 0.2, 0.0}, {0.2, 0.4, 0.0}});
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> LinSystem.solveSystem(sums, new Matrix(new Double[][] {{0.1 + 0.2}, {0.3 + 0.3}})));
+
+        Matrix same = new Matrix(new Double[][] {{1.0, 1.0, 1.0}, {1.0, 1.0, 1.0}});
+        assertThrows(LinSystem.NoSolutionException.class,
+                () -> LinSystem.solveSystem(same, new Matrix(new Double[][] {{1.0}, {2.0}})));
+        // Independent rows always have solutions, every column of b needs one
+        assertThrows(LinSystem.InfiniteSolutionsException.class,
+                () -> LinSystem.solveSystem(Matrix.newRandom(3, 5), Matrix.newRandom(3, 2)));
+        assertThrows(LinSystem.NoSolutionException.class,
+                () -> LinSystem.solveSystem(same, new Matrix(new Double[][] {{1.0, 1.0}, {1.0, 2.0}})));
+    }
+}
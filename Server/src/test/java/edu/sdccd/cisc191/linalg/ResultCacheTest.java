@@ -0,0 +1,134 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    @org.junit.jupiter.api.Test
+    void evictsLeastRecentlyUsed() {
+        ResultCache<String, String> cache = new ResultCache<>(2, 1000, (key, value) -> 1);
+        cache.get("a", key -> "A");
+        cache.get("b", key -> "B");
+        cache.get("a", key -> "not again");
+        cache.get("c", key -> "C");
+
+        assertEquals(2, cache.size());
+        assertEquals("A", cache.getIfPresent("a"));
+        assertNull(cache.getIfPresent("b"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @org.junit.jupiter.api.Test
+    void boundsBytes() {
+        ResultCache<Integer, double[]> cache = new ResultCache<>(100, 100, (key, value) -> 8L * value.length);
+        for (int i = 0; i < 5; i++) {
+            cache.get(i, key -> new double[5]);
+        }
+        assertEquals(2, cache.size());
+        assertEquals(80, cache.getBytes());
+        assertEquals(3, cache.getEvictions());
+    }
+
+    @org.junit.jupiter.api.Test
+    void computesOnceUnderContention() throws Exception {
+        ResultCache<String, Integer> cache = new ResultCache<>(10, 1000, (key, value) -> 1);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("key", key -> {
+                        computations.incrementAndGet();
+                        try {
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return 42;
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get().intValue());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, computations.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(7, cache.getHits());
+    }
+
+    @org.junit.jupiter.api.Test
+    void doesNotCacheFailures() {
+        ResultCache<String, String> cache = new ResultCache<>(10, 1000, (key, value) -> 1);
+        assertThrows(IllegalStateException.class, () -> cache.get("a", key -> {
+            throw new IllegalStateException("failed");
+        }));
+        assertEquals(0, cache.size());
+        assertEquals("A", cache.get("a", key -> "A"));
+    }
+
+    @org.junit.jupiter.api.Test
+    void keysCompareContent() {
+        Matrix a = Matrix.newRandom(4, 4);
+        Matrix view = a.select(new Integer[]{0, 1, 2, 3}, new Integer[]{0, 1, 2, 3});
+        assertEquals(new MatrixKey(a), new MatrixKey(a.copy()));
+        assertEquals(new MatrixKey(a), new MatrixKey(view));
+        assertNotEquals(new MatrixKey(a), new MatrixKey(a, a));
+        Matrix changed = a.copy();
+        changed.set(changed.get(0, 0) + 1, 0, 0);
+        assertNotEquals(new MatrixKey(a), new MatrixKey(changed));
+    }
+
+    @org.junit.jupiter.api.Test
+    void cachedSolveReusesFactorization() throws Exception {
+        CachedLinAlg linAlg = new CachedLinAlg(16, 1 << 20);
+        Matrix a = Matrix.newRandom(6, 6);
+        for (int i = 0; i < 6; i++) {
+            a.set(a.get(i, i) + 6, i, i);
+        }
+        for (int trial = 0; trial < 3; trial++) {
+            Matrix b = Matrix.newRandom(6, 1);
+            Matrix expected = LinSystem.solveSystem(a, b);
+            Matrix x = linAlg.solve(a.copy(), b);
+            for (int i = 0; i < 6; i++) {
+                assertEquals(expected.get(i, 0), x.get(i, 0), 1e-12);
+            }
+        }
+        assertEquals(1, linAlg.getCache().getMisses());
+        assertEquals(2, linAlg.getCache().getHits());
+
+        Matrix product = linAlg.multiply(a, a);
+        product.set(0.0, 0, 0);
+        assertEquals(LinAlgBasics.matrixMultiply(a, a).get(0, 0), linAlg.multiply(a, a).get(0, 0), 0);
+    }
+
+    @org.junit.jupiter.api.Test
+    void cachedFactorizationOutlivesChangesToA() throws Exception {
+        // Large enough for the mixed precision solver, whose residuals read A
+        CachedLinAlg linAlg = new CachedLinAlg(16, 1 << 25);
+        Matrix a = Matrix.newRandom(512, 512);
+        Matrix original = a.copy();
+        assertTrue(linAlg.factor(a) instanceof MixedPrecisionSolver);
+        linAlg.solve(a, Matrix.newRandom(512, 1));
+
+        a.set(100.0, 0, 0);
+        Matrix b = Matrix.newRandom(512, 1);
+        Matrix x = linAlg.solve(original, b);
+        assertEquals(1, linAlg.getCache().getMisses());
+        assertTrue(LinSystem.relativeResidual(original, x, b) < 1e-14);
+    }
+
+}
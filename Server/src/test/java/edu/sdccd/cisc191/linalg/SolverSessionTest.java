@@ -0,0 +1,109 @@
+package edu.sdccd.cisc191.linalg;
+
+import java.util.Random;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolverSessionTest {
+
+    private static Matrix wellConditioned(int n, Random random) {
+        double[] data = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                data[i * n + j] = random.nextGaussian() + (i == j ? n : 0);
+            }
+        }
+        return Matrix.wrap(data, n, n);
+    }
+
+    private static void assertSolves(SolverSession session) throws Exception {
+        Matrix x = session.solve();
+        Matrix expected = LinSystem.solveSystem(session.getMatrix(), session.getRightHandSide());
+        for (int i = 0; i < x.getNumRows(); i++) {
+            for (int j = 0; j < x.getNumCols(); j++) {
+                assertEquals(expected.get(i, j), x.get(i, j), 1e-9);
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void updatesWithoutRefactoring() throws Exception {
+        int n = 20;
+        Random random = new Random(5);
+        SolverSession session = new SolverSession(wellConditioned(n, random), Matrix.newRandom(n, 2));
+        assertSolves(session);
+        assertEquals(1, session.getRefactorCount());
+
+        session.set(3.5, 2, 7);
+        assertSolves(session);
+        double[] row = new double[n];
+        double[] col = new double[n];
+        for (int i = 0; i < n; i++) {
+            row[i] = random.nextGaussian() + (i == 4 ? n : 0);
+            col[i] = random.nextGaussian() + (i == 9 ? n : 0);
+        }
+        session.setRow(4, row);
+        assertSolves(session);
+        session.setColumn(9, col);
+        session.setRightHandSide(1.0, 0, 1);
+        assertSolves(session);
+
+        assertEquals(3, session.getUpdateCount());
+        assertEquals(1, session.getRefactorCount());
+    }
+
+    @org.junit.jupiter.api.Test
+    void updateAppliesOnlyChanges() throws Exception {
+        int n = 8;
+        Random random = new Random(6);
+        Matrix a = wellConditioned(n, random);
+        Matrix b = Matrix.newRandom(n, 1);
+        SolverSession session = new SolverSession(a, b);
+        session.solve();
+
+        Matrix edited = a.copy();
+        edited.set(edited.get(1, 1) + 0.5, 1, 1);
+        edited.set(2.0, 6, 0);
+        edited.set(-1.0, 6, 3);
+        assertEquals(2, session.update(edited, b));
+        assertSolves(session);
+        assertEquals(2, session.getUpdateCount());
+        assertEquals(1, session.getRefactorCount());
+    }
+
+    @org.junit.jupiter.api.Test
+    void refactorsAfterMaxUpdates() throws Exception {
+        int n = 6;
+        Random random = new Random(7);
+        SolverSession session = new SolverSession(wellConditioned(n, random), Matrix.newRandom(n, 1));
+        session.setMaxUpdates(2);
+        session.solve();
+        for (int k = 0; k < 3; k++) {
+            session.set(random.nextGaussian(), k, (k + 1) % n);
+        }
+        assertSolves(session);
+        assertEquals(2, session.getRefactorCount());
+        assertEquals(0, session.getUpdateCount());
+    }
+
+    @org.junit.jupiter.api.Test
+    void handlesSingularUpdates() throws Exception {
+        Matrix a = Matrix.wrap(new double[]{1, 0, 0, 1}, 2, 2);
+        Matrix b = Matrix.wrap(new double[]{1, 2}, 2, 1);
+        SolverSession session = new SolverSession(a, b);
+        session.solve();
+
+        // Row 1 becomes a copy of row 0, and b is inconsistent
+        session.setRow(1, new double[]{1, 0});
+        assertThrows(LinSystem.NoSolutionException.class, session::solve);
+
+        // Back to non-singular
+        session.set(3.0, 1, 1);
+        Matrix x = session.solve();
+        assertEquals(1.0, x.get(0, 0), 1e-12);
+        assertEquals(1.0 / 3, x.get(1, 0), 1e-12);
+    }
+
+}
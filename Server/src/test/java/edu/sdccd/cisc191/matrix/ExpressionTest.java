@@ -0,0 +1,38 @@
+package edu.sdccd.cisc191.matrix;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionTest {
+    private Matrix A;
+    private Matrix B;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        A = new Matrix(new Double[][] {{1.0, 2.0}, {3.0, 4.0}});
+        B = new Matrix(new Double[][] {{2.0, 2.0}, {1.0, 0.5}});
+    }
+
+    @org.junit.jupiter.api.Test
+    void evaluate() {
+        Matrix result = Expression.of(A).multiply(2.0).add(B).divide(Expression.of(B).add(1.0)).evaluate();
+        assertEquals("[1.3333333333333333, 2.0]\n[3.5, 5.666666666666667]", result.toString());
+        assertEquals("[1.0, 2.0]\n[3.0, 4.0]", A.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void intoSelf() {
+        Expression.of(A).subtract(B).multiply(A).into(A);
+        assertEquals("[-1.0, 0.0]\n[6.0, 14.0]", A.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void intoView() {
+        Matrix big = Matrix.newZeros(4, 1200);
+        big.add(1.0);
+        Matrix view = big.select(new Slice(0, 4, 2), new Slice(1, 1200, 3));
+        Expression.of(view).multiply(3.0).subtract(view.copy()).into(view);
+        assertEquals(2.0, big.get(2, 1198));
+        assertEquals(1.0, big.get(1, 1));
+        assertEquals(1.0, big.get(0, 2));
+    }
+}
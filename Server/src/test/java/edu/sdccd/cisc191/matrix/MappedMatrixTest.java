@@ -0,0 +1,148 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import edu.sdccd.cisc191.linalg.LinAlgBasics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedMatrixTest {
+    // Segments of 8 doubles, so a 7 x 5 matrix spans five of them
+    private static final int SHIFT = 3;
+
+    private final List<Path> files = new ArrayList<>();
+
+    @org.junit.jupiter.api.AfterEach
+    void tearDown() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private Path newFile() throws IOException {
+        Path file = Files.createTempFile("matrix", ".bin");
+        Files.delete(file);
+        files.add(file);
+        return file;
+    }
+
+    // A mapped matrix with element (i, j) = 10 * i + j
+    private MappedMatrix numbered(int numRows, int numCols, int segmentShift) throws IOException {
+        MappedMatrix A = MappedMatrix.create(newFile(), numRows, numCols, segmentShift);
+        for (int i = 0; i < numRows; i++) {
+            for (int j = 0; j < numCols; j++) {
+                A.set(10.0 * i + j, i, j);
+            }
+        }
+        return A;
+    }
+
+    @org.junit.jupiter.api.Test
+    void acrossSegments() throws IOException {
+        MappedMatrix A = numbered(7, 5, SHIFT);
+        for (int i = 0; i < 7; i++) {
+            double[] row = new double[5];
+            A.readRow(i, 0, 5, row);
+            for (int j = 0; j < 5; j++) {
+                assertEquals(10.0 * i + j, row[j]);
+                assertEquals(10.0 * i + j, A.get(i, j));
+            }
+        }
+
+        // Row 1 is elements 5..9, split between the first two segments
+        A.writeRow(1, 0, 5, new double[] {-1, -2, -3, -4, -5});
+        assertEquals("[-1.0, -2.0, -3.0, -4.0, -5.0]", A.readRows(1, 1).toString());
+        assertEquals(4.0, A.get(0, 4));
+        assertEquals(20.0, A.get(2, 0));
+
+        // The same file reads back the same through 1 GB segments
+        A.flush();
+        MappedMatrix whole = MappedMatrix.open(files.get(0), 0, 7, 5, false);
+        assertEquals(A.toString(), whole.toString());
+        assertEquals(A.toMatrix().toString(), whole.toMatrix().toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void views() throws IOException {
+        MappedMatrix A = numbered(7, 5, SHIFT);
+
+        // Every other row from 1, the last three columns
+        MappedMatrix strided = A.select(new Slice(1, 7, 2), new Slice(2, 5));
+        assertEquals("[12.0, 13.0, 14.0]\n[32.0, 33.0, 34.0]\n[52.0, 53.0, 54.0]", strided.toString());
+
+        MappedMatrix fancy = A.select(new Integer[] {6, 0, 3}, new Integer[] {1, 4});
+        assertEquals("[61.0, 64.0]\n[1.0, 4.0]\n[31.0, 34.0]", fancy.toString());
+        assertEquals("[64.0]\n[4.0]", fancy.select(new Slice(0, 2), 1).toString());
+
+        // Writes go through to the file
+        strided.set(-1.0, 2, 0);
+        fancy.writeRow(1, 0, 2, new double[] {-2, -3});
+        assertEquals(-1.0, A.get(5, 2));
+        assertEquals(-2.0, A.get(0, 1));
+        assertEquals(-3.0, A.get(0, 4));
+
+        MappedMatrix copy = strided.copy();
+        assertEquals(strided.toString(), copy.toString());
+        copy.set(0.0, 0, 0);
+        assertEquals(12.0, A.get(1, 2));
+    }
+
+    @org.junit.jupiter.api.Test
+    void elementwise() throws IOException {
+        MappedMatrix A = numbered(7, 5, SHIFT);
+        Matrix expected = A.toMatrix();
+        MappedMatrix B = numbered(7, 5, 2);
+
+        A.add(B);
+        expected.add(B.toMatrix());
+        assertEquals(expected.toString(), A.toString());
+
+        A.multiply(2.0);
+        A.subtract(expected);
+        assertEquals(expected.toString(), A.toString());
+
+        MappedMatrix view = A.select(new Slice(0, 7, 3), new Integer[] {4, 0});
+        view.divide(2.0);
+        view.add(new Matrix(new Double[][] {{1.0, 2.0}, {3.0, 4.0}, {5.0, 6.0}}));
+        assertEquals("[5.0, 2.0]\n[37.0, 34.0]\n[69.0, 66.0]", view.toString());
+        assertEquals(22.0, A.get(1, 1));
+
+        assertThrows(IllegalArgumentException.class, () -> A.add(view));
+        MappedMatrix readOnly = MappedMatrix.open(files.get(1), 0, 7, 5, false, SHIFT);
+        assertThrows(UnsupportedOperationException.class, () -> readOnly.multiply(2.0));
+    }
+
+    @org.junit.jupiter.api.Test
+    void streamedProducts() throws IOException {
+        // LinAlgBasics streams about 2^20 elements at a time: 2 rows of 350000
+        int m = 5;
+        int k = 350000;
+        Random random = new Random(3);
+        MappedMatrix A = MappedMatrix.create(newFile(), m, k, 20);
+        double[] row = new double[k];
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < k; j++) {
+                row[j] = random.nextDouble() - 0.5;
+            }
+            A.writeRow(i, 0, k, row);
+        }
+        Matrix B = Matrix.newRandom(k, 2);
+
+        Matrix product = LinAlgBasics.matrixMultiply(A, B);
+        Matrix expected = LinAlgBasics.matrixMultiply(A.toMatrix(), B);
+        assertArrayEquals(expected.toDoubleArray(), product.toDoubleArray(), 1e-9);
+
+        MappedMatrix transpose = MappedMatrix.create(newFile(), k, m, 20);
+        LinAlgBasics.transpose(A, transpose);
+        Matrix heap = A.toMatrix();
+        for (int j = 0; j < k; j += 997) {
+            for (int i = 0; i < m; i++) {
+                assertEquals(heap.get(i, j), transpose.get(j, i));
+            }
+        }
+        assertEquals(A.get(4, k - 1), transpose.get(k - 1, 4));
+        assertThrows(IllegalArgumentException.class, () -> LinAlgBasics.transpose(A, A));
+    }
+}
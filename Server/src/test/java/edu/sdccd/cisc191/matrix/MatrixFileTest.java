@@ -0,0 +1,57 @@
+package edu.sdccd.cisc191.matrix;
+
+import java.io.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatrixFileTest {
+    private Matrix A;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        A = new Matrix(new Double[][] {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}});
+    }
+
+    @org.junit.jupiter.api.Test
+    void roundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MatrixFile.write(A, Channels.newChannel(bytes));
+        assertEquals(MatrixFile.HEADER_BYTES + 6 * Double.BYTES, bytes.size());
+        assertEquals('M', bytes.toByteArray()[0]);
+
+        Matrix result = MatrixFile.read(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(A.toString(), result.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void roundTripView() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MatrixFile.write(A.select(new Slice(0, -1, 1), new Integer[] {2, 0}), Channels.newChannel(bytes));
+        Matrix result = MatrixFile.read(Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals("[3.0, 1.0]\n[6.0, 4.0]", result.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void mapFile() throws IOException {
+        Path file = Files.createTempFile("matrix", ".bin");
+        try {
+            MatrixFile.write(A, file);
+            MappedMatrix mapped = MatrixFile.map(file, false);
+            assertEquals(A.toString(), mapped.toString());
+            assertThrows(UnsupportedOperationException.class, () -> mapped.set(0.0, 0, 0));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void rejectsOtherData() {
+        byte[] garbage = new byte[MatrixFile.HEADER_BYTES];
+        assertThrows(IOException.class,
+                () -> MatrixFile.read(Channels.newChannel(new ByteArrayInputStream(garbage))));
+        assertThrows(EOFException.class,
+                () -> MatrixFile.read(Channels.newChannel(new ByteArrayInputStream(new byte[4]))));
+    }
+}
@@ -0,0 +1,171 @@
+package edu.sdccd.cisc191.matrix;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MatrixTest {
+    private Matrix matrix;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        matrix = new Matrix(new Double[][] {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}, {7.0, 8.0, 9.0}});
+    }
+
+    @org.junit.jupiter.api.Test
+    void getAndSet() {
+        assertEquals(6.0, matrix.get(1, 2));
+        matrix.set(10.0, 1, 2);
+        assertEquals(10.0, matrix.get(Integer.valueOf(1), Integer.valueOf(2)));
+        assertThrows(IllegalArgumentException.class, () -> matrix.get(3, 0));
+    }
+
+    @org.junit.jupiter.api.Test
+    void selectSharesData() {
+        Matrix sub = matrix.select(new Slice(0, 2), new Slice(0, 2));
+        sub.multiply(2.0);
+        assertEquals("[2.0, 4.0, 3.0]\n[8.0, 10.0, 6.0]\n[7.0, 8.0, 9.0]", matrix.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void selectNested() {
+        Matrix strided = matrix.select(new Slice(0, 3, 2), new Slice(1, 3));
+        assertEquals("[2.0, 3.0]\n[8.0, 9.0]", strided.toString());
+        Matrix row = strided.select(1, new Slice());
+        assertEquals("[8.0, 9.0]", row.toString());
+        Matrix picked = matrix.select(new Integer[] {2, 0}, new Slice()).select(new Slice(), new Integer[] {2, 1});
+        assertEquals("[9.0, 8.0]\n[3.0, 2.0]", picked.toString());
+        picked.set(0.0, 0, 0);
+        assertEquals(0.0, matrix.get(2, 2));
+    }
+
+    @org.junit.jupiter.api.Test
+    void copyIsIndependent() {
+        Matrix view = matrix.select(new Slice(1, 3), new Slice(0, 3, 2));
+        Matrix copy = view.copy();
+        assertTrue(copy.isContiguous());
+        assertFalse(view.isContiguous());
+        copy.add(1.0);
+        assertEquals("[4.0, 6.0]\n[7.0, 9.0]", view.toString());
+        assertEquals("[5.0, 7.0]\n[8.0, 10.0]", copy.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void transposeIsAView() {
+        Matrix t = matrix.transpose();
+        assertEquals("[1.0, 4.0, 7.0]\n[2.0, 5.0, 8.0]\n[3.0, 6.0, 9.0]", t.toString());
+        t.set(0.0, 2, 0);
+        assertEquals(0.0, matrix.get(0, 2));
+        assertEquals(matrix.toString(), t.transpose().toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void transposedCopySpansTiles() {
+        Matrix a = Matrix.newRandom(45, 70);
+        Matrix t = a.transpose().copy();
+        assertTrue(t.isContiguous());
+        for (int i = 0; i < 45; i++) {
+            for (int j = 0; j < 70; j++) {
+                assertEquals(a.get(i, j), t.get(j, i), 0);
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void reshape() {
+        Matrix row = matrix.reshape(1, 9);
+        row.set(-1.0, 0, 4);
+        assertEquals(-1.0, matrix.get(1, 1));
+        Matrix column = matrix.transpose().reshape(9, 1);
+        assertEquals(4.0, column.get(1, 0));
+        column.set(0.0, 1, 0);
+        assertEquals(4.0, matrix.get(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> matrix.reshape(2, 4));
+    }
+
+    @org.junit.jupiter.api.Test
+    void vectorsBroadcast() {
+        Matrix row = Matrix.wrap(new double[]{10, 20, 30}, 1, 3);
+        Matrix column = Matrix.wrap(new double[]{1, 2, 3}, 3, 1);
+        matrix.add(row);
+        assertEquals("[11.0, 22.0, 33.0]\n[14.0, 25.0, 36.0]\n[17.0, 28.0, 39.0]", matrix.toString());
+        matrix.multiply(column);
+        assertEquals("[11.0, 22.0, 33.0]\n[28.0, 50.0, 72.0]\n[51.0, 84.0, 117.0]", matrix.toString());
+        matrix.subtract(Matrix.wrap(new double[]{1}, 1, 1));
+        assertEquals(10.0, matrix.get(0, 0));
+
+        Matrix repeated = row.broadcast(4, 3);
+        assertArrayEquals(new Integer[]{4, 3}, repeated.getShape());
+        assertEquals(30.0, repeated.get(3, 2));
+        assertThrows(IllegalArgumentException.class, () -> row.add(matrix));
+        assertThrows(IllegalArgumentException.class, () -> matrix.add(Matrix.newZeros(2, 3)));
+    }
+
+    @org.junit.jupiter.api.Test
+    void parallelMatchesSequential() {
+        Matrix a = Matrix.newRandom(301, 67);
+        Matrix b = Matrix.newRandom(301, 301).transpose();
+        Matrix[] sources = {a, a.select(new Slice(1, 300, 2), new Slice(3, 60)), a.transpose()};
+        for (Matrix source : sources) {
+            Integer[] shape = source.getShape();
+            Matrix other = b.select(new Slice(0, shape[0]), new Slice(0, shape[1]));
+            Matrix sequential = source.copy();
+            Matrix parallel = source.copy();
+            sequential.sequential().add(other);
+            parallel.parallel().add(other);
+            sequential.sequential().multiply(3.0);
+            parallel.parallel().multiply(3.0);
+            assertArrayEquals(sequential.toList(), parallel.parallel().toList());
+            assertArrayEquals(source.sequential().toDoubleArray(), source.parallel().toDoubleArray());
+        }
+
+        // Repeated rows share their elements, so they are written in order
+        double[] data = {1, 2};
+        Matrix repeated = Matrix.wrap(data, 1, 2).broadcast(50, 2).parallel();
+        repeated.add(1.0);
+        assertArrayEquals(new double[] {51, 52}, data);
+    }
+
+    @org.junit.jupiter.api.Test
+    void floatStorage() {
+        Matrix matrix = new Matrix(new Double[][] {{0.1, 2.0, 3.0}, {4.0, 5.5, 1e-3}});
+        FloatMatrix single = FloatMatrix.of(matrix.transpose());
+        assertArrayEquals(new Integer[] {3, 2}, single.getShape());
+        assertEquals((float) 0.1, single.get(0, 0));
+        assertEquals(5.5, single.get(1, 1));
+        assertEquals((float) 1e-3, single.toMatrix().get(2, 1));
+        single.set(0.3, 2, 0);
+        assertEquals((float) 0.3, single.toFloatArray()[4]);
+        assertArrayEquals(new float[] {(float) 0.1, 2, 3, 4, 5.5f, (float) 1e-3}, matrix.toFloatArray());
+        assertThrows(IllegalArgumentException.class, () -> single.get(3, 0));
+        assertThrows(IllegalArgumentException.class, () -> FloatMatrix.wrap(new float[5], 2, 3));
+    }
+
+    @org.junit.jupiter.api.Test
+    void floatViews() {
+        FloatMatrix single = FloatMatrix.of(new Matrix(new Double[][] {
+                {1.0, 2.0, 3.0, 4.0}, {5.0, 6.0, 7.0, 8.0}, {9.0, 10.0, 11.0, 12.0}}));
+        FloatMatrix strided = single.select(new Slice(0, 3, 2), new Slice(1, 4, 2));
+        assertEquals("[2.0, 4.0]\n[10.0, 12.0]", strided.toString());
+        FloatMatrix fancy = single.select(new Integer[] {2, 0}, new Slice(2, 4));
+        assertEquals("[11.0, 12.0]\n[3.0, 4.0]", fancy.toString());
+        assertEquals(4.0, fancy.select(1, new Integer[] {1}).get(0, 0));
+        assertArrayEquals(new float[] {11, 12, 3, 4}, fancy.toFloatArray());
+
+        // Views write through, and are rounded to float on the way
+        strided.multiply(0.1);
+        assertEquals((float) 0.2, single.get(0, 1));
+        assertEquals((float) 1.2, single.get(2, 3));
+        fancy.add(new Matrix(new Double[][] {{1.0, 1.0}, {2.0, 2.0}}));
+        fancy.subtract(FloatMatrix.wrap(new float[] {1, 1, 1, 1}, 2, 2));
+        assertEquals(11.0, single.get(2, 2));
+        assertEquals(1.4, single.get(0, 3), 1e-6);
+        single.set(6.5, 1, 1);
+        assertEquals(6.5, single.select(new Slice(), 1).toMatrix().get(1, 0));
+
+        FloatMatrix copy = strided.copy();
+        copy.divide(2.0);
+        assertEquals((float) 0.2, single.get(0, 1));
+        assertEquals((float) 0.1, copy.get(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> single.add(strided));
+        assertThrows(IllegalArgumentException.class, () -> single.select(new Slice(), 4));
+    }
+}
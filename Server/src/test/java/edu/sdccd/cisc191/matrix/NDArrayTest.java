@@ -0,0 +1,124 @@
+package edu.sdccd.cisc191.matrix;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NDArrayTest {
+
+    private static double[] range(int length) {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    @org.junit.jupiter.api.Test
+    void selectOnAnyAxis() {
+        NDArray array = NDArray.wrap(range(24), 2, 3, 4);
+        assertArrayEquals(new Integer[] {2, 3, 4}, array.getShape());
+        assertEquals(23.0, array.get(1, 2, 3));
+
+        // The middle axis, every other element of the last, and a fixed first index
+        NDArray view = array.select(1, new Slice(0, 3, 2), new Slice(1, 4, 2));
+        assertArrayEquals(new Integer[] {1, 2, 2}, view.getShape());
+        assertArrayEquals(new double[] {13, 15, 21, 23}, view.toDoubleArray());
+        assertFalse(view.isContiguous());
+
+        // Views share data
+        view.set(-1.0, 0, 1, 1);
+        assertEquals(-1.0, array.get(1, 2, 3));
+        assertArrayEquals(new Integer[] {1, 3, 4}, array.select(0).getShape());
+        assertThrows(IllegalArgumentException.class, () -> array.select(0, 3));
+        assertThrows(IllegalArgumentException.class, () -> array.select(0, 0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> array.get(0, 0));
+    }
+
+    @org.junit.jupiter.api.Test
+    void transposeAndReshape() {
+        NDArray array = NDArray.wrap(range(12), 2, 2, 3);
+        NDArray swapped = array.transpose(0, 2, 1);
+        assertArrayEquals(new Integer[] {2, 3, 2}, swapped.getShape());
+        assertArrayEquals(new double[] {0, 3, 1, 4, 2, 5, 6, 9, 7, 10, 8, 11}, swapped.toDoubleArray());
+        assertEquals(4.0, array.transpose().get(1, 1, 0));
+
+        // A contiguous array reshapes as a view, a transposed one as a copy
+        NDArray flat = array.reshape(4, 3);
+        flat.set(100.0, 3, 2);
+        assertEquals(100.0, array.get(1, 1, 2));
+        NDArray copied = swapped.reshape(12);
+        copied.set(-5.0, 0);
+        assertEquals(0.0, array.get(0, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> array.reshape(5, 2));
+        assertThrows(IllegalArgumentException.class, () -> array.transpose(0, 0, 1));
+    }
+
+    @org.junit.jupiter.api.Test
+    void elementwiseBroadcasts() {
+        NDArray array = NDArray.wrap(range(24), 2, 3, 4);
+        array.add(NDArray.wrap(new double[] {1, 2, 3, 4}, 4));
+        assertEquals(1.0, array.get(0, 0, 0));
+        assertEquals(27.0, array.get(1, 2, 3));
+
+        // A 3 x 1 matrix repeats down the last axis and across the first
+        array.subtract(new Matrix(new Double[][] {{1.0}, {2.0}, {3.0}}));
+        assertEquals(0.0, array.get(0, 0, 0));
+        assertEquals(24.0, array.get(1, 2, 3));
+
+        array.multiply(2.0);
+        array.select(new Slice(), new Slice(), new Slice(0, 1)).divide(2.0);
+        assertEquals(48.0, array.get(1, 2, 3));
+        assertEquals(18.0, array.get(1, 2, 0));
+
+        assertFalse(array.isCompatible(NDArray.newZeros(2, 4)));
+        assertThrows(IllegalArgumentException.class, () -> array.add(NDArray.newZeros(3, 3)));
+    }
+
+    @org.junit.jupiter.api.Test
+    void parallelMatchesSequential() {
+        Parallelism.Mode mode = Parallelism.getMode();
+        try {
+            NDArray source = NDArray.newRandom(7, 40, 30);
+            NDArray other = NDArray.newRandom(40, 1);
+            NDArray[] views = {source, source.transpose(2, 0, 1), source.select(new Slice(1, 7, 2))};
+            for (NDArray view : views) {
+                Parallelism.setMode(Parallelism.Mode.SEQUENTIAL);
+                NDArray sequential = view.copy();
+                sequential.multiply(view);
+                Parallelism.setMode(Parallelism.Mode.PARALLEL);
+                NDArray parallel = view.copy();
+                parallel.multiply(view);
+                assertArrayEquals(sequential.toDoubleArray(), parallel.toDoubleArray());
+            }
+            Parallelism.setMode(Parallelism.Mode.PARALLEL);
+            NDArray sum = source.copy();
+            sum.add(other);
+            for (int s = 0; s < 7; s++) {
+                assertEquals(source.get(s, 39, 29) + other.get(39, 0), sum.get(s, 39, 29));
+            }
+        } finally {
+            Parallelism.setMode(mode);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void matrixViews() {
+        NDArray batch = NDArray.wrap(range(12), 3, 2, 2);
+        Matrix second = batch.getMatrix(1);
+        assertEquals(7.0, second.get(1, 1));
+        second.set(-7.0, 1, 1);
+        assertEquals(-7.0, batch.get(1, 1, 1));
+
+        Matrix matrix = new Matrix(new Double[][] {{1.0, 2.0, 3.0}, {4.0, 5.0, 6.0}});
+        NDArray transposed = NDArray.of(matrix.transpose());
+        assertArrayEquals(new double[] {1, 4, 2, 5, 3, 6}, transposed.toDoubleArray());
+        transposed.add(10.0);
+        assertEquals(16.0, matrix.get(1, 2));
+
+        NDArray stacked = NDArray.stack(matrix, matrix.copy());
+        assertArrayEquals(new Integer[] {2, 2, 3}, stacked.getShape());
+        assertEquals(16.0, stacked.getMatrix(1).get(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> NDArray.stack(matrix, matrix.transpose()));
+        assertThrows(IllegalArgumentException.class, () -> NDArray.wrap(new double[5], 2, 3));
+        assertThrows(IllegalArgumentException.class, () -> batch.getMatrix());
+    }
+}
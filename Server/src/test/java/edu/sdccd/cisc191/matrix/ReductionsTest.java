@@ -0,0 +1,76 @@
+package edu.sdccd.cisc191.matrix;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReductionsTest {
+
+    private final Matrix matrix = new Matrix(new Double[][] {{1.0, -2.0, 3.0}, {-4.0, 5.0, -6.0}});
+
+    @org.junit.jupiter.api.Test
+    void wholeMatrix() {
+        assertEquals(-3.0, matrix.sum());
+        assertEquals(-0.5, matrix.mean());
+        assertEquals(21.0, matrix.norm1());
+        assertEquals(Math.sqrt(91), matrix.norm2(), 1e-15);
+        assertEquals(6.0, matrix.normInf());
+        assertEquals(-6.0, matrix.min());
+        assertEquals(5.0, matrix.max());
+        assertEquals(5, matrix.argmin());
+        assertEquals(4, matrix.argmax());
+        assertEquals(91.0, matrix.dot(matrix));
+    }
+
+    @org.junit.jupiter.api.Test
+    void alongAxes() {
+        assertEquals("[-3.0, 3.0, -3.0]", matrix.sum(0).toString());
+        assertEquals("[2.0]\n[-5.0]", matrix.sum(1).toString());
+        assertEquals("[-1.5, 1.5, -1.5]", matrix.mean(0).toString());
+        assertEquals("[6.0]\n[15.0]", matrix.norm1(1).toString());
+        assertEquals("[4.0, 5.0, 6.0]", matrix.normInf(0).toString());
+        assertEquals("[1.0, 5.0, 3.0]", matrix.max(0).toString());
+        assertArrayEquals(new int[] {1, 0, 1}, matrix.argmin(0));
+        assertArrayEquals(new int[] {2, 1}, matrix.argmax(1));
+        assertEquals("[17.0, 29.0, 45.0]", matrix.dot(matrix, 0).toString());
+        assertThrows(IllegalArgumentException.class, () -> matrix.sum(2));
+        assertThrows(IllegalArgumentException.class, () -> matrix.dot(matrix.transpose()));
+    }
+
+    @org.junit.jupiter.api.Test
+    void viewsReduceTheirOwnElements() {
+        Matrix transposed = matrix.transpose();
+        assertEquals(matrix.sum(0).toString(), transposed.sum(1).transpose().toString());
+        assertEquals(5, transposed.argmin());
+        Matrix picked = matrix.select(new Integer[] {1, 1}, new Slice(0, 3, 2));
+        assertEquals(-20.0, picked.sum());
+        assertEquals("[-8.0, -12.0]", picked.sum(0).toString());
+        Matrix repeated = Matrix.wrap(new double[] {1, 2}, 1, 2).broadcast(3, 2);
+        assertEquals(9.0, repeated.sum());
+    }
+
+    @org.junit.jupiter.api.Test
+    void sumsArePairwise() {
+        // 1 followed by many values too small to change it one at a time
+        int n = 1 << 20;
+        double[] data = new double[n];
+        data[0] = 1;
+        java.util.Arrays.fill(data, 1, n, 1e-16);
+        double exact = 1 + (n - 1) * 1e-16;
+        double naive = 0;
+        for (double value : data) {
+            naive += value;
+        }
+        assertEquals(1.0, naive);
+        assertEquals(exact, Reductions.sum(data, 0, 1, n), 1e-14);
+        Matrix column = Matrix.wrap(data, n, 1);
+        assertEquals(column.sequential().sum(), column.parallel().sum());
+        assertEquals(column.sequential().dot(column), column.parallel().dot(column));
+    }
+
+    @org.junit.jupiter.api.Test
+    void norm2DoesNotOverflowOrUnderflow() {
+        assertEquals(5e200, Matrix.wrap(new double[] {3e200, 4e200}, 1, 2).norm2(), 1e186);
+        assertEquals(5e-200, Matrix.wrap(new double[] {3e-200, 4e-200}, 2, 1).norm2(0).get(0, 0), 1e-214);
+        assertEquals(0.0, Matrix.newZeros(2, 2).norm2());
+        assertTrue(Double.isNaN(Matrix.wrap(new double[] {1, Double.NaN}, 1, 2).norm2()));
+    }
+}
@@ -0,0 +1,50 @@
+package edu.sdccd.cisc191.matrix;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SliceTest {
+
+    @org.junit.jupiter.api.Test
+    void length() {
+        assertEquals(10, new Slice().length(10));
+        assertEquals(5, new Slice(0, 10, 2).length(10));
+        assertEquals(3, new Slice(1, 10, 3).length(10));
+        assertEquals(0, new Slice(4, 4).length(10));
+        assertThrows(IllegalArgumentException.class, () -> new Slice(0, 11).length(10));
+        assertThrows(IllegalArgumentException.class, () -> new Slice(0, 10, 0).length(10));
+    }
+
+    @org.junit.jupiter.api.Test
+    void composeSelectsTheSameIndices() {
+        int length = 50;
+        Slice[] slices = {new Slice(), new Slice(3, 40, 3), new Slice(1, 20), new Slice(0, 9, 4), new Slice(2, 2)};
+        for (Slice outer : slices) {
+            for (Slice inner : slices) {
+                int outerLength = outer.length(length);
+                int innerLength;
+                try {
+                    innerLength = inner.length(outerLength);
+                } catch (IllegalArgumentException e) {
+                    assertThrows(IllegalArgumentException.class, () -> outer.compose(inner, length));
+                    continue;
+                }
+                Slice composed = outer.compose(inner, length);
+                assertEquals(innerLength, composed.length(length));
+                for (int i = 0; i < innerLength; i++) {
+                    assertEquals(outer.index(inner.index(i)), composed.index(i));
+                }
+            }
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void matrixSlicesOfSlicesAreViews() {
+        Matrix matrix = Matrix.newRandom(40, 3);
+        Matrix nested = matrix.select(new Slice(1, 40, 2), new Slice()).select(new Slice(2, 15, 3), new Slice(1, 2));
+        Slice composed = new Slice(1, 40, 2).compose(new Slice(2, 15, 3), 40);
+        Matrix direct = matrix.select(composed, new Slice(1, 2));
+        assertEquals(direct.toString(), nested.toString());
+        nested.set(7.0, 0, 0);
+        assertEquals(7.0, matrix.get(composed.getStart(), 1));
+    }
+}
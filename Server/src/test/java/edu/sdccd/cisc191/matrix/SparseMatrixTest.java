@@ -0,0 +1,60 @@
+package edu.sdccd.cisc191.matrix;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SparseMatrixTest {
+    private SparseMatrix sparse;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() {
+        // [1 0 2]
+        // [0 0 3]
+        // [4 5 0]
+        sparse = SparseMatrix.fromTriplets(3, 3,
+                new int[] {2, 0, 1, 0, 2, 0},
+                new int[] {1, 2, 2, 0, 0, 2},
+                new double[] {5.0, 1.0, 3.0, 1.0, 4.0, 1.0});
+    }
+
+    @org.junit.jupiter.api.Test
+    void fromTriplets() {
+        assertEquals(5, sparse.getNumNonZeros());
+        assertEquals("[1.0, 0.0, 2.0]\n[0.0, 0.0, 3.0]\n[4.0, 5.0, 0.0]", sparse.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void getAndSet() {
+        assertEquals(0.0, sparse.get(1, 0));
+        sparse.set(7.0, 1, 0);
+        sparse.set(9.0, 1, 2);
+        assertEquals(6, sparse.getNumNonZeros());
+        assertEquals("[1.0, 0.0, 2.0]\n[7.0, 0.0, 9.0]\n[4.0, 5.0, 0.0]", sparse.toString());
+    }
+
+    @org.junit.jupiter.api.Test
+    void elementWise() {
+        SparseMatrix other = SparseMatrix.fromTriplets(3, 3,
+                new int[] {0, 1}, new int[] {1, 2}, new double[] {1.0, 1.0});
+        sparse.add(other);
+        assertEquals(6, sparse.getNumNonZeros());
+        assertEquals("[1.0, 1.0, 2.0]\n[0.0, 0.0, 4.0]\n[4.0, 5.0, 0.0]", sparse.toString());
+        sparse.multiply(2.0);
+        sparse.multiply(new Matrix(new Double[][] {{1.0, 1.0, 1.0}, {1.0, 1.0, 0.5}, {0.0, 1.0, 1.0}}));
+        assertEquals("[2.0, 2.0, 4.0]\n[0.0, 0.0, 4.0]\n[0.0, 10.0, 0.0]", sparse.toString());
+        assertThrows(UnsupportedOperationException.class, () -> sparse.add(1.0));
+    }
+
+    @org.junit.jupiter.api.Test
+    void selectRows() {
+        SparseMatrix rows = sparse.select(new Slice(1, 3), new Slice());
+        assertEquals("[0.0, 0.0, 3.0]\n[4.0, 5.0, 0.0]", rows.toString());
+        rows.multiply(10.0);
+        assertEquals(30.0, sparse.get(1, 2));
+        assertThrows(UnsupportedOperationException.class, () -> rows.set(1.0, 0, 0));
+        assertThrows(UnsupportedOperationException.class, () -> sparse.select(new Slice(), new Slice(0, 2)));
+
+        SparseMatrix every = sparse.select(new Slice(0, 3, 2), new Slice()).select(new Slice(1, 2), new Slice());
+        assertEquals("[40.0, 50.0, 0.0]", every.toString());
+        assertEquals("[40.0, 50.0, 0.0]", sparse.select(new Integer[] {2, 0}, new Slice()).select(0, new Slice()).toString());
+    }
+}
@@ -0,0 +1,47 @@
+package edu.sdccd.cisc191.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @org.junit.jupiter.api.Test
+    void bucketsCoverEveryValue() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(bucket >= 0 && bucket < LatencyHistogram.BUCKETS);
+            assertTrue(LatencyHistogram.lowestValue(bucket) <= value);
+            assertTrue(LatencyHistogram.highestValue(bucket) >= value);
+        }
+        for (int bucket = 1; bucket < LatencyHistogram.BUCKETS; bucket++) {
+            assertEquals(LatencyHistogram.highestValue(bucket - 1) + 1, LatencyHistogram.lowestValue(bucket));
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void percentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+        assertEquals(5_000_000, histogram.percentile(50), 5_000_000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(9_900_000, histogram.percentile(99), 9_900_000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(10_000_000, histogram.percentile(100), 10_000_000 / LatencyHistogram.SUB_BUCKETS);
+    }
+
+    @org.junit.jupiter.api.Test
+    void operationsAggregate() {
+        Operation operation = new Operation("test");
+        operation.recordNanos(1000, 800, 2000);
+        operation.recordNanos(3000, 800, 4000);
+        assertEquals(2, operation.getCount());
+        assertEquals(1600, operation.getBytes());
+        assertEquals(2000.0, operation.getMeanNanos(), 0);
+        assertEquals(3000, operation.getMaxNanos());
+        assertEquals(1.5, operation.getGflops(), 1e-12);
+        operation.reset();
+        assertEquals(0, operation.getCount());
+        assertEquals(0, operation.getP99Nanos());
+    }
+
+}
@@ -0,0 +1,51 @@
+package edu.sdccd.cisc191.server;
+
+import edu.sdccd.cisc191.linalg.*;
+import edu.sdccd.cisc191.matrix.*;
+import edu.sdccd.cisc191.template.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestHandlerTest {
+
+    private static MatrixResponse solve(RequestHandler handler, double[][] a, double[][] b) {
+        return handler.handle(new MatrixRequest(1, MatrixRequest.Operation.SOLVE, a, b));
+    }
+
+    @org.junit.jupiter.api.Test
+    void nonSquareSolve() {
+        // Cached and uncached handlers answer the same as LinSystem.solveSystem
+        for (RequestHandler handler : new RequestHandler[] {new RequestHandler(), new RequestHandler(null)}) {
+            MatrixResponse leastSquares = solve(handler,
+                    new double[][] {{1, 0}, {0, 1}, {1, 1}}, new double[][] {{1}, {2}, {3}});
+            assertNull(leastSquares.getError());
+            assertEquals(1.0, leastSquares.getResult()[0][0], 1e-12);
+            assertEquals(2.0, leastSquares.getResult()[1][0], 1e-12);
+
+            assertEquals("No solution", solve(handler,
+                    new double[][] {{1, 1, 1}, {1, 1, 1}}, new double[][] {{1}, {2}}).getError());
+            assertEquals("Infinite solutions", solve(handler,
+                    new double[][] {{1, 1, 1}, {1, 2, 1}}, new double[][] {{1}, {2}}).getError());
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void cacheKeepsTheChosenFactorization() throws Exception {
+        CachedLinAlg cache = new RequestHandler().getCache();
+        Matrix spd = new Matrix(new Double[][] {{4.0, 1.0, 0.0}, {1.0, 3.0, 1.0}, {0.0, 1.0, 2.0}});
+        Matrix tall = new Matrix(new Double[][] {{1.0, 0.0}, {0.0, 1.0}, {1.0, 1.0}});
+        Matrix general = new Matrix(new Double[][] {{0.0, 2.0, 1.0}, {1.0, 1.0, 1.0}, {2.0, 1.0, 3.0}});
+        Matrix large = Matrix.newRandom(512, 512);
+        assertTrue(cache.factor(spd) instanceof CholeskyDecomposition);
+        assertTrue(cache.factor(tall) instanceof QRDecomposition);
+        assertTrue(cache.factor(general) instanceof LUDecomposition);
+        assertTrue(cache.factor(large) instanceof MixedPrecisionSolver);
+
+        Matrix b = Matrix.newRandom(512, 1);
+        Matrix x = cache.solve(large.copy(), b);
+        assertTrue(LinSystem.relativeResidual(large, x, b) < 1e-14);
+        assertEquals(4, cache.getCache().getMisses());
+        assertEquals(1, cache.getCache().getHits());
+        assertThrows(IllegalArgumentException.class, () -> cache.factor(tall.transpose()));
+    }
+}
@@ -0,0 +1,153 @@
+package edu.sdccd.cisc191.server;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import edu.sdccd.cisc191.template.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SolveServerTest {
+    private SolveServer server;
+
+    @org.junit.jupiter.api.BeforeEach
+    void setUp() throws IOException {
+        server = new SolveServer(0, 2, 16);
+        new Thread(server).start();
+    }
+
+    @org.junit.jupiter.api.AfterEach
+    void tearDown() {
+        server.close();
+    }
+
+    @org.junit.jupiter.api.Test
+    void pipelinedRequests() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            double[][] a = {{2, 1}, {1, 3}};
+            out.write(MatrixRequest.toJSON(new MatrixRequest(1, MatrixRequest.Operation.SOLVE, a, new double[][] {{3}, {5}})) + "\n");
+            out.write(MatrixRequest.toJSON(new MatrixRequest(2, MatrixRequest.Operation.TRANSPOSE, a, null)) + "\n");
+            out.write(MatrixRequest.toJSON(new MatrixRequest(3, MatrixRequest.Operation.MULTIPLY, a, new double[][] {{1, 2}})) + "\n");
+            out.write("not json\n");
+            out.flush();
+
+            MatrixResponse[] responses = new MatrixResponse[4];
+            for (int i = 0; i < 4; i++) {
+                MatrixResponse response = MatrixResponse.fromJSON(in.readLine());
+                responses[(int) response.getId()] = response;
+            }
+            assertEquals(0.8, responses[1].getResult()[0][0], 1e-12);
+            assertEquals(1.4, responses[1].getResult()[1][0], 1e-12);
+            assertArrayEquals(new double[] {2, 1}, responses[2].getResult()[0]);
+            assertEquals("Matrix shapes are not compatible", responses[3].getError());
+            assertTrue(responses[0].getError().startsWith("Invalid request"));
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void binaryRequests() throws Exception {
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            MatrixMessage request = new MatrixMessage(MatrixMessage.Type.SOLVE, 9,
+                    new MatrixMessage.Block(2, 2, new double[] {2, 1, 1, 3}),
+                    new MatrixMessage.Block(2, 1, new double[] {3, 5}));
+            ByteBuffer frame = MatrixCodec.encode(request);
+            socket.getOutputStream().write(frame.array(), 0, frame.remaining());
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] bytes = new byte[MatrixCodec.HEADER_BYTES + 8 + 2 * 8];
+            in.readFully(bytes);
+            MatrixMessage response = MatrixCodec.decode(ByteBuffer.wrap(bytes));
+            assertEquals(MatrixMessage.Type.RESULT, response.getType());
+            assertEquals(9, response.getId());
+            assertArrayEquals(new double[] {0.8, 1.4}, response.getBlocks()[0].getData(), 1e-12);
+        }
+    }
+
+    private static MatrixMessage readFrame(DataInputStream in) throws IOException {
+        byte[] header = new byte[MatrixCodec.HEADER_BYTES];
+        in.readFully(header);
+        byte[] frame = Arrays.copyOf(header, MatrixCodec.frameLength(ByteBuffer.wrap(header)));
+        in.readFully(frame, header.length, frame.length - header.length);
+        return MatrixCodec.decode(ByteBuffer.wrap(frame));
+    }
+
+    @org.junit.jupiter.api.Test
+    void batchedRequests() throws Exception {
+        // 0 batches what one selector round reads, 20 ms waits for the deadline flush
+        for (long delay : new long[] {0, 20}) {
+            server.setBatchDelay(delay, TimeUnit.MILLISECONDS);
+            checkBatch(new Random(delay));
+        }
+    }
+
+    private void checkBatch(Random random) throws Exception {
+        Map<Long, double[]> expected = new HashMap<>();
+        Map<Long, String> errors = new HashMap<>();
+        List<MatrixMessage> requests = new ArrayList<>();
+        long id = 1;
+        for (int n = SolveBatcher.MIN_SIZE; n <= SolveBatcher.MAX_SIZE; n++) {
+            for (int copy = 0; copy < 3; copy++) {
+                // Diagonally dominant, with a known solution x
+                double[] a = new double[n * n];
+                double[] x = new double[n];
+                double[] b = new double[n];
+                for (int i = 0; i < n; i++) {
+                    x[i] = random.nextInt(21) - 10;
+                    for (int j = 0; j < n; j++) {
+                        a[i * n + j] = random.nextDouble() + (i == j ? n : 0);
+                    }
+                }
+                for (int i = 0; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        b[i] += a[i * n + j] * x[j];
+                    }
+                }
+                requests.add(new MatrixMessage(MatrixMessage.Type.SOLVE, id,
+                        new MatrixMessage.Block(n, n, a), new MatrixMessage.Block(n, 1, b)));
+                expected.put(id++, x);
+            }
+        }
+        // Singular systems in the middle of their batches: repeated rows, with and without a solution
+        double[] repeated = {1, 2, 3, 1, 2, 3, 0, 1, 4};
+        requests.add(4, new MatrixMessage(MatrixMessage.Type.SOLVE, id,
+                new MatrixMessage.Block(3, 3, repeated), new MatrixMessage.Block(3, 1, new double[] {1, 2, 3})));
+        errors.put(id++, "No solution");
+        requests.add(20, new MatrixMessage(MatrixMessage.Type.SOLVE, id,
+                new MatrixMessage.Block(3, 3, repeated), new MatrixMessage.Block(3, 1, new double[] {1, 1, 3})));
+        errors.put(id++, "Infinite solutions");
+
+        RequestHandler handler = new RequestHandler();
+        try (Socket socket = new Socket("127.0.0.1", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            for (MatrixMessage request : requests) {
+                assertTrue(SolveBatcher.accepts(request));
+                if (errors.containsKey(request.getId())) {
+                    assertEquals(errors.get(request.getId()), handler.handle(request).getError());
+                }
+                ByteBuffer frame = MatrixCodec.encode(request);
+                out.write(frame.array(), 0, frame.remaining());
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            Set<Long> answered = new HashSet<>();
+            for (int r = 0; r < requests.size(); r++) {
+                MatrixMessage response = readFrame(in);
+                assertTrue(answered.add(response.getId()), "Answered twice: " + response.getId());
+                if (errors.containsKey(response.getId())) {
+                    assertEquals(MatrixMessage.Type.ERROR, response.getType());
+                    assertEquals(errors.get(response.getId()), response.getError());
+                } else {
+                    assertEquals(MatrixMessage.Type.RESULT, response.getType(), response.getError());
+                    assertArrayEquals(expected.get(response.getId()), response.getBlocks()[0].getData(), 1e-9);
+                }
+            }
+        }
+    }
+}
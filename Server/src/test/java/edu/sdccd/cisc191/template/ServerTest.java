@@ -0,0 +1,42 @@
+package edu.sdccd.cisc191.template;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import edu.sdccd.cisc191.matrix.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerTest {
+
+    @org.junit.jupiter.api.Test
+    void readsTextAndBinaryFiles() throws Exception {
+        Path text = Files.createTempFile("system", ".csv");
+        Path binary = Files.createTempFile("system", ".mtrx");
+        try {
+            Files.write(text, "# A | b\n1, 2, 3\n\n4 5\t6\n".getBytes(StandardCharsets.UTF_8));
+            Matrix matrix = Server.readMatrix(text, null);
+            assertArrayEquals(new Integer[]{2, 3}, matrix.getShape());
+            assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, matrix.toDoubleArray(), 0);
+
+            MatrixFile.write(matrix, binary);
+            assertArrayEquals(matrix.toDoubleArray(), Server.readMatrix(binary, null).toDoubleArray(), 0);
+        } finally {
+            Files.delete(text);
+            Files.delete(binary);
+        }
+    }
+
+    @org.junit.jupiter.api.Test
+    void rejectsRaggedRows() throws Exception {
+        Path text = Files.createTempFile("system", ".txt");
+        try {
+            Files.write(text, "1 2\n3\n".getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> Server.readMatrix(text, null));
+        } finally {
+            Files.delete(text);
+        }
+    }
+
+}